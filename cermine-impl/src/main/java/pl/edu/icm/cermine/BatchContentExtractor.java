@@ -0,0 +1,583 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine;
+
+import com.google.common.collect.Lists;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.jdom.DocType;
+import org.jdom.Element;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.configuration.ExtractionConfig;
+import pl.edu.icm.cermine.configuration.ExtractionContext;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxImage;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
+import pl.edu.icm.cermine.tools.timeout.Timeout;
+import pl.edu.icm.cermine.tools.timeout.TimeoutException;
+import pl.edu.icm.cermine.tools.timeout.TimeoutWatchdog;
+
+/**
+ * Batch extraction engine used by {@link ContentExtractor#main(String[])}.
+ * <p>
+ * Every PDF file is a separate work unit executed by a pool of worker threads,
+ * so a few very long documents do not hold up the rest of the batch.
+ * The files are read into memory ahead of processing by the submitting thread,
+ * the number of files read but not yet processed is bounded. Files larger
+ * than {@link #PREFETCH_SIZE_LIMIT} are not read ahead, the extractor
+ * accesses them directly instead.
+ * On JVM shutdown no new files are submitted and the files already
+ * in progress are allowed to finish.
+ * <p>
+ * A file whose processing is cancelled by {@link TimeoutWatchdog} and
+ * does not stop in the grace period is abandoned: it is counted as failed
+ * and the batch does not wait for it any more. The worker thread processing
+ * it cannot be stopped, so a replacement worker is added to the pool, which
+ * shrinks back when the stuck worker finishes. Stuck workers are reported as
+ * they are abandoned and counted in the summary.
+ * <p>
+ * When all the files are submitted, the batch waits for the remaining ones.
+ * If none of them finishes in {@value #DRAIN_TIMEOUT_SECONDS} seconds,
+ * the files not started yet are counted as failed and the ones still
+ * in progress are abandoned.
+ */
+public class BatchContentExtractor {
+
+    private static final long DRAIN_TIMEOUT_SECONDS = 120;
+
+    /** maximum size of a file read into memory ahead of processing */
+    public static final long PREFETCH_SIZE_LIMIT = 32L * 1024 * 1024;
+
+    private final int threads;
+    
+    private final int prefetch;
+    
+    private final Long timeoutSeconds;
+    
+    private final Long cpuTimeoutSeconds;
+    
+    private final Map<String, String> extensions;
+    
+    private final ExtractionContext context;
+
+    private final ThreadLocal<ContentExtractor> extractors = new ThreadLocal<ContentExtractor>();
+
+    private final ConcurrentMap<Thread, FileTask> running = new ConcurrentHashMap<Thread, FileTask>();
+
+    private final Queue<Long> latencies = new ConcurrentLinkedQueue<Long>();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger abandoned = new AtomicInteger();
+    /** worker threads still running abandoned files */
+    private final AtomicInteger stuckWorkers = new AtomicInteger();
+    private final AtomicLong pages = new AtomicLong();
+
+    private volatile boolean stopping = false;
+
+    /**
+     * @param threads number of worker threads
+     * @param prefetch maximum number of files read ahead of the workers
+     * @param timeoutSeconds approximate timeout per file in seconds, or null
+     * @param cpuTimeoutSeconds approximate CPU time budget per file in seconds,
+     * or null
+     * @param extensions output types mapped to the output file extensions
+     * @param config extraction configuration used by all the workers
+     */
+    public BatchContentExtractor(int threads, int prefetch, Long timeoutSeconds, Long cpuTimeoutSeconds,
+            Map<String, String> extensions, ExtractionConfig config) {
+        this(threads, prefetch, timeoutSeconds, cpuTimeoutSeconds, extensions, new ExtractionContext(config));
+    }
+
+    /**
+     * @param threads number of worker threads
+     * @param prefetch maximum number of files read ahead of the workers
+     * @param timeoutSeconds approximate timeout per file in seconds, or null
+     * @param cpuTimeoutSeconds approximate CPU time budget per file in seconds,
+     * or null
+     * @param extensions output types mapped to the output file extensions
+     * @param context extraction context used by all the workers
+     */
+    public BatchContentExtractor(int threads, int prefetch, Long timeoutSeconds, Long cpuTimeoutSeconds,
+            Map<String, String> extensions, ExtractionContext context) {
+        this.threads = Math.max(1, threads);
+        this.prefetch = Math.max(0, prefetch);
+        this.timeoutSeconds = timeoutSeconds;
+        this.cpuTimeoutSeconds = cpuTimeoutSeconds;
+        this.extensions = extensions;
+        this.context = context;
+    }
+
+    /**
+     * Processes the files and waits until all of them are done or abandoned.
+     *
+     * @param files PDF files
+     * @return run summary
+     * @throws InterruptedException InterruptedException
+     */
+    public Summary process(Collection<File> files) throws InterruptedException {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "cermine-batch-worker");
+                // a worker stuck in an abandoned file does not keep the JVM alive
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Semaphore inFlight = new Semaphore(threads + prefetch);
+        Thread drainHook = new Thread() {
+            @Override
+            public void run() {
+                stopping = true;
+                pool.shutdown();
+                try {
+                    pool.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(drainHook);
+        TimeoutWatchdog.AbandonListener abandonListener = new TimeoutWatchdog.AbandonListener() {
+            @Override
+            public void abandoned(Thread thread, Timeout timeout) {
+                FileTask task = running.get(thread);
+                if (task != null) {
+                    task.abandon(thread);
+                }
+            }
+        };
+        TimeoutWatchdog.getInstance().addListener(abandonListener);
+        
+        long start = System.nanoTime();
+        try {
+            for (File pdf : files) {
+                if (stopping) {
+                    break;
+                }
+                Map<String, File> outputs = new HashMap<String, File>();
+                for (Map.Entry<String, String> entry : extensions.entrySet()) {
+                    outputs.put(entry.getKey(), getOutputFile(pdf, entry.getValue()));
+                }
+                if (outputs.isEmpty()) {
+                    continue;
+                }
+                inFlight.acquire();
+                byte[] content = null;
+                try {
+                    if (pdf.length() <= PREFETCH_SIZE_LIMIT) {
+                        content = FileUtils.readFileToByteArray(pdf);
+                    }
+                } catch (IOException ex) {
+                    inFlight.release();
+                    failed.incrementAndGet();
+                    printException(ex);
+                    continue;
+                }
+                pool.execute(new FileTask(pdf, content, outputs, inFlight, pool));
+            }
+        } finally {
+            pool.shutdown();
+            drain(pool, inFlight);
+            TimeoutWatchdog.getInstance().removeListener(abandonListener);
+            try {
+                Runtime.getRuntime().removeShutdownHook(drainHook);
+            } catch (IllegalStateException ex) {
+                // the JVM is already shutting down
+            }
+        }
+        return new Summary(succeeded.get(), failed.get(), abandoned.get(), stuckWorkers.get(), pages.get(),
+                System.nanoTime() - start, new ArrayList<Long>(latencies));
+    }
+
+    /**
+     * Waits until all the submitted files are done or abandoned. If none
+     * of them finishes in the drain timeout, the files not started yet are
+     * counted as failed and the files in progress are abandoned.
+     */
+    private void drain(ThreadPoolExecutor pool, Semaphore inFlight) throws InterruptedException {
+        int permits = threads + prefetch;
+        int remaining = permits - inFlight.availablePermits();
+        long lastProgress = System.nanoTime();
+        while (!inFlight.tryAcquire(permits, 1, TimeUnit.MINUTES)) {
+            int nowRemaining = permits - inFlight.availablePermits();
+            if (nowRemaining != remaining) {
+                remaining = nowRemaining;
+                lastProgress = System.nanoTime();
+            } else if (System.nanoTime() - lastProgress >= TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS)) {
+                System.out.println("No file finished in " + DRAIN_TIMEOUT_SECONDS + "s, giving up on "
+                        + remaining + " files");
+                for (Runnable task : pool.shutdownNow()) {
+                    ((FileTask) task).skip();
+                }
+                for (Map.Entry<Thread, FileTask> entry : running.entrySet()) {
+                    entry.getValue().abandon(entry.getKey());
+                }
+                continue;
+            }
+            System.out.println("Waiting for " + remaining + " files...");
+        }
+        inFlight.release(permits);
+    }
+
+    /**
+     * Changes the number of the pool's workers.
+     */
+    private static synchronized void resize(ThreadPoolExecutor pool, int delta) {
+        int size = Math.max(1, pool.getMaximumPoolSize() + delta);
+        if (delta > 0) {
+            pool.setMaximumPoolSize(size);
+            pool.setCorePoolSize(size);
+        } else {
+            pool.setCorePoolSize(size);
+            pool.setMaximumPoolSize(size);
+        }
+    }
+
+    private class FileTask implements Runnable {
+
+        private final File pdf;
+        private final byte[] content;
+        private final Map<String, File> outputs;
+        private final Semaphore inFlight;
+        private final ThreadPoolExecutor pool;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile long start;
+
+        public FileTask(File pdf, byte[] content, Map<String, File> outputs, Semaphore inFlight,
+                ThreadPoolExecutor pool) {
+            this.pdf = pdf;
+            this.content = content;
+            this.outputs = outputs;
+            this.inFlight = inFlight;
+            this.pool = pool;
+        }
+
+        @Override
+        public void run() {
+            long threadId = Thread.currentThread().getId();
+            start = System.currentTimeMillis();
+            System.out.println("File processing: " + pdf.getPath() + " by thread # " + threadId);
+            running.put(Thread.currentThread(), this);
+            ExtractionContext previous = context.attach();
+            boolean success = false;
+            boolean recorded;
+            try {
+                ContentExtractor extractor = getExtractor();
+                try {
+                    if (timeoutSeconds != null || cpuTimeoutSeconds != null) {
+                        extractor.setTimeout(new Timeout(toMillis(timeoutSeconds), toMillis(cpuTimeoutSeconds)));
+                    }
+                    if (content == null) {
+                        extractor.setPDF(pdf);
+                    } else {
+                        extractor.setPDF(new ByteArrayInputStream(content));
+                    }
+                    extractToFiles(extractor, outputs);
+                    pages.addAndGet(extractor.getProcessedPageCount());
+                    success = true;
+                } finally {
+                    extractor.removeTimeout();
+                    extractor.reset();
+                }
+            } catch (AnalysisException ex) {
+                printException(ex);
+            } catch (TransformationException ex) {
+                printException(ex);
+            } catch (TimeoutException ex) {
+                printException(ex);
+            } catch (IOException ex) {
+                printException(ex);
+            } catch (RuntimeException ex) {
+                printException(ex);
+            } finally {
+                previous.attach();
+                running.remove(Thread.currentThread());
+                recorded = finish(success);
+            }
+            
+            if (recorded) {
+                System.out.println("File done " + pdf.getAbsolutePath() + " by thread # " + threadId);
+            } else {
+                // the result was recorded by abandon(), the replacement worker is no longer needed
+                stuckWorkers.decrementAndGet();
+                resize(pool, -1);
+                System.out.println("Abandoned file done " + pdf.getAbsolutePath() + " by thread # " + threadId);
+            }
+            System.out.println("Extraction time: " + Math.round((System.currentTimeMillis() - start) / 1000F) + "s");
+            System.out.println("");
+        }
+
+        public void abandon(Thread thread) {
+            if (finish(false)) {
+                abandoned.incrementAndGet();
+                int stuck = stuckWorkers.incrementAndGet();
+                resize(pool, 1);
+                System.out.println("File abandoned: " + pdf.getAbsolutePath());
+                System.out.println("Warning: worker thread # " + thread.getId() + " is still processing the abandoned file, "
+                        + "started a replacement worker (" + stuck + " stuck workers)");
+            }
+        }
+
+        /**
+         * Records the file, which was never started, as failed.
+         */
+        public void skip() {
+            start = System.currentTimeMillis();
+            if (finish(false)) {
+                System.out.println("File not processed: " + pdf.getAbsolutePath());
+            }
+        }
+
+        /**
+         * Records the result of the file, unless it was already recorded.
+         *
+         * @return true if the result was recorded
+         */
+        private boolean finish(boolean success) {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            latencies.add(System.currentTimeMillis() - start);
+            if (success) {
+                succeeded.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+            inFlight.release();
+            return true;
+        }
+    }
+
+    private static long toMillis(Long seconds) {
+        return seconds == null || seconds >= Long.MAX_VALUE / 1000 ? Long.MAX_VALUE : seconds * 1000;
+    }
+
+    private ContentExtractor getExtractor() throws AnalysisException {
+        ContentExtractor extractor = extractors.get();
+        if (extractor == null) {
+            extractor = new ContentExtractor(context);
+            extractors.set(extractor);
+        }
+        return extractor;
+    }
+
+    /**
+     * Writes the requested outputs of the extraction to the files.
+     *
+     * @param extractor extractor with the input PDF set
+     * @param outputs output types mapped to output files
+     * @throws AnalysisException AnalysisException
+     * @throws TransformationException TransformationException
+     * @throws IOException IOException
+     */
+    public static void extractToFiles(ContentExtractor extractor, Map<String, File> outputs)
+            throws AnalysisException, TransformationException, IOException {
+        if (outputs.containsKey("images")) {
+            List<BxImage> images = extractor.getImages(outputs.get("images").getPath());
+            FileUtils.forceMkdir(outputs.get("images"));
+            for (BxImage image : images) {
+                ImageIO.write(image.getImage(), "png", new File(image.getPath()));
+            }
+        }
+
+        if (outputs.containsKey("jats")) {
+            Element jats;
+            if (outputs.containsKey("images")) {
+                jats = extractor.getContentAsNLM(outputs.get("images").getPath());
+            } else {
+                jats = extractor.getContentAsNLM(null);
+            }
+            XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+            DocType dt = new DocType("article", "-//NLM//DTD JATS (Z39.96) Journal Archiving and Interchange DTD v1.0 20120330//EN", "JATS-archivearticle1.dtd");
+            FileUtils.writeStringToFile(outputs.get("jats"), outputter.outputString(dt), "UTF-8");
+            FileUtils.writeStringToFile(outputs.get("jats"), "\n", "UTF-8", true);
+            FileUtils.writeStringToFile(outputs.get("jats"), outputter.outputString(jats), "UTF-8", true);
+        }
+
+        if (outputs.containsKey("trueviz")) {
+            BxDocument doc = extractor.getBxDocumentWithSpecificLabels();
+            BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
+            Writer fw = new OutputStreamWriter(new FileOutputStream(outputs.get("trueviz")), "UTF-8");
+            try {
+                writer.write(fw, Lists.newArrayList(doc), "UTF-8");
+            } finally {
+                fw.close();
+            }
+        }
+
+        if (outputs.containsKey("zones")) {
+            Element text = extractor.getLabelledFullText();
+            XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+            FileUtils.writeStringToFile(outputs.get("zones"), outputter.outputString(text), "UTF-8");
+        }
+
+        if (outputs.containsKey("text")) {
+            String text = extractor.getRawFullText();
+            FileUtils.writeStringToFile(outputs.get("text"), text, "UTF-8");
+        }
+
+        if (outputs.containsKey("bibtex")) {
+            List<BibEntry> references = extractor.getReferences();
+            for (BibEntry reference : references) {
+                FileUtils.writeStringToFile(outputs.get("bibtex"), reference.toBibTeX(), "UTF-8", true);
+                FileUtils.writeStringToFile(outputs.get("bibtex"), "\n", "UTF-8", true);
+            }
+        }
+    }
+
+    private static File getOutputFile(File pdf, String ext) {
+        return new File(pdf.getPath().replaceFirst("pdf$", ext));
+    }
+
+    private static void printException(Exception ex) {
+        System.out.print("Exception occured: " + ExceptionUtils.getStackTrace(ex));
+    }
+
+    /**
+     * Throughput and latency summary of a batch run.
+     */
+    public static class Summary {
+
+        private final int succeeded;
+        private final int failed;
+        private final int abandoned;
+        private final int stuckWorkers;
+        private final long pages;
+        private final long elapsedNanos;
+        private final List<Long> latencies;
+
+        public Summary(int succeeded, int failed, int abandoned, int stuckWorkers, long pages,
+                long elapsedNanos, List<Long> latencies) {
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.abandoned = abandoned;
+            this.stuckWorkers = stuckWorkers;
+            this.pages = pages;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = new ArrayList<Long>(latencies);
+            Collections.sort(this.latencies);
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return the number of files processed, succeeded or failed
+         */
+        public int getProcessed() {
+            return succeeded + failed;
+        }
+
+        /**
+         * @return the number of abandoned files, included in the failed ones
+         */
+        public int getAbandoned() {
+            return abandoned;
+        }
+
+        /**
+         * @return the number of worker threads still running abandoned files
+         * at the end of the batch
+         */
+        public int getStuckWorkers() {
+            return stuckWorkers;
+        }
+
+        public long getPages() {
+            return pages;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        public double getDocumentsPerSecond() {
+            return elapsedNanos == 0 ? 0 : getProcessed() / getElapsedSeconds();
+        }
+
+        public double getPagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : pages / getElapsedSeconds();
+        }
+
+        /**
+         * @param percentile percentile, from 0 to 100
+         * @return per-file latency percentile in milliseconds (nearest rank)
+         */
+        public long getLatencyPercentile(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * latencies.size());
+            return latencies.get(Math.min(latencies.size() - 1, Math.max(0, rank - 1)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH,
+                    "Files: %d processed, %d succeeded, %d failed (%d abandoned)%n"
+                    + "Stuck workers: %d%n"
+                    + "Pages: %d%n"
+                    + "Total time: %.1fs%n"
+                    + "Throughput: %.3f docs/s, %.3f pages/s%n"
+                    + "Latency: p50 %dms, p90 %dms, p99 %dms, max %dms",
+                    getProcessed(), succeeded, failed, abandoned, stuckWorkers, pages, getElapsedSeconds(),
+                    getDocumentsPerSecond(), getPagesPerSecond(),
+                    getLatencyPercentile(50), getLatencyPercentile(90),
+                    getLatencyPercentile(99), getLatencyPercentile(100));
+        }
+    }
+
+}
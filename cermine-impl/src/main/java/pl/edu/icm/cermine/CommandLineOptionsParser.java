@@ -46,13 +46,17 @@ public class CommandLineOptionsParser {
         options.addOption("strext", true, "structure file extension");
         options.addOption("configuration", true, "path to configuration file");
         options.addOption("timeout", true, "time in seconds");
+        options.addOption("cputimeout", true, "CPU time in seconds");
         options.addOption("chunkSize", true, "number of pdfs per chunk");
         options.addOption("threads", true, "number of threads");
+        options.addOption("prefetch", true, "number of pdfs read ahead of the threads");
     }
 
     /**
-     * @return timeout in seconds; Null if no timeout is set.
+     * @return number of pdfs per chunk
+     * @deprecated files are no longer processed in chunks, see {@link #getPrefetch()}
      */
+    @Deprecated
     public int getChunkSize() {
         if (!commandLine.hasOption("chunkSize")) {
             return 2;
@@ -67,7 +71,7 @@ public class CommandLineOptionsParser {
     }
 
     /**
-     * @return timeout in seconds; Null if no timeout is set.
+     * @return number of threads
      */
     public int getThreads() {
         if (!commandLine.hasOption("threads")) {
@@ -82,6 +86,22 @@ public class CommandLineOptionsParser {
         }
     }
     
+    /**
+     * @return maximum number of pdfs read ahead of the worker threads
+     */
+    public int getPrefetch() {
+        if (!commandLine.hasOption("prefetch")) {
+            return 2 * getThreads();
+        } else {
+            Integer value = Integer.parseInt(commandLine.getOptionValue("prefetch"));
+            if (value < 0) {
+                throw new RuntimeException("The 'prefetch' value given as a "
+                        + "command line parameter has to be nonnegative.");
+            }
+            return value;
+        }
+    }
+    
     public String parse(String[] args) throws ParseException {
         CommandLineParser clParser = new DefaultParser();
         commandLine = clParser.parse(options, args);
@@ -175,6 +195,22 @@ public class CommandLineOptionsParser {
         }
     }
     
+    /**
+     * @return CPU time budget in seconds; Null if no budget is set.
+     */
+    public Long getCpuTimeout() {
+        if (!commandLine.hasOption("cputimeout")) {
+            return null;
+        } else {
+            Long value = Long.parseLong(commandLine.getOptionValue("cputimeout"));
+            if (value < 0) {
+                throw new RuntimeException("The 'cputimeout' value given as a " 
+                        + "command line parameter has to be nonnegative.");
+            }
+            return value;
+        }
+    }
+    
     public String getConfigurationPath() {
         return getStringOptionValue(null, "configuration");
     }
@@ -23,8 +23,9 @@ import java.io.InputStream;
 import pl.edu.icm.cermine.bibref.BibReferenceExtractor;
 import pl.edu.icm.cermine.bibref.BibReferenceParser;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
-import pl.edu.icm.cermine.configuration.ExtractionConfigRegister;
+import pl.edu.icm.cermine.configuration.ExtractionConfig;
 import pl.edu.icm.cermine.configuration.ExtractionConfigProperty;
+import pl.edu.icm.cermine.configuration.ExtractionContext;
 import pl.edu.icm.cermine.content.citations.ContentCitationPositionFinder;
 import pl.edu.icm.cermine.content.cleaning.ContentCleaner;
 import pl.edu.icm.cermine.content.filtering.ContentFilter;
@@ -92,18 +93,48 @@ public class ComponentConfiguration {
     /** citation position finder */
     private ContentCitationPositionFinder citationPositionFinder;
     
+    /** extraction settings */
+    private final ExtractionContext context;
+    
+    /**
+     * Creates the components using the extraction context registered
+     * for the current thread.
+     * 
+     * @throws AnalysisException AnalysisException
+     */
     public ComponentConfiguration() throws AnalysisException {
+        this(ExtractionContext.current());
+    }
+    
+    /**
+     * Creates the components using the given extraction context.
+     * The context is attached to the current thread for the time of creation.
+     * 
+     * @param context extraction context
+     * @throws AnalysisException AnalysisException
+     */
+    public ComponentConfiguration(ExtractionContext context) throws AnalysisException {
+        this.context = context;
+        ExtractionContext previous = context.attach();
+        try {
+            createComponents(context.getConfig());
+        } finally {
+            previous.attach();
+        }
+    }
+    
+    private void createComponents(ExtractionConfig config) throws AnalysisException {
         try {
             characterExtractor = ComponentFactory.getCharacterExtractor();
             documentSegmenter = ComponentFactory.getDocumentSegmenter();
             readingOrderResolver = ComponentFactory.getReadingOrderResolver();
             initialClassifier = ComponentFactory.getInitialZoneClassifier(
-                    ExtractionConfigRegister.get().getStringProperty(ExtractionConfigProperty.INITIAL_ZONE_CLASSIFIER_MODEL_PATH),
-                    ExtractionConfigRegister.get().getStringProperty(ExtractionConfigProperty.INITIAL_ZONE_CLASSIFIER_RANGE_PATH));
+                    config.getStringProperty(ExtractionConfigProperty.INITIAL_ZONE_CLASSIFIER_MODEL_PATH),
+                    config.getStringProperty(ExtractionConfigProperty.INITIAL_ZONE_CLASSIFIER_RANGE_PATH));
             TimeoutRegister.get().check();
             metadataClassifier = ComponentFactory.getMetadataZoneClassifier(
-                    ExtractionConfigRegister.get().getStringProperty(ExtractionConfigProperty.METADATA_ZONE_CLASSIFIER_MODEL_PATH),
-                    ExtractionConfigRegister.get().getStringProperty(ExtractionConfigProperty.METADATA_ZONE_CLASSIFIER_RANGE_PATH));
+                    config.getStringProperty(ExtractionConfigProperty.METADATA_ZONE_CLASSIFIER_MODEL_PATH),
+                    config.getStringProperty(ExtractionConfigProperty.METADATA_ZONE_CLASSIFIER_RANGE_PATH));
             TimeoutRegister.get().check();
             metadataExtractor = ComponentFactory.getMetadataExtractor();
             TimeoutRegister.get().check();
@@ -112,8 +143,8 @@ public class ComponentConfiguration {
             bibReferenceExtractor = ComponentFactory.getBibReferenceExtractor();
             bibReferenceParser = ComponentFactory.getBibReferenceParser();
             contentFilter = ComponentFactory.getContentFilter(
-                    ExtractionConfigRegister.get().getStringProperty(ExtractionConfigProperty.CONTENT_FILTER_MODEL_PATH),
-                    ExtractionConfigRegister.get().getStringProperty(ExtractionConfigProperty.CONTENT_FILTER_RANGE_PATH));
+                    config.getStringProperty(ExtractionConfigProperty.CONTENT_FILTER_MODEL_PATH),
+                    config.getStringProperty(ExtractionConfigProperty.CONTENT_FILTER_RANGE_PATH));
             TimeoutRegister.get().check();
             contentHeaderExtractor = ComponentFactory.getContentHeaderExtractor();
             contentHeaderClusterizer = ComponentFactory.getContentHeaderClusterizer();
@@ -124,6 +155,13 @@ public class ComponentConfiguration {
         }
     }
     
+    /**
+     * @return the extraction context the components were created with
+     */
+    public ExtractionContext getContext() {
+        return context;
+    }
+    
     public void setCharacterExtractor(CharacterExtractor characterExtractor) {
         this.characterExtractor = characterExtractor;
     }
@@ -40,10 +40,12 @@ import pl.edu.icm.cermine.metadata.model.DocumentAffiliation;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
 import pl.edu.icm.cermine.parsing.tools.ParsableStringParser;
 import pl.edu.icm.cermine.structure.*;
-import pl.edu.icm.cermine.tools.ResourceUtils;
 
 /**
  * A factory of extraction components.
+ * <p>
+ * Models referenced by path are loaded through {@link pl.edu.icm.cermine.tools.ModelRegistry}
+ * and shared by all the components created by the factory.
  *
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
  */
@@ -64,7 +66,7 @@ public class ComponentFactory {
      * @return page segmenter
      */
     public static DocumentSegmenter getDocumentSegmenter() {
-        return new DocstrumSegmenter();
+        return new ParallelDocstrumSegmenter();
     }
     
     /**
@@ -88,8 +90,9 @@ public class ComponentFactory {
      * @throws IOException IOException
      */
     public static ZoneClassifier getInitialZoneClassifier(String modelPath, String rangePath) throws AnalysisException, IOException {
-        
-        return getInitialZoneClassifier(ResourceUtils.openResourceStream(modelPath), ResourceUtils.openResourceStream(rangePath));
+        SVMInitialZoneClassifier classifier = new SVMInitialZoneClassifier();
+        classifier.loadModelFromRegistry(modelPath, rangePath);
+        return classifier;
     }
     
     /**
@@ -127,7 +130,9 @@ public class ComponentFactory {
      * @throws IOException IOException
      */
     public static ZoneClassifier getMetadataZoneClassifier(String modelPath, String rangePath) throws AnalysisException, IOException {
-        return getMetadataZoneClassifier(ResourceUtils.openResourceStream(modelPath), ResourceUtils.openResourceStream(rangePath));
+        SVMMetadataZoneClassifier classifier = new SVMMetadataZoneClassifier();
+        classifier.loadModelFromRegistry(modelPath, rangePath);
+        return classifier;
     }
     
     /**
@@ -218,7 +223,9 @@ public class ComponentFactory {
      * @throws IOException IOException
      */
     public static ContentFilter getContentFilter(String modelPath, String rangePath) throws AnalysisException, IOException {
-        return getContentFilter(ResourceUtils.openResourceStream(modelPath), ResourceUtils.openResourceStream(rangePath));
+        SVMContentFilter filter = new SVMContentFilter();
+        filter.loadModelFromRegistry(modelPath, rangePath);
+        return filter;
     }
 
     /**
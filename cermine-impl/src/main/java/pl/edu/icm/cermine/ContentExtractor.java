@@ -18,7 +18,6 @@
 package pl.edu.icm.cermine;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
@@ -27,27 +26,19 @@ import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.jdom.Element;
-import org.jdom.output.Format;
-import org.jdom.output.XMLOutputter;
-import com.google.common.collect.Lists;
-import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import javax.imageio.ImageIO;
-import org.jdom.DocType;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
-import pl.edu.icm.cermine.configuration.ExtractionConfigRegister;
+import pl.edu.icm.cermine.configuration.ExtractionConfig;
 import pl.edu.icm.cermine.configuration.ExtractionConfigBuilder;
 import pl.edu.icm.cermine.configuration.ExtractionConfigProperty;
+import pl.edu.icm.cermine.configuration.ExtractionContext;
 import pl.edu.icm.cermine.content.model.ContentStructure;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxImage;
-import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
+import pl.edu.icm.cermine.tools.metrics.DocumentTrace;
+import pl.edu.icm.cermine.tools.metrics.SummaryMetrics;
 import pl.edu.icm.cermine.tools.timeout.Timeout;
 import pl.edu.icm.cermine.tools.timeout.TimeoutException;
 import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
@@ -81,6 +72,17 @@ public class ContentExtractor {
         this.extractor = new InternalContentExtractor();
     }
     
+    /**
+     * Creates the object with the given extraction context. The configuration
+     * of the context is used no matter which thread calls the extractor.
+     *
+     * @param context extraction context
+     * @throws AnalysisException thrown when there was an error while initializing object
+     */
+    public ContentExtractor(ExtractionContext context) throws AnalysisException {
+        this.extractor = new InternalContentExtractor(context);
+    }
+    
     /**
      * Creates the object with overridden default configuration and sets 
      * the object-bound timeout before any other initialization in the constructor is done.
@@ -102,6 +104,17 @@ public class ContentExtractor {
     }
 
 
+    /**
+     * Returns the measurements of the extraction steps performed so far
+     * on the current document. The trace is cleared when a new document is set
+     * or the extractor is reset.
+     *
+     * @return document trace
+     */
+    public DocumentTrace getTrace() {
+        return extractor.getTrace();
+    }
+
     /**
      * Set object-bound timeout.
      * <p>
@@ -124,6 +137,20 @@ public class ContentExtractor {
         this.mainTimeout = new Timeout(timeoutSeconds * SECONDS_TO_MILLIS);
     }
 
+    /**
+     * Set object-bound timeout, which may also define a CPU time budget.
+     * See {@link #setTimeout(long)} for more details about the timeout.
+     * <p>
+     * The CPU time of all the <code>get*</code> calls made with the timeout
+     * is added up. When the budget is used up, the processing stops in the same
+     * way as when the deadline passes.
+     *
+     * @param timeout timeout
+     */
+    public void setTimeout(Timeout timeout) {
+        this.mainTimeout = timeout;
+    }
+
     /**
      * Remove the object-bound timeout.
      */
@@ -140,6 +167,18 @@ public class ContentExtractor {
     public void setPDF(InputStream pdfFile) throws IOException {
         this.extractor.setPDF(pdfFile);
     }
+
+    /**
+     * Stores the input PDF file. The file is accessed directly during
+     * the extraction, without reading its whole content into memory,
+     * which is recommended for large files.
+     *
+     * @param pdfFile PDF file
+     * @throws IOException IOException
+     */
+    public void setPDF(File pdfFile) throws IOException {
+        this.extractor.setPDF(pdfFile);
+    }
     
     /**
      * Sets the input bx document.
@@ -160,6 +199,10 @@ public class ContentExtractor {
         this.extractor.reset();
     }
 
+    int getProcessedPageCount() {
+        return this.extractor.getProcessedPageCount();
+    }
+
     public ComponentConfiguration getConf() {
         return this.extractor.getConf();
     }
@@ -728,143 +771,6 @@ public class ContentExtractor {
 
 
 
-    public static class Task implements Runnable
-    {
-
-        private ArrayList<File> pdfList = null;
-        private Map<String, String> extensions = null;
-        private Long timeout = 60L;
-
-        public Task(ArrayList<File> inlist, Map<String, String> extensions, Long timeout)
-        {
-            this.pdfList = inlist;
-            this.extensions = extensions;
-
-            if (timeout != null)
-            {
-                this.timeout = timeout;
-            }
-
-        }
-
-        public void run()
-        {
-
-            long threadId = Thread.currentThread().getId();
-
-
-
-            for (File pdf: pdfList)
-            {
-
-                Map<String, File> outputs = new HashMap<String, File>();
-                for (Map.Entry<String, String> entry : extensions.entrySet()) {
-                    File outputFile = getOutputFile(pdf, entry.getValue());
-
-                    outputs.put(entry.getKey(), outputFile);
-                }
-                if (outputs.isEmpty()) {
-                    continue;
-                }
-
-                long start = System.currentTimeMillis();
-                float elapsed;
-
-                System.out.println("File processing: " + pdf.getPath() + " by thread # " + threadId );
-
-                ContentExtractor extractor = null;
-                try {
-                    extractor = createContentExtractor(60L);
-
-                    InputStream in = new FileInputStream(pdf);
-                    extractor.setPDF(in);
-
-                    if (outputs.containsKey("images")) {
-                        List<BxImage> images = extractor.getImages(outputs.get("images").getPath());
-                        FileUtils.forceMkdir(outputs.get("images"));
-                        for (BxImage image : images) {
-                            ImageIO.write(image.getImage(), "png", new File(image.getPath()));
-                        }
-                    }
-
-                    if (outputs.containsKey("jats")) {
-                        Element jats;
-                        if (outputs.containsKey("images")) {
-                            jats = extractor.getContentAsNLM(outputs.get("images").getPath());
-                        } else {
-                            jats = extractor.getContentAsNLM(null);
-                        }
-                        XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
-                        DocType dt = new DocType("article", "-//NLM//DTD JATS (Z39.96) Journal Archiving and Interchange DTD v1.0 20120330//EN", "JATS-archivearticle1.dtd");
-                        FileUtils.writeStringToFile(outputs.get("jats"), outputter.outputString(dt), "UTF-8");
-                        FileUtils.writeStringToFile(outputs.get("jats"), "\n", "UTF-8", true);
-                        FileUtils.writeStringToFile(outputs.get("jats"), outputter.outputString(jats), "UTF-8", true);
-                    }
-
-                    if (outputs.containsKey("trueviz")) {
-                        BxDocument doc = extractor.getBxDocumentWithSpecificLabels();
-                        BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
-                        Writer fw = new OutputStreamWriter(new FileOutputStream(outputs.get("trueviz")), "UTF-8");
-                        writer.write(fw, Lists.newArrayList(doc), "UTF-8");
-                    }
-
-                    if (outputs.containsKey("zones")) {
-                        Element text = extractor.getLabelledFullText();
-                        XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
-                        FileUtils.writeStringToFile(outputs.get("zones"), outputter.outputString(text), "UTF-8");
-                    }
-
-                    if (outputs.containsKey("text")) {
-                        String text = extractor.getRawFullText();
-                        FileUtils.writeStringToFile(outputs.get("text"), text, "UTF-8");
-                    }
-
-                    if (outputs.containsKey("bibtex")) {
-                        List<BibEntry> references = extractor.getReferences();
-                        for (BibEntry reference: references) {
-                            FileUtils.writeStringToFile(outputs.get("bibtex"), reference.toBibTeX(), "UTF-8", true);
-                            FileUtils.writeStringToFile(outputs.get("bibtex"), "\n", "UTF-8", true);
-                        }
-                    }
-
-                } catch (AnalysisException ex) {
-                    printException(ex);
-                } catch (TransformationException ex) {
-                    printException(ex);
-                } catch (TimeoutException ex) {
-                    printException(ex);
-                } catch (IOException ex) {
-                    printException(ex);
-                } finally {
-                    if (extractor != null) {
-                        extractor.removeTimeout();
-                    }
-                    long end = System.currentTimeMillis();
-                    elapsed = (end - start) / 1000F;
-                }
-
-
-
-                System.out.println("File done " + pdf.getAbsolutePath() + " by thread # " + threadId );
-                System.out.println("Extraction time: " + Math.round(elapsed) + "s");
-                System.out.println("");
-
-            }
-
-
-        }
-
-
-    }
-
-
-
-
-
-
-
-
-
     public static void main(String[] args) throws ParseException, AnalysisException, IOException, TransformationException {
         CommandLineOptionsParser parser = new CommandLineOptionsParser();
         String error = parser.parse(args);
@@ -887,11 +793,18 @@ public class ContentExtractor {
                     + "                         resulting files; the list has to have the same\n"
                     + "                         length as output list; default: \"cermxml,images\"\n"
                     + "  -override              override already existing files\n"
-                    + "  -timeout <seconds>     (optional) approximate maximum allowed processing\n"
-                    + "                         time for a PDF file in seconds; by default, no\n"
-                    + "                         timeout is used; the value is approximate because in\n"
-                    + "                         some cases, the program might be allowed to slightly\n"
-                    + "                         exceeded this time, say by a second or two\n"
+                    + "  -timeout <seconds>     (optional) maximum allowed processing time for a PDF\n"
+                    + "                         file in seconds; by default, no timeout is used; when\n"
+                    + "                         the time passes, the processing of the file is\n"
+                    + "                         cancelled, and if it does not stop within 10 seconds,\n"
+                    + "                         the file is abandoned and counted as failed\n"
+                    + "  -cputimeout <seconds>  (optional) maximum allowed CPU time for a PDF file\n"
+                    + "                         in seconds, enforced in the same way as the timeout;\n"
+                    + "                         by default, no limit is used\n"
+                    + "  -threads <number>      (optional) number of worker threads; default: 2\n"
+                    + "  -prefetch <number>     (optional) maximum number of PDF files read ahead\n"
+                    + "                         of the worker threads; default: twice the number\n"
+                    + "                         of threads\n"
                     + "  -configuration <path>	(optional) path to configuration properties file\n"
                     + "                         see https://github.com/CeON/CERMINE\n"
                     + "                         for description of available configuration properties\n"
@@ -899,10 +812,10 @@ public class ContentExtractor {
             System.exit(1);
         }
 
-        boolean override = parser.override();
         Long timeoutSeconds = parser.getTimeout();
-        int iBatchSize = parser.getChunkSize();
-        int iThreads = parser.getThreads();
+        Long cpuTimeoutSeconds = parser.getCpuTimeout();
+        int threads = parser.getThreads();
+        int prefetch = parser.getPrefetch();
         
         String path = parser.getPath();
         Map<String, String> extensions = parser.getTypesAndExtensions();
@@ -915,53 +828,25 @@ public class ContentExtractor {
             builder.addConfiguration(parser.getConfigurationPath());
         }
         builder.setProperty(ExtractionConfigProperty.IMAGES_EXTRACTION, extensions.containsKey("images"));
-        ExtractionConfigRegister.set(builder.buildConfiguration());
+        ExtractionConfig config = builder.buildConfiguration();
+        SummaryMetrics metrics = new SummaryMetrics();
+        ExtractionContext context = new ExtractionContext(config).withMetrics(metrics);
 
-
-        ExecutorService pool = Executors.newFixedThreadPool(iThreads);
-
-
-        ArrayList<File> oCurList = new ArrayList<File>();
-        int i = 0;
-        for (File pdf : files) {
-
-            oCurList.add(pdf);
-
-            if (oCurList.size() >= iBatchSize)
-            {
-                Task oTask = new Task(oCurList, extensions, timeoutSeconds);
-                pool.execute(oTask);
-
-                oCurList = new ArrayList<File>();
+        BatchContentExtractor batchExtractor = new BatchContentExtractor(threads, prefetch, timeoutSeconds, cpuTimeoutSeconds,
+                extensions, context);
+        try {
+            BatchContentExtractor.Summary summary = batchExtractor.process(files);
+            System.out.println(summary);
+            if (config.getBooleanProperty(ExtractionConfigProperty.DEBUG_PRINT_TIME)) {
+                System.out.println();
+                System.out.print(metrics);
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            printException(ex);
         }
-
-        if (oCurList.size() > 0)
-        {
-            Task oTask = new Task(oCurList, extensions, timeoutSeconds);
-            pool.execute(oTask);
-        }
-
-        pool.shutdown();
-
-    }
-
-    private static ContentExtractor createContentExtractor(Long timeoutSeconds)
-            throws TimeoutException, AnalysisException {
-        ContentExtractor extractor;
-        if (timeoutSeconds != null) {
-            extractor = new ContentExtractor(timeoutSeconds);
-        } else {
-            extractor = new ContentExtractor();
-        }
-        TimeoutRegister.get().check();
-        return extractor;
     }
 
-    private static File getOutputFile(File pdf, String ext) {
-        return new File(pdf.getPath().replaceFirst("pdf$", ext));
-    }
-    
     private static void printException(Exception ex) {
         System.out.print("Exception occured: " + ExceptionUtils.getStackTrace(ex));
     }
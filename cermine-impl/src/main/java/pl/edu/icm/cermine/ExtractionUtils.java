@@ -20,8 +20,8 @@ package pl.edu.icm.cermine;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import java.io.File;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
@@ -61,6 +61,14 @@ public class ExtractionUtils {
         debug(start, "1.1 Character extraction");
         return doc;
     }
+
+    public static BxDocument extractCharacters(ComponentConfiguration conf, File file) 
+            throws AnalysisException {
+        long start = System.currentTimeMillis();
+        BxDocument doc = conf.getCharacterExtractor().extractCharacters(file);
+        debug(start, "1.1 Character extraction");
+        return doc;
+    }
     
     //1.2 Page segmentation
     public static BxDocument segmentPages(ComponentConfiguration conf, BxDocument doc) 
@@ -133,10 +141,7 @@ public class ExtractionUtils {
     public static List<BibEntry> parseReferences(ComponentConfiguration conf, List<String> refs)
             throws AnalysisException {
         long start = System.currentTimeMillis();
-        List<BibEntry> parsedRefs = new ArrayList<BibEntry>();
-        for (String ref : refs) {
-            parsedRefs.add(conf.getBibRefParser().parseBibReference(ref));
-        }
+        List<BibEntry> parsedRefs = conf.getBibRefParser().parseBibReferences(refs);
         debug(start, "3.2 Reference parsing");
         return parsedRefs;
     }
@@ -19,6 +19,7 @@
 package pl.edu.icm.cermine;
 
 import com.google.common.collect.Lists;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -30,6 +31,7 @@ import org.jdom.Namespace;
 import pl.edu.icm.cermine.ExtractionUtils.Step;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
 import pl.edu.icm.cermine.bibref.transformers.BibEntryToNLMConverter;
+import pl.edu.icm.cermine.configuration.ExtractionContext;
 import pl.edu.icm.cermine.content.RawTextWithLabelsExtractor;
 import pl.edu.icm.cermine.content.citations.ContentStructureCitationPositions;
 import pl.edu.icm.cermine.content.cleaning.ContentCleaner;
@@ -42,9 +44,16 @@ import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
 import pl.edu.icm.cermine.metadata.transformers.MetadataToNLMConverter;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxImage;
+import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
 import pl.edu.icm.cermine.structure.tools.BxModelUtils;
+import pl.edu.icm.cermine.tools.metrics.DocumentTrace;
+import pl.edu.icm.cermine.tools.metrics.StepMeter;
+import pl.edu.icm.cermine.tools.metrics.StepMetrics;
+import pl.edu.icm.cermine.tools.timeout.Timeout;
+import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
+import pl.edu.icm.cermine.tools.timeout.TimeoutWatchdog;
 import pl.edu.icm.cermine.tools.transformers.ModelToModelConverter;
 
 /**
@@ -64,6 +73,9 @@ public class InternalContentExtractor {
     /** input PDF file */
     private InputStream pdfFile;
     
+    /** input PDF file path, accessed directly instead of the stream */
+    private File pdfPath;
+    
     /** document's geometric structure */
     private BxDocument bxDocument;
     
@@ -84,6 +96,9 @@ public class InternalContentExtractor {
     private ContentStructureCitationPositions citationPositions;
     
     private final Set<Step> stepsDone;
+    
+    /** measurements of the steps performed on the document */
+    private DocumentTrace trace = new DocumentTrace();
             
     
     /**
@@ -92,7 +107,20 @@ public class InternalContentExtractor {
      * @throws AnalysisException thrown when there was an error while initializing object
      */
     public InternalContentExtractor() throws AnalysisException {
-        conf = new ComponentConfiguration();
+        this(ExtractionContext.current());
+    }
+
+    /**
+     * Creates the object with the given extraction context. The configuration
+     * and the metrics of the context are used for all the extraction steps,
+     * regardless of the thread calling the extractor. The timeout is taken
+     * from the calling thread.
+     * 
+     * @param context extraction context
+     * @throws AnalysisException thrown when there was an error while initializing object
+     */
+    public InternalContentExtractor(ExtractionContext context) throws AnalysisException {
+        conf = new ComponentConfiguration(context);
         stepsDone = EnumSet.noneOf(Step.class);
     }
 
@@ -107,6 +135,18 @@ public class InternalContentExtractor {
         this.pdfFile = pdfFile;
     }
 
+    /**
+     * Stores the input PDF file. The file is accessed directly during
+     * the extraction, without reading its whole content into memory.
+     * 
+     * @param pdfFile PDF file
+     * @throws IOException IOException
+     */
+    public void setPDF(File pdfFile) throws IOException {
+        reset();
+        this.pdfPath = pdfFile;
+    }
+
     /**
      * Sets the input bx document.
      * 
@@ -337,11 +377,50 @@ public class InternalContentExtractor {
         if (step == null || stepsDone.contains(step)) {
             return;
         }
+        Timeout timeout = TimeoutRegister.get();
+        ExtractionContext context = conf.getContext().withTimeout(timeout);
+        ExtractionContext previous = context.attach();
+        TimeoutWatchdog.Watch watch = timeout.isUnlimited() ? null : TimeoutWatchdog.getInstance().watch(timeout);
+        try {
+            doStep(step);
+        } finally {
+            if (watch != null) {
+                watch.close();
+            }
+            previous.attach();
+        }
+    }
+    
+    private void doStep(Step step) throws AnalysisException {
+        if (stepsDone.contains(step)) {
+            return;
+        }
         for (Step ps : step.getPrerequisites()) {
-            doWork(ps);
+            doStep(ps);
         }
+        ExtractionContext context = ExtractionContext.current();
+        StepMeter meter = new StepMeter(step.name(), context.getMetrics());
+        ExtractionContext previous = context.withMetrics(meter).attach();
+        boolean completed = false;
+        try {
+            runStep(step);
+            completed = true;
+        } finally {
+            previous.attach();
+            StepMetrics metrics = stopMeter(meter, completed);
+            trace.add(metrics);
+            context.getMetrics().stepFinished(metrics);
+        }
+        stepsDone.add(step);
+    }
+    
+    private void runStep(Step step) throws AnalysisException {
         switch (step) {
             case CHARACTER_EXTRACTION:
+                if (pdfPath != null) {
+                    bxDocument = ExtractionUtils.extractCharacters(conf, pdfPath);
+                    break;
+                }
                 if (pdfFile == null) {
                     throw new AnalysisException("No PDF document uploaded!");
                 }
@@ -388,7 +467,30 @@ public class InternalContentExtractor {
                 break;
             default: break;
         }
-        stepsDone.add(step);
+    }
+    
+    private StepMetrics stopMeter(StepMeter meter, boolean completed) {
+        int pages = -1;
+        int zones = -1;
+        int lines = -1;
+        if (bxDocument != null) {
+            pages = bxDocument.childrenCount();
+            zones = 0;
+            lines = 0;
+            for (BxPage page : bxDocument) {
+                zones += page.childrenCount();
+                for (BxZone zone : page) {
+                    lines += zone.childrenCount();
+                }
+            }
+        }
+        int refs = -1;
+        if (references != null) {
+            refs = references.size();
+        } else if (referenceStrings != null) {
+            refs = referenceStrings.size();
+        }
+        return meter.stop(completed, pages, zones, lines, refs);
     }
     
     /**
@@ -408,7 +510,25 @@ public class InternalContentExtractor {
             pdfFile.close();
         }
         pdfFile = null;
+        pdfPath = null;
         stepsDone.clear();
+        trace = new DocumentTrace();
+    }
+
+    /**
+     * @return the number of pages of the document processed so far,
+     * 0 if the characters have not been extracted yet
+     */
+    public int getProcessedPageCount() {
+        return bxDocument == null ? 0 : bxDocument.childrenCount();
+    }
+
+    /**
+     * @return the measurements of the extraction steps performed
+     * on the current document
+     */
+    public DocumentTrace getTrace() {
+        return trace;
     }
 
     public ComponentConfiguration getConf() {
@@ -17,6 +17,8 @@
  */
 package pl.edu.icm.cermine.bibref;
 
+import java.util.ArrayList;
+import java.util.List;
 import pl.edu.icm.cermine.exception.AnalysisException;
 
 /**
@@ -38,4 +40,20 @@ public interface BibReferenceParser<T> {
      */
     T parseBibReference(String text) throws AnalysisException;
 
+    /**
+     * Parses the texts of a number of references, typically all
+     * the references of a single document.
+     *
+     * @param texts reference texts
+     * @return parsed references, in the same order as the texts
+     * @throws AnalysisException AnalysisException
+     */
+    default List<T> parseBibReferences(List<String> texts) throws AnalysisException {
+        List<T> references = new ArrayList<T>(texts.size());
+        for (String text : texts) {
+            references.add(parseBibReference(text));
+        }
+        return references;
+    }
+
 }
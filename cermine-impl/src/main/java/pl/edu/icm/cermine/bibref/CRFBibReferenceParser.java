@@ -24,12 +24,14 @@ import edu.umass.cs.mallet.base.types.InstanceList;
 import edu.umass.cs.mallet.base.types.LabelsSequence;
 import edu.umass.cs.mallet.grmm.learning.ACRF;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
 import org.apache.commons.cli.*;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -46,8 +48,12 @@ import pl.edu.icm.cermine.configuration.ExtractionConfigProperty;
 import pl.edu.icm.cermine.configuration.ExtractionConfigRegister;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.tools.ModelPool;
+import pl.edu.icm.cermine.tools.ModelRegistry;
+import pl.edu.icm.cermine.tools.ModelRegistry.ModelLoader;
 import pl.edu.icm.cermine.tools.PrefixTree;
 import pl.edu.icm.cermine.tools.ResourceUtils;
+import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
 
 /**
  * CRF-based bibiliographic reference parser.
@@ -58,30 +64,30 @@ public class CRFBibReferenceParser implements BibReferenceParser<BibEntry> {
     
     private static final int MAX_REFERENCE_LENGTH = 3000;
     
-    private ACRF model;
+    private static final Pattern INSTANCE_BOUNDARY = Pattern.compile("\\s*");
+    
+    private ModelPool<ACRF> models;
     
     private Set<String> terms;
     
-    private Set<String> journals;
-    private Set<String> surnames;
-    private Set<String> insts;
-
+    private PrefixTree journals;
+    private PrefixTree surnames;
+    private PrefixTree insts;
+    
     public CRFBibReferenceParser(String modelFile, String termsFile, String journalsFile, String surnamesFile, String instsFile) throws AnalysisException {
-        InputStream modelIS;
-        InputStream termsIS;
-        InputStream journalsIS;
-        InputStream surnamesIS;
-        InputStream instsIS;
         try {
-            modelIS = ResourceUtils.openResourceStream(modelFile);
-            termsIS = ResourceUtils.openResourceStream(termsFile);
-            journalsIS = ResourceUtils.openResourceStream(journalsFile);
-            surnamesIS = ResourceUtils.openResourceStream(surnamesFile);
-            instsIS = ResourceUtils.openResourceStream(instsFile);
-            loadModels(modelIS, termsIS, journalsIS, surnamesIS, instsIS);
+            models = ModelRegistry.getACRFPool(modelFile);
+            terms = ModelRegistry.get("terms", termsFile, new ModelLoader<Set<String>>() {
+                @Override
+                public Set<String> load(InputStream stream) throws IOException {
+                    return new HashSet<String>(IOUtils.readLines(stream, "UTF-8"));
+                }
+            });
+            journals = getGazetteer(journalsFile);
+            surnames = getGazetteer(surnamesFile);
+            insts = getGazetteer(instsFile);
         } catch (IOException ex) {
             throw new AnalysisException("Cannot set model!", ex);
-        } finally {
         }
     }
     
@@ -90,23 +96,20 @@ public class CRFBibReferenceParser implements BibReferenceParser<BibEntry> {
     }
 
     public void loadModels(InputStream modelIS, InputStream termsIS, InputStream journalsIS, InputStream surnamesIS, InputStream instsIS) throws AnalysisException {
-        // prevents MALLET from printing info messages
-        System.setProperty("java.util.logging.config.file",
-            "edu/umass/cs/mallet/base/util/resources/logging.properties");
-        
-        ObjectInputStream ois = null;
+        loadModel(modelIS, termsIS);
+        journals = loadGazetteer(journalsIS, "journals");
+        surnames = loadGazetteer(surnamesIS, "surnames");
+        insts = loadGazetteer(instsIS, "institutions");
+    }
+    
+    private void loadModel(InputStream modelIS, InputStream termsIS) throws AnalysisException {
         try {
-            ois = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(modelIS)));
-            model = (ACRF)(ois.readObject());
+            models = ModelRegistry.createACRFPool(modelIS);
         } catch (IOException ex) {
             throw new AnalysisException("Cannot set model!", ex);
-        } catch (ClassNotFoundException ex) {
-            throw new AnalysisException("Cannot set model!", ex);
         } finally {
             try {
-                if (ois != null) {
-                    ois.close();
-                }
+                modelIS.close();
             } catch (IOException ex) {
                 throw new AnalysisException("Cannot set model!", ex);
             }
@@ -118,27 +121,25 @@ public class CRFBibReferenceParser implements BibReferenceParser<BibEntry> {
         } catch (IOException ex) {
             Logger.getLogger(CRFBibReferenceParser.class.getName()).log(Level.SEVERE, "Cannot load common words!", ex);
         }
-        
-        journals = new HashSet<String>();
-        try {
-            journals.addAll(IOUtils.readLines(journalsIS, "UTF-8"));
-        } catch (IOException ex) {
-            Logger.getLogger(CRFBibReferenceParser.class.getName()).log(Level.SEVERE, "Cannot load common journals!", ex);
-        }
-        
-        surnames = new HashSet<String>();
-        try {
-            surnames.addAll(IOUtils.readLines(surnamesIS, "UTF-8"));
-        } catch (IOException ex) {
-            Logger.getLogger(CRFBibReferenceParser.class.getName()).log(Level.SEVERE, "Cannot load common surnames!", ex);
-        }
-        
-        insts = new HashSet<String>();
+    }
+    
+    private static PrefixTree getGazetteer(String path) throws IOException {
+        return ModelRegistry.get("gazetteer", path, new ModelLoader<PrefixTree>() {
+            @Override
+            public PrefixTree load(InputStream stream) throws IOException {
+                return PrefixTree.buildTree(new HashSet<String>(IOUtils.readLines(stream, "UTF-8")));
+            }
+        });
+    }
+    
+    private static PrefixTree loadGazetteer(InputStream is, String name) {
+        Set<String> entries = new HashSet<String>();
         try {
-            insts.addAll(IOUtils.readLines(instsIS, "UTF-8"));
+            entries.addAll(IOUtils.readLines(is, "UTF-8"));
         } catch (IOException ex) {
-            Logger.getLogger(CRFBibReferenceParser.class.getName()).log(Level.SEVERE, "Cannot load common institutions!", ex);
+            Logger.getLogger(CRFBibReferenceParser.class.getName()).log(Level.SEVERE, "Cannot load common " + name + "!", ex);
         }
+        return PrefixTree.buildTree(entries);
     }
     
     @Override
@@ -147,31 +148,91 @@ public class CRFBibReferenceParser implements BibReferenceParser<BibEntry> {
         return CitationUtils.citationToBibref(citation);
     }
     
+    @Override
+    public List<BibEntry> parseBibReferences(List<String> texts) throws AnalysisException {
+        List<BibEntry> references = new ArrayList<BibEntry>(texts.size());
+        for (Citation citation : parseToTokenLists(texts)) {
+            references.add(CitationUtils.citationToBibref(citation));
+        }
+        return references;
+    }
+    
     public Citation parseToTokenList(String text) throws AnalysisException {
-        if (model == null) {
+        return parseToTokenLists(Collections.singletonList(text)).get(0);
+    }
+    
+    /**
+     * Labels the tokens of a number of references. All the references are
+     * passed to the model as a single instance list and decoded in one pass.
+     * 
+     * @param texts reference texts
+     * @return labelled citations, in the same order as the texts
+     * @throws AnalysisException AnalysisException
+     */
+    public List<Citation> parseToTokenLists(List<String> texts) throws AnalysisException {
+        if (models == null) {
             throw new AnalysisException("Model object is not set!");
         }
-        Citation citation = CitationUtils.stringToCitation(text);
-        if (text.length() > MAX_REFERENCE_LENGTH) {
-            return citation;
+        List<Citation> citations = new ArrayList<Citation>(texts.size());
+        List<Citation> toLabel = new ArrayList<Citation>();
+        List<String> data = new ArrayList<String>();
+        for (String text : texts) {
+            Citation citation = CitationUtils.stringToCitation(text);
+            citations.add(citation);
+            if (text.length() > MAX_REFERENCE_LENGTH || citation.getTokens().isEmpty()) {
+                continue;
+            }
+            toLabel.add(citation);
+            data.add(StringUtils.join(CitationUtils.citationToMalletInputFormat(citation, terms, journals, surnames, insts), "\n"));
         }
-        
-        PrefixTree journalsPt = new PrefixTree(PrefixTree.START_TERM);
-        journalsPt.build(journals);
-        PrefixTree surnamesPt = new PrefixTree(PrefixTree.START_TERM);
-        surnamesPt.build(surnames);
-        PrefixTree instPt = new PrefixTree(PrefixTree.START_TERM);
-        instPt.build(insts);
-        String data = StringUtils.join(CitationUtils.citationToMalletInputFormat(citation, terms, journalsPt, surnamesPt, instPt), "\n");
-        
+        if (!toLabel.isEmpty()) {
+            TimeoutRegister.get().check();
+            labelCitations(toLabel, data);
+        }
+        return citations;
+    }
+    
+    private void labelCitations(List<Citation> toLabel, List<String> data) throws AnalysisException {
+        ACRF model = obtainModel();
+        try {
+            List labels = getBestLabels(model, StringUtils.join(data, "\n\n"));
+            if (labels.size() == toLabel.size()) {
+                for (int i = 0; i < toLabel.size(); i++) {
+                    setLabels(toLabel.get(i), (LabelsSequence) labels.get(i));
+                }
+            } else {
+                for (int i = 0; i < toLabel.size(); i++) {
+                    TimeoutRegister.get().check();
+                    labels = getBestLabels(model, data.get(i));
+                    if (!labels.isEmpty()) {
+                        setLabels(toLabel.get(i), (LabelsSequence) labels.get(0));
+                    }
+                }
+            }
+        } finally {
+            models.release(model);
+        }
+    }
+    
+    private ACRF obtainModel() throws AnalysisException {
+        try {
+            return models.obtain();
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot set model!", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Interrupted while waiting for a model!", ex);
+        }
+    }
+    
+    private List getBestLabels(ACRF model, String data) {
         Pipe pipe = model.getInputPipe();
         InstanceList instanceList = new InstanceList(pipe);
-        instanceList.add(new LineGroupIterator(new StringReader(data), Pattern.compile ("\\s*"), true)); 
-        if (model.getBestLabels(instanceList).isEmpty()) {
-            return citation;
-        }
-        LabelsSequence labelSequence = (LabelsSequence)model.getBestLabels(instanceList).get(0);
-        
+        instanceList.add(new LineGroupIterator(new StringReader(data), INSTANCE_BOUNDARY, true));
+        return model.getBestLabels(instanceList);
+    }
+    
+    private void setLabels(Citation citation, LabelsSequence labelSequence) {
         for (int i = 0; i < labelSequence.size(); i++) {
             CitationTokenLabel label = CitationTokenLabel.valueOf(labelSequence.get(i).toString());
             if (CitationTokenLabel.getNormalizedLabel(label) != null) {
@@ -179,8 +240,6 @@ public class CRFBibReferenceParser implements BibReferenceParser<BibEntry> {
             }
             citation.getTokens().get(i).setLabel(label);
         }
-        
-        return citation;
     }
   
     public static CRFBibReferenceParser getInstance() throws AnalysisException {
@@ -31,9 +31,7 @@ import pl.edu.icm.cermine.structure.model.BxLine;
 import pl.edu.icm.cermine.tools.CharacterUtils;
 import pl.edu.icm.cermine.tools.classification.clustering.KMeansWithInitialCentroids;
 import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
-import pl.edu.icm.cermine.tools.classification.general.FeatureVector;
 import pl.edu.icm.cermine.tools.classification.general.FeatureVectorBuilder;
-import pl.edu.icm.cermine.tools.distance.FeatureVectorDistanceMetric;
 import pl.edu.icm.cermine.tools.distance.FeatureVectorEuclideanMetric;
 
 /**
@@ -43,12 +41,15 @@ import pl.edu.icm.cermine.tools.distance.FeatureVectorEuclideanMetric;
  */
 public class KMeansBibReferenceExtractor implements BibReferenceExtractor {
 
+    /** The maximum number of references lines, only the last lines are kept */
     public static final int MAX_REF_LINES_COUNT = 10000;
     
     public static final int MAX_REFS_COUNT = 1000;
 
     public static final int MAX_REF_LENGTH = 1500;
     
+    private static final String HYPHENS = String.valueOf(CharacterUtils.DASH_CHARS);
+    
     private static final FeatureVectorBuilder<BxLine, BxDocumentBibReferences> VECTOR_BUILDER =
                 new FeatureVectorBuilder<BxLine, BxDocumentBibReferences>();
     static {
@@ -73,71 +74,59 @@ public class KMeansBibReferenceExtractor implements BibReferenceExtractor {
      */
     @Override
     public String[] extractBibReferences(BxDocument document) throws AnalysisException {
-        BxDocumentBibReferences documentReferences = BibRefExtractionUtils.extractBibRefLines(document);
-        documentReferences.limit(MAX_REF_LINES_COUNT);
+        BxDocumentBibReferences documentReferences =
+                BibRefExtractionUtils.extractBibRefLines(document, MAX_REF_LINES_COUNT);
         
-        List<String> lines = new ArrayList<String>();
-        List<FeatureVector> instances = new ArrayList<FeatureVector>();
-        FeatureVectorDistanceMetric metric = new FeatureVectorEuclideanMetric();
-        FeatureVector farthestInstance = null;
+        List<BxLine> refLines = documentReferences.getLines();
+        String[] lines = new String[refLines.size()];
+        double[][] instances = new double[refLines.size()][];
+        FeatureVectorEuclideanMetric metric = new FeatureVectorEuclideanMetric();
+        int farthestInstance = 0;
         double farthestDistance = 0;
-        for (BxLine line : documentReferences.getLines()) {
-            lines.add(ContentCleaner.clean(line.toText()));
-            FeatureVector featureVector = VECTOR_BUILDER.getFeatureVector(line, documentReferences);
-            instances.add(featureVector);
-            if (farthestInstance == null) {
-                farthestInstance = instances.get(0);
-            }
-            double distance = metric.getDistance(instances.get(0), featureVector);
+        for (int i = 0; i < refLines.size(); i++) {
+            BxLine line = refLines.get(i);
+            lines[i] = ContentCleaner.clean(line.toText());
+            instances[i] = VECTOR_BUILDER.getFeatureVector(line, documentReferences).getValues();
+            double distance = metric.getDistance(instances[0], instances[i]);
             if (distance > farthestDistance) {
-                farthestInstance = featureVector;
+                farthestInstance = i;
                 farthestDistance = distance;
             }
         }
 
-        if (lines.size() <= 1 || farthestDistance < 0.001) {
-            if (lines.size() > MAX_REFS_COUNT) {
+        if (lines.length <= 1 || farthestDistance < 0.001) {
+            if (lines.length > MAX_REFS_COUNT) {
                 return new String[]{};
             } else {
-                return lines.toArray(new String[lines.size()]);
+                return lines;
             }
         }
         
         KMeansWithInitialCentroids clusterer = new KMeansWithInitialCentroids(2);
-        FeatureVector[] centroids = new FeatureVector[2];
-        centroids[0] = instances.get(0);
-        centroids[1] = farthestInstance;
-        clusterer.setCentroids(centroids);
-        List<FeatureVector>[] clusters = clusterer.cluster(instances);
-        
-        int firstInstanceClusterNum = 0;
-        if (clusters[1].contains(instances.get(0))) {
-            firstInstanceClusterNum = 1;
-        }
+        clusterer.setCentroids(new double[][]{instances[0], instances[farthestInstance]});
+        int[] clusters = clusterer.cluster(instances);
+        int firstInstanceCluster = clusters[0];
         
         List<String> references = new ArrayList<String>();
-        String actRef = "";
-        for (int i = 0; i < lines.size(); i++) {
-            if (clusters[firstInstanceClusterNum].contains(instances.get(i))) {
-                if (!actRef.isEmpty() && actRef.matches(".*[0-9].*") && actRef.matches(".*[a-zA-Z].*")
-			&& actRef.length() < MAX_REF_LENGTH) {
-                    references.add(actRef);
+        ReferenceBuilder actRef = new ReferenceBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            if (clusters[i] == firstInstanceCluster) {
+                if (actRef.isValid()) {
+                    references.add(actRef.toString());
                 }
-                actRef = lines.get(i);
+                actRef = new ReferenceBuilder();
+                actRef.append(lines[i]);
             } else {
-                String hyphenList = String.valueOf(CharacterUtils.DASH_CHARS);
-                hyphenList = hyphenList.replaceAll("-", "") + "-";
-                if (actRef.matches(".*[a-zA-Z]["+hyphenList+"]")) {
-                    actRef = actRef.substring(0, actRef.length()-1);
+                if (actRef.endsWithHyphenatedWord()) {
+                    actRef.removeLastCharacter();
                 } else {
-                    actRef += " ";
+                    actRef.append(" ");
                 }
-                actRef += lines.get(i);
+                actRef.append(lines[i]);
             }
         }
-        if (!actRef.isEmpty() && actRef.matches(".*[0-9].*") && actRef.matches(".*[a-zA-Z].*")
-		&& actRef.length() < MAX_REF_LENGTH) {
-            references.add(actRef);
+        if (actRef.isValid()) {
+            references.add(actRef.toString());
         }
         
         if (references.size() > MAX_REFS_COUNT) {
@@ -147,4 +136,68 @@ public class KMeansBibReferenceExtractor implements BibReferenceExtractor {
         return references.toArray(new String[references.size()]);
     }
 
+    /**
+     * Joins the lines of a reference. It keeps track of the characters it
+     * contains, so that the lines are not rescanned with every appended line.
+     */
+    private static class ReferenceBuilder {
+        
+        private final StringBuilder text = new StringBuilder();
+        
+        private boolean hasDigit;
+        
+        private boolean hasLetter;
+        
+        private boolean hasLineTerminator;
+        
+        public void append(String str) {
+            for (int i = 0; i < str.length(); i++) {
+                char ch = str.charAt(i);
+                if (ch >= '0' && ch <= '9') {
+                    hasDigit = true;
+                } else if (isLetter(ch)) {
+                    hasLetter = true;
+                } else if (isLineTerminator(ch)) {
+                    hasLineTerminator = true;
+                }
+            }
+            text.append(str);
+        }
+        
+        public void removeLastCharacter() {
+            text.setLength(text.length() - 1);
+        }
+        
+        /**
+         * Checks whether the text matches regex ".*[a-zA-Z][hyphens]".
+         */
+        public boolean endsWithHyphenatedWord() {
+            int length = text.length();
+            return length >= 2 && !hasLineTerminator && isLetter(text.charAt(length - 2))
+                    && HYPHENS.indexOf(text.charAt(length - 1)) >= 0;
+        }
+        
+        /**
+         * Checks whether the text matches regexes ".*[0-9].*" and ".*[a-zA-Z].*"
+         * and is not too long.
+         */
+        public boolean isValid() {
+            return hasDigit && hasLetter && !hasLineTerminator && text.length() < MAX_REF_LENGTH;
+        }
+        
+        private static boolean isLetter(char ch) {
+            return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+        }
+        
+        private static boolean isLineTerminator(char ch) {
+            return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+        }
+        
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+        
+    }
+    
 }
@@ -28,13 +28,17 @@ import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
  */
 public class EndsWithDotFeature extends FeatureCalculator<BxLine, BxDocumentBibReferences> {
 
+    private static final Pattern NUMBER_DOT_END_PATTERN = Pattern.compile("^.*\\d\\.$");
+    
+    private static final Pattern DOT_END_PATTERN = Pattern.compile("^.*\\.$");
+    
     @Override
     public double calculateFeatureValue(BxLine refLine, BxDocumentBibReferences refs) {
         String text = refLine.toText();
-        if (Pattern.matches("^.*\\d\\.$", text)) {
+        if (NUMBER_DOT_END_PATTERN.matcher(text).matches()) {
             return 1;
         }
-        return Pattern.matches("^.*\\.$", text) ? 0.5 : 0;
+        return DOT_END_PATTERN.matcher(text).matches() ? 0.5 : 0;
     }
     
 }
@@ -28,16 +28,21 @@ import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
  */
 public class PrevEndsWithDotFeature extends FeatureCalculator<BxLine, BxDocumentBibReferences> {
 
+    private static final Pattern NUMBER_DOT_END_PATTERN = Pattern.compile("^.*\\d\\.$");
+    
+    private static final Pattern DOT_END_PATTERN = Pattern.compile("^.*\\.$");
+    
     @Override
     public double calculateFeatureValue(BxLine refLine, BxDocumentBibReferences refs) {
-        if (refs.getLines().indexOf(refLine) == 0) {
+        int index = refs.getIndex(refLine);
+        if (index == 0) {
             return 0.9;
         }
-        String text = refs.getLines().get(refs.getLines().indexOf(refLine)-1).toText();
-        if (Pattern.matches("^.*\\d\\.$", text)) {
+        String text = refs.getLines().get(index-1).toText();
+        if (NUMBER_DOT_END_PATTERN.matcher(text).matches()) {
             return 1;
         }
-        return Pattern.matches("^.*\\.$", text) ? 0.8 : 0;
+        return DOT_END_PATTERN.matcher(text).matches() ? 0.8 : 0;
     }
     
 }
@@ -29,11 +29,12 @@ public class PrevRelativeLengthFeature extends FeatureCalculator<BxLine, BxDocum
 
     @Override
     public double calculateFeatureValue(BxLine refLine, BxDocumentBibReferences refs) {
-        if (refs.getLines().indexOf(refLine) == 0) {
+        int index = refs.getIndex(refLine);
+        if (index == 0) {
             return 0.2;
         }
         
-        BxLine prev = refs.getLines().get(refs.getLines().indexOf(refLine)-1);        
+        BxLine prev = refs.getLines().get(index-1);        
         return prev.getBounds().getWidth() / refs.getZone(prev).getBounds().getWidth();
     }
     
@@ -29,27 +29,18 @@ public class SpaceBetweenLinesFeature extends FeatureCalculator<BxLine, BxDocume
 
     @Override
     public double calculateFeatureValue(BxLine refLine, BxDocumentBibReferences refs) {
-        double minSpace = Double.POSITIVE_INFINITY;
-        double maxSpace = Double.NEGATIVE_INFINITY;
+        double minSpace = refs.getMinLineSpace();
+        double maxSpace = refs.getMaxLineSpace();
         double lineSpace = 0;
-        BxLine prevLine = null;
-        for (BxLine line : refs.getLines()) {
-            if (prevLine != null && line.getBounds().getY() > prevLine.getBounds().getY()) {
-                double difference = line.getBounds().getY() - prevLine.getBounds().getY();
-                if (minSpace > difference) {
-                    minSpace = difference;
-                }
-                if (maxSpace < difference) {
-                    maxSpace = difference;
-                }
-                if (line.equals(refLine)) {
-                    lineSpace = difference;
-                }
+        int index = refs.getIndex(refLine);
+        if (index > 0) {
+            BxLine prevLine = refs.getLines().get(index - 1);
+            if (refLine.getBounds().getY() > prevLine.getBounds().getY()) {
+                lineSpace = refLine.getBounds().getY() - prevLine.getBounds().getY();
             }
-            prevLine = line;
         }
         
-        if (refs.getLines().indexOf(refLine) == 0 && maxSpace > minSpace * 1.2) {
+        if (index == 0 && maxSpace > minSpace * 1.2) {
             return 0.5;
         }
         
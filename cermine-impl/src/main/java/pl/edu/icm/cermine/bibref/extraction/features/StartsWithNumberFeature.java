@@ -29,17 +29,19 @@ import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
  */
 public class StartsWithNumberFeature extends FeatureCalculator<BxLine, BxDocumentBibReferences> {
 
+    private static final Pattern[] PATTERNS = {
+        Pattern.compile("^\\[(\\d{1,3})\\] .*"), Pattern.compile("^(\\d{1,3})\\.? .*")
+    };
+    
     @Override
     public double calculateFeatureValue(BxLine refLine, BxDocumentBibReferences refs) {
-        String[] patterns = {"^\\[(\\d{1,3})\\] .*", "^(\\d{1,3})\\.? .*"};
-        for (String pText : patterns) {
-            Pattern pattern = Pattern.compile(pText);
+        for (Pattern pattern : PATTERNS) {
             Matcher matcher = pattern.matcher(refLine.toText());
             if (!matcher.matches()) {
                 continue;
             }
                        
-            int index = refs.getLines().indexOf(refLine);
+            int index = refs.getIndex(refLine);
             String objectMatch = matcher.group(1);
             String prevMatch = null;
             String nextMatch = null;
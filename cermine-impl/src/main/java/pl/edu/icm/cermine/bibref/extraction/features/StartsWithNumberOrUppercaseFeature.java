@@ -30,20 +30,24 @@ import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
  */
 public class StartsWithNumberOrUppercaseFeature extends FeatureCalculator<BxLine, BxDocumentBibReferences> {
 
+    private static final Pattern[] NUMBER_PATTERNS = {
+        Pattern.compile("^(\\d+).*"), Pattern.compile("^\\[(\\d+)\\].*")
+    };
+    
+    private static final Pattern UPPERCASE_PATTERN = Pattern.compile("^([A-Z]+)\\W.*$");
+    
     @Override
     public double calculateFeatureValue(BxLine refLine, BxDocumentBibReferences refs) {
         String text = refLine.toText();
         List<BxLine> lines = refs.getLines();
 
-        String[] patterns = {"^(\\d+).*", "^\\[(\\d+)\\].*"};
-        for (String pText : patterns) {
-            Pattern pattern = Pattern.compile(pText);
+        for (Pattern pattern : NUMBER_PATTERNS) {
             Matcher matcher = pattern.matcher(text);
             if (!matcher.matches()) {
                 continue;
             }
 
-            int index = lines.indexOf(refLine);
+            int index = refs.getIndex(refLine);
             String objectMatch = matcher.group(1);
             String prevMatch = null;
             String nextMatch = null;
@@ -75,15 +79,14 @@ public class StartsWithNumberOrUppercaseFeature extends FeatureCalculator<BxLine
             }
         }
 
-        Pattern pattern = Pattern.compile("^([A-Z]+)\\W.*$");
-        Matcher matcher = pattern.matcher(text);
+        Matcher matcher = UPPERCASE_PATTERN.matcher(text);
         if (!matcher.matches()) {
             return 0;
         }
 
         int total = 0;
         for (BxLine line : refs.getLines()) {
-            Matcher lineMatcher = pattern.matcher(line.toText());
+            Matcher lineMatcher = UPPERCASE_PATTERN.matcher(line.toText());
             if (total == 0 && !lineMatcher.matches()) {
                 return 0;
             }
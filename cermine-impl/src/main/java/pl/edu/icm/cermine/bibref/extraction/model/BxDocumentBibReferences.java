@@ -18,11 +18,8 @@
 
 package pl.edu.icm.cermine.bibref.extraction.model;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Locale;
-import java.util.Map;
+import java.util.*;
+import java.util.regex.Pattern;
 import pl.edu.icm.cermine.structure.model.BxLine;
 import pl.edu.icm.cermine.structure.model.BxZone;
 
@@ -35,6 +32,10 @@ public class BxDocumentBibReferences {
 
     private static final int MAX_TITLE_LENGTH = 30;
     
+    private static final Pattern NON_LETTER_PATTERN = Pattern.compile("[^a-z]");
+    
+    private static final Pattern SPACE_PATTERN = Pattern.compile("[\\s\\u00A0]");
+    
     /** A list of references' lines */
     private List<BxLine> lines = new ArrayList<BxLine>();
 
@@ -44,9 +45,33 @@ public class BxDocumentBibReferences {
     /** A map associating references' lines with their labels */
     private final Map<BxLine, BibReferenceLineLabel> lineLabels = new HashMap<BxLine, BibReferenceLineLabel>();
 
+    /** The maximum number of the last lines kept */
+    private int maxLines = Integer.MAX_VALUE;
+    
+    /** Lines' indexes, calculated lazily */
+    private Map<BxLine, Integer> lineIndexes;
+    
+    /** The minimum and maximum vertical space between lines, calculated lazily */
+    private double[] lineSpaces;
+    
+    public BxDocumentBibReferences() {
+    }
+    
+    /**
+     * Creates references lines keeping only the given number of the last lines
+     * as the zones are added.
+     * 
+     * @param maxLines the maximum number of lines
+     */
+    public BxDocumentBibReferences(int maxLines) {
+        this.maxLines = maxLines;
+    }
+    
     public void addZone(BxZone zone) {
+        lineIndexes = null;
+        lineSpaces = null;
         for (BxLine line : zone) {
-            String normalized = line.toText().toLowerCase(Locale.ENGLISH).replaceAll("[^a-z]", "");
+            String normalized = NON_LETTER_PATTERN.matcher(line.toText().toLowerCase(Locale.ENGLISH)).replaceAll("");
             if (line.toText().length() < MAX_TITLE_LENGTH && zone.getChild(0) == line && 
                     (normalized.startsWith("refer") || normalized.startsWith("biblio")
                     || normalized.startsWith("acknowled") || normalized.startsWith("conclus"))) {
@@ -54,23 +79,99 @@ public class BxDocumentBibReferences {
                 lineZones.clear();
                 continue;
             }
-            if (line.toText().replaceAll("[\\s\\u00A0]", "").isEmpty()) {
+            if (SPACE_PATTERN.matcher(line.toText()).replaceAll("").isEmpty()) {
                 continue;
             }
                    
             lines.add(line);
             lineZones.put(line, zone);
+            if (lines.size() - maxLines > Math.max(maxLines, 64)) {
+                removeFirstLines();
+            }
         }
     }
 
     public List<BxLine> getLines() {
+        removeFirstLines();
         return lines;
     }
     
     public void limit(int limit) {
-        if (lines.size() > limit) {
-            lines = lines.subList(lines.size()-limit, lines.size());
+        maxLines = Math.min(maxLines, limit);
+        lineIndexes = null;
+        lineSpaces = null;
+        removeFirstLines();
+    }
+
+    private void removeFirstLines() {
+        if (lines.size() > maxLines) {
+            List<BxLine> removed = lines.subList(0, lines.size() - maxLines);
+            for (BxLine line : removed) {
+                lineZones.remove(line);
+            }
+            removed.clear();
+        }
+    }
+
+    /**
+     * Returns the index of the line in the list of lines.
+     * 
+     * @param line line
+     * @return the index, or -1 if the line is not one of the references lines
+     */
+    public int getIndex(BxLine line) {
+        if (lineIndexes == null) {
+            List<BxLine> list = getLines();
+            Map<BxLine, Integer> indexes = new HashMap<BxLine, Integer>();
+            for (int i = list.size() - 1; i >= 0; i--) {
+                indexes.put(list.get(i), i);
+            }
+            lineIndexes = indexes;
+        }
+        Integer index = lineIndexes.get(line);
+        return index == null ? -1 : index;
+    }
+    
+    /**
+     * Returns the minimum vertical distance between a line and its preceding
+     * line, taking into account only the lines placed below their predecessors.
+     * 
+     * @return the minimum distance, or positive infinity if there are no such lines
+     */
+    public double getMinLineSpace() {
+        return getLineSpaces()[0];
+    }
+    
+    /**
+     * Returns the maximum vertical distance between a line and its preceding
+     * line, taking into account only the lines placed below their predecessors.
+     * 
+     * @return the maximum distance, or negative infinity if there are no such lines
+     */
+    public double getMaxLineSpace() {
+        return getLineSpaces()[1];
+    }
+    
+    private double[] getLineSpaces() {
+        if (lineSpaces == null) {
+            double minSpace = Double.POSITIVE_INFINITY;
+            double maxSpace = Double.NEGATIVE_INFINITY;
+            BxLine prevLine = null;
+            for (BxLine line : getLines()) {
+                if (prevLine != null && line.getBounds().getY() > prevLine.getBounds().getY()) {
+                    double difference = line.getBounds().getY() - prevLine.getBounds().getY();
+                    if (minSpace > difference) {
+                        minSpace = difference;
+                    }
+                    if (maxSpace < difference) {
+                        maxSpace = difference;
+                    }
+                }
+                prevLine = line;
+            }
+            lineSpaces = new double[]{minSpace, maxSpace};
         }
+        return lineSpaces;
     }
 
     public BxZone getZone(BxLine line) {
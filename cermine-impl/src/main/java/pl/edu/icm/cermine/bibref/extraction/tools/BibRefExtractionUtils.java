@@ -42,7 +42,20 @@ public final class BibRefExtractionUtils {
      * @throws AnalysisException AnalysisException
      */
     public static BxDocumentBibReferences extractBibRefLines(BxDocument document) throws AnalysisException {
-        BxDocumentBibReferences lines = new BxDocumentBibReferences();
+        return extractBibRefLines(document, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Extracts lines and zones labeled as "references" from BxDocument,
+     * keeping only the given number of the last lines.
+     *
+     * @param document A document
+     * @param maxLines the maximum number of lines
+     * @return an object holding references' lines and zones
+     * @throws AnalysisException AnalysisException
+     */
+    public static BxDocumentBibReferences extractBibRefLines(BxDocument document, int maxLines) throws AnalysisException {
+        BxDocumentBibReferences lines = new BxDocumentBibReferences(maxLines);
 
         for (BxPage page : document) {
             for (BxZone zone : page) {
@@ -18,7 +18,6 @@
 
 package pl.edu.icm.cermine.bibref.parsing.tools;
 
-import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashSet;
@@ -235,7 +234,7 @@ public final class CitationUtils {
         Set<Integer> journalTokenIndices = new HashSet<Integer>();
         if (journals != null) {
             for (int i = 0; i< tokenTexts.size(); i++) {
-                int m = journals.match(Lists.newArrayList(tokenTexts.subList(i, tokenTexts.size())));
+                int m = journals.match(tokenTexts, i);
                 if (m > 0) {
                     for (int j = i; j < i + m; j++) {
                         journalTokenIndices.add(j);
@@ -246,7 +245,7 @@ public final class CitationUtils {
         Set<Integer> instTokenIndices = new HashSet<Integer>();
         if (insts != null) {
             for (int i = 0; i< tokenTexts.size(); i++) {
-                int m = insts.match(Lists.newArrayList(tokenTexts.subList(i, tokenTexts.size())));
+                int m = insts.match(tokenTexts, i);
                 if (m > 0) {
                     for (int j = i; j < i + m; j++) {
                         instTokenIndices.add(j);
@@ -257,7 +256,7 @@ public final class CitationUtils {
         Set<Integer> surnameTokenIndices = new HashSet<Integer>();
         if (surnames != null) {
             for (int i = 0; i< tokenTexts.size(); i++) {
-                int m = surnames.match(Lists.newArrayList(tokenTexts.subList(i, tokenTexts.size())));
+                int m = surnames.match(tokenTexts, i);
                 if (m > 0) {
                     for (int j = i; j < i + m; j++) {
                         surnameTokenIndices.add(j);
@@ -43,6 +43,8 @@ public enum ExtractionConfigProperty {
     
     IMAGES_EXTRACTION                   ("images.extraction"),
     
+    PAGE_PARALLELISM                    ("pages.parallelism"),
+    
     DEBUG_PRINT_TIME                    ("debug.print.time");
     
     private final String propertyKey;
@@ -22,30 +22,43 @@ import com.google.common.base.Preconditions;
 
 /**
  * Loader of configuration properties for {@link pl.edu.icm.cermine.ContentExtractor}
+ * <p>
+ * The configuration is registered per thread. {@link ExtractionContext} can be
+ * used to pass it to the tasks executed by other threads.
  * 
  * @author madryk
  */
 public class ExtractionConfigRegister {
 
-    private static final ThreadLocal<ExtractionConfig> INSTANCE =
-            new ThreadLocal<ExtractionConfig>() {
-        @Override
-        protected ExtractionConfig initialValue() {
-            return new ExtractionConfigBuilder().buildConfiguration();
-        }
-    };
+    private static final ThreadLocal<ExtractionConfig> INSTANCE = new ThreadLocal<ExtractionConfig>();
     
     public static void set(ExtractionConfig config) {
         Preconditions.checkNotNull(config);
         INSTANCE.set(config);
     }
     
+    /**
+     * Returns the configuration registered for the current thread, or
+     * the default configuration, shared by all the threads, if none was set.
+     * 
+     * @return extraction configuration
+     */
     public static ExtractionConfig get() {
-        return INSTANCE.get();
+        ExtractionConfig config = INSTANCE.get();
+        return config == null ? DefaultConfigHolder.DEFAULT : config;
     }
 
     public static void remove() {
         INSTANCE.remove();
-    }    
+    }
+
+    static boolean isSet() {
+        return INSTANCE.get() != null;
+    }
+
+    private static class DefaultConfigHolder {
+        
+        private static final ExtractionConfig DEFAULT = new ExtractionConfigBuilder().buildConfiguration();
+    }
     
 }
@@ -0,0 +1,275 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.configuration;
+
+import com.google.common.base.Preconditions;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import pl.edu.icm.cermine.tools.metrics.ExtractionMetrics;
+import pl.edu.icm.cermine.tools.timeout.Timeout;
+import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
+
+/**
+ * Immutable set of settings of a single extraction: the configuration,
+ * the timeout and the metrics.
+ * <p>
+ * The code performing the extraction reads the settings from the thread-local
+ * registers ({@link ExtractionConfigRegister}, {@link TimeoutRegister}).
+ * The context can be attached to the current thread, which sets all the
+ * registers at once, and it can wrap the tasks and executors, so that the work
+ * done in other threads sees the same settings as the thread that created
+ * the work.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * <code>
+ * ExecutorService executor = ExtractionContext.current().wrap(Executors.newFixedThreadPool(4));
+ * </code>
+ * </pre>
+ * or, when the threads are managed by the caller:
+ * <pre>
+ * <code>
+ * ExtractionContext previous = context.attach();
+ * try {
+ *   doStuff();
+ * } finally {
+ *   previous.attach();
+ * }
+ * </code>
+ * </pre>
+ */
+public final class ExtractionContext {
+
+    private static final ThreadLocal<ExtractionMetrics> METRICS = new ThreadLocal<ExtractionMetrics>();
+
+    private final ExtractionConfig config;
+
+    private final Timeout timeout;
+
+    private final ExtractionMetrics metrics;
+
+    /** whether the settings are registered when the context is attached, or removed from the registers */
+    private final boolean configSet;
+    private final boolean timeoutSet;
+    private final boolean metricsSet;
+
+    /**
+     * Creates the context with no timeout and no metrics.
+     *
+     * @param config extraction configuration
+     */
+    public ExtractionContext(ExtractionConfig config) {
+        this(config, new Timeout(), ExtractionMetrics.NOOP);
+    }
+
+    public ExtractionContext(ExtractionConfig config, Timeout timeout, ExtractionMetrics metrics) {
+        this(Preconditions.checkNotNull(config), Preconditions.checkNotNull(timeout),
+                Preconditions.checkNotNull(metrics), true, true, true);
+    }
+
+    private ExtractionContext(ExtractionConfig config, Timeout timeout, ExtractionMetrics metrics,
+            boolean configSet, boolean timeoutSet, boolean metricsSet) {
+        this.config = config;
+        this.timeout = timeout;
+        this.metrics = metrics;
+        this.configSet = configSet;
+        this.timeoutSet = timeoutSet;
+        this.metricsSet = metricsSet;
+    }
+
+    /**
+     * Returns the context registered for the current thread.
+     *
+     * @return current context
+     */
+    public static ExtractionContext current() {
+        ExtractionMetrics metrics = METRICS.get();
+        return new ExtractionContext(ExtractionConfigRegister.get(), TimeoutRegister.get(),
+                metrics == null ? ExtractionMetrics.NOOP : metrics,
+                ExtractionConfigRegister.isSet(), TimeoutRegister.isSet(), metrics != null);
+    }
+
+    public ExtractionConfig getConfig() {
+        return config;
+    }
+
+    public Timeout getTimeout() {
+        return timeout;
+    }
+
+    public ExtractionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public ExtractionContext withConfig(ExtractionConfig config) {
+        return new ExtractionContext(config, timeout, metrics);
+    }
+
+    public ExtractionContext withTimeout(Timeout timeout) {
+        return new ExtractionContext(config, timeout, metrics);
+    }
+
+    public ExtractionContext withMetrics(ExtractionMetrics metrics) {
+        return new ExtractionContext(config, timeout, metrics);
+    }
+
+    /**
+     * Registers the settings of the context for the current thread.
+     * <p>
+     * Attaching the returned context restores the previous settings. The
+     * settings, which were not registered for the thread before, are removed
+     * from the registers then, so that the threads of a pool do not keep
+     * the settings of the finished tasks.
+     *
+     * @return the context registered for the thread before, which can be used
+     * to restore the previous settings
+     */
+    public ExtractionContext attach() {
+        ExtractionContext previous = current();
+        if (configSet) {
+            ExtractionConfigRegister.set(config);
+        } else {
+            ExtractionConfigRegister.remove();
+        }
+        if (timeoutSet) {
+            TimeoutRegister.set(timeout);
+        } else {
+            TimeoutRegister.remove();
+        }
+        if (metricsSet) {
+            METRICS.set(metrics);
+        } else {
+            METRICS.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Returns a task executing the given one with this context attached.
+     *
+     * @param <T> result type
+     * @param task task
+     * @return wrapped task
+     */
+    public <T> Callable<T> wrap(final Callable<T> task) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                ExtractionContext previous = attach();
+                try {
+                    return task.call();
+                } finally {
+                    previous.attach();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a task executing the given one with this context attached.
+     *
+     * @param task task
+     * @return wrapped task
+     */
+    public Runnable wrap(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                ExtractionContext previous = attach();
+                try {
+                    task.run();
+                } finally {
+                    previous.attach();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns an executor running all the tasks with this context attached.
+     *
+     * @param executor executor
+     * @return wrapped executor
+     */
+    public Executor wrap(final Executor executor) {
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executor.execute(wrap(command));
+            }
+        };
+    }
+
+    /**
+     * Returns an executor service running all the tasks with this context
+     * attached. Shutting down the returned service shuts down the given one.
+     *
+     * @param executor executor service
+     * @return wrapped executor service
+     */
+    public ExecutorService wrap(ExecutorService executor) {
+        return new ContextExecutorService(this, executor);
+    }
+
+    private static final class ContextExecutorService extends AbstractExecutorService {
+
+        private final ExtractionContext context;
+
+        private final ExecutorService executor;
+
+        private ContextExecutorService(ExtractionContext context, ExecutorService executor) {
+            this.context = context;
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(context.wrap(command));
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executor.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+    }
+
+}
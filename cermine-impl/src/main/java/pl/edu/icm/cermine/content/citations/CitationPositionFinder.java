@@ -18,13 +18,7 @@
 
 package pl.edu.icm.cermine.content.citations;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Locale;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
@@ -35,32 +29,53 @@ import pl.edu.icm.cermine.tools.TextUtils;
 
 /**
  * A class for extracting citation positions from the document's full text.
+ * <p>
+ * The text is scanned with a fixed set of patterns, independently of the
+ * number of references. The citations matching the found fragments are looked
+ * up in an index of the references' numbers, first tokens and years.
  *
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
  */
 public class CitationPositionFinder {
     
+    private static final String DASHES = String.valueOf(CharacterUtils.DASH_CHARS);
+    
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("^[^\\d]{0,10}(\\d{1,5})");
+    
+    private static final Pattern SQUARE_REF_PATTERN = Pattern.compile("\\[([,\\s\\d" + DASHES + "]+)\\]");
+    
+    private static final Pattern ROUND_REF_PATTERN = Pattern.compile("\\(([,\\s\\d" + DASHES + "]+)\\)");
+    
+    private static final Pattern RANGE_PATTERN = Pattern.compile("^(\\d{1,5})[" + DASHES + "](\\d{1,5})$");
+    
+    private static final Pattern SPACE_PATTERN = Pattern.compile("\\s");
+    
+    private static final Pattern AUTHOR_YEAR_PATTERN = Pattern.compile("\\([^\\(\\)]+\\d{4}[^\\(\\)]*\\)");
+    
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-z]{2,}");
+    
+    private static final Pattern YEAR_PATTERN = Pattern.compile("\\d{4}");
+    
+    private static final Pattern ET_AL_PATTERN =
+            Pattern.compile("([A-Z][^\\s\\.]+)\\s+et\\s+al\\.\\s+\\((\\d{4})\\)");
+    
+    private static final Pattern TWO_AUTHORS_PATTERN =
+            Pattern.compile("([A-Z][^\\s\\.]+)\\s+(and|&)\\s+[A-Z][^\\s\\.]+\\s+\\((\\d{4})\\)");
+    
+    private static final Pattern ONE_AUTHOR_PATTERN = Pattern.compile("([A-Z][^\\s\\.]+)\\s+\\((\\d{4})\\)");
+    
+    private static final Pattern FIRST_WORD_PATTERN = Pattern.compile("^\\w+");
+    
+    private static final int MAX_NAME_TOKEN_INDEX = 10;
+    
+    private static final int MAX_FUZZY_GAP = 30;
+    
     public List<Set<CitationPosition>> findReferences(String fullText, List<BibEntry> citations) {
-        DocumentPositions docPositions = new DocumentPositions(fullText.length(), citations);
-        for (BibEntry citation: citations) {
-            findByNumber(fullText, citation, "\\[", "\\]", docPositions);
-        }
-        List<Set<CitationPosition>> positionsBySquare = docPositions.getPositions();
+        CitationIndex index = new CitationIndex(citations);
         
-        docPositions = new DocumentPositions(fullText.length(), citations);
-        for (BibEntry citation: citations) {
-            findByAuthorYear(fullText, citation, docPositions);
-            if (docPositions.getPositions(citation).isEmpty()) {
-                findByAuthorYearFuzzy(fullText, citation, docPositions);
-            }
-        }
-        List<Set<CitationPosition>> positionsByAuthor = docPositions.getPositions();
-        
-        docPositions = new DocumentPositions(fullText.length(), citations);
-        for (BibEntry citation: citations) {
-            findByNumber(fullText, citation, "\\(", "\\)", docPositions);
-        }
-        List<Set<CitationPosition>> positionsByRound = docPositions.getPositions();
+        List<Set<CitationPosition>> positionsBySquare = findByNumber(fullText, SQUARE_REF_PATTERN, index);
+        List<Set<CitationPosition>> positionsByAuthor = findByAuthorYear(fullText, index);
+        List<Set<CitationPosition>> positionsByRound = findByNumber(fullText, ROUND_REF_PATTERN, index);
         
         List<Set<CitationPosition>> positions = positionsByAuthor;
         if (sumOfSizes(positionsBySquare) > sumOfSizes(positions)) {
@@ -73,130 +88,109 @@ public class CitationPositionFinder {
         return positions;
     }
 
-    private void findByAuthorYear(String fullText, BibEntry citation, DocumentPositions positions) {
-        List<String> tokens = new ArrayList<String>();
-        for (CitationToken token : CitationUtils.stringToCitation(citation.getText()).getTokens()) {
-            tokens.add(token.getText().toLowerCase(Locale.ENGLISH).trim());
-        }
-
-        Pattern refPattern = Pattern.compile("\\([^\\(\\)]+\\d{4}[^\\(\\)]*\\)");
-        Matcher refMatcher = refPattern.matcher(fullText);
+    private List<Set<CitationPosition>> findByAuthorYear(String fullText, CitationIndex index) {
+        List<List<int[]>> candidates = index.newCandidateLists();
+        
+        Matcher refMatcher = AUTHOR_YEAR_PATTERN.matcher(fullText);
+        BitSet nameFound = new BitSet();
+        BitSet added = new BitSet();
         while (refMatcher.find()) {
-            String reference = refMatcher.group().toLowerCase(Locale.ENGLISH).replaceAll("^.", "").replaceAll(".$", "");
-            String[] refs = reference.split(";");
-            for (String ref : refs) {
-                Pattern namePattern = Pattern.compile("[a-z]{2,}");
-                Matcher nameMatcher = namePattern.matcher(ref);
-                Pattern yearPattern = Pattern.compile("\\d{4}");
-                Matcher yearMatcher = yearPattern.matcher(ref);
-                boolean nameFound = false;
-                boolean yearFound = false;
-                while (nameMatcher.find()){
-                    String name = nameMatcher.group();
-                    if (tokens.contains(name) && tokens.indexOf(name) < 10) {
-                        nameFound = true;
+            int[] span = {refMatcher.start(), refMatcher.end()};
+            String reference = refMatcher.group().toLowerCase(Locale.ENGLISH);
+            reference = reference.substring(1, reference.length() - 1);
+            for (String ref : reference.split(";")) {
+                nameFound.clear();
+                Matcher nameMatcher = NAME_PATTERN.matcher(ref);
+                while (nameMatcher.find()) {
+                    for (int citation : index.getByName(nameMatcher.group())) {
+                        nameFound.set(citation);
                     }
                 }
+                if (nameFound.isEmpty()) {
+                    continue;
+                }
+                added.clear();
+                Matcher yearMatcher = YEAR_PATTERN.matcher(ref);
                 while (yearMatcher.find()) {
-                    String year = yearMatcher.group();
-                    if (citation.getText().contains(year)) {
-                        yearFound = true;
+                    for (int citation : index.getByYear(yearMatcher.group())) {
+                        if (nameFound.get(citation) && !added.get(citation)) {
+                            added.set(citation);
+                            candidates.get(citation).add(span);
+                        }
                     }
                 }
-                if (nameFound && yearFound) {
-                    positions.addPosition(citation, refMatcher.start(), refMatcher.end());
-                }
             }
         }
         
-        refPattern = Pattern.compile("([A-Z][^\\s\\.]+)\\s+et\\s+al\\.\\s+\\((\\d{4})\\)");
-        refMatcher = refPattern.matcher(fullText);
-        while (refMatcher.find()) {
-            String year = refMatcher.group(2);
-            if (!TextUtils.isNumberBetween(year, 1700, 2100) || !citation.getText().contains(year)) {
-                continue;
-            }
-            if (citation.getText().startsWith(refMatcher.group(1))) {
-                positions.addPosition(citation, refMatcher.start(), refMatcher.end());
-            }
-        }
+        findByAuthorYear(fullText, ET_AL_PATTERN, 1, 2, index, candidates);
+        findByAuthorYear(fullText, TWO_AUTHORS_PATTERN, 1, 3, index, candidates);
+        findByAuthorYear(fullText, ONE_AUTHOR_PATTERN, 1, 2, index, candidates);
         
-        refPattern = Pattern.compile("([A-Z][^\\s\\.]+)\\s+(and|&)\\s+[A-Z][^\\s\\.]+\\s+\\((\\d{4})\\)");
-        refMatcher = refPattern.matcher(fullText);
-        while (refMatcher.find()) {
-            String year = refMatcher.group(3);
-            if (!TextUtils.isNumberBetween(year, 1700, 2100) || !citation.getText().contains(year)) {
-                continue;
+        DocumentPositions positions = new DocumentPositions(fullText.length(), index.citations);
+        FuzzyNameFinder fuzzyFinder = null;
+        for (int i = 0; i < index.citations.size(); i++) {
+            BibEntry citation = index.citations.get(i);
+            for (int[] span : candidates.get(i)) {
+                positions.addPosition(citation, span[0], span[1]);
             }
-            if (citation.getText().startsWith(refMatcher.group(1))) {
-                positions.addPosition(citation, refMatcher.start(), refMatcher.end());
+            if (positions.getPositions(citation).isEmpty() && index.firstWords[i] != null) {
+                if (fuzzyFinder == null) {
+                    fuzzyFinder = new FuzzyNameFinder(fullText);
+                }
+                for (int[] span : fuzzyFinder.find(index.firstWords[i], citation.getText())) {
+                    positions.addPosition(citation, span[0], span[1]);
+                }
             }
         }
-        
-        refPattern = Pattern.compile("([A-Z][^\\s\\.]+)\\s+\\((\\d{4})\\)");
-        refMatcher = refPattern.matcher(fullText);
+        return positions.getPositions();
+    }
+    
+    private void findByAuthorYear(String fullText, Pattern refPattern, int nameGroup, int yearGroup,
+            CitationIndex index, List<List<int[]>> candidates) {
+        Matcher refMatcher = refPattern.matcher(fullText);
         while (refMatcher.find()) {
-            String year = refMatcher.group(2);
-            if (!TextUtils.isNumberBetween(year, 1700, 2100) || !citation.getText().contains(year)) {
+            String year = refMatcher.group(yearGroup);
+            if (!TextUtils.isNumberBetween(year, 1700, 2100)) {
                 continue;
             }
-            if (citation.getText().startsWith(refMatcher.group(1))) {
-                positions.addPosition(citation, refMatcher.start(), refMatcher.end());
-            }
-        }
-    }
-    
-    private void findByAuthorYearFuzzy(String fullText, BibEntry citation, DocumentPositions positions) {
-        Pattern namePattern = Pattern.compile("^\\w+");
-        Matcher nameMatcher = namePattern.matcher(citation.getText());
-        if (nameMatcher.find()) {
-            String name = nameMatcher.group();
-            
-            Pattern refPattern = Pattern.compile(name + "\\D{1,30}(\\d{4})", Pattern.CASE_INSENSITIVE);
-            Matcher refMatcher = refPattern.matcher(fullText);
-            while (refMatcher.find()) {
-                String year = refMatcher.group(1);
-                if (!TextUtils.isNumberBetween(year, 1700, 2100) || !citation.getText().contains(year)) {
-                    continue;
+            String name = refMatcher.group(nameGroup);
+            for (int citation : index.getByYear(year)) {
+                if (index.citations.get(citation).getText().startsWith(name)) {
+                    candidates.get(citation).add(new int[]{refMatcher.start(), refMatcher.end()});
                 }
-                positions.addPosition(citation, refMatcher.start(), refMatcher.end());
             }
         }
     }
     
-    private void findByNumber(String fullText, BibEntry citation, String leftBracket, String rightBracket,
-            DocumentPositions positions) {
-        Pattern numberPattern = Pattern.compile("^[^\\d]{0,10}(\\d{1,5})");
-        Matcher numberMatcher = numberPattern.matcher(citation.getText());
-        String number;
-        if (numberMatcher.find()) {
-            number = numberMatcher.group(1);
-        } else {
-            return;
-        }
+    private List<Set<CitationPosition>> findByNumber(String fullText, Pattern refPattern, CitationIndex index) {
+        List<List<int[]>> candidates = index.newCandidateLists();
         
-        Pattern refPattern = Pattern.compile(leftBracket + "([,\\s\\d" + String.valueOf(CharacterUtils.DASH_CHARS) + "]+)" + rightBracket);
         Matcher refMatcher = refPattern.matcher(fullText);
         while (refMatcher.find()) {
-            String[] matched = refMatcher.group(1).replaceAll("\\s", "").split(",");
+            int[] span = {refMatcher.start(1), refMatcher.end(1)};
+            String[] matched = SPACE_PATTERN.matcher(refMatcher.group(1)).replaceAll("").split(",");
             for (String match : matched) {
-                if (number.equals(match)) {
-                    positions.addPosition(citation, refMatcher.start(1), refMatcher.end(1));
-                } else {
-                    Pattern rangePattern = Pattern.compile("^(\\d{1,5})[" + String.valueOf(CharacterUtils.DASH_CHARS) + "](\\d{1,5})$");
-                    Matcher rangeMatcher = rangePattern.matcher(match);
-                    if (rangeMatcher.find()) {
-                        try {
-                            int lower = Integer.parseInt(rangeMatcher.group(1));
-                            int upper = Integer.parseInt(rangeMatcher.group(2));
-                            if (TextUtils.isNumberBetween(number, lower, upper+1)) {
-                                positions.addPosition(citation, refMatcher.start(1), refMatcher.end(1));
-                            }
-                        } catch (NumberFormatException e) {}
+                for (int citation : index.getByNumber(match)) {
+                    candidates.get(citation).add(span);
+                }
+                Matcher rangeMatcher = RANGE_PATTERN.matcher(match);
+                if (rangeMatcher.find()) {
+                    int lower = Integer.parseInt(rangeMatcher.group(1));
+                    int upper = Integer.parseInt(rangeMatcher.group(2));
+                    for (int citation : index.getByNumberRange(lower, upper)) {
+                        candidates.get(citation).add(span);
                     }
                 }
             }
         }
+        
+        DocumentPositions positions = new DocumentPositions(fullText.length(), index.citations);
+        for (int i = 0; i < index.citations.size(); i++) {
+            for (int[] span : candidates.get(i)) {
+                positions.addPosition(index.citations.get(i), span[0], span[1]);
+            }
+        }
+        return positions.getPositions();
     }
 
     private int sumOfSizes(List<Set<CitationPosition>> positions) {
@@ -207,40 +201,267 @@ public class CitationPositionFinder {
         return sum;
     }
     
+    /**
+     * Index of the citations by their numbers, the tokens at their beginnings
+     * and the years they contain. Citations are identified by their indexes
+     * in the list.
+     */
+    private static class CitationIndex {
+        
+        private final List<BibEntry> citations;
+        
+        private final Map<String, List<Integer>> byNumber = new HashMap<String, List<Integer>>();
+        
+        /** parsed numbers and the citation indexes, sorted by the numbers */
+        private final long[] numbers;
+        
+        private final Map<String, List<Integer>> byName = new HashMap<String, List<Integer>>();
+        
+        private final Map<String, List<Integer>> byYear = new HashMap<String, List<Integer>>();
+        
+        private final String[] firstWords;
+        
+        public CitationIndex(List<BibEntry> citations) {
+            this.citations = citations;
+            firstWords = new String[citations.size()];
+            long[] parsedNumbers = new long[citations.size()];
+            int numberCount = 0;
+            for (int i = 0; i < citations.size(); i++) {
+                String text = citations.get(i).getText();
+                
+                Matcher numberMatcher = NUMBER_PATTERN.matcher(text);
+                if (numberMatcher.find()) {
+                    String number = numberMatcher.group(1);
+                    add(byNumber, number, i);
+                    parsedNumbers[numberCount++] = ((long) Integer.parseInt(number) << 32) | i;
+                }
+                
+                List<CitationToken> tokens = CitationUtils.stringToCitation(text).getTokens();
+                for (int j = 0; j < tokens.size() && j < MAX_NAME_TOKEN_INDEX; j++) {
+                    add(byName, tokens.get(j).getText().toLowerCase(Locale.ENGLISH).trim(), i);
+                }
+                
+                for (int j = 0; j + 4 <= text.length(); j++) {
+                    if (isDigit(text.charAt(j)) && isDigit(text.charAt(j + 1))
+                            && isDigit(text.charAt(j + 2)) && isDigit(text.charAt(j + 3))) {
+                        add(byYear, text.substring(j, j + 4), i);
+                    }
+                }
+                
+                Matcher nameMatcher = FIRST_WORD_PATTERN.matcher(text);
+                if (nameMatcher.find()) {
+                    firstWords[i] = nameMatcher.group();
+                }
+            }
+            numbers = Arrays.copyOf(parsedNumbers, numberCount);
+            Arrays.sort(numbers);
+        }
+        
+        private static void add(Map<String, List<Integer>> index, String key, int citation) {
+            List<Integer> list = index.get(key);
+            if (list == null) {
+                list = new ArrayList<Integer>();
+                index.put(key, list);
+            }
+            if (list.isEmpty() || list.get(list.size() - 1) != citation) {
+                list.add(citation);
+            }
+        }
+        
+        private static List<Integer> get(Map<String, List<Integer>> index, String key) {
+            List<Integer> list = index.get(key);
+            return list == null ? Collections.<Integer>emptyList() : list;
+        }
+        
+        public List<Integer> getByNumber(String number) {
+            return get(byNumber, number);
+        }
+        
+        /**
+         * Returns the citations with numbers from the given range.
+         * 
+         * @param lower the lower bound, inclusive
+         * @param upper the upper bound, inclusive
+         * @return the citation indexes
+         */
+        public List<Integer> getByNumberRange(int lower, int upper) {
+            List<Integer> ret = new ArrayList<Integer>();
+            int idx = Arrays.binarySearch(numbers, (long) lower << 32);
+            if (idx < 0) {
+                idx = -idx - 1;
+            }
+            for (; idx < numbers.length && (numbers[idx] >> 32) <= upper; idx++) {
+                ret.add((int) numbers[idx]);
+            }
+            return ret;
+        }
+        
+        public List<Integer> getByName(String name) {
+            return get(byName, name);
+        }
+        
+        public List<Integer> getByYear(String year) {
+            return get(byYear, year);
+        }
+        
+        public List<List<int[]>> newCandidateLists() {
+            List<List<int[]>> candidates = new ArrayList<List<int[]>>(citations.size());
+            for (int i = 0; i < citations.size(); i++) {
+                candidates.add(new ArrayList<int[]>());
+            }
+            return candidates;
+        }
+        
+    }
+    
+    /**
+     * Finds the fragments matching case-insensitive regex
+     * <code>name\D{1,30}(\d{4})</code> for the names being the first words
+     * of the citations. The positions of the text's word characters are
+     * indexed by their lower-cased bigrams, so that only the positions starting
+     * with the name's first two characters are checked.
+     */
+    private static class FuzzyNameFinder {
+        
+        private static final int CODES = 37;
+        
+        private final String text;
+        
+        private final int[][] unigramPositions = new int[CODES][];
+        
+        private final int[][] bigramPositions = new int[CODES * CODES][];
+        
+        public FuzzyNameFinder(String text) {
+            this.text = text;
+            int[] unigramCounts = new int[CODES];
+            int[] bigramCounts = new int[CODES * CODES];
+            for (int i = 0; i < text.length(); i++) {
+                int code = code(text.charAt(i));
+                if (code >= 0) {
+                    unigramCounts[code]++;
+                    int next = i + 1 < text.length() ? code(text.charAt(i + 1)) : -1;
+                    if (next >= 0) {
+                        bigramCounts[code * CODES + next]++;
+                    }
+                }
+            }
+            for (int i = 0; i < CODES; i++) {
+                unigramPositions[i] = new int[unigramCounts[i]];
+                unigramCounts[i] = 0;
+            }
+            for (int i = 0; i < CODES * CODES; i++) {
+                bigramPositions[i] = new int[bigramCounts[i]];
+                bigramCounts[i] = 0;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                int code = code(text.charAt(i));
+                if (code >= 0) {
+                    unigramPositions[code][unigramCounts[code]++] = i;
+                    int next = i + 1 < text.length() ? code(text.charAt(i + 1)) : -1;
+                    if (next >= 0) {
+                        int bigram = code * CODES + next;
+                        bigramPositions[bigram][bigramCounts[bigram]++] = i;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Maps the word characters to codes, ignoring the case of letters.
+         */
+        private static int code(char ch) {
+            if (ch >= '0' && ch <= '9') {
+                return ch - '0';
+            }
+            if (ch >= 'a' && ch <= 'z') {
+                return ch - 'a' + 10;
+            }
+            if (ch >= 'A' && ch <= 'Z') {
+                return ch - 'A' + 10;
+            }
+            if (ch == '_') {
+                return CODES - 1;
+            }
+            return -1;
+        }
+        
+        public List<int[]> find(String name, String citationText) {
+            int[] starts = name.length() == 1 ? unigramPositions[code(name.charAt(0))]
+                    : bigramPositions[code(name.charAt(0)) * CODES + code(name.charAt(1))];
+            List<int[]> spans = new ArrayList<int[]>();
+            int lastEnd = 0;
+            for (int start : starts) {
+                if (start < lastEnd || !matchesAt(name, start)) {
+                    continue;
+                }
+                int gapStart = start + name.length();
+                int gap = 0;
+                while (gapStart + gap < text.length() && gap <= MAX_FUZZY_GAP
+                        && !isDigit(text.charAt(gapStart + gap))) {
+                    gap++;
+                }
+                int yearStart = gapStart + gap;
+                if (gap < 1 || gap > MAX_FUZZY_GAP || yearStart + 4 > text.length()
+                        || !isDigit(text.charAt(yearStart + 1)) || !isDigit(text.charAt(yearStart + 2))
+                        || !isDigit(text.charAt(yearStart + 3))) {
+                    continue;
+                }
+                lastEnd = yearStart + 4;
+                String year = text.substring(yearStart, yearStart + 4);
+                if (TextUtils.isNumberBetween(year, 1700, 2100) && citationText.contains(year)) {
+                    spans.add(new int[]{start, lastEnd});
+                }
+            }
+            return spans;
+        }
+        
+        private boolean matchesAt(String name, int start) {
+            if (start + name.length() > text.length()) {
+                return false;
+            }
+            for (int i = 2; i < name.length(); i++) {
+                if (code(text.charAt(start + i)) != code(name.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+    }
+    
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+    
     private static class DocumentPositions {
         private final boolean[] covered;
-        List<CitationPosition> positions = new ArrayList<CitationPosition>();
+        Set<CitationPosition> positions = new HashSet<CitationPosition>();
         List<BibEntry> citations;
         Map<BibEntry, Set<CitationPosition>> citationPositions = new HashMap<BibEntry, Set<CitationPosition>>();
 
         public DocumentPositions(int size, List<BibEntry> citations) {
             covered = new boolean[size];
             this.citations = citations;
-            positions = new ArrayList<CitationPosition>();
-            citationPositions = new HashMap<BibEntry, Set<CitationPosition>>();
             for (BibEntry citation : citations) {
                 citationPositions.put(citation, new HashSet<CitationPosition>());
             }
         }
 
         private void addPosition(BibEntry citation, int start, int end) {
+            CitationPosition position = new CitationPosition();
+            position.setStartRefPosition(start);
+            position.setEndRefPosition(end);
             boolean exists = false;
             for (int i = start; i < end; i++) {
                 if (covered[i]) {
                     exists = true;
+                    break;
                 }
             }
-            if (exists) {
-                for (CitationPosition pos : positions) {
-                    if (start == pos.getStartRefPosition() && end == pos.getEndRefPosition()) {
-                        exists = false;
-                    }
-                }
+            if (exists && positions.contains(position)) {
+                exists = false;
             }
             if (!exists) {
-                CitationPosition position = new CitationPosition();
-                position.setStartRefPosition(start);
-                position.setEndRefPosition(end);
                 positions.add(position);
                 citationPositions.get(citation).add(position);
                 for (int i = start; i < end; i++) {
@@ -264,4 +485,3 @@ public class CitationPositionFinder {
     }
     
 }
- 
\ No newline at end of file
@@ -75,15 +75,21 @@ public class ContentCitationPositionFinder {
         return contentPositions;
     }
     
+    /**
+     * Finds the last paragraph starting at or before the given position.
+     */
     private int findIndex(int i, List<Integer> indexes) {
-        int prev = -1;
-        for (int index : indexes) {
-            if (index > i) {
-                return prev;
+        int lower = 0;
+        int upper = indexes.size();
+        while (lower < upper) {
+            int middle = (lower + upper) >>> 1;
+            if (indexes.get(middle) > i) {
+                upper = middle;
+            } else {
+                lower = middle + 1;
             }
-            prev++;
         }
-        return prev;
+        return lower - 1;
     }
     
     private List<DocumentSection> toSectionList(ContentStructure structure) {
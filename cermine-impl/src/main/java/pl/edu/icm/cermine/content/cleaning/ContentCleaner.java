@@ -19,6 +19,7 @@
 package pl.edu.icm.cermine.content.cleaning;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import pl.edu.icm.cermine.content.model.BxContentStructure;
 import pl.edu.icm.cermine.content.model.BxContentStructure.BxDocContentPart;
@@ -84,7 +85,7 @@ public class ContentCleaner {
                 }
             }
             
-            String contentText = "";
+            StringBuilder contentText = new StringBuilder();
             ArrayList<BxLine> textLines = new ArrayList<BxLine>();
             ArrayList<BxWord> lineWords = new ArrayList<BxWord>();
             boolean bDashRemoved = false;
@@ -93,7 +94,7 @@ public class ContentCleaner {
                 int score = 0;
                 BxLine prev = line.getPrev();
                 BxLine next = line.getNext();
-                if (line.toText().matches("^[A-Z].*$")) {
+                if (startsWithUpperCase(line.toText())) {
                     score++;
                 }
                 if (prev != null) {
@@ -114,8 +115,8 @@ public class ContentCleaner {
                 }
                 
                 if (score >= firstParagraphLineMinScore) {
-                    if (!contentText.isEmpty()) {
-                        contentTexts.add(cleanLigatures(contentText.trim()));
+                    if (contentText.length() > 0) {
+                        contentTexts.add(cleanLigatures(contentText.toString().trim()));
                         contentTextLines.add(textLines);
 
                         // get last BxWord
@@ -131,7 +132,7 @@ public class ContentCleaner {
 
 
                     }
-                    contentText = "";
+                    contentText.setLength(0);
                     bDashRemoved = false;
                     textLines = new ArrayList<BxLine>();
                     lineWords = new ArrayList<BxWord>();
@@ -166,7 +167,7 @@ public class ContentCleaner {
 
                         // there is no blank in this line, therefore we can take everything!
 
-                        contentText += lineText;
+                        contentText.append(lineText);
                         // all words are taken
                         lineWords.addAll(tlineWords);
 
@@ -175,9 +176,9 @@ public class ContentCleaner {
                         // there is a blank in this line
                         // we must find the blank and split the word (if within a word)
 
-                        contentText += lineText.substring(0, lineText.lastIndexOf(' '));
-                        contentText += " ";
-                        contentText += lineText.substring(lineText.lastIndexOf(' ')+1);
+                        contentText.append(lineText, 0, lineText.lastIndexOf(' '));
+                        contentText.append(" ");
+                        contentText.append(lineText, lineText.lastIndexOf(' ')+1, lineText.length());
 
                         BxWord oLastWordWithBlank = null;
 
@@ -249,15 +250,15 @@ public class ContentCleaner {
 
                 } else {
 
-                    contentText += lineText + " ";
+                    contentText.append(lineText).append(" ");
                     lineWords.addAll(tlineWords);
 
                     //contentText += "\n";
                 }
             }
 
-            if (!contentText.isEmpty()) {
-                contentTexts.add(cleanLigatures(contentText.trim()));
+            if (contentText.length() > 0) {
+                contentTexts.add(cleanLigatures(contentText.toString().trim()));
                 contentTextLines.add(textLines);
 
                 // get last BxWord
@@ -286,80 +287,105 @@ public class ContentCleaner {
     }
     
     public static String cleanOther(String str) {
-        if (str == null) {
-            return null;
-        }
-        return str.replaceAll("[’‘]", "'")
-                  .replaceAll("[–]", "-")  // EN DASH \u2013
-                  .replaceAll("[—]", "-"); // EM DASH \u2014
+        return replaceCharacters(str, false, true);
     }
     
     public static String cleanLigatures(String str) {
-        if (str == null) {
-            return null;
-        }
-        return str.replaceAll("\uFB00", "ff")
-                  .replaceAll("\uFB01", "fi")
-                  .replaceAll("\uFB02", "fl")
-                  .replaceAll("\uFB03", "ffi")
-                  .replaceAll("\uFB04", "ffl")
-                  .replaceAll("\uFB05", "ft")
-                  .replaceAll("\uFB06", "st")
-                  .replaceAll("\u00E6", "ae")
-                  .replaceAll("\u0153", "oe");
+        return replaceCharacters(str, true, false);
     }
     
     public static String clean(String str) {
-        if (str == null) {
-            return null;
-        }
-        return cleanOther(cleanLigatures(str));
+        return replaceCharacters(str, true, true);
     }
     
     public static String cleanHyphenationAndBreaks(String str) {
         if (str == null) {
             return null;
         }
-        return cleanHyphenation(str).replaceAll("\n", " ");
+        return cleanHyphenation(str).replace('\n', ' ');
     }
     
+    /**
+     * Joins the words hyphenated at the ends of lines. The spaces are collapsed
+     * and removed from the beginnings and ends of the lines first.
+     *
+     * @param str text
+     * @return the text without hyphenation
+     */
     public static String cleanHyphenation(String str) {
         if (str == null) {
             return null;
         }
-        str = str.replaceAll(" +", " ").replaceAll("^ +", "").replaceAll(" +$", "");
-        String hyphenList = "\u002D\u00AD\u2010\u2011\u2012\u2013\u2014\u2015\u207B\u208B\u2212-";
-        String[] lines = str.split("\n");
-        for (int i = 0; i < lines.length; i++) {
-            lines[i] = lines[i].replaceAll("^ +", "").replaceAll(" +$", "");
+        char[] text = collapseSpaces(str);
+        int length = text.length;
+        if (length > 0 && text[0] == ' ') {
+            text = Arrays.copyOfRange(text, 1, length);
+            length--;
+        }
+        int trailing = trailingSpaceIndex(text, length);
+        if (trailing >= 0) {
+            System.arraycopy(text, trailing + 1, text, trailing, length - trailing - 1);
+            length--;
+        }
+
+        // line boundaries as String.split("\n") would give them
+        int lineCount = 0;
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int lineStart = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || text[i] == '\n') {
+                if (lineCount == starts.length) {
+                    starts = Arrays.copyOf(starts, 2 * lineCount);
+                    ends = Arrays.copyOf(ends, 2 * lineCount);
+                }
+                starts[lineCount] = lineStart;
+                ends[lineCount] = i;
+                lineCount++;
+                lineStart = i + 1;
+            }
+        }
+        if (length > 0) {
+            while (lineCount > 0 && starts[lineCount - 1] == ends[lineCount - 1]) {
+                lineCount--;
+            }
+        }
+        for (int i = 0; i < lineCount; i++) {
+            if (starts[i] < ends[i] && text[starts[i]] == ' ') {
+                starts[i]++;
+            }
+            int end = trailingSpaceIndex(text, starts[i], ends[i]);
+            if (end >= 0) {
+                System.arraycopy(text, end + 1, text, end, ends[i] - end - 1);
+                ends[i]--;
+            }
         }
-        StringBuilder sb = new StringBuilder();
+
+        StringBuilder sb = new StringBuilder(length);
         int i = 0;
-        while (i < lines.length) {
-            String line = lines[i];
-            if (i + 1 == lines.length) {
-                sb.append(line);
+        while (i < lineCount) {
+            if (i + 1 == lineCount) {
+                sb.append(text, starts[i], ends[i] - starts[i]);
                 break;
             }
-            String next = lines[i+1];
-            if (line.matches("^.*["+hyphenList+"]$")) {
-                line = line.substring(0, line.length()-1);
-                sb.append(line);
-                int idx = next.indexOf(' ');
+            if (isHyphenated(text, starts[i], ends[i])) {
+                sb.append(text, starts[i], ends[i] - starts[i] - 1);
+                int next = starts[i + 1];
+                int idx = indexOf(text, ' ', next, ends[i + 1]);
                 if (idx < 0) {
-                    sb.append(next);
+                    sb.append(text, next, ends[i + 1] - next);
                     i++;
                 } else {
-                    sb.append(next.substring(0, idx));
-                    lines[i+1] = next.substring(idx+1);                   
+                    sb.append(text, next, idx - next);
+                    starts[i + 1] = idx + 1;
                 }
             } else {
-                sb.append(line);
+                sb.append(text, starts[i], ends[i] - starts[i]);
             }
-            sb.append("\n");
+            sb.append('\n');
             i++;
         }
-        return sb.toString().trim();
+        return trim(sb);
     }
     
     public static String cleanAll(String str) {
@@ -376,6 +402,152 @@ public class ContentCleaner {
         return clean(cleanHyphenationAndBreaks(str));
     }
 
+    private static final char LIGATURES_START = '\uFB00';
+    
+    private static final String[] LIGATURES = {"ff", "fi", "fl", "ffi", "ffl", "ft", "st"};
+    
+    private static final String HYPHENS = "\u002D\u00AD\u2010\u2011\u2012\u2013\u2014\u2015\u207B\u208B\u2212-";
+
+    private static String replacement(char ch, boolean ligatures, boolean other) {
+        if (ligatures) {
+            if (ch >= LIGATURES_START && ch < LIGATURES_START + LIGATURES.length) {
+                return LIGATURES[ch - LIGATURES_START];
+            }
+            if (ch == '\u00E6') {
+                return "ae";
+            }
+            if (ch == '\u0153') {
+                return "oe";
+            }
+        }
+        if (other) {
+            if (ch == '\u2019' || ch == '\u2018') {
+                return "'";
+            }
+            if (ch == '\u2013' || ch == '\u2014') {
+                return "-";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the ligatures and/or the quotes and dashes in a single pass.
+     * The string is returned as is if there is nothing to replace.
+     */
+    private static String replaceCharacters(String str, boolean ligatures, boolean other) {
+        if (str == null) {
+            return null;
+        }
+        int length = str.length();
+        int first = 0;
+        while (first < length && replacement(str.charAt(first), ligatures, other) == null) {
+            first++;
+        }
+        if (first == length) {
+            return str;
+        }
+        StringBuilder sb = new StringBuilder(length + 8);
+        sb.append(str, 0, first);
+        for (int i = first; i < length; i++) {
+            char ch = str.charAt(i);
+            String replacement = replacement(ch, ligatures, other);
+            if (replacement == null) {
+                sb.append(ch);
+            } else {
+                sb.append(replacement);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static char[] collapseSpaces(String str) {
+        char[] text = new char[str.length()];
+        int length = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch != ' ' || length == 0 || text[length - 1] != ' ') {
+                text[length++] = ch;
+            }
+        }
+        return length == text.length ? text : Arrays.copyOf(text, length);
+    }
+
+    private static boolean isLineTerminator(char ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+    }
+
+    private static int trailingSpaceIndex(char[] text, int length) {
+        return trailingSpaceIndex(text, 0, length);
+    }
+
+    /**
+     * Finds the space matched by regex " +$" (there are no multiple spaces):
+     * at the end or before the final line terminator.
+     *
+     * @return the index of the space, or -1 if there is none
+     */
+    private static int trailingSpaceIndex(char[] text, int start, int end) {
+        int idx = end - 1;
+        if (end - start >= 2 && text[end - 2] == '\r' && text[end - 1] == '\n') {
+            idx = end - 3;
+        } else if (end > start && isLineTerminator(text[end - 1])) {
+            idx = end - 2;
+        }
+        return idx >= start && text[idx] == ' ' ? idx : -1;
+    }
+
+    /**
+     * Checks whether the line matches regex "^.*[hyphens]$".
+     */
+    private static boolean isHyphenated(char[] text, int start, int end) {
+        if (end <= start || HYPHENS.indexOf(text[end - 1]) < 0) {
+            return false;
+        }
+        for (int i = start; i < end - 1; i++) {
+            if (isLineTerminator(text[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the text matches regex "^[A-Z].*$".
+     */
+    private static boolean startsWithUpperCase(String text) {
+        if (text.isEmpty() || text.charAt(0) < 'A' || text.charAt(0) > 'Z') {
+            return false;
+        }
+        for (int i = 1; i < text.length(); i++) {
+            if (isLineTerminator(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(char[] text, char ch, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text[i] == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String trim(StringBuilder sb) {
+        int start = 0;
+        int end = sb.length();
+        while (start < end && sb.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && sb.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return sb.substring(start, end);
+    }
+
     public void setFirstParagraphLineMinScore(double firstParagraphLineMinScore) {
         this.firstParagraphLineMinScore = firstParagraphLineMinScore;
     }
@@ -20,12 +20,15 @@ package pl.edu.icm.cermine.content.filtering;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.tools.classification.general.FeatureVectorBuilder;
 import pl.edu.icm.cermine.tools.classification.svm.SVMClassifier;
+import pl.edu.icm.cermine.tools.classification.svm.SVMZoneClassifier;
 import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
 
 /**
@@ -33,6 +36,14 @@ import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
  */
 public class SVMContentFilter extends SVMClassifier<BxZone, BxPage, BxZoneLabel> implements ContentFilter {
 
+    /**
+     * Creates a filter without a model, which has to be set with one of
+     * the <code>loadModel*</code> methods.
+     */
+    public SVMContentFilter() {
+        super(ContentFilterTools.VECTOR_BUILDER, BxZoneLabel.class);
+    }
+
     public SVMContentFilter(BufferedReader modelFile, BufferedReader rangeFile) throws AnalysisException {
         this(modelFile, rangeFile, ContentFilterTools.VECTOR_BUILDER);
     }
@@ -75,14 +86,27 @@ public class SVMContentFilter extends SVMClassifier<BxZone, BxPage, BxZoneLabel>
         }
     }
 
+    /**
+     * Relabels the body zones of the document. The labels are predicted
+     * with {@link SVMZoneClassifier#labelZones(SVMClassifier, List)}, so the
+     * label-independent features are calculated in a batch and the features
+     * depending on the labels of the preceding zones are calculated in
+     * the document order, as the zones are relabelled.
+     *
+     * @param document document
+     * @return the document
+     * @throws AnalysisException AnalysisException
+     */
     @Override
     public BxDocument filter(BxDocument document) throws AnalysisException {
+        List<BxZone> bodyZones = new ArrayList<BxZone>();
         for (BxZone zone : document.asZones()) {
             if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
-                zone.setLabel(predictLabel(zone, zone.getParent()));
+                bodyZones.add(zone);
             }
-            TimeoutRegister.get().check();
         }
+        SVMZoneClassifier.labelZones(this, bodyZones);
+        TimeoutRegister.get().check();
         return document;
     }
 
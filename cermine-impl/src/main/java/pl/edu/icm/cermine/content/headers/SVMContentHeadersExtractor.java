@@ -19,6 +19,12 @@
 package pl.edu.icm.cermine.content.headers;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import pl.edu.icm.cermine.content.model.BxContentStructure;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.*;
@@ -38,7 +44,12 @@ public class SVMContentHeadersExtractor implements ContentHeadersExtractor {
     private HeaderLinesCompletener headerLinesCompletener;
 
     public SVMContentHeadersExtractor() throws AnalysisException {
-        this(MODEL_FILE_PATH, RANGE_FILE_PATH);
+        this(new SVMHeaderLinesClassifier());
+        try {
+            contentHeaderClassifier.loadModelFromRegistry("classpath:" + MODEL_FILE_PATH, "classpath:" + RANGE_FILE_PATH);
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot create SVM classifier!", ex);
+        }
     }
     
     public SVMContentHeadersExtractor(SVMHeaderLinesClassifier contentHeaderClassifier) {
@@ -60,9 +71,23 @@ public class SVMContentHeadersExtractor implements ContentHeadersExtractor {
 	}
     
    
-    private boolean isHeader(BxLine line, BxPage page) {
-        BxZoneLabel label = contentHeaderClassifier.predictLabel(line, page);
-        return label.equals(BxZoneLabel.BODY_HEADING);
+    private Set<BxLine> findHeaders(BxPage page) throws AnalysisException {
+        List<BxLine> lines = new ArrayList<BxLine>();
+        for (BxZone zone : page) {
+            if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
+                for (BxLine line : zone) {
+                    lines.add(line);
+                }
+            }
+        }
+        List<BxZoneLabel> labels = contentHeaderClassifier.predictLabels(lines, page);
+        Set<BxLine> headers = Collections.newSetFromMap(new IdentityHashMap<BxLine, Boolean>());
+        for (int i = 0; i < lines.size(); i++) {
+            if (labels.get(i).equals(BxZoneLabel.BODY_HEADING)) {
+                headers.add(lines.get(i));
+            }
+        }
+        return headers;
     }
     
     @Override
@@ -71,10 +96,11 @@ public class SVMContentHeadersExtractor implements ContentHeadersExtractor {
         BxContentStructure contentStructure = new BxContentStructure();
         BxLine lastHeaderLine = null;
         for (BxPage page : document) {
+            Set<BxLine> headers = findHeaders(page);
             for (BxZone zone : page) {
                 if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
                     for (BxLine line : zone) {
-                        if (isHeader(line, page)) {
+                        if (headers.contains(line)) {
                             contentStructure.addFirstHeaderLine(page, line);
                             lastHeaderLine = line;
                         } else if (zone.getLabel().equals(BxZoneLabel.BODY_CONTENT) || zone.getLabel().equals(BxZoneLabel.GEN_BODY)) {
@@ -23,7 +23,7 @@ import pl.edu.icm.cermine.structure.model.BxLine;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.tools.classification.clustering.Clusterizer;
 import pl.edu.icm.cermine.tools.classification.clustering.FeatureVectorClusterizer;
-import pl.edu.icm.cermine.tools.classification.clustering.SingleLinkageClusterizer;
+import pl.edu.icm.cermine.tools.classification.clustering.LazySingleLinkageClusterizer;
 import pl.edu.icm.cermine.tools.classification.general.FeatureVectorBuilder;
 import pl.edu.icm.cermine.tools.distance.FeatureVectorDistanceMetric;
 import pl.edu.icm.cermine.tools.distance.FeatureVectorEuclideanMetric;
@@ -45,7 +45,7 @@ public class SingleLinkageHeadersClusterizer implements HeadersClusterizer {
 
     public SingleLinkageHeadersClusterizer() {
         this.vectorBuilder = HeaderExtractingTools.CLUSTERING_VB;
-        this.clusterizer = new SingleLinkageClusterizer();
+        this.clusterizer = new LazySingleLinkageClusterizer();
         this.metric = new FeatureVectorEuclideanMetric();
     }
     
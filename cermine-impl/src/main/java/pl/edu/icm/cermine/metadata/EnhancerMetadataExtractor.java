@@ -18,10 +18,12 @@
 
 package pl.edu.icm.cermine.metadata;
 
-import java.util.Arrays;
-import java.util.EnumSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.extraction.enhancers.*;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
@@ -35,6 +37,8 @@ import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
  */
 public class EnhancerMetadataExtractor implements MetadataExtractor<DocumentMetadata> {
 
+    private static final Logger LOGGER = Logger.getLogger(EnhancerMetadataExtractor.class.getName());
+
     private final List<Enhancer> enhancers = Arrays.<Enhancer>asList(
                 new TitleAuthorSplitterEnhancer(),
                 new AuthorTitleSplitterEnhancer(),
@@ -78,6 +82,8 @@ public class EnhancerMetadataExtractor implements MetadataExtractor<DocumentMeta
                 new YearEnhancer()
                 );
 
+    private final ConcurrentMap<Enhancer, AtomicLong> enhancerTimes = new ConcurrentHashMap<Enhancer, AtomicLong>();
+
     public List<Enhancer> getEnhancers() {
         return enhancers;
     }
@@ -93,18 +99,76 @@ public class EnhancerMetadataExtractor implements MetadataExtractor<DocumentMeta
         return this;
     }
 
+    /**
+     * Returns the total time spent by each enhancer on all the documents
+     * processed by this extractor, in nanoseconds. Useful for finding slow
+     * patterns; the times of a single document are also logged at the FINE
+     * level.
+     *
+     * @return enhancer times, in the order of the enhancers
+     */
+    public Map<Enhancer, Long> getEnhancerTimes() {
+        Map<Enhancer, Long> times = new LinkedHashMap<Enhancer, Long>();
+        for (Enhancer enhancer : enhancers) {
+            AtomicLong time = enhancerTimes.get(enhancer);
+            times.put(enhancer, time == null ? 0L : time.get());
+        }
+        return times;
+    }
+
     @Override
     public DocumentMetadata extractMetadata(BxDocument document) throws AnalysisException {
         Set<EnhancedField> enhancedFields = EnumSet.noneOf(EnhancedField.class);
         
         DocumentMetadata metadata = new DocumentMetadata();
         
-        for (Enhancer enhancer : enhancers) {
-            enhancer.enhanceMetadata(document, metadata, enhancedFields);
-            TimeoutRegister.get().check();
+        boolean logTimes = LOGGER.isLoggable(Level.FINE);
+        StringBuilder times = new StringBuilder();
+        LiteralPrefilter.setCurrent(createPrefilter());
+        try {
+            for (Enhancer enhancer : enhancers) {
+                long start = System.nanoTime();
+                enhancer.enhanceMetadata(document, metadata, enhancedFields);
+                long time = System.nanoTime() - start;
+                addEnhancerTime(enhancer, time);
+                if (logTimes) {
+                    times.append(String.format("%n%s: %.3f ms", enhancer.getClass().getSimpleName(), time / 1e6));
+                }
+                TimeoutRegister.get().check();
+            }
+        } finally {
+            LiteralPrefilter.setCurrent(null);
+        }
+        if (logTimes) {
+            LOGGER.log(Level.FINE, "Enhancer times:{0}", times);
         }
         metadata.clean();
         return metadata;
     }
 
+    private LiteralPrefilter createPrefilter() {
+        Set<String> literals = new HashSet<String>();
+        for (Enhancer enhancer : enhancers) {
+            if (enhancer instanceof AbstractFilterEnhancer) {
+                String[] required = ((AbstractFilterEnhancer) enhancer).getRequiredLiterals();
+                if (required != null) {
+                    literals.addAll(Arrays.asList(required));
+                }
+            }
+        }
+        return literals.isEmpty() ? null : new LiteralPrefilter(literals);
+    }
+
+    private void addEnhancerTime(Enhancer enhancer, long time) {
+        AtomicLong total = enhancerTimes.get(enhancer);
+        if (total == null) {
+            total = new AtomicLong();
+            AtomicLong previous = enhancerTimes.putIfAbsent(enhancer, total);
+            if (previous != null) {
+                total = previous;
+            }
+        }
+        total.addAndGet(time);
+    }
+
 }
@@ -41,6 +41,7 @@ import pl.edu.icm.cermine.metadata.model.DocumentAffiliation;
 import pl.edu.icm.cermine.metadata.transformers.MetadataToNLMConverter;
 import pl.edu.icm.cermine.parsing.model.Token;
 import pl.edu.icm.cermine.parsing.tools.ParsableStringParser;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 import pl.edu.icm.cermine.tools.ResourcesReader;
 
 /**
@@ -107,8 +108,18 @@ public class CRFAffiliationParser implements ParsableStringParser<DocumentAffili
         List<String> commonWords = loadWords(wordsFileName);
         tokenizer = new AffiliationTokenizer();
         featureExtractor = new AffiliationFeatureExtractor(commonWords);
-        classifier = new AffiliationCRFTokenClassifier(
-                CRFAffiliationParser.class.getResourceAsStream(acrfFileName));
+        try {
+            classifier = new AffiliationCRFTokenClassifier(ModelRegistry.getACRFPool(toResourcePath(acrfFileName)));
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot set model!", ex);
+        }
+    }
+
+    private static String toResourcePath(String resourceName) {
+        if (resourceName.startsWith("/")) {
+            return "classpath:" + resourceName;
+        }
+        return "classpath:/" + CRFAffiliationParser.class.getPackage().getName().replace('.', '/') + "/" + resourceName;
     }
 
     public CRFAffiliationParser() throws AnalysisException {
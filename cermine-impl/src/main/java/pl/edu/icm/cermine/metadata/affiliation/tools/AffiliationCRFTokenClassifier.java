@@ -25,12 +25,13 @@ import edu.umass.cs.mallet.grmm.learning.ACRF;
 import java.io.*;
 import java.util.List;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.model.AffiliationLabel;
 import pl.edu.icm.cermine.parsing.model.Token;
 import pl.edu.icm.cermine.parsing.tools.GrmmUtils;
 import pl.edu.icm.cermine.parsing.tools.TokenClassifier;
+import pl.edu.icm.cermine.tools.ModelPool;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 
 /**
  * Token classifier suitable for processing affiliations.
@@ -40,7 +41,7 @@ import pl.edu.icm.cermine.parsing.tools.TokenClassifier;
  */
 public class AffiliationCRFTokenClassifier implements TokenClassifier<Token<AffiliationLabel>> {
 
-    private ACRF model;
+    private ModelPool<ACRF> models;
     private static final int DEFAULT_NEIGHBOR_INFLUENCE = 1;
     private static final String DEFAULT_MODEL_FILE
             = "/pl/edu/icm/cermine/metadata/affiliation/acrf-affiliations-pubmed.ser.gz";
@@ -50,33 +51,29 @@ public class AffiliationCRFTokenClassifier implements TokenClassifier<Token<Affi
      * @throws AnalysisException if the model cannot be loaded
      */
     public AffiliationCRFTokenClassifier(InputStream modelInputStream) throws AnalysisException {
-        // prevents MALLET from printing info messages
-        System.setProperty("java.util.logging.config.file",
-                "edu/umass/cs/mallet/base/util/resources/logging.properties");
-        
         if (modelInputStream == null) {
             throw new AnalysisException("Cannot set model, input stream is null!");
         }
-        ObjectInputStream ois = null;
         try {
-            ois = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(
-                    modelInputStream)));
-            model = (ACRF) (ois.readObject());
+            models = ModelRegistry.createACRFPool(modelInputStream);
         } catch (IOException ex) {
             throw new AnalysisException("Cannot set model!", ex);
-        } catch (ClassNotFoundException ex) {
-            throw new AnalysisException("Cannot set model!", ex);
         } finally {
             try {
-                if (ois != null) {
-                    ois.close();
-                }
+                modelInputStream.close();
             } catch (IOException ex) {
                 throw new AnalysisException("Cannot set model!", ex);
             }
         }
     }
 
+    /**
+     * @param models the pool of ACRF model instances to be used, it may be shared with other classifiers
+     */
+    public AffiliationCRFTokenClassifier(ModelPool<ACRF> models) {
+        this.models = models;
+    }
+
     /**
      * Uses the default ACRF model.
      *
@@ -119,15 +116,25 @@ public class AffiliationCRFTokenClassifier implements TokenClassifier<Token<Affi
         }
         String data = GrmmUtils.toGrmmInput(tokens, DEFAULT_NEIGHBOR_INFLUENCE);
 
-        Pipe pipe = model.getInputPipe();
-        InstanceList instanceList = new InstanceList(pipe);
-        instanceList.add(getLineIterator(data));
-        LabelsSequence labelsSequence = null;
-
+        LabelsSequence labelsSequence;
+        ACRF model;
         try {
+            model = models.obtain();
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot set model!", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Interrupted while waiting for a model!", ex);
+        }
+        try {
+            Pipe pipe = model.getInputPipe();
+            InstanceList instanceList = new InstanceList(pipe);
+            instanceList.add(getLineIterator(data));
             labelsSequence = (LabelsSequence) model.getBestLabels(instanceList).get(0);
         } catch (ArrayIndexOutOfBoundsException ex) {
             throw new AnalysisException("ACRF model can't recognize some of the labels.");
+        } finally {
+            models.release(model);
         }
 
         for (int i = 0; i < labelsSequence.size(); i++) {
@@ -53,6 +53,9 @@ public abstract class AbstractDateEnhancer extends AbstractSimpleEnhancer {
     public AbstractDateEnhancer(EnhancedField field, String nameRegex) {
         createPatterns(nameRegex);
         setSearchedZoneLabels(BxZoneLabel.MET_DATES);
+        if (nameRegex.matches("[A-Za-z ]+")) {
+            setRequiredLiterals(nameRegex);
+        }
         this.field = field;
     }
 
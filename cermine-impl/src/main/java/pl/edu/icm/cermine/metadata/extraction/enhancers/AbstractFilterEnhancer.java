@@ -35,6 +35,8 @@ public abstract class AbstractFilterEnhancer implements Enhancer {
 
     private final Set<BxZoneLabel> searchedZoneLabels = EnumSet.allOf(BxZoneLabel.class);
 
+    private String[] requiredLiterals = null;
+
     public void setSearchedFirstPageOnly(boolean value) {
         searchedFirstPageOnly = value;
     }
@@ -48,12 +50,50 @@ public abstract class AbstractFilterEnhancer implements Enhancer {
         setSearchedZoneLabels(Arrays.asList(zoneLabels));
     }
 
+    /**
+     * Sets the literals one of which has to occur in a zone's text for the
+     * enhancer to extract anything from the zone. The literals are compared
+     * ignoring the case of ASCII letters. The zones without any of them are
+     * skipped by {@link #filterZones(BxPage)} if a {@link LiteralPrefilter}
+     * is set for the current thread.
+     * <p>
+     * Literals shorter than {@link LiteralPrefilter#MIN_LITERAL_LENGTH}
+     * characters occur in almost every zone, so if any of the literals is
+     * that short, the zones are not prefiltered and the pattern is always
+     * matched.
+     *
+     * @param literals ASCII literals
+     */
+    public final void setRequiredLiterals(String... literals) {
+        for (String literal : literals) {
+            if (literal.length() < LiteralPrefilter.MIN_LITERAL_LENGTH) {
+                requiredLiterals = null;
+                return;
+            }
+        }
+        requiredLiterals = new String[literals.length];
+        for (int i = 0; i < literals.length; i++) {
+            requiredLiterals[i] = LiteralPrefilter.toLowerAscii(literals[i]);
+        }
+    }
+
+    /**
+     * Returns the literals required in the searched zones.
+     *
+     * @return the literals in lower case, or null if there are none
+     */
+    public String[] getRequiredLiterals() {
+        return requiredLiterals == null ? null : requiredLiterals.clone();
+    }
+
     protected Iterable<BxZone> filterZones(BxPage page) {
+        final LiteralPrefilter prefilter = requiredLiterals == null ? null : LiteralPrefilter.getCurrent();
         return new FilterIterable<BxZone>(page) {
 
             @Override
             protected boolean match(BxZone zone) {
-                return searchedZoneLabels.contains(zone.getLabel());
+                return searchedZoneLabels.contains(zone.getLabel())
+                        && (prefilter == null || prefilter.mayContainAny(zone, requiredLiterals));
             }
         };
     }
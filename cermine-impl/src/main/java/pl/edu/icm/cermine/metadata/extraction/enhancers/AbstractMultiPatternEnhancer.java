@@ -28,6 +28,7 @@ import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
 
 /**
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
@@ -56,6 +57,7 @@ public abstract class AbstractMultiPatternEnhancer extends AbstractSimpleEnhance
         for (Pattern pattern : patterns) {
             for (BxPage page : filterPages(document)) {
                 for (BxZone zone : filterZones(page)) {
+                    TimeoutRegister.get().check();
                     if (enhanceMetadata(zone, pattern, metadata)) {
                         return true;
                     }
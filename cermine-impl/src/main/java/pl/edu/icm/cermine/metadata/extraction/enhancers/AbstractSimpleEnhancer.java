@@ -26,6 +26,7 @@ import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
 
 /**
  * Abstract base class for enhancers that can only succeed or fail - if
@@ -48,6 +49,7 @@ public abstract class AbstractSimpleEnhancer extends AbstractFilterEnhancer {
 
     protected boolean enhanceMetadata(BxPage page, DocumentMetadata metadata) {
         for (BxZone zone : filterZones(page)) {
+            TimeoutRegister.get().check();
             if (enhanceMetadata(zone, metadata)) {
                 return true;
             }
@@ -42,6 +42,7 @@ public class DoiEnhancer extends AbstractMultiPatternEnhancer {
 
     public DoiEnhancer() {
         super(PATTERNS, SEARCHED_ZONE_LABELS);
+        setRequiredLiterals("doi");
     }
     
     @Override
@@ -37,6 +37,7 @@ public class HindawiCornerInfoEnhancer extends AbstractPatternEnhancer {
         super(PATTERN);
         setSearchedZoneLabels(BxZoneLabel.MET_BIB_INFO);
         setSearchedFirstPageOnly(true);
+        setRequiredLiterals("article id");
     }
 
     @Override
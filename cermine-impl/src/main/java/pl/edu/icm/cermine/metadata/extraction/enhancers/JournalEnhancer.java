@@ -35,6 +35,7 @@ public class JournalEnhancer extends AbstractPatternEnhancer {
 
     public JournalEnhancer() {
         super(PATTERN, SEARCHED_ZONE_LABELS);
+        setRequiredLiterals("journal");
     }
     
     @Override
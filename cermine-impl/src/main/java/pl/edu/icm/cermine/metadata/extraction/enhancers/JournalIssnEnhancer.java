@@ -37,6 +37,7 @@ public class JournalIssnEnhancer extends AbstractPatternEnhancer {
 
     public JournalIssnEnhancer() {
         super(PATTERN, SEARCHED_ZONE_LABELS);
+        setRequiredLiterals("issn");
     }
 
     @Override
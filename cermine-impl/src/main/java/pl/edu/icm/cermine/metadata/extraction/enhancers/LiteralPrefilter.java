@@ -0,0 +1,188 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.extraction.enhancers;
+
+import java.util.*;
+import pl.edu.icm.cermine.structure.model.BxZone;
+
+/**
+ * Shared prefilter of the enhancers' zones. All the literals required by the
+ * enhancers are searched for in a zone's text at once, with an Aho-Corasick
+ * automaton, and the result is remembered for the zone, so that every zone is
+ * scanned at most once, no matter how many enhancers look at it.
+ * <p>
+ * The literals consist of ASCII characters and are matched ignoring the case
+ * of ASCII letters, which is how the enhancers' case-insensitive patterns
+ * compare them. The prefilter of the current thread is set by
+ * {@link pl.edu.icm.cermine.metadata.EnhancerMetadataExtractor} for the time
+ * of processing a single document.
+ */
+public final class LiteralPrefilter {
+
+    private static final ThreadLocal<LiteralPrefilter> CURRENT = new ThreadLocal<LiteralPrefilter>();
+
+    private static final int ALPHABET_SIZE = 128;
+
+    /** the minimum length of a literal worth prefiltering the zones with */
+    public static final int MIN_LITERAL_LENGTH = 3;
+
+    private final Map<String, Integer> literalIndices = new HashMap<String, Integer>();
+
+    /** transitions of the automaton, ALPHABET_SIZE per state */
+    private final int[] transitions;
+
+    /** literals recognized in each state, as bit masks */
+    private final long[] outputs;
+
+    private final Map<BxZone, Long> zoneMasks = new IdentityHashMap<BxZone, Long>();
+
+    /**
+     * Builds the prefilter.
+     *
+     * @param literals literals, at most 64 distinct ones, ASCII only
+     */
+    public LiteralPrefilter(Collection<String> literals) {
+        int maxStates = 1;
+        for (String literal : literals) {
+            String lower = toLowerAscii(literal);
+            if (!literalIndices.containsKey(lower)) {
+                for (int i = 0; i < lower.length(); i++) {
+                    if (lower.charAt(i) >= ALPHABET_SIZE) {
+                        throw new IllegalArgumentException("Literal is not ASCII: " + literal);
+                    }
+                }
+                literalIndices.put(lower, literalIndices.size());
+                maxStates += lower.length();
+            }
+        }
+        if (literalIndices.size() > Long.SIZE) {
+            throw new IllegalArgumentException("Too many literals: " + literalIndices.size());
+        }
+
+        int[] trans = new int[maxStates * ALPHABET_SIZE];
+        Arrays.fill(trans, -1);
+        long[] out = new long[maxStates];
+        int stateCount = 1;
+        for (Map.Entry<String, Integer> entry : literalIndices.entrySet()) {
+            int state = 0;
+            for (char ch : entry.getKey().toCharArray()) {
+                if (trans[state * ALPHABET_SIZE + ch] < 0) {
+                    trans[state * ALPHABET_SIZE + ch] = stateCount++;
+                }
+                state = trans[state * ALPHABET_SIZE + ch];
+            }
+            out[state] |= 1L << entry.getValue();
+        }
+
+        int[] fail = new int[stateCount];
+        Deque<Integer> queue = new ArrayDeque<Integer>();
+        for (int ch = 0; ch < ALPHABET_SIZE; ch++) {
+            int target = trans[ch];
+            if (target < 0) {
+                trans[ch] = 0;
+            } else {
+                fail[target] = 0;
+                queue.add(target);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int ch = 0; ch < ALPHABET_SIZE; ch++) {
+                int target = trans[state * ALPHABET_SIZE + ch];
+                int fallback = trans[fail[state] * ALPHABET_SIZE + ch];
+                if (target < 0) {
+                    trans[state * ALPHABET_SIZE + ch] = fallback;
+                } else {
+                    fail[target] = fallback;
+                    out[target] |= out[fallback];
+                    queue.add(target);
+                }
+            }
+        }
+        this.transitions = trans;
+        this.outputs = out;
+    }
+
+    /**
+     * Sets the prefilter used by the enhancers in the current thread.
+     *
+     * @param prefilter prefilter, or null to search all the zones
+     */
+    public static void setCurrent(LiteralPrefilter prefilter) {
+        if (prefilter == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(prefilter);
+        }
+    }
+
+    static LiteralPrefilter getCurrent() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Checks whether the zone's text may contain any of the literals.
+     *
+     * @param zone zone
+     * @param literals literals, in lower case
+     * @return false if the text surely contains none of the literals
+     */
+    public boolean mayContainAny(BxZone zone, String[] literals) {
+        Long mask = zoneMasks.get(zone);
+        if (mask == null) {
+            mask = scan(zone.toText());
+            zoneMasks.put(zone, mask);
+        }
+        for (String literal : literals) {
+            Integer index = literalIndices.get(literal);
+            if (index == null || (mask & (1L << index)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long scan(String text) {
+        long mask = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch >= ALPHABET_SIZE) {
+                state = 0;
+                continue;
+            }
+            state = transitions[state * ALPHABET_SIZE + toLowerAscii(ch)];
+            mask |= outputs[state];
+        }
+        return mask;
+    }
+
+    private static char toLowerAscii(char ch) {
+        return ch >= 'A' && ch <= 'Z' ? (char) (ch + ('a' - 'A')) : ch;
+    }
+
+    static String toLowerAscii(String literal) {
+        char[] chars = literal.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = toLowerAscii(chars[i]);
+        }
+        return new String(chars);
+    }
+
+}
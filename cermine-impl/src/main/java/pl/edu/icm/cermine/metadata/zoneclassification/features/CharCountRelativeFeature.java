@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.PageStatistics;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
 
@@ -37,6 +38,11 @@ public class CharCountRelativeFeature extends FeatureCalculator<BxZone, BxPage>
             }
         }
 
+        PageStatistics statistics = PageStatistics.forPage(page);
+        if (statistics != null) {
+            return (double) count / (double) statistics.getCharCount();
+        }
+
         int pCount = 0;
         for (BxZone pZone : page) {
             for (BxLine line : pZone) {
@@ -34,4 +34,9 @@ public class IsAfterMetTitleFeature extends AbstractFeatureCalculator<BxZone, Bx
         }
         return 1.0;
     }
+
+    @Override
+    public boolean isLabelDependent() {
+        return true;
+    }
 }
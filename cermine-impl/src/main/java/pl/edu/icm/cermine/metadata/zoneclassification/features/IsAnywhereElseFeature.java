@@ -18,6 +18,7 @@
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
 import java.util.List;
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.ZoneTextIndex;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 
@@ -28,10 +29,14 @@ public class IsAnywhereElseFeature extends AbstractFeatureCalculator<BxZone, BxP
 
     @Override
     public double calculateFeatureValue(BxZone object, BxPage context) {
-        List<BxPage> pages = getOtherPages(context);
         if (object.toText().length() <= 5) {
             return 0.0;
         }
+        ZoneTextIndex index = ZoneTextIndex.forPage(context);
+        if (index != null) {
+            return index.occursOnOtherPage(object.toText(), context) ? 1.0 : 0.0;
+        }
+        List<BxPage> pages = getOtherPages(context);
         for (BxPage page : pages) {
             for (BxZone zone : page) {
                 if (zone.toText().equals(object.toText())) {
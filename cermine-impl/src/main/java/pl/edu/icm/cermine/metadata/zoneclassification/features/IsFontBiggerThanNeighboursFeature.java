@@ -20,6 +20,7 @@ package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
 import com.google.common.collect.Lists;
 import java.util.List;
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.PageStatistics;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
@@ -31,6 +32,10 @@ public class IsFontBiggerThanNeighboursFeature extends FeatureCalculator<BxZone,
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
+        PageStatistics statistics = PageStatistics.forPage(page);
+        if (statistics != null && statistics.getZoneIndex(zone) != null) {
+            return isFontBiggerThanNeighbours(statistics, statistics.getZoneIndex(zone));
+        }
         List<BxZone> pageZones = Lists.newArrayList(page);
         if (pageZones.isEmpty()) {
             return 0.0;
@@ -74,4 +79,18 @@ public class IsFontBiggerThanNeighboursFeature extends FeatureCalculator<BxZone,
                     : 0.0;
         }
     }
+
+    private double isFontBiggerThanNeighbours(PageStatistics statistics, int zoneIdx) {
+        if (statistics.getZoneCount() == 1) {
+            return 1.0;
+        }
+        double thisZoneFont = statistics.getFontHeightMean(zoneIdx);
+        if (zoneIdx > 0 && !(thisZoneFont > statistics.getFontHeightMean(zoneIdx - 1))) {
+            return 0.0;
+        }
+        if (zoneIdx < statistics.getZoneCount() - 1 && !(thisZoneFont > statistics.getFontHeightMean(zoneIdx + 1))) {
+            return 0.0;
+        }
+        return 1.0;
+    }
 }
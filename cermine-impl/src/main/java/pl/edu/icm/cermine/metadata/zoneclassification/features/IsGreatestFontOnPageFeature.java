@@ -18,6 +18,8 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.DocumentFeatureContext;
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.PageStatistics;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
@@ -29,6 +31,11 @@ public class IsGreatestFontOnPageFeature extends AbstractFeatureCalculator<BxZon
 
     @Override
     public double calculateFeatureValue(BxZone object, BxPage context) {
+        DocumentFeatureContext documentContext = DocumentFeatureContext.forPage(context);
+        if (documentContext != null) {
+            double fontHeight = PageStatistics.fontHeightMean(object);
+            return documentContext.getMaxFontHeightMean(object) > fontHeight ? 0.0 : 1.0;
+        }
         FeatureCalculator<BxZone, BxPage> fc = new FontHeightMeanFeature();
         for (BxZone otherZone : getOtherZones(object)) {
             if (fc.calculateFeatureValue(otherZone, context) > fc.calculateFeatureValue(object, context)) {
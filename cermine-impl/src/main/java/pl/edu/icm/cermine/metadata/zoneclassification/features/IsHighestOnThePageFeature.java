@@ -21,6 +21,7 @@ import com.google.common.collect.Lists;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.PageStatistics;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.Utils;
@@ -43,9 +44,15 @@ public class IsHighestOnThePageFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
-        List<BxZone> zones = Lists.newArrayList(page);
-        Collections.sort(zones, new YCoordinateComparator());
-        BxZone firstZone = zones.get(0);
+        BxZone firstZone;
+        PageStatistics statistics = PageStatistics.forPage(page);
+        if (statistics != null && statistics.getHighestZone() != null) {
+            firstZone = statistics.getHighestZone();
+        } else {
+            List<BxZone> zones = Lists.newArrayList(page);
+            Collections.sort(zones, new YCoordinateComparator());
+            firstZone = zones.get(0);
+        }
         if (zone.equals(firstZone)) {
             return 1.0;
         } else if (Math.abs(zone.getY() - firstZone.getY()) <= EPS) {
@@ -21,6 +21,7 @@ import com.google.common.collect.Lists;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.PageStatistics;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.Utils;
@@ -43,9 +44,15 @@ public class IsLowestOnThePageFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
-        List<BxZone> zones = Lists.newArrayList(page);
-        Collections.sort(zones, new YCoordinateComparator());
-        BxZone lastZone = zones.get(zones.size() - 1);
+        BxZone lastZone;
+        PageStatistics statistics = PageStatistics.forPage(page);
+        if (statistics != null && statistics.getLowestZone() != null) {
+            lastZone = statistics.getLowestZone();
+        } else {
+            List<BxZone> zones = Lists.newArrayList(page);
+            Collections.sort(zones, new YCoordinateComparator());
+            lastZone = zones.get(zones.size() - 1);
+        }
         if (zone.equals(lastZone)) {
             return 1.0;
         } else if (Math.abs(lastZone.getY() + lastZone.getHeight() - (zone.getY() + zone.getHeight())) <= EPS) {
@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.ZoneTextIndex;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
@@ -29,6 +30,10 @@ public class IsOnSurroundingPagesFeature extends FeatureCalculator<BxZone, BxPag
 
     @Override
     public double calculateFeatureValue(BxZone object, BxPage context) {
+        ZoneTextIndex index = ZoneTextIndex.forPage(context);
+        if (index != null) {
+            return index.occursOnSurroundingPage(object.toText(), context) ? 1.0 : 0.0;
+        }
         BxPage nextPage = context.getNext();
         BxPage prevPage = context.getPrev();
 
@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.PageStatistics;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
@@ -29,6 +30,10 @@ public class IsWidestOnThePageFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone object, BxPage context) {
+        PageStatistics statistics = PageStatistics.forPage(context);
+        if (statistics != null) {
+            return statistics.getMaxWidth() > object.getWidth() ? 0.0 : 1.0;
+        }
         for (BxZone zone : context) {
             if (zone.getWidth() > object.getWidth()) {
                 return 0.0;
@@ -32,4 +32,9 @@ public class LastButOneZoneFeature extends AbstractFeatureCalculator<BxZone, BxP
         }
         return -1.0;
     }
+
+    @Override
+    public boolean isLabelDependent() {
+        return true;
+    }
 }
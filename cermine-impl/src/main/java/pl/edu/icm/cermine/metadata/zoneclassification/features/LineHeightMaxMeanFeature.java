@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.PageStatistics;
 import pl.edu.icm.cermine.structure.model.BxLine;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
@@ -35,6 +36,10 @@ public class LineHeightMaxMeanFeature extends FeatureCalculator<BxZone, BxPage>
             zoneMean += line.getBounds().getHeight();
         }
         zoneMean /= (double) zone.childrenCount();
+        PageStatistics statistics = PageStatistics.forPage(page);
+        if (statistics != null) {
+            return statistics.getMaxLineHeightMeanOfOthers(zone) > zoneMean + 1 ? 0 : 1;
+        }
         for (BxZone z : page) {
             if (z.equals(zone)) {
                 continue;
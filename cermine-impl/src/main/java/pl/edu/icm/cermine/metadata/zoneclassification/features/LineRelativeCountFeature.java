@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.PageStatistics;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
@@ -29,6 +30,11 @@ public class LineRelativeCountFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
+        PageStatistics statistics = PageStatistics.forPage(page);
+        if (statistics != null) {
+            return (double) zone.childrenCount() / (double) statistics.getLineCount();
+        }
+
         int allLines = 0;
         for (BxZone pZone : page) {
             allLines += pZone.childrenCount();
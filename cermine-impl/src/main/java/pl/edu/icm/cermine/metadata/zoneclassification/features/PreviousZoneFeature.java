@@ -34,4 +34,9 @@ public class PreviousZoneFeature extends FeatureCalculator<BxZone, BxPage> {
             return -1.0;
         }
     }
+
+    @Override
+    public boolean isLabelDependent() {
+        return true;
+    }
 }
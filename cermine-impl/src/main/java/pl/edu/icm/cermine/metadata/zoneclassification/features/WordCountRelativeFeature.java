@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.PageStatistics;
 import pl.edu.icm.cermine.structure.model.BxLine;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
@@ -35,6 +36,11 @@ public class WordCountRelativeFeature extends FeatureCalculator<BxZone, BxPage>
             count += line.childrenCount();
         }
 
+        PageStatistics statistics = PageStatistics.forPage(page);
+        if (statistics != null) {
+            return (double) count / (double) statistics.getWordCount();
+        }
+
         int pCount = 0;
         for (BxZone pZone: page) {
             for (BxLine line : pZone) {
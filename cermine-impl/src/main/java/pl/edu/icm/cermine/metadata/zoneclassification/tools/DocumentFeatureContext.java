@@ -0,0 +1,168 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.zoneclassification.tools;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import pl.edu.icm.cermine.structure.model.*;
+
+/**
+ * Document-wide data shared by the zone feature calculators: the
+ * {@link ZoneTextIndex} and the lazily calculated {@link PageStatistics}.
+ * <p>
+ * The context is created for a document with {@link #register(BxDocument)}
+ * and can be obtained by the feature calculators through their page context
+ * with {@link #forPage(BxPage)} until {@link #unregister(BxDocument)} is
+ * called. The zones must not change in the meantime, apart from their labels.
+ * If no context is registered, the features calculate everything directly.
+ */
+public final class DocumentFeatureContext {
+
+    private static final Map<BxDocument, Registration> REGISTERED =
+            new ConcurrentHashMap<BxDocument, Registration>();
+
+    private final ZoneTextIndex zoneTextIndex;
+
+    private final ConcurrentMap<BxPage, PageStatistics> pageStatistics =
+            new ConcurrentHashMap<BxPage, PageStatistics>();
+
+    /** maximum font height means of the zones' reading order chains, guarded by itself */
+    private final Map<BxZone, Double> chainFontHeightMeans = new IdentityHashMap<BxZone, Double>();
+
+    private DocumentFeatureContext(BxDocument document) {
+        this.zoneTextIndex = new ZoneTextIndex(document);
+    }
+
+    /**
+     * Creates the context of the document and makes it available to the
+     * feature calculators. Every call has to be followed by
+     * {@link #unregister(BxDocument)}.
+     *
+     * @param document document
+     */
+    public static synchronized void register(BxDocument document) {
+        Registration registration = REGISTERED.get(document);
+        if (registration == null) {
+            registration = new Registration(new DocumentFeatureContext(document));
+            REGISTERED.put(document, registration);
+        }
+        registration.count++;
+    }
+
+    /**
+     * Releases the context of the document.
+     *
+     * @param document document
+     */
+    public static synchronized void unregister(BxDocument document) {
+        Registration registration = REGISTERED.get(document);
+        if (registration != null && --registration.count == 0) {
+            REGISTERED.remove(document);
+        }
+    }
+
+    /**
+     * Returns the context of the page's document.
+     *
+     * @param page page
+     * @return the context, or null if it was not registered for the page's document
+     */
+    public static DocumentFeatureContext forPage(BxPage page) {
+        if (page == null || page.getParent() == null) {
+            return null;
+        }
+        Registration registration = REGISTERED.get(page.getParent());
+        if (registration == null || !registration.context.zoneTextIndex.containsPage(page)) {
+            return null;
+        }
+        return registration.context;
+    }
+
+    public ZoneTextIndex getZoneTextIndex() {
+        return zoneTextIndex;
+    }
+
+    /**
+     * Returns the statistics of the page, calculating them on the first call.
+     *
+     * @param page page of the document
+     * @return page statistics
+     */
+    public PageStatistics getPageStatistics(BxPage page) {
+        PageStatistics statistics = pageStatistics.get(page);
+        if (statistics == null) {
+            statistics = new PageStatistics(page);
+            PageStatistics previous = pageStatistics.putIfAbsent(page, statistics);
+            if (previous != null) {
+                statistics = previous;
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the maximum font height mean of the zones linked with the given
+     * zone by the next/previous references, including the zone itself.
+     * Zones without any chunks are skipped.
+     *
+     * @param zone zone
+     * @return maximum font height mean, or negative infinity if there is none
+     */
+    public double getMaxFontHeightMean(BxZone zone) {
+        synchronized (chainFontHeightMeans) {
+            Double max = chainFontHeightMeans.get(zone);
+            if (max != null) {
+                return max;
+            }
+            Set<BxZone> visited = Collections.newSetFromMap(new IdentityHashMap<BxZone, Boolean>());
+            BxZone first = zone;
+            while (first.getPrev() != null && visited.add(first)) {
+                first = first.getPrev();
+            }
+            visited.clear();
+            double chainMax = Double.NEGATIVE_INFINITY;
+            for (BxZone z = first; z != null && visited.add(z); z = z.getNext()) {
+                double mean = PageStatistics.fontHeightMean(z);
+                if (mean > chainMax) {
+                    chainMax = mean;
+                }
+            }
+            for (BxZone z : visited) {
+                chainFontHeightMeans.put(z, chainMax);
+            }
+            return chainMax;
+        }
+    }
+
+    private static final class Registration {
+
+        private final DocumentFeatureContext context;
+
+        private int count;
+
+        private Registration(DocumentFeatureContext context) {
+            this.context = context;
+        }
+    }
+
+}
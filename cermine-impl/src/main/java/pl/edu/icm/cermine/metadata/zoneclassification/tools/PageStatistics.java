@@ -0,0 +1,235 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.zoneclassification.tools;
+
+import com.google.common.collect.Lists;
+import java.util.*;
+import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.tools.Utils;
+
+/**
+ * Page-wide aggregates used by many zone features, calculated once per page.
+ * The values are calculated in the same way as in the features, so that
+ * reading them here gives exactly the same feature values as rescanning
+ * the page for every zone.
+ */
+public final class PageStatistics {
+
+    private final List<BxZone> zones;
+
+    private final Map<BxZone, Integer> zoneIndices = new IdentityHashMap<BxZone, Integer>();
+
+    private final double[] fontHeightMeans;
+
+    private final double[] lineHeightMeans;
+
+    /** index of the zone with the greatest line height mean, or -1 */
+    private final int maxLineHeightMeanIdx;
+
+    /** the greatest line height mean of the zones other than the one above */
+    private final double secondLineHeightMean;
+
+    private final int lineCount;
+
+    private final int wordCount;
+
+    private final int charCount;
+
+    private final double maxWidth;
+
+    private final int maxTextLength;
+
+    private final BxZone highestZone;
+
+    private final BxZone lowestZone;
+
+    PageStatistics(BxPage page) {
+        zones = Lists.newArrayList(page);
+        fontHeightMeans = new double[zones.size()];
+        lineHeightMeans = new double[zones.size()];
+        int maxIdx = -1;
+        double second = Double.NEGATIVE_INFINITY;
+        int lines = 0;
+        int words = 0;
+        int chars = 0;
+        double width = Double.NEGATIVE_INFINITY;
+        int textLength = Integer.MIN_VALUE;
+        for (int i = 0; i < zones.size(); i++) {
+            BxZone zone = zones.get(i);
+            zoneIndices.put(zone, i);
+            fontHeightMeans[i] = fontHeightMean(zone);
+
+            double lineHeightMean = 0;
+            for (BxLine line : zone) {
+                lineHeightMean += line.getBounds().getHeight();
+                words += line.childrenCount();
+                for (BxWord word : line) {
+                    for (BxChunk chunk : word) {
+                        chars += chunk.toText().length();
+                    }
+                }
+            }
+            lineHeightMean /= zone.childrenCount();
+            lineHeightMeans[i] = lineHeightMean;
+            if (!Double.isNaN(lineHeightMean)) {
+                if (maxIdx < 0 || lineHeightMean > lineHeightMeans[maxIdx]) {
+                    if (maxIdx >= 0) {
+                        second = Math.max(second, lineHeightMeans[maxIdx]);
+                    }
+                    maxIdx = i;
+                } else {
+                    second = Math.max(second, lineHeightMean);
+                }
+            }
+
+            lines += zone.childrenCount();
+            width = Math.max(width, zone.getWidth());
+            textLength = Math.max(textLength, zone.toText().length());
+        }
+        maxLineHeightMeanIdx = maxIdx;
+        secondLineHeightMean = second;
+        lineCount = lines;
+        wordCount = words;
+        charCount = chars;
+        maxWidth = width;
+        maxTextLength = textLength;
+
+        if (zones.isEmpty()) {
+            highestZone = null;
+            lowestZone = null;
+        } else {
+            List<BxZone> sorted = new ArrayList<BxZone>(zones);
+            Collections.sort(sorted, new Comparator<BxZone>() {
+
+                @Override
+                public int compare(BxZone z1, BxZone z2) {
+                    return Utils.compareDouble(z1.getY() + z1.getHeight(), z2.getY() + z2.getHeight(), 0.1);
+                }
+            });
+            highestZone = sorted.get(0);
+            lowestZone = sorted.get(sorted.size() - 1);
+        }
+    }
+
+    /**
+     * Returns the statistics of the page.
+     *
+     * @param page page
+     * @return the statistics, or null if no {@link DocumentFeatureContext}
+     * was registered for the page's document
+     */
+    public static PageStatistics forPage(BxPage page) {
+        DocumentFeatureContext context = DocumentFeatureContext.forPage(page);
+        return context == null ? null : context.getPageStatistics(page);
+    }
+
+    /**
+     * Calculates the mean height of the zone's chunks.
+     *
+     * @param zone zone
+     * @return the mean height, NaN for a zone without chunks
+     */
+    public static double fontHeightMean(BxZone zone) {
+        double heightSum = 0.0;
+        int heightNumber = 0;
+        for (BxLine line : zone) {
+            for (BxWord word : line) {
+                for (BxChunk chunk : word) {
+                    heightSum += chunk.getBounds().getHeight();
+                    ++heightNumber;
+                }
+            }
+        }
+        return heightSum / heightNumber;
+    }
+
+    public int getZoneCount() {
+        return zones.size();
+    }
+
+    /**
+     * Returns the position of the zone in the page.
+     *
+     * @param zone zone
+     * @return the zone's index, or null if the zone does not belong to the page
+     */
+    public Integer getZoneIndex(BxZone zone) {
+        return zoneIndices.get(zone);
+    }
+
+    public double getFontHeightMean(int zoneIdx) {
+        return fontHeightMeans[zoneIdx];
+    }
+
+    /**
+     * Returns the greatest mean line height of the page's zones other
+     * than the given one. Zones without lines are skipped.
+     *
+     * @param zone zone
+     * @return the greatest mean line height, or negative infinity if there is none
+     */
+    public double getMaxLineHeightMeanOfOthers(BxZone zone) {
+        if (maxLineHeightMeanIdx < 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (zones.get(maxLineHeightMeanIdx) == zone) {
+            return secondLineHeightMean;
+        }
+        return lineHeightMeans[maxLineHeightMeanIdx];
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getCharCount() {
+        return charCount;
+    }
+
+    public double getMaxWidth() {
+        return maxWidth;
+    }
+
+    public int getMaxTextLength() {
+        return maxTextLength;
+    }
+
+    /**
+     * Returns the first zone of the page sorted by the bottom coordinate.
+     *
+     * @return the highest zone, or null if the page has no zones
+     */
+    public BxZone getHighestZone() {
+        return highestZone;
+    }
+
+    /**
+     * Returns the last zone of the page sorted by the bottom coordinate.
+     *
+     * @return the lowest zone, or null if the page has no zones
+     */
+    public BxZone getLowestZone() {
+        return lowestZone;
+    }
+
+}
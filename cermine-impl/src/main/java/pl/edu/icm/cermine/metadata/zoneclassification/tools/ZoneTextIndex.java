@@ -0,0 +1,129 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.zoneclassification.tools;
+
+import java.util.*;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+
+/**
+ * Index from zone texts to the pages they occur on, used by the features
+ * looking for repeated zones (running headers, footers etc.).
+ * <p>
+ * The index is a part of {@link DocumentFeatureContext} and is available to
+ * the feature calculators through their page context with
+ * {@link #forPage(BxPage)}. If no context is registered, the features compare
+ * the texts directly.
+ */
+public final class ZoneTextIndex {
+
+    /** page positions in the chain of pages */
+    private final Map<BxPage, Integer> pageIndices = new IdentityHashMap<BxPage, Integer>();
+
+    /** zone texts mapped to the sorted positions of the pages containing them */
+    private final Map<String, int[]> textPages = new HashMap<String, int[]>();
+
+    ZoneTextIndex(BxDocument document) {
+        if (document.childrenCount() == 0) {
+            return;
+        }
+        BxPage page = document.getFirstChild();
+        Set<BxPage> visited = Collections.newSetFromMap(new IdentityHashMap<BxPage, Boolean>());
+        while (page.getPrev() != null && visited.add(page)) {
+            page = page.getPrev();
+        }
+
+        Map<String, List<Integer>> occurrences = new HashMap<String, List<Integer>>();
+        int pageIdx = 0;
+        while (page != null && !pageIndices.containsKey(page)) {
+            pageIndices.put(page, pageIdx);
+            for (BxZone zone : page) {
+                List<Integer> pages = occurrences.get(zone.toText());
+                if (pages == null) {
+                    pages = new ArrayList<Integer>(1);
+                    occurrences.put(zone.toText(), pages);
+                }
+                if (pages.isEmpty() || pages.get(pages.size() - 1) != pageIdx) {
+                    pages.add(pageIdx);
+                }
+            }
+            page = page.getNext();
+            pageIdx++;
+        }
+
+        for (Map.Entry<String, List<Integer>> entry : occurrences.entrySet()) {
+            List<Integer> pages = entry.getValue();
+            int[] array = new int[pages.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = pages.get(i);
+            }
+            textPages.put(entry.getKey(), array);
+        }
+    }
+
+    /**
+     * Returns the index of the page's document.
+     *
+     * @param page page
+     * @return the index, or null if no context was registered for the page's document
+     */
+    public static ZoneTextIndex forPage(BxPage page) {
+        DocumentFeatureContext context = DocumentFeatureContext.forPage(page);
+        return context == null ? null : context.getZoneTextIndex();
+    }
+
+    boolean containsPage(BxPage page) {
+        return pageIndices.containsKey(page);
+    }
+
+    /**
+     * Checks whether a zone with the given text occurs on any page other
+     * than the given one.
+     *
+     * @param text zone text
+     * @param page page
+     * @return true if the text occurs on another page
+     */
+    public boolean occursOnOtherPage(String text, BxPage page) {
+        int[] pages = textPages.get(text);
+        if (pages == null) {
+            return false;
+        }
+        return pages.length > 1 || pages[0] != pageIndices.get(page);
+    }
+
+    /**
+     * Checks whether a zone with the given text occurs on the previous
+     * or the next page.
+     *
+     * @param text zone text
+     * @param page page
+     * @return true if the text occurs on a neighbouring page
+     */
+    public boolean occursOnSurroundingPage(String text, BxPage page) {
+        int[] pages = textPages.get(text);
+        if (pages == null) {
+            return false;
+        }
+        int pageIdx = pageIndices.get(page);
+        return Arrays.binarySearch(pages, pageIdx + 1) >= 0 || Arrays.binarySearch(pages, pageIdx - 1) >= 0;
+    }
+
+}
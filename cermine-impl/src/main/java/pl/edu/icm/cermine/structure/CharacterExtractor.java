@@ -18,6 +18,9 @@
 
 package pl.edu.icm.cermine.structure;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
@@ -37,4 +40,29 @@ public interface CharacterExtractor {
      * @throws AnalysisException AnalysisException
      */
     BxDocument extractCharacters(InputStream stream) throws AnalysisException;
+
+    /**
+     * Extracts characters from the file. Implementations may access the file
+     * directly instead of reading the whole content into memory.
+     * 
+     * @param file PDF file
+     * @return a document containing pages with individual characters.
+     * @throws AnalysisException AnalysisException
+     */
+    default BxDocument extractCharacters(File file) throws AnalysisException {
+        InputStream stream = null;
+        try {
+            stream = new FileInputStream(file);
+            return extractCharacters(stream);
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot read PDF file", ex);
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ex) {
+                }
+            }
+        }
+    }
 }
@@ -44,6 +44,8 @@ public class DocstrumSegmenter implements DocumentSegmenter {
     
     private Map<BxPage, List<Component>> componentMap = new HashMap<BxPage, List<Component>>();
     
+    private int gridSearchThreshold = GRID_SEARCH_THRESHOLD;
+    
     @Override
     public BxDocument segmentDocument(BxDocument document) throws AnalysisException {
         computeDocumentOrientation(document);
@@ -162,7 +164,21 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         if (components.length <= NEIGHBOUR_COUNT) {
             pageNeighborCount = components.length - 1;
         }
+        if (components.length >= gridSearchThreshold) {
+            findNeighborsInGrid(components, pageNeighborCount);
+        } else {
+            findNeighborsBySweep(components, pageNeighborCount);
+        }
+    }
 
+    /**
+     * Finds nearest-neighbors by scanning the components sorted by x
+     * coordinate outwards in steps of {@link #DISTANCE_STEP}.
+     *
+     * @param components array of components sorted by x coordinate
+     * @param pageNeighborCount the number of neighbors per component
+     */
+    private void findNeighborsBySweep(Component[] components, int pageNeighborCount) {
         List<Neighbor> candidates = new ArrayList<Neighbor>();
         for (int i = 0; i < components.length; i++) {
             int start = i, end = i + 1;
@@ -205,6 +221,179 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         }
     }
 
+    /**
+     * Finds nearest-neighbors using a uniform grid over the components'
+     * centroids. The result is identical to the result of
+     * {@link #findNeighborsBySweep}: the neighbors are the components
+     * closest to the given one, and the components equally distant are
+     * ordered as they would be encountered by the sweep, i.e. by the search
+     * step, left side first, and by the position in the sorted array.
+     *
+     * @param components array of components sorted by x coordinate
+     * @param pageNeighborCount the number of neighbors per component
+     */
+    private void findNeighborsInGrid(Component[] components, int pageNeighborCount) {
+        int count = components.length;
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            xs[i] = components[i].getX();
+            ys[i] = components[i].getY();
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        double width = maxX - minX;
+        double height = maxY - minY;
+
+        double cellSize = Math.sqrt(width * height * pageNeighborCount / count);
+        if (!(cellSize > 0)) {
+            cellSize = Math.max(width, height) * pageNeighborCount / count;
+        }
+        if (!(cellSize > 0)) {
+            cellSize = DISTANCE_STEP;
+        }
+        int columns = (int) (width / cellSize) + 1;
+        int rows = (int) (height / cellSize) + 1;
+        while ((long) columns * rows > 4L * count + 16) {
+            cellSize *= 2;
+            columns = (int) (width / cellSize) + 1;
+            rows = (int) (height / cellSize) + 1;
+        }
+
+        // components' indices grouped by cells
+        int[] cells = new int[count];
+        int[] cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < count; i++) {
+            int column = Math.min(columns - 1, (int) ((xs[i] - minX) / cellSize));
+            int row = Math.min(rows - 1, (int) ((ys[i] - minY) / cellSize));
+            cells[i] = row * columns + column;
+            cellStart[cells[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cellItems = new int[count];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < count; i++) {
+            cellItems[fill[cells[i]]++] = i;
+        }
+
+        int[] bestIndices = new int[pageNeighborCount];
+        double[] bestDistances = new double[pageNeighborCount];
+        int maxRadius = Math.max(columns, rows);
+        for (int i = 0; i < count; i++) {
+            int column = cells[i] % columns;
+            int row = cells[i] / columns;
+            int found = 0;
+            for (int radius = 0; radius <= maxRadius; radius++) {
+                int minColumn = column - radius, maxColumn = column + radius;
+                int minRow = row - radius, maxRow = row + radius;
+                for (int r = Math.max(0, minRow); r <= Math.min(rows - 1, maxRow); r++) {
+                    boolean edgeRow = r == minRow || r == maxRow;
+                    int step = edgeRow ? 1 : maxColumn - minColumn;
+                    for (int c = minColumn; c <= maxColumn; c += step) {
+                        if (c < 0 || c >= columns) {
+                            continue;
+                        }
+                        int cell = r * columns + c;
+                        for (int idx = cellStart[cell]; idx < cellStart[cell + 1]; idx++) {
+                            int j = cellItems[idx];
+                            if (j == i) {
+                                continue;
+                            }
+                            double dx = xs[j] - xs[i], dy = ys[j] - ys[i];
+                            double distance = Math.sqrt(dx * dx + dy * dy);
+                            found = insertNeighbor(xs, i, j, distance, bestIndices, bestDistances, found);
+                        }
+                    }
+                }
+                // components outside the searched cells are farther than radius * cellSize
+                if (found == pageNeighborCount
+                        && bestDistances[found - 1] < radius * cellSize * (1 - GRID_SEARCH_EPS)) {
+                    break;
+                }
+            }
+            List<Neighbor> neighbors = new ArrayList<Neighbor>(found);
+            for (int n = 0; n < found; n++) {
+                neighbors.add(new Neighbor(components[bestIndices[n]], components[i]));
+            }
+            components[i].setNeighbors(neighbors);
+            TimeoutRegister.get().check();
+        }
+    }
+
+    /**
+     * Inserts the candidate into the sorted arrays of the best neighbors,
+     * provided that it is closer than the worst one found so far.
+     *
+     * @return the number of the best neighbors after the insertion
+     */
+    private static int insertNeighbor(double[] xs, int origin, int candidate, double distance,
+            int[] bestIndices, double[] bestDistances, int found) {
+        int position = found;
+        while (position > 0 && precedes(xs, origin, candidate, distance,
+                bestIndices[position - 1], bestDistances[position - 1])) {
+            position--;
+        }
+        if (position == bestIndices.length) {
+            return found;
+        }
+        int last = Math.min(found, bestIndices.length - 1);
+        System.arraycopy(bestIndices, position, bestIndices, position + 1, last - position);
+        System.arraycopy(bestDistances, position, bestDistances, position + 1, last - position);
+        bestIndices[position] = candidate;
+        bestDistances[position] = distance;
+        return Math.min(found + 1, bestIndices.length);
+    }
+
+    private static boolean precedes(double[] xs, int origin, int first, double firstDistance,
+            int second, double secondDistance) {
+        if (firstDistance != secondDistance) {
+            return firstDistance < secondDistance;
+        }
+        int firstStep = sweepStep(xs, origin, first);
+        int secondStep = sweepStep(xs, origin, second);
+        if (firstStep != secondStep) {
+            return firstStep < secondStep;
+        }
+        boolean firstLeft = first < origin;
+        boolean secondLeft = second < origin;
+        if (firstLeft != secondLeft) {
+            return firstLeft;
+        }
+        return Math.abs(first - origin) < Math.abs(second - origin);
+    }
+
+    /**
+     * Returns the step of the sweep search in which the candidate is found.
+     */
+    private static int sweepStep(double[] xs, int origin, int candidate) {
+        double dx = candidate < origin ? xs[origin] - xs[candidate] : xs[candidate] - xs[origin];
+        int step = 0;
+        double searchDist = 0;
+        do {
+            searchDist += DISTANCE_STEP;
+            step++;
+        } while (!(dx < searchDist));
+        return step;
+    }
+
+    /**
+     * Sets the minimum number of components on the page, for which the
+     * nearest-neighbors are searched using a grid index instead of sweeping
+     * the components sorted by x coordinate. Both methods give the same
+     * results.
+     *
+     * @param gridSearchThreshold the number of components
+     */
+    public void setGridSearchThreshold(int gridSearchThreshold) {
+        this.gridSearchThreshold = gridSearchThreshold;
+    }
+
     /**
      * Computes initial orientation estimation based on nearest-neighbors' angles.
      * 
@@ -894,6 +1083,17 @@ public class DocstrumSegmenter implements DocumentSegmenter {
     }
     
     private static final double DISTANCE_STEP = 16.0;
+
+    /**
+     * Minimum number of components on the page, for which the grid index is
+     * used to find nearest-neighbors.
+     */
+    private static final int GRID_SEARCH_THRESHOLD = 500;
+
+    /**
+     * Relative margin for the floating-point errors in the grid cell indices.
+     */
+    private static final double GRID_SEARCH_EPS = 1e-9;
      
     /**
      * Angle histogram resolution in radians per bin.
@@ -20,11 +20,14 @@ package pl.edu.icm.cermine.structure;
 
 import com.google.common.collect.Lists;
 import java.util.*;
+import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.structure.readingorder.BxZoneGroup;
 import pl.edu.icm.cermine.structure.readingorder.DistElem;
+import pl.edu.icm.cermine.structure.readingorder.DistElemQueue;
 import pl.edu.icm.cermine.structure.readingorder.DocumentPlane;
 import pl.edu.icm.cermine.structure.readingorder.TreeToListConverter;
+import pl.edu.icm.cermine.structure.tools.PageParallelExecutor;
 import pl.edu.icm.cermine.tools.Utils;
 import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
 
@@ -39,6 +42,11 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
     static final double BOXES_FLOW = 0.5;
     static final double EPS = 0.01;
     static final int MAX_ZONES = 1000;
+    /**
+     * Minimum number of zones on the page, for which the distance tuples are kept in a priority queue
+     * instead of a sorted list.
+     */
+    static final int QUEUE_GROUPING_THRESHOLD = 8;
     static final Comparator<BxObject> Y_ASCENDING_ORDER = new Comparator<BxObject>() {
 
         @Override
@@ -64,46 +72,58 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
         }
     };
 
+    private int queueGroupingThreshold = QUEUE_GROUPING_THRESHOLD;
+
     @Override
-    public BxDocument resolve(BxDocument messyDoc) {
+    public BxDocument resolve(BxDocument messyDoc) throws AnalysisException {
         BxDocument orderedDoc = new BxDocument();
-        List<BxPage> pages = Lists.newArrayList(messyDoc);
-        for (BxPage page : pages) {
-            List<BxZone> zones = Lists.newArrayList(page);
-            for (BxZone zone : zones) {
-                List<BxLine> lines = Lists.newArrayList(zone);
-                for (BxLine line : lines) {
-                    List<BxWord> words = Lists.newArrayList(line);
-                    for (BxWord word : words) {
-                        List<BxChunk> chunks = Lists.newArrayList(word);
-                        Collections.sort(chunks, X_ASCENDING_ORDER);
-                        word.resetText();
-                        word.setChunks(chunks);
+        List<BxPage> pages = PageParallelExecutor.map(Lists.newArrayList(messyDoc),
+                new PageParallelExecutor.PageTask<BxPage, BxPage>() {
+                    @Override
+                    public BxPage process(BxPage page) {
+                        return resolvePage(page);
                     }
-                    Collections.sort(words, X_ASCENDING_ORDER);
-                    line.resetText();
-                    line.setWords(words);
-                }
-                Collections.sort(lines, YX_ASCENDING_ORDER);
-                zone.resetText();
-                zone.setLines(lines);
-            }
-            List<BxZone> orderedZones;
-            if (zones.size() > MAX_ZONES) {
-                orderedZones = new ArrayList<BxZone>(zones);
-                Collections.sort(orderedZones, YX_ASCENDING_ORDER);
-            } else {
-                orderedZones = reorderZones(zones);
-            }
-            page.setZones(orderedZones);
-            page.resetText();
+                });
+        for (BxPage page : pages) {
             orderedDoc.addPage(page);
-            TimeoutRegister.get().check();
         }
         setIdsAndLinkTogether(orderedDoc);
         return orderedDoc;
     }
 
+    private BxPage resolvePage(BxPage page) {
+        List<BxZone> zones = Lists.newArrayList(page);
+        for (BxZone zone : zones) {
+            List<BxLine> lines = Lists.newArrayList(zone);
+            for (BxLine line : lines) {
+                List<BxWord> words = Lists.newArrayList(line);
+                for (BxWord word : words) {
+                    List<BxChunk> chunks = Lists.newArrayList(word);
+                    Collections.sort(chunks, X_ASCENDING_ORDER);
+                    word.resetText();
+                    word.setChunks(chunks);
+                }
+                Collections.sort(words, X_ASCENDING_ORDER);
+                line.resetText();
+                line.setWords(words);
+            }
+            Collections.sort(lines, YX_ASCENDING_ORDER);
+            zone.resetText();
+            zone.setLines(lines);
+        }
+        List<BxZone> orderedZones;
+        if (zones.size() > MAX_ZONES) {
+            orderedZones = new ArrayList<BxZone>(zones);
+            Collections.sort(orderedZones, YX_ASCENDING_ORDER);
+        } else {
+            orderedZones = reorderZones(zones);
+        }
+        page.setZones(orderedZones);
+        page.resetText();
+        TimeoutRegister.get().check();
+        return page;
+    }
+
     /**
      * Builds a binary tree from list of text zones by doing a hierarchical clustering and converting the result tree to
      * an ordered list.
@@ -185,11 +205,83 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
     /**
      * Builds a binary tree of zones and groups of zones from a list of unordered zones. This is done in hierarchical
      * clustering by joining two least distant nodes. Distance is calculated in the distance() method.
+     * <p>
+     * Two nodes with other objects placed between them are joined only if all the remaining pairs of nodes are in the
+     * same situation, or right after the next join.
      *
      * @param zones is a list of unordered zones
      * @return root of the zones clustered in a tree
      */
     private BxZoneGroup groupZonesHierarchically(List<BxZone> zones) {
+        if (zones.size() >= queueGroupingThreshold) {
+            return groupZonesWithQueue(zones);
+        }
+        return groupZonesWithSortedList(zones);
+    }
+
+    /**
+     * Groups the zones keeping the distance tuples in a priority queue. The tuples containing already grouped objects
+     * are discarded lazily and the blocked tuples are put back into the queue after the next join, which gives the
+     * same tree as {@link #groupZonesWithSortedList(List)} without sorting all the tuples after every join.
+     *
+     * @param zones is a list of unordered zones
+     * @return root of the zones clustered in a tree
+     */
+    private BxZoneGroup groupZonesWithQueue(List<BxZone> zones) {
+        DistElemQueue<BxObject> dists = new DistElemQueue<BxObject>(zones.size() * zones.size() / 2);
+        for (int idx1 = 0; idx1 < zones.size(); ++idx1) {
+            for (int idx2 = idx1 + 1; idx2 < zones.size(); ++idx2) {
+                BxZone zone1 = zones.get(idx1);
+                BxZone zone2 = zones.get(idx2);
+                dists.add(new DistElem<BxObject>(false, distance(zone1, zone2),
+                        zone1, zone2));
+            }
+        }
+        TimeoutRegister.get().check();
+        DocumentPlane plane = new DocumentPlane(zones, GRIDSIZE);
+        /*
+         * Tuples with objects placed between them, polled since the last join
+         */
+        List<DistElem<BxObject>> blocked = new ArrayList<DistElem<BxObject>>();
+        while (true) {
+            DistElem<BxObject> distElem = dists.poll();
+            if (distElem == null) {
+                if (blocked.isEmpty()) {
+                    break;
+                }
+                distElem = blocked.remove(0);
+            } else if (!distElem.isC() && plane.anyObjectsBetween(distElem.getObj1(), distElem.getObj2())) {
+                blocked.add(new DistElem<BxObject>(true, distElem.getDist(), distElem.getObj1(), distElem.getObj2()));
+                continue;
+            }
+            TimeoutRegister.get().check();
+            BxZoneGroup newGroup = new BxZoneGroup(distElem.getObj1(), distElem.getObj2());
+            plane.remove(distElem.getObj1()).remove(distElem.getObj2());
+            dists.remove(distElem.getObj1());
+            dists.remove(distElem.getObj2());
+            for (DistElem<BxObject> blockedElem : blocked) {
+                dists.add(blockedElem);
+            }
+            blocked.clear();
+            for (BxObject other : plane.getObjects()) {
+                dists.add(new DistElem<BxObject>(false, distance(other,
+                        newGroup), newGroup, other));
+            }
+            TimeoutRegister.get().check();
+            plane.add(newGroup);
+        }
+
+        assert plane.getObjects().size() == 1 : "There should be one object left at the plane after grouping";
+        return (BxZoneGroup) plane.getObjects().get(0);
+    }
+
+    /**
+     * Groups the zones keeping the distance tuples in a list, sorted again after every join.
+     *
+     * @param zones is a list of unordered zones
+     * @return root of the zones clustered in a tree
+     */
+    private BxZoneGroup groupZonesWithSortedList(List<BxZone> zones) {
         /*
          * Distance tuples are stored sorted by ascending distance value
          */
@@ -231,6 +323,16 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
         return (BxZoneGroup) plane.getObjects().get(0);
     }
 
+    /**
+     * Sets the minimum number of zones on the page, for which the distance tuples are kept in a priority queue during
+     * the hierarchical clustering, instead of a list sorted after every join. Both methods give the same results.
+     *
+     * @param queueGroupingThreshold the number of zones
+     */
+    public void setQueueGroupingThreshold(int queueGroupingThreshold) {
+        this.queueGroupingThreshold = queueGroupingThreshold;
+    }
+
     /**
      * Removes all distance tuples containing obj
      */
@@ -19,16 +19,21 @@
 package pl.edu.icm.cermine.structure;
 
 import com.google.common.collect.Lists;
+import com.itextpdf.text.ExceptionConverter;
 import com.itextpdf.text.Rectangle;
 import com.itextpdf.text.exceptions.InvalidImageException;
 import com.itextpdf.text.exceptions.InvalidPdfException;
+import com.itextpdf.text.io.RandomAccessSource;
+import com.itextpdf.text.io.RandomAccessSourceFactory;
 import com.itextpdf.text.pdf.PRIndirectReference;
 import com.itextpdf.text.pdf.PdfDictionary;
 import com.itextpdf.text.pdf.PdfName;
 import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.RandomAccessFileOrArray;
 import com.itextpdf.text.pdf.parser.*;
 import com.itextpdf.text.pdf.parser.Vector;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
@@ -36,11 +41,14 @@ import pl.edu.icm.cermine.configuration.ExtractionConfigProperty;
 import pl.edu.icm.cermine.configuration.ExtractionConfigRegister;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxBounds;
-import pl.edu.icm.cermine.structure.model.BxChunk;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxImage;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.tools.BxBoundsBuilder;
+import pl.edu.icm.cermine.structure.tools.BxChunkStore;
+import pl.edu.icm.cermine.structure.tools.PageParallelExecutor;
+import pl.edu.icm.cermine.structure.tools.SpatialGrid;
+import pl.edu.icm.cermine.tools.timeout.TimeoutException;
 import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
 
 /**
@@ -80,6 +88,21 @@ public class ITextCharacterExtractor implements CharacterExtractor {
         ALT_TO_STANDART_FONTS.put("TimesNewRoman,Italic",     PdfName.TIMES_ITALIC);
     }
 
+    /**
+     * Receives the pages extracted in the streaming mode, one at a time.
+     */
+    public interface PageListener {
+
+        /**
+         * Called when all the chunks of the page have been extracted and
+         * filtered. The page does not belong to any document.
+         *
+         * @param page extracted page
+         * @throws AnalysisException AnalysisException
+         */
+        void pageExtracted(BxPage page) throws AnalysisException;
+    }
+
     /**
      * Extracts text chunks from PDF using iText and stores them in BxDocument object.
      * Depending on parsed PDF, extracted text chunks may or may not be individual glyphs,
@@ -92,38 +115,152 @@ public class ITextCharacterExtractor implements CharacterExtractor {
     @Override
     public BxDocument extractCharacters(InputStream stream) throws AnalysisException {
         try {
-            BxDocumentCreator documentCreator = new BxDocumentCreator();
+            return extractDocument(new PdfReader(stream));
+        } catch (InvalidPdfException ex) {
+            throw new AnalysisException("Invalid PDF file", ex);
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot extract characters from PDF file", ex);
+        }
+    }
 
-            PdfReader reader = new PdfReader(stream);
-            PdfContentStreamProcessor processor = new PdfContentStreamProcessor(documentCreator);
-            
-            for (int pageNumber = 1; pageNumber <= reader.getNumberOfPages(); pageNumber++) {
-                if (frontPagesLimit >= 0 && backPagesLimit >= 0 && pageNumber > frontPagesLimit
-                        && pageNumber <= reader.getNumberOfPages() - backPagesLimit) {
-                    continue;
+    /**
+     * Extracts text chunks from PDF file. Contrary to
+     * {@link #extractCharacters(InputStream)}, the file is not loaded into
+     * memory, but accessed through a memory-mapped source, and only
+     * the objects of the pages within the limits are parsed.
+     *
+     * @param file PDF file
+     * @return BxDocument containing pages with extracted chunks stored as BxChunk lists
+     * @throws AnalysisException AnalysisException
+     */
+    @Override
+    public BxDocument extractCharacters(File file) throws AnalysisException {
+        try {
+            return extractDocument(openPartially(file));
+        } catch (InvalidPdfException ex) {
+            throw new AnalysisException("Invalid PDF file", ex);
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot extract characters from PDF file", ex);
+        }
+    }
+
+    /**
+     * Extracts text chunks from PDF file in the streaming mode. The file is
+     * accessed through a memory-mapped source, the pages are parsed one at
+     * a time and passed to the listener as soon as they are ready, and
+     * released from the memory afterwards.
+     *
+     * @param file PDF file
+     * @param listener page listener
+     * @throws AnalysisException AnalysisException
+     */
+    public void extractCharacters(File file, final PageListener listener) throws AnalysisException {
+        PdfReader reader = null;
+        try {
+            reader = openPartially(file);
+            int count = processPages(reader, new ExtractedPageListener() {
+                @Override
+                public void pageExtracted(BxPage page, BxChunkStore chunks) throws AnalysisException {
+                    filterChunks(page, chunks);
+                    listener.pageExtracted(page);
                 }
-                documentCreator.processNewBxPage(reader.getPageSize(pageNumber));
+            });
+            if (count == 0) {
+                throw new AnalysisException("Document contains no pages");
+            }
+        } catch (InvalidPdfException ex) {
+            throw new AnalysisException("Invalid PDF file", ex);
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot extract characters from PDF file", ex);
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
 
-                PdfDictionary resources = reader.getPageN(pageNumber).getAsDict(PdfName.RESOURCES);
-                processAlternativeFontNames(resources);
-                processAlternativeColorSpace(resources);
+    private PdfReader openPartially(File file) throws IOException {
+        RandomAccessSource source = new RandomAccessSourceFactory()
+                .setForceRead(false)
+                .createBestSource(file.getPath());
+        return new PdfReader(new RandomAccessFileOrArray(source), null);
+    }
 
-                processor.reset();
-                processor.processContent(ContentByteUtils.getContentBytesForPage(reader, pageNumber), resources);
-                TimeoutRegister.get().check();
+    private BxDocument extractDocument(PdfReader reader) throws AnalysisException, IOException {
+        try {
+            final BxDocument doc = new BxDocument();
+            final List<BxChunkStore> pageChunks = new ArrayList<BxChunkStore>();
+            processPages(reader, new ExtractedPageListener() {
+                @Override
+                public void pageExtracted(BxPage page, BxChunkStore chunks) {
+                    doc.addPage(page);
+                    pageChunks.add(chunks);
+                }
+            });
+            final List<BxPage> pages = Lists.newArrayList(doc);
+            List<Integer> indices = new ArrayList<Integer>(pages.size());
+            for (int i = 0; i < pages.size(); i++) {
+                indices.add(i);
             }
-
-            BxDocument doc = filterComponents(removeDuplicateChunks(documentCreator.document));
+            PageParallelExecutor.map(indices,
+                    new PageParallelExecutor.PageTask<Integer, BxPage>() {
+                        @Override
+                        public BxPage process(Integer index) {
+                            BxPage page = pages.get(index);
+                            filterChunks(page, pageChunks.get(index));
+                            return page;
+                        }
+                    });
             if (doc.getFirstChild() == null) {
                 throw new AnalysisException("Document contains no pages");
             }
             return doc;
-        } catch (InvalidPdfException ex) {
-            throw new AnalysisException("Invalid PDF file", ex);
-        } catch (IOException ex) {
-            throw new AnalysisException("Cannot extract characters from PDF file", ex);
+        } finally {
+            reader.close();
         }
     }
+
+    /**
+     * Parses the pages within the limits and passes them to the listener.
+     * The pages outside the limits are not accessed at all, and the parsed
+     * ones are released from the reader as soon as they are processed.
+     *
+     * @param reader PDF reader
+     * @param listener page listener
+     * @return the number of extracted pages
+     */
+    private int processPages(PdfReader reader, ExtractedPageListener listener) throws AnalysisException, IOException {
+        BxDocumentCreator documentCreator = new BxDocumentCreator(listener);
+        PdfContentStreamProcessor processor = new PdfContentStreamProcessor(documentCreator);
+
+        int pagesCount = reader.getNumberOfPages();
+        for (int pageNumber = 1; pageNumber <= pagesCount; pageNumber++) {
+            if (frontPagesLimit >= 0 && backPagesLimit >= 0 && pageNumber > frontPagesLimit
+                    && pageNumber <= pagesCount - backPagesLimit) {
+                pageNumber = pagesCount - backPagesLimit;
+                continue;
+            }
+            documentCreator.processNewBxPage(reader.getPageSize(pageNumber));
+
+            PdfDictionary resources = reader.getPageN(pageNumber).getAsDict(PdfName.RESOURCES);
+            processAlternativeFontNames(resources);
+            processAlternativeColorSpace(resources);
+
+            processor.reset();
+            try {
+                processor.processContent(ContentByteUtils.getContentBytesForPage(reader, pageNumber), resources);
+            } catch (ExceptionConverter ex) {
+                // the timeout checked while rendering is wrapped by iText
+                if (ex.getException() instanceof TimeoutException) {
+                    throw (TimeoutException) ex.getException();
+                }
+                throw ex;
+            }
+            reader.releasePage(pageNumber);
+            TimeoutRegister.get().check();
+        }
+        return documentCreator.finish();
+    }
     
     /**
      * Processes PDF's fonts dictionary. During the process alternative names
@@ -181,81 +318,88 @@ public class ITextCharacterExtractor implements CharacterExtractor {
         }
     }
                 
-    private BxDocument removeDuplicateChunks(BxDocument document) {
-        for (BxPage page : document) {
-            List<BxChunk> chunks = Lists.newArrayList(page.getChunks());
-            List<BxChunk> filteredChunks = new ArrayList<BxChunk>();
-            Map<Integer, Map<Integer, Set<BxChunk>>> chunkMap = new HashMap<Integer, Map<Integer, Set<BxChunk>>>();
-            for (BxChunk chunk : chunks) {
-                int x = (int) chunk.getX();
-                int y = (int) chunk.getY();
-                boolean duplicate = false;
-                duplicateSearch:
-                for (int i = x-1; i <= x+1; i++) {
-                    for (int j = y-1; j <= y+1; j++) {
-                        if (chunkMap.get(i) == null || chunkMap.get(i).get(j) == null) {
-                            continue;
-                        }
-                        for (BxChunk ch : chunkMap.get(i).get(j)) {
-                            if (chunk.toText().equals(ch.toText()) && chunk.getBounds().isSimilarTo(ch.getBounds(), 1)) {
-                                duplicate = true;
-                                break duplicateSearch;
-                            }
+    /**
+     * Filters the chunks of the page and stores the remaining ones
+     * in the page.
+     *
+     * @param page page
+     * @param chunks the chunks of the page
+     */
+    private void filterChunks(BxPage page, BxChunkStore chunks) {
+        removeDuplicateChunks(chunks);
+        filterComponents(chunks);
+        page.setChunks(chunks.toChunks());
+    }
+
+    private void removeDuplicateChunks(BxChunkStore chunks) {
+        SpatialGrid cells = new SpatialGrid(chunks.size());
+        boolean[] keep = new boolean[chunks.size()];
+        for (int chunk = 0; chunk < chunks.size(); chunk++) {
+            int x = (int) chunks.getX(chunk);
+            int y = (int) chunks.getY(chunk);
+            boolean duplicate = false;
+            duplicateSearch:
+            for (int i = x-1; i <= x+1; i++) {
+                for (int j = y-1; j <= y+1; j++) {
+                    for (int entry = cells.first(i, j); entry >= 0; entry = cells.next(entry)) {
+                        int ch = cells.item(entry);
+                        if (chunks.getChar(chunk) == chunks.getChar(ch) && chunks.isSimilar(chunk, ch, 1)) {
+                            duplicate = true;
+                            break duplicateSearch;
                         }
                     }
                 }
-                if (!duplicate) {
-                    filteredChunks.add(chunk);
-                    x = (int) chunk.getX();
-                    y = (int) chunk.getY();
-                    if (chunkMap.get(x) == null) {
-                        chunkMap.put(x, new HashMap<Integer, Set<BxChunk>>());
-                    }
-                    if (chunkMap.get(x).get(y) == null) {
-                        chunkMap.get(x).put(y, new HashSet<BxChunk>());
-                    }
-                    chunkMap.get(x).get(y).add(chunk);
-                }
             }
-            page.setChunks(filteredChunks);
+            if (!duplicate) {
+                keep[chunk] = true;
+                cells.add(chunk, x, y);
+            }
         }
-        return document;
+        chunks.retain(keep);
     }
     
-    private BxDocument filterComponents(BxDocument document) {
-        for (BxPage page : document) {
-            BxBoundsBuilder bounds = new BxBoundsBuilder();
-            List<BxChunk> chunks = Lists.newArrayList(page.getChunks());
-            for (BxChunk ch : chunks) {
-                bounds.expand(ch.getBounds());
-            }
-                    
-            double density = (double)100.0*chunks.size() / (bounds.getBounds().getWidth()*bounds.getBounds().getHeight());
-            if (Double.isNaN(density) || density < CHUNK_DENSITY_LIMIT) {
-                continue;
-            }
-            
-            Map<String, List<BxChunk>> map = new HashMap<String, List<BxChunk>>();
-            for (BxChunk ch : chunks) {
-                int x = (int)ch.getX()/PAGE_GRID_SIZE;
-                int y = (int)ch.getY()/PAGE_GRID_SIZE;
-                String key = Integer.toString(x)+" "+Integer.toString(y);
-                if (map.get(key) == null) {
-                    map.put(key, new ArrayList<BxChunk>());
-                }
-                map.get(key).add(ch);
+    private void filterComponents(BxChunkStore chunks) {
+        BxBoundsBuilder bounds = new BxBoundsBuilder();
+        for (int ch = 0; ch < chunks.size(); ch++) {
+            bounds.expand(chunks.getX(ch), chunks.getY(ch), chunks.getWidth(ch), chunks.getHeight(ch));
+        }
+                
+        double density = (double)100.0*chunks.size() / (bounds.getBounds().getWidth()*bounds.getBounds().getHeight());
+        if (Double.isNaN(density) || density < CHUNK_DENSITY_LIMIT) {
+            return;
+        }
+        
+        // open addressing table of the cells' chunk counts, at most half full
+        int mask = (Integer.highestOneBit(chunks.size()) << 2) - 1;
+        long[] cellKeys = new long[mask + 1];
+        int[] counts = new int[mask + 1];
+        int[] slots = new int[chunks.size()];
+        for (int ch = 0; ch < chunks.size(); ch++) {
+            int x = (int)chunks.getX(ch)/PAGE_GRID_SIZE;
+            int y = (int)chunks.getY(ch)/PAGE_GRID_SIZE;
+            long key = SpatialGrid.cellKey(x, y);
+            int slot = SpatialGrid.hash(key) & mask;
+            while (counts[slot] > 0 && cellKeys[slot] != key) {
+                slot = (slot + 1) & mask;
             }
+            cellKeys[slot] = key;
+            counts[slot]++;
+            slots[ch] = slot;
+        }
 
-            for (List<BxChunk> list : map.values()) {
-                if (list.size() > CHUNK_DENSITY_LIMIT) {
-                    for (BxChunk ch : list) {
-                        chunks.remove(ch);
-                    }
-                }
-            }
-            page.setChunks(chunks);
+        boolean[] keep = new boolean[chunks.size()];
+        for (int ch = 0; ch < chunks.size(); ch++) {
+            keep[ch] = counts[slots[ch]] <= CHUNK_DENSITY_LIMIT;
         }
-        return document;
+        chunks.retain(keep);
+    }
+
+    /**
+     * Receives the pages, whose chunks are stored in the compact form.
+     */
+    private interface ExtractedPageListener {
+
+        void pageExtracted(BxPage page, BxChunkStore chunks) throws AnalysisException;
     }
 
     /**
@@ -265,8 +409,9 @@ public class ITextCharacterExtractor implements CharacterExtractor {
      */
     static class BxDocumentCreator implements RenderListener {
 
-        private BxDocument document = new BxDocument();
+        private final ExtractedPageListener listener;
         private BxPage actPage;
+        private BxChunkStore actChunks;
         private int pageNumber = 0;
         private int imageNumber;
 
@@ -274,25 +419,40 @@ public class ITextCharacterExtractor implements CharacterExtractor {
 
         private Rectangle pageRectangle;
 
-        private void processNewBxPage(Rectangle pageRectangle) {
+        BxDocumentCreator(ExtractedPageListener listener) {
+            this.listener = listener;
+        }
+
+        private void processNewBxPage(Rectangle pageRectangle) throws AnalysisException {
             if (actPage != null) {
                 actPage.setBounds(boundsBuilder.getBounds());
                 boundsBuilder.clear();
+                listener.pageExtracted(actPage, actChunks);
             }
             actPage = new BxPage();
-            document.addPage(actPage);
+            actChunks = new BxChunkStore();
             pageNumber++;
             imageNumber = 1;
 
             this.pageRectangle = pageRectangle;
         }
 
+        private int finish() throws AnalysisException {
+            if (actPage != null) {
+                listener.pageExtracted(actPage, actChunks);
+                actPage = null;
+                actChunks = null;
+            }
+            return pageNumber;
+        }
+
         @Override
         public void beginTextBlock() {
         }
 
         @Override
         public void renderText(TextRenderInfo tri) {
+            TimeoutRegister.get().check();
             for (TextRenderInfo charTri : tri.getCharacterRenderInfos()) {
                 String text = charTri.getText();
                 if (text == null || text.isEmpty()) {
@@ -343,11 +503,8 @@ public class ITextCharacterExtractor implements CharacterExtractor {
                         || text.matches("^[\uFFF0-\uFFFF]$")) {
                         continue;
                     }
-                    BxBounds chBounds = new BxBounds(bounds.getX() + i * chw,
-                            bounds.getY(), chw, bounds.getHeight());
-                    BxChunk chunk = new BxChunk(chBounds, String.valueOf(ch));
-                    chunk.setFontName(tri.getFont().getFullFontName()[0][3]);
-                    actPage.addChunk(chunk);
+                    actChunks.add(bounds.getX() + i * chw, bounds.getY(), chw, bounds.getHeight(),
+                            ch, tri.getFont().getFullFontName()[0][3]);
                     boundsBuilder.expand(bounds);
                 }
             }
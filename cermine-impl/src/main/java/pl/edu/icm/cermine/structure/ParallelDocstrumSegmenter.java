@@ -18,149 +18,75 @@
 
 package pl.edu.icm.cermine.structure;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import com.google.common.collect.Lists;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.*;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
-import pl.edu.icm.cermine.tools.timeout.Timeout;
-import pl.edu.icm.cermine.tools.timeout.TimeoutException;
-import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
+import pl.edu.icm.cermine.structure.tools.PageParallelExecutor;
 
 /**
- * Page segmenter using Docstrum algorithm.
+ * Page segmenter using Docstrum algorithm. The pages are processed in
+ * parallel by {@link PageParallelExecutor}.
  * 
  * @author Krzysztof Rusek
  */
 public class ParallelDocstrumSegmenter extends DocstrumSegmenter {
     
-    static class NumBxPage {
-        int index = -1;
-        BxPage page;
-        List<Component> components;
+    private final int parallelism;
 
-        public NumBxPage(BxPage page, int index) {
-            this.page = page;
-            this.index = index;
-        }
-
-        public NumBxPage(BxPage page) {
-            this.page = page;
-        }
+    /**
+     * Creates a segmenter using the page parallelism level of the extraction
+     * configuration.
+     */
+    public ParallelDocstrumSegmenter() {
+        this(-1);
     }
-    
-    class SingleSegmenter implements Callable<NumBxPage> {
-        NumBxPage page;
-        private final Timeout timeout;
 
-        public SingleSegmenter(BxPage page, int index, Timeout timeout) {
-            this.page = new NumBxPage(page, index);
-            this.timeout = timeout;
-        }
-       
-        @Override
-        public NumBxPage call() throws AnalysisException {
-            try {
-                TimeoutRegister.set(timeout);
-                return new NumBxPage(segmentPage(page.page), page.index);
-            } finally {
-                TimeoutRegister.remove();
-            }
-        }
-    }
-    
-    class ComponentCounter implements Callable<NumBxPage> {
-        NumBxPage page;
-        private final Timeout timeout;
-
-        public ComponentCounter(BxPage page, Timeout timeout) {
-            this.page = new NumBxPage(page);
-            this.timeout = timeout;
-        }
-       
-        @Override
-        public NumBxPage call() throws AnalysisException {
-            try {
-                TimeoutRegister.set(timeout);
-                TimeoutRegister.get().check();
-                page.components = createComponents(page.page);
-                return page;
-            } finally {
-                TimeoutRegister.remove();
-            }
-        }
+    /**
+     * Creates a segmenter using the given parallelism level.
+     *
+     * @param parallelism the number of threads, or a negative value to use
+     * the extraction configuration
+     */
+    public ParallelDocstrumSegmenter(int parallelism) {
+        this.parallelism = parallelism;
     }
-    
 
     @Override
     public BxDocument segmentDocument(BxDocument document) throws AnalysisException {
-        Map<BxPage, List<Component>> componentMap = new HashMap<BxPage, List<Component>>();
+        int threads = parallelism < 0 ? PageParallelExecutor.getParallelism() : parallelism;
+        List<BxPage> pages = Lists.newArrayList(document);
 
-        ExecutorService exec = Executors.newFixedThreadPool(3);
-        ArrayList<Callable<NumBxPage>> tasks = new ArrayList<Callable<NumBxPage>>();
-        for (BxPage page : document) {
-           tasks.add(new ComponentCounter(page, TimeoutRegister.get()));
-        }
-        
-        List<Future<NumBxPage>> results;
-        try {
-            results = exec.invokeAll(tasks);
-            exec.shutdown();
-            
-            for (Future<NumBxPage> result : results) {
-                NumBxPage p = result.get();
-                componentMap.put(p.page, p.components);
-            }
-            TimeoutRegister.get().check();
-        } catch (ExecutionException ex) {
-            if (ex.getCause() instanceof TimeoutException){
-                throw new TimeoutException((Exception)ex);
-            } else {
-                throw new AnalysisException("Cannot segment pages!", ex);
-            }
-        } catch (InterruptedException ex) {
-            throw new AnalysisException("Cannot segment pages!", ex);
+        List<List<Component>> components = PageParallelExecutor.map(pages,
+                new PageParallelExecutor.PageTask<BxPage, List<Component>>() {
+                    @Override
+                    public List<Component> process(BxPage page) throws AnalysisException {
+                        return createComponents(page);
+                    }
+                }, threads);
+        Map<BxPage, List<Component>> componentMap = new LinkedHashMap<BxPage, List<Component>>();
+        for (int i = 0; i < pages.size(); i++) {
+            componentMap.put(pages.get(i), components.get(i));
         }
-                
         this.computeDocumentOrientation(componentMap);
-    
+
+        List<BxPage> segmentedPages = PageParallelExecutor.map(pages,
+                new PageParallelExecutor.PageTask<BxPage, BxPage>() {
+                    @Override
+                    public BxPage process(BxPage page) throws AnalysisException {
+                        return segmentPage(page);
+                    }
+                }, threads);
         BxDocument output = new BxDocument();
-        BxPage[] pages = new BxPage[document.childrenCount()];
-        
-        exec = Executors.newFixedThreadPool(3);
-        tasks = new ArrayList<Callable<NumBxPage>>();
-        int i = 0;
-        for (BxPage page : document) {
-           tasks.add(new SingleSegmenter(page, i++, TimeoutRegister.get()));
-        }
-        
-        try {
-            results = exec.invokeAll(tasks);
-            exec.shutdown();
-            
-            for (Future<NumBxPage> result : results) {
-                NumBxPage p = result.get();
-                pages[p.index] = p.page;
-            }
-            TimeoutRegister.get().check();
-            for (BxPage p : pages) {
-                if (p.getBounds() != null) {
-                    output.addPage(p);
-                }
-            }
-            return output;
-        } catch (ExecutionException ex) {
-            if (ex.getCause() instanceof TimeoutException){
-                throw new TimeoutException((Exception)ex);
-            } else {
-                throw new AnalysisException("Cannot segment pages!", ex);
+        for (BxPage page : segmentedPages) {
+            if (page.getBounds() != null) {
+                output.addPage(page);
             }
-        } catch (InterruptedException ex) {
-            throw new AnalysisException("Cannot segment pages!", ex);
         }
+        return output;
     }
 
 }
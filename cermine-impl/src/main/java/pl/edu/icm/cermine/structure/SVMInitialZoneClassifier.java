@@ -19,17 +19,17 @@ package pl.edu.icm.cermine.structure;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.zoneclassification.features.*;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
-import pl.edu.icm.cermine.structure.model.BxZoneLabel;
 import pl.edu.icm.cermine.tools.classification.general.FeatureCalculator;
 import pl.edu.icm.cermine.tools.classification.general.FeatureVectorBuilder;
 import pl.edu.icm.cermine.tools.classification.svm.SVMZoneClassifier;
-import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
 
 /**
  * Classifying zones as: METADATA, BODY, REFERENCES, OTHER.
@@ -38,6 +38,14 @@ import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
  */
 public class SVMInitialZoneClassifier extends SVMZoneClassifier {
 
+    /**
+     * Creates a classifier without a model, which has to be set with one of
+     * the <code>loadModel*</code> methods.
+     */
+    public SVMInitialZoneClassifier() {
+        super(getFeatureVectorBuilder());
+    }
+
     public SVMInitialZoneClassifier(BufferedReader modelFile, BufferedReader rangeFile) throws AnalysisException, IOException {
         super(getFeatureVectorBuilder());
         loadModelFromFile(modelFile, rangeFile);
@@ -111,13 +119,13 @@ public class SVMInitialZoneClassifier extends SVMZoneClassifier {
 
     @Override
     public BxDocument classifyZones(BxDocument document) throws AnalysisException {
+        List<BxZone> zones = new ArrayList<BxZone>();
         for (BxZone zone : document.asZones()) {
             if (zone.getLabel() == null) {
-                BxZoneLabel predicted = predictLabel(zone, zone.getParent());
-                zone.setLabel(predicted);
-                TimeoutRegister.get().check();
+                zones.add(zone);
             }
         }
+        labelZones(zones);
         return document;
     }
     
@@ -19,7 +19,9 @@ package pl.edu.icm.cermine.structure;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.zoneclassification.features.*;
 import pl.edu.icm.cermine.structure.model.BxDocument;
@@ -37,6 +39,14 @@ import pl.edu.icm.cermine.tools.classification.svm.SVMZoneClassifier;
  */
 public class SVMMetadataZoneClassifier extends SVMZoneClassifier {
 
+    /**
+     * Creates a classifier without a model, which has to be set with one of
+     * the <code>loadModel*</code> methods.
+     */
+    public SVMMetadataZoneClassifier() {
+        super(getFeatureVectorBuilder());
+    }
+
     public SVMMetadataZoneClassifier(BufferedReader modelFile, BufferedReader rangeFile) throws AnalysisException {
         super(getFeatureVectorBuilder());
         try {
@@ -132,11 +142,13 @@ public class SVMMetadataZoneClassifier extends SVMZoneClassifier {
                 zone.setParent(page);
             }
         }
+        List<BxZone> zones = new ArrayList<BxZone>();
         for (BxZone zone : document.asZones()) {
             if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_METADATA)) {
-                zone.setLabel(predictLabel(zone, zone.getParent()));
+                zones.add(zone);
             }
         }
+        labelZones(zones);
         return document;
     }
 
@@ -19,9 +19,8 @@
 package pl.edu.icm.cermine.structure.model;
 
 import com.google.common.collect.Sets;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -73,11 +72,29 @@ public final class BxChunk extends BxObject<Character, BxChunk, BxWord> {
 
     @Override
     public Iterator<Character> iterator() {
-        List<Character> characters = new ArrayList<Character>();
-        for (char ch: getText().toCharArray()) {
-            characters.add(ch);
-        }
-        return characters.listIterator();
+        final String text = getText();
+        return new Iterator<Character>() {
+
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < text.length();
+            }
+
+            @Override
+            public Character next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return text.charAt(index++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     @Override
@@ -0,0 +1,115 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.structure.readingorder;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Priority queue of distance tuples used for the hierarchical clustering of zones.
+ * <p>
+ * The tuples are polled in the order defined by {@link DistElem#compareTo}, and the tuples
+ * equal according to it are polled in the order in which they were added. This is the same
+ * order in which they would appear in a stably sorted list.
+ * <p>
+ * When an object is removed, the tuples containing it are not searched for. They are
+ * discarded when they reach the head of the queue instead.
+ *
+ * @param <E> element type
+ */
+public class DistElemQueue<E> {
+
+    private static final double PRECISION = 1E-3;
+
+    private static final Comparator<Entry<?>> ORDER = new Comparator<Entry<?>>() {
+
+        @Override
+        public int compare(Entry<?> e1, Entry<?> e2) {
+            if (e1.elem.c != e2.elem.c) {
+                return e1.elem.c ? -1 : 1;
+            }
+            if (e1.nan != e2.nan) {
+                return e1.nan ? 1 : -1;
+            }
+            if (e1.key != e2.key) {
+                return e1.key < e2.key ? -1 : 1;
+            }
+            return e1.seq < e2.seq ? -1 : (e1.seq == e2.seq ? 0 : 1);
+        }
+    };
+
+    private final PriorityQueue<Entry<E>> queue;
+
+    private final Set<E> removed = Collections.newSetFromMap(new IdentityHashMap<E, Boolean>());
+
+    private long seq;
+
+    public DistElemQueue(int initialCapacity) {
+        queue = new PriorityQueue<Entry<E>>(Math.max(1, initialCapacity), ORDER);
+    }
+
+    public void add(DistElem<E> elem) {
+        queue.add(new Entry<E>(elem, seq++));
+    }
+
+    /**
+     * Marks the object as removed, the tuples containing it will no longer be returned.
+     *
+     * @param obj object
+     */
+    public void remove(E obj) {
+        removed.add(obj);
+    }
+
+    /**
+     * Retrieves and removes the first tuple not containing any removed object.
+     *
+     * @return the tuple, or null if there are no such tuples
+     */
+    public DistElem<E> poll() {
+        Entry<E> entry;
+        while ((entry = queue.poll()) != null) {
+            if (!removed.contains(entry.elem.obj1) && !removed.contains(entry.elem.obj2)) {
+                return entry.elem;
+            }
+        }
+        return null;
+    }
+
+    private static class Entry<E> {
+
+        private final DistElem<E> elem;
+        /**
+         * The distance rounded the same way as in {@link DistElem#compareTo}
+         */
+        private final long key;
+        private final boolean nan;
+        private final long seq;
+
+        Entry(DistElem<E> elem, long seq) {
+            this.elem = elem;
+            this.nan = Double.isNaN(elem.dist);
+            this.key = nan ? 0 : Math.round(elem.dist / PRECISION);
+            this.seq = seq;
+        }
+    }
+
+}
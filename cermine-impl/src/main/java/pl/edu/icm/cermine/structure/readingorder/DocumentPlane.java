@@ -19,16 +19,16 @@
 package pl.edu.icm.cermine.structure.readingorder;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import pl.edu.icm.cermine.structure.model.BxBounds;
 import pl.edu.icm.cermine.structure.model.BxObject;
 import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.structure.tools.SpatialGrid;
 
 /**
  * A set-like data structure for objects placed on a plane. Can efficiently find objects in a certain rectangular area.
- * It maintains two parallel lists of objects, each of which is sorted by its x or y coordinate.
+ * The objects are indexed in a uniform grid of squares.
  *
  * @author Pawel Szostek
  */
@@ -38,58 +38,45 @@ public class DocumentPlane {
      * List of objects on the plane. Stored in a random order
      */
     private final List<BxObject> objs;
+    /**
+     * Slots of the objects in the grid, in the order of the object list
+     */
+    private int[] objSlots;
     /**
      * Size of a grid square. If gridSize=50, then the plane is divided into squares of size 50. Each square contains
      * objects placed in a 50x50 area
      */
     private final int gridSize;
     /**
-     * Redundant dictionary of objects on the plane. Allows efficient 2D space search. Keys are X-Y coordinates of a
-     * grid square. Single object can be stored under several keys (depending on its physical size). Grid squares are
-     * lazy-initialized.
+     * Redundant index of objects on the plane. Allows efficient 2D space search. Keys are X-Y coordinates of a grid
+     * square, the items are the objects' slots. Single object can be stored in several squares (depending on its
+     * physical size).
      */
-    private final Map<GridXY, List<BxObject>> grid;
-
+    private final SpatialGrid grid;
     /**
-     * Representation of XY coordinates
+     * Objects on the plane by their slots in the grid; removed objects' slots are null and are reused
      */
-    private static class GridXY {
-
-        public int x;
-        public int y;
-
-        public GridXY(int x, int y) {
-            this.x = x;
-            this.y = y;
-        }
-
-        @Override
-        public int hashCode() {
-            return x * y;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null || getClass() != obj.getClass()) {
-                return false;
-            }
-            GridXY comparedObj = (GridXY) obj;
-            return x == comparedObj.x && y == comparedObj.y;
-        }
+    private BxObject[] slots;
+    private int slotCount;
+    /**
+     * Stack of the free slots
+     */
+    private int[] freeSlots;
+    private int freeSlotCount;
 
-        @Override
-        public String toString() {
-            return "(" + x + "," + y + ")";
-        }
-    }
+    private final FindVisitor findVisitor = new FindVisitor();
+    private final AnyBetweenVisitor anyBetweenVisitor = new AnyBetweenVisitor();
 
     public List<BxObject> getObjects() {
         return objs;
     }
 
     public DocumentPlane(List<BxZone> objectList, int gridSize) {
-        this.grid = new HashMap<GridXY, List<BxObject>>();
-        this.objs = new ArrayList<BxObject>();
+        this.grid = new SpatialGrid(objectList.size() * 4);
+        this.objs = new ArrayList<BxObject>(objectList.size());
+        this.objSlots = new int[Math.max(1, objectList.size())];
+        this.slots = new BxObject[objSlots.length];
+        this.freeSlots = new int[objSlots.length];
         this.gridSize = gridSize;
         for (BxZone obj : objectList) {
             add(obj);
@@ -125,8 +112,18 @@ public class DocumentPlane {
      * @return true if anything is placed between, false otherwise
      */
     public boolean anyObjectsBetween(BxObject obj1, BxObject obj2) {
-        List<BxObject> lObjs = findObjectsBetween(obj1, obj2);
-        return !(lObjs.isEmpty());
+        AnyBetweenVisitor visitor = anyBetweenVisitor;
+        visitor.obj1 = obj1;
+        visitor.obj2 = obj2;
+        visitor.x0 = Math.min(obj1.getX(), obj2.getX());
+        visitor.y0 = Math.min(obj1.getY(), obj2.getY());
+        visitor.x1 = Math.max(obj1.getX() + obj1.getWidth(), obj2.getX() + obj2.getWidth());
+        visitor.y1 = Math.max(obj1.getY() + obj1.getHeight(), obj2.getY() + obj2.getHeight());
+        assert visitor.x1 >= visitor.x0 && visitor.y1 >= visitor.y0;
+        boolean found = visitSearchSquares(visitor.x0, visitor.y0, visitor.x1, visitor.y1, visitor);
+        visitor.obj1 = null;
+        visitor.obj2 = null;
+        return found;
     }
 
     /**
@@ -136,50 +133,50 @@ public class DocumentPlane {
      */
     public DocumentPlane add(BxObject obj) {
         int objsBefore = this.objs.size();
-        /*
-         * iterate over grid squares
-         */
-       for (int y = ((int) obj.getY()) / gridSize; y <= ((int) (obj.getY() + obj.getHeight() + gridSize - 1)) / gridSize; ++y) {
-            for (int x = ((int) obj.getX()) / gridSize; x <= ((int) (obj.getX() + obj.getWidth() + gridSize - 1)) / gridSize; ++x) {
-                GridXY xy = new GridXY(x, y);
-                if (!grid.keySet().contains(xy)) {
-                    /*
-                     * add the non-existing key
-                     */
-                    grid.put(xy, new ArrayList<BxObject>());
-                    grid.get(xy).add(obj);
-                    assert grid.get(xy).size() == 1;
-                } else {
-                    grid.get(xy).add(obj);
-                }
+        int slot;
+        if (freeSlotCount > 0) {
+            slot = freeSlots[--freeSlotCount];
+        } else {
+            if (slotCount == slots.length) {
+                slots = Arrays.copyOf(slots, slotCount * 2);
+                freeSlots = Arrays.copyOf(freeSlots, slotCount * 2);
             }
+            slot = slotCount++;
+        }
+        slots[slot] = obj;
+        if (objsBefore == objSlots.length) {
+            objSlots = Arrays.copyOf(objSlots, objsBefore * 2);
         }
+        objSlots[objsBefore] = slot;
+        grid.add(slot, minSquare(obj.getX()), minSquare(obj.getY()),
+                maxSquare(obj.getX() + obj.getWidth()), maxSquare(obj.getY() + obj.getHeight()));
         objs.add(obj);
         /*
          * size of the object list should be incremented
          */
         assert objsBefore + 1 == objs.size();
-        /*
-         * object list must contain the same number of objects as object dictionary
-         */
-        assert objs.size() == elementsInGrid();
         return this;
     }
 
     public DocumentPlane remove(BxObject obj) {
-        /*
-         * iterate over grid squares
-         */
-        for (int y = ((int) obj.getY()) / gridSize; y <= ((int) (obj.getY() + obj.getHeight() + gridSize - 1)) / gridSize; ++y) {
-            for (int x = ((int) obj.getX()) / gridSize; x <= ((int) (obj.getX() + obj.getWidth() + gridSize - 1)) / gridSize; ++x) {
-                GridXY xy = new GridXY(x, y);
-                if (grid.get(xy).contains(obj)) {
-                    grid.get(xy).remove(obj);
-                }
+        int index = -1;
+        for (int i = 0; i < objs.size(); i++) {
+            if (objs.get(i) == obj) {
+                index = i;
+                break;
             }
         }
-        objs.remove(obj);
-        assert objs.size() == elementsInGrid();
+        if (index < 0) {
+            return this;
+        }
+        int slot = objSlots[index];
+        grid.remove(slot, minSquare(obj.getX()), minSquare(obj.getY()),
+                maxSquare(obj.getX() + obj.getWidth()), maxSquare(obj.getY() + obj.getHeight()));
+        slots[slot] = null;
+        freeSlots[freeSlotCount++] = slot;
+        objs.remove(index);
+        System.arraycopy(objSlots, index + 1, objSlots, index, objs.size() - index);
+        assert objs.size() == slotCount - freeSlotCount;
         return this;
     }
 
@@ -187,81 +184,97 @@ public class DocumentPlane {
      * Find objects within search bounds
      *
      * @param searchBounds is a search rectangle
-     * @return list of objects in!side search rectangle
+     * @return list of objects inside search rectangle
      */
     public List<BxObject> find(BxBounds searchBounds) {
-        List<BxObject> done = new ArrayList<BxObject>(); //contains already considered objects (wrt. optimization)
-        List<BxObject> ret = new ArrayList<BxObject>();
-        double x0 = searchBounds.getX();
-        double y0 = searchBounds.getY();
-        double y1 = searchBounds.getY() + searchBounds.getHeight();
-        double x1 = searchBounds.getX() + searchBounds.getWidth();
-        /*
-         * iterate over grid squares
-         */
-        for (int y = (int)y0 / gridSize; y < ((int) (y1 + gridSize - 1)) / gridSize; ++y) {
-            for (int x = (int)x0 / gridSize; x < ((int) (x1 + gridSize - 1)) / gridSize; ++x) {
-                GridXY xy = new GridXY(x, y);
-                if (!grid.containsKey(xy)) {
-                    continue;
-                }
-                for (BxObject obj : grid.get(xy)) {
-                    if (done.contains(obj)) /*
-                     * omit if already checked
-                     */ {
-                        continue;
-                    }
-                    /*
-                     * add to the checked objects
-                     */
-                    done.add(obj);
-                    /*
-                     * check if two objects overlap
-                     */
-                    if (obj.getX() + obj.getWidth() <= x0 || x1 <= obj.getX()
-                            || obj.getY() + obj.getHeight() <= y0 || y1 <= obj.getY()) {
-                        continue;
-                    }
-                    ret.add(obj);
-                }
+        FindVisitor visitor = findVisitor;
+        visitor.found = new ArrayList<BxObject>();
+        visitor.x0 = searchBounds.getX();
+        visitor.y0 = searchBounds.getY();
+        visitor.x1 = searchBounds.getX() + searchBounds.getWidth();
+        visitor.y1 = searchBounds.getY() + searchBounds.getHeight();
+        visitSearchSquares(visitor.x0, visitor.y0, visitor.x1, visitor.y1, visitor);
+        List<BxObject> ret = visitor.found;
+        visitor.found = null;
+        return ret;
+    }
+
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (BxObject obj : objs) {
+            sb.append("(").append(minSquare(obj.getX())).append(",").append(minSquare(obj.getY())).append(")-(")
+                    .append(maxSquare(obj.getX() + obj.getWidth())).append(",")
+                    .append(maxSquare(obj.getY() + obj.getHeight())).append(") [");
+            if (obj instanceof BxZoneGroup) {
+                BxZoneGroup group = (BxZoneGroup) obj;
+                sb.append(group.getLeftChild());
+                sb.append(group.getRightChild());
+            } else if (obj instanceof BxZone) {
+                BxZone zone = (BxZone) obj;
+                sb.append(zone);
             }
+            sb.append("\n]\n");
         }
-        return ret;
+        return sb.toString();
+    }
+
+    /**
+     * Visits the objects stored in the grid squares covering the search rectangle. The range of the squares is the
+     * one searched so far, which is narrower by one square than the range the objects are stored in.
+     */
+    private boolean visitSearchSquares(double x0, double y0, double x1, double y1, SpatialGrid.ItemVisitor visitor) {
+        return grid.visit((int) x0 / gridSize, (int) y0 / gridSize,
+                ((int) (x1 + gridSize - 1)) / gridSize - 1, ((int) (y1 + gridSize - 1)) / gridSize - 1, visitor);
+    }
+
+    private int minSquare(double coord) {
+        return ((int) coord) / gridSize;
+    }
+
+    private int maxSquare(double coord) {
+        return ((int) (coord + gridSize - 1)) / gridSize;
     }
 
     /**
-     * Count objects stored in objects dictionary
-     * @return number of elements
+     * Checks if the object overlaps the rectangle
      */
-    protected int elementsInGrid() {
-        List<BxObject> objs_ = new ArrayList<BxObject>();
-        for (GridXY coord : grid.keySet()) {
-            for (BxObject obj : grid.get(coord)) {
-                if (!objs_.contains(obj)) {
-                    objs_.add(obj);
-                }
+    private static boolean overlaps(BxObject obj, double x0, double y0, double x1, double y1) {
+        return !(obj.getX() + obj.getWidth() <= x0 || x1 <= obj.getX()
+                || obj.getY() + obj.getHeight() <= y0 || y1 <= obj.getY());
+    }
+
+    private class FindVisitor implements SpatialGrid.ItemVisitor {
+
+        private List<BxObject> found;
+        private double x0;
+        private double y0;
+        private double x1;
+        private double y1;
+
+        @Override
+        public boolean visit(int slot) {
+            BxObject obj = slots[slot];
+            if (overlaps(obj, x0, y0, x1, y1)) {
+                found.add(obj);
             }
+            return false;
         }
-        return objs_.size();
     }
 
-    public String dump() {
-        StringBuilder sb = new StringBuilder();
-        for (GridXY iter : grid.keySet()) {
-            sb.append(iter.toString()).append(" [");
-            for (BxObject obj : grid.get(iter)) {
-                if (obj instanceof BxZoneGroup) {
-                    BxZoneGroup group = (BxZoneGroup) obj;
-                    sb.append(group.getLeftChild());
-                    sb.append(group.getRightChild());
-                } else if (obj instanceof BxZone) {
-                    BxZone zone = (BxZone) obj;
-                    sb.append(zone);
-                }
-                sb.append("\n");
-            }
-            sb.append("]\n");
+    private class AnyBetweenVisitor implements SpatialGrid.ItemVisitor {
+
+        private BxObject obj1;
+        private BxObject obj2;
+        private double x0;
+        private double y0;
+        private double x1;
+        private double y1;
+
+        @Override
+        public boolean visit(int slot) {
+            BxObject obj = slots[slot];
+            return obj != obj1 && obj != obj2 && overlaps(obj, x0, y0, x1, y1);
         }
-        return sb.toString();
     }
+
 }
@@ -98,6 +98,22 @@ public class BxBoundsBuilder {
         maxY = Math.max(maxY, y);
     }
 
+    /**
+     * Expands current bounding box so that it contains the box of the given
+     * position and dimensions.
+     *
+     * @param x x coordinate of the box
+     * @param y y coordinate of the box
+     * @param width width of the box
+     * @param height height of the box
+     */
+    public void expand(double x, double y, double width, double height) {
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x + width);
+        maxY = Math.max(maxY, y + height);
+    }
+
     /**
      * Expands current bounding box so that it contains given bounding box.
      * If given bounding box is null, this method has no effect.
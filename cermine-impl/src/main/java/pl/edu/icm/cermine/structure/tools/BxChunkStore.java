@@ -0,0 +1,200 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import pl.edu.icm.cermine.structure.model.BxBounds;
+import pl.edu.icm.cermine.structure.model.BxChunk;
+
+/**
+ * Compact storage of the single-character chunks of a page.
+ * <p>
+ * The chunks are kept in parallel primitive arrays: bounds as doubles,
+ * characters in a char buffer and fonts as indices into a table of distinct
+ * font names. The store is used during character extraction, so that the
+ * chunks can be filtered without creating objects for every glyph;
+ * {@link BxChunk} objects are created only for the chunks that remain.
+ */
+public final class BxChunkStore {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** shared texts of the most common single-character chunks */
+    private static final String[] CHAR_TEXTS = new String[0x250];
+
+    static {
+        for (char ch = 0; ch < CHAR_TEXTS.length; ch++) {
+            CHAR_TEXTS[ch] = String.valueOf(ch).intern();
+        }
+    }
+
+    private double[] xs = new double[INITIAL_CAPACITY];
+    private double[] ys = new double[INITIAL_CAPACITY];
+    private double[] widths = new double[INITIAL_CAPACITY];
+    private double[] heights = new double[INITIAL_CAPACITY];
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private int[] fontIds = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private final List<String> fonts = new ArrayList<String>();
+    private final Map<String, Integer> fontIndex = new HashMap<String, Integer>();
+
+    /**
+     * Adds a chunk.
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param width width
+     * @param height height
+     * @param ch the character of the chunk
+     * @param fontName font name
+     * @return the index of the added chunk
+     */
+    public int add(double x, double y, double width, double height, char ch, String fontName) {
+        if (size == xs.length) {
+            int capacity = size * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            chars = Arrays.copyOf(chars, capacity);
+            fontIds = Arrays.copyOf(fontIds, capacity);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        widths[size] = width;
+        heights[size] = height;
+        chars[size] = ch;
+        fontIds[size] = getFontId(fontName);
+        return size++;
+    }
+
+    /**
+     * Returns the identifier of the font name, adding it to the font table
+     * if needed.
+     *
+     * @param fontName font name
+     * @return font identifier
+     */
+    public int getFontId(String fontName) {
+        Integer id = fontIndex.get(fontName);
+        if (id == null) {
+            id = fonts.size();
+            fonts.add(fontName);
+            fontIndex.put(fontName, id);
+        }
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int index) {
+        return xs[index];
+    }
+
+    public double getY(int index) {
+        return ys[index];
+    }
+
+    public double getWidth(int index) {
+        return widths[index];
+    }
+
+    public double getHeight(int index) {
+        return heights[index];
+    }
+
+    public char getChar(int index) {
+        return chars[index];
+    }
+
+    public int getFontId(int index) {
+        return fontIds[index];
+    }
+
+    public String getFontName(int index) {
+        return fonts.get(fontIds[index]);
+    }
+
+    /**
+     * Checks whether the bounds of two chunks are similar, see
+     * {@link BxBounds#isSimilarTo(BxBounds, double)}.
+     *
+     * @param first the index of the first chunk
+     * @param second the index of the second chunk
+     * @param tolerance tolerance
+     * @return true if the bounds are similar
+     */
+    public boolean isSimilar(int first, int second, double tolerance) {
+        double diffX1 = Math.abs(xs[first] - xs[second]);
+        double diffX2 = Math.abs(xs[first] + widths[first] - xs[second] - widths[second]);
+        double diffY1 = Math.abs(ys[first] - ys[second]);
+        double diffY2 = Math.abs(ys[first] + heights[first] - ys[second] - heights[second]);
+        return diffX1 <= tolerance && diffX2 <= tolerance && diffY1 <= tolerance && diffY2 <= tolerance;
+    }
+
+    /**
+     * Removes the chunks not marked to be kept, preserving the order
+     * of the remaining ones.
+     *
+     * @param keep flags of the chunks to keep
+     */
+    public void retain(boolean[] keep) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                xs[count] = xs[i];
+                ys[count] = ys[i];
+                widths[count] = widths[i];
+                heights[count] = heights[i];
+                chars[count] = chars[i];
+                fontIds[count] = fontIds[i];
+                count++;
+            }
+        }
+        size = count;
+    }
+
+    /**
+     * Creates the chunk objects. Chunks with equal characters share their
+     * text, and chunks with equal fonts share the font name.
+     *
+     * @return the list of chunks
+     */
+    public List<BxChunk> toChunks() {
+        List<BxChunk> chunks = new ArrayList<BxChunk>(size);
+        for (int i = 0; i < size; i++) {
+            BxChunk chunk = new BxChunk(new BxBounds(xs[i], ys[i], widths[i], heights[i]), getText(chars[i]));
+            chunk.setFontName(fonts.get(fontIds[i]));
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static String getText(char ch) {
+        return ch < CHAR_TEXTS.length ? CHAR_TEXTS[ch] : String.valueOf(ch);
+    }
+
+}
@@ -0,0 +1,232 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import pl.edu.icm.cermine.configuration.ExtractionConfigProperty;
+import pl.edu.icm.cermine.configuration.ExtractionConfigRegister;
+import pl.edu.icm.cermine.configuration.ExtractionContext;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.tools.metrics.ExtractionMetrics;
+import pl.edu.icm.cermine.tools.metrics.StepMeter;
+import pl.edu.icm.cermine.tools.metrics.ThreadUsage;
+import pl.edu.icm.cermine.tools.timeout.Timeout;
+import pl.edu.icm.cermine.tools.timeout.TimeoutException;
+import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
+import pl.edu.icm.cermine.tools.timeout.TimeoutWatchdog;
+
+/**
+ * Executes page-level work of a single document in parallel.
+ * <p>
+ * All the callers share one fork-join pool per parallelism level, so that
+ * the stages of the structure pipeline (character extraction, segmentation,
+ * reading order resolving, zone classification) do not create their own
+ * threads for every document. The parallelism level is taken from
+ * {@link ExtractionConfigProperty#PAGE_PARALLELISM}; the value of 1 means
+ * that the pages are processed sequentially in the calling thread, and the
+ * value of 0 or less means the number of available processors.
+ * <p>
+ * The results are always returned in the order of the input pages. The
+ * {@link ExtractionContext} of the calling thread is attached to the worker
+ * threads for the time of processing, and the CPU time and allocations of the
+ * workers are reported to its metrics. The workers are registered in
+ * {@link TimeoutWatchdog} with the timeout of the context, so their CPU time
+ * counts towards its budget and they are interrupted when it is exceeded.
+ */
+public final class PageParallelExecutor {
+
+    private static final ConcurrentMap<Integer, ForkJoinPool> POOLS =
+            new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+    /**
+     * A unit of work performed on a single page.
+     *
+     * @param <P> page type
+     * @param <R> result type
+     */
+    public interface PageTask<P, R> {
+
+        R process(P page) throws AnalysisException;
+    }
+
+    private PageParallelExecutor() {
+    }
+
+    /**
+     * Returns the page parallelism level configured for the current thread.
+     *
+     * @return the number of threads used to process the pages of a document
+     */
+    public static int getParallelism() {
+        int parallelism = ExtractionConfigRegister.get().getIntProperty(ExtractionConfigProperty.PAGE_PARALLELISM);
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        return parallelism;
+    }
+
+    /**
+     * Returns the pool shared by all the documents processed with the given
+     * parallelism level.
+     *
+     * @param parallelism parallelism level
+     * @return fork-join pool
+     */
+    public static ForkJoinPool getPool(int parallelism) {
+        ForkJoinPool pool = POOLS.get(parallelism);
+        if (pool == null) {
+            ForkJoinPool created = new ForkJoinPool(parallelism, new DaemonThreadFactory(), null, false);
+            pool = POOLS.putIfAbsent(parallelism, created);
+            if (pool == null) {
+                pool = created;
+            } else {
+                created.shutdown();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Processes the pages using the configured parallelism level.
+     *
+     * @param <P> page type
+     * @param <R> result type
+     * @param pages pages
+     * @param task the work to be done on every page
+     * @return the results, in the order of the pages
+     * @throws AnalysisException if processing of any of the pages failed
+     */
+    public static <P, R> List<R> map(List<P> pages, PageTask<P, R> task) throws AnalysisException {
+        return map(pages, task, getParallelism());
+    }
+
+    /**
+     * Processes the pages using the given parallelism level.
+     *
+     * @param <P> page type
+     * @param <R> result type
+     * @param pages pages
+     * @param task the work to be done on every page
+     * @param parallelism parallelism level
+     * @return the results, in the order of the pages
+     * @throws AnalysisException if processing of any of the pages failed
+     */
+    public static <P, R> List<R> map(List<P> pages, final PageTask<P, R> task, int parallelism)
+            throws AnalysisException {
+        List<R> results = new ArrayList<R>(pages.size());
+        if (parallelism <= 1 || pages.size() <= 1) {
+            for (P page : pages) {
+                results.add(task.process(page));
+                TimeoutRegister.get().check();
+            }
+            return results;
+        }
+
+        ExtractionContext context = ExtractionContext.current();
+        final Thread caller = Thread.currentThread();
+        ForkJoinPool pool = getPool(parallelism);
+        List<ForkJoinTask<R>> futures = new ArrayList<ForkJoinTask<R>>(pages.size());
+        for (final P page : pages) {
+            futures.add(pool.submit(context.wrap(new Callable<R>() {
+                @Override
+                public R call() throws AnalysisException {
+                    TimeoutRegister.get().check();
+                    if (Thread.currentThread() == caller) {
+                        return task.process(page);
+                    }
+                    Timeout timeout = TimeoutRegister.get();
+                    TimeoutWatchdog.Watch watch = timeout.isUnlimited() ? null : TimeoutWatchdog.getInstance().watch(timeout);
+                    long cpu = ThreadUsage.getCpuTime();
+                    long allocated = ThreadUsage.getAllocatedBytes();
+                    try {
+                        return task.process(page);
+                    } finally {
+                        reportUsage(cpu, allocated);
+                        if (watch != null) {
+                            watch.close();
+                        }
+                    }
+                }
+            })));
+        }
+
+        try {
+            for (ForkJoinTask<R> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException ex) {
+            cancelAll(futures);
+            Throwable cause = ex.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new TimeoutException((Exception) cause);
+            } else if (cause instanceof AnalysisException) {
+                throw (AnalysisException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AnalysisException("Cannot process pages!", cause);
+        } catch (InterruptedException ex) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            TimeoutRegister.get().check();
+            throw new AnalysisException("Cannot process pages!", ex);
+        }
+        TimeoutRegister.get().check();
+        return results;
+    }
+
+    /**
+     * Reports the resources used by a worker thread to the metrics of the
+     * attached context, so that they are included in the measurements of
+     * the current extraction step.
+     */
+    private static void reportUsage(long startCpu, long startAllocated) {
+        ExtractionMetrics metrics = ExtractionContext.current().getMetrics();
+        long cpu = ThreadUsage.getCpuTime();
+        if (cpu >= 0 && startCpu >= 0) {
+            metrics.record(StepMeter.WORKER_CPU_NANOS, cpu - startCpu);
+        }
+        long allocated = ThreadUsage.getAllocatedBytes();
+        if (allocated >= 0 && startAllocated >= 0) {
+            metrics.record(StepMeter.WORKER_ALLOCATED_BYTES, allocated - startAllocated);
+        }
+    }
+
+    private static <R> void cancelAll(List<ForkJoinTask<R>> futures) {
+        for (ForkJoinTask<R> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    private static class DaemonThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("cermine-pages-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
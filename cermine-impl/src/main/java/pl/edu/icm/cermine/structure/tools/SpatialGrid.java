@@ -0,0 +1,358 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.tools;
+
+import java.util.Arrays;
+
+/**
+ * Sparse uniform grid of integer items, such as chunk indices in
+ * a {@link BxChunkStore}.
+ * <p>
+ * The cells are addressed by integer coordinates, computed by the caller
+ * from the page coordinates. They are kept in an open addressing hash table
+ * with the coordinates packed into <code>long</code> keys, and the items of
+ * every cell form a linked list stored in flat arrays. An item can be added
+ * to many cells. Adding, removing and querying do not create any objects,
+ * apart from growing the arrays.
+ * <p>
+ * The items of a cell can be iterated with {@link #first(int, int)},
+ * {@link #next(int)} and {@link #item(int)}, in the order in which they were
+ * added. Cell ranges can be queried with
+ * {@link #visit(int, int, int, int, ItemVisitor)}.
+ * <p>
+ * The grid is not thread-safe.
+ */
+public final class SpatialGrid {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /** cell table: packed coordinates, whether the slot is used, first and last entry */
+    private long[] cellKeys;
+    private boolean[] cellUsed;
+    private int[] cellHeads;
+    private int[] cellTails;
+    private int cellCount;
+
+    /** entries: the item and the next entry of the same cell, or of the free list */
+    private int[] entryItems;
+    private int[] entryNexts;
+    private int entryCount;
+    private int freeEntry = -1;
+    private int size;
+
+    /** the number of the last query and the number of the query, in which an item was visited */
+    private int query;
+    private int[] visited = new int[MIN_CAPACITY];
+
+    public SpatialGrid() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedEntries the expected number of (item, cell) pairs
+     */
+    public SpatialGrid(int expectedEntries) {
+        int capacity = Math.max(MIN_CAPACITY, expectedEntries);
+        entryItems = new int[capacity];
+        entryNexts = new int[capacity];
+        initCells(Integer.highestOneBit(capacity - 1) << 2);
+    }
+
+    /**
+     * Packs the cell coordinates into a single key.
+     *
+     * @param x cell x coordinate
+     * @param y cell y coordinate
+     * @return the key
+     */
+    public static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * Spreads the packed coordinates of neighboring cells over the bits
+     * of the hash, so that the lowest bits can be used as a table index.
+     *
+     * @param key packed cell coordinates
+     * @return the hash
+     */
+    public static int hash(long key) {
+        long hash = key * HASH_MULTIPLIER;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Adds the item to the cell.
+     *
+     * @param item item, non-negative
+     * @param x cell x coordinate
+     * @param y cell y coordinate
+     */
+    public void add(int item, int x, int y) {
+        if (item < 0) {
+            throw new IllegalArgumentException("Negative item: " + item);
+        }
+        int cell = findCell(cellKey(x, y), true);
+        int entry = newEntry(item);
+        if (cellHeads[cell] < 0) {
+            cellHeads[cell] = entry;
+        } else {
+            entryNexts[cellTails[cell]] = entry;
+        }
+        cellTails[cell] = entry;
+        size++;
+    }
+
+    /**
+     * Adds the item to all the cells in the range.
+     *
+     * @param item item, non-negative
+     * @param minX minimum cell x coordinate
+     * @param minY minimum cell y coordinate
+     * @param maxX maximum cell x coordinate, inclusive
+     * @param maxY maximum cell y coordinate, inclusive
+     */
+    public void add(int item, int minX, int minY, int maxX, int maxY) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                add(item, x, y);
+            }
+        }
+    }
+
+    /**
+     * Removes the item from the cell.
+     *
+     * @param item item
+     * @param x cell x coordinate
+     * @param y cell y coordinate
+     * @return whether the cell contained the item
+     */
+    public boolean remove(int item, int x, int y) {
+        int cell = findCell(cellKey(x, y), false);
+        if (cell < 0) {
+            return false;
+        }
+        int prev = -1;
+        for (int entry = cellHeads[cell]; entry >= 0; prev = entry, entry = entryNexts[entry]) {
+            if (entryItems[entry] != item) {
+                continue;
+            }
+            int next = entryNexts[entry];
+            if (prev < 0) {
+                cellHeads[cell] = next;
+            } else {
+                entryNexts[prev] = next;
+            }
+            if (next < 0) {
+                cellTails[cell] = prev;
+            }
+            entryNexts[entry] = freeEntry;
+            freeEntry = entry;
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the item from all the cells in the range.
+     *
+     * @param item item
+     * @param minX minimum cell x coordinate
+     * @param minY minimum cell y coordinate
+     * @param maxX maximum cell x coordinate, inclusive
+     * @param maxY maximum cell y coordinate, inclusive
+     */
+    public void remove(int item, int minX, int minY, int maxX, int maxY) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                remove(item, x, y);
+            }
+        }
+    }
+
+    /**
+     * Returns the first entry of the cell.
+     *
+     * @param x cell x coordinate
+     * @param y cell y coordinate
+     * @return the entry, or -1 if the cell is empty
+     */
+    public int first(int x, int y) {
+        int cell = findCell(cellKey(x, y), false);
+        return cell < 0 ? -1 : cellHeads[cell];
+    }
+
+    /**
+     * Returns the next entry of the same cell.
+     *
+     * @param entry entry
+     * @return the entry, or -1 if there are no more entries
+     */
+    public int next(int entry) {
+        return entryNexts[entry];
+    }
+
+    /**
+     * @param entry entry
+     * @return the item of the entry
+     */
+    public int item(int entry) {
+        return entryItems[entry];
+    }
+
+    /**
+     * Visits the items of all the cells in the range. Every item is visited
+     * once, even if it was added to many of the cells.
+     *
+     * @param minX minimum cell x coordinate
+     * @param minY minimum cell y coordinate
+     * @param maxX maximum cell x coordinate, inclusive
+     * @param maxY maximum cell y coordinate, inclusive
+     * @param visitor visitor
+     * @return true if the visitor stopped the query, false otherwise
+     */
+    public boolean visit(int minX, int minY, int maxX, int maxY, ItemVisitor visitor) {
+        if (++query == 0) {
+            Arrays.fill(visited, 0);
+            query = 1;
+        }
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                for (int entry = first(x, y); entry >= 0; entry = entryNexts[entry]) {
+                    int item = entryItems[entry];
+                    if (visited[item] == query) {
+                        continue;
+                    }
+                    visited[item] = query;
+                    if (visitor.visit(item)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of (item, cell) pairs
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(cellUsed, false);
+        cellCount = 0;
+        entryCount = 0;
+        freeEntry = -1;
+        size = 0;
+    }
+
+    /**
+     * Receives the items found by a range query.
+     */
+    public interface ItemVisitor {
+
+        /**
+         * @param item item
+         * @return true to stop the query, false to continue
+         */
+        boolean visit(int item);
+
+    }
+
+    private int newEntry(int item) {
+        int entry;
+        if (freeEntry >= 0) {
+            entry = freeEntry;
+            freeEntry = entryNexts[entry];
+        } else {
+            if (entryCount == entryItems.length) {
+                entryItems = Arrays.copyOf(entryItems, entryCount * 2);
+                entryNexts = Arrays.copyOf(entryNexts, entryCount * 2);
+            }
+            entry = entryCount++;
+        }
+        entryItems[entry] = item;
+        entryNexts[entry] = -1;
+        if (item >= visited.length) {
+            visited = Arrays.copyOf(visited, Math.max(item + 1, visited.length * 2));
+        }
+        return entry;
+    }
+
+    /**
+     * Finds the slot of the cell in the table.
+     *
+     * @param key packed cell coordinates
+     * @param create whether to add a missing cell
+     * @return the slot, or -1 if the cell is missing and was not added
+     */
+    private int findCell(long key, boolean create) {
+        int mask = cellKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (cellUsed[slot]) {
+            if (cellKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return -1;
+        }
+        if (2 * (cellCount + 1) > cellKeys.length) {
+            rehash();
+            return findCell(key, true);
+        }
+        cellUsed[slot] = true;
+        cellKeys[slot] = key;
+        cellHeads[slot] = -1;
+        cellTails[slot] = -1;
+        cellCount++;
+        return slot;
+    }
+
+    private void initCells(int capacity) {
+        cellKeys = new long[capacity];
+        cellUsed = new boolean[capacity];
+        cellHeads = new int[capacity];
+        cellTails = new int[capacity];
+        cellCount = 0;
+    }
+
+    private void rehash() {
+        long[] oldKeys = cellKeys;
+        boolean[] oldUsed = cellUsed;
+        int[] oldHeads = cellHeads;
+        int[] oldTails = cellTails;
+        initCells(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = findCell(oldKeys[i], true);
+                cellHeads[slot] = oldHeads[i];
+                cellTails[slot] = oldTails[i];
+            }
+        }
+    }
+
+}
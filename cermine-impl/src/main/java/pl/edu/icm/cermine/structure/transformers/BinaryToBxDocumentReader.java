@@ -0,0 +1,226 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.transformers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.IOUtils;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.*;
+
+/**
+ * Reads BxDocument model pages from the {@link BxDocumentBinaryFormat binary format}.
+ * <p>
+ * Files are memory-mapped and the model is built directly from the mapped
+ * buffer, without copying the file into the heap. Every distinct string is
+ * decoded once and shared by all the elements using it. The elements are
+ * linked and ordered in the same way as by {@link TrueVizToBxDocumentReader},
+ * so that a document converted from TrueViz is read as the same model.
+ */
+public class BinaryToBxDocumentReader {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** links and orders the elements */
+    private final TrueVizToBxDocumentReader linker = new TrueVizToBxDocumentReader();
+
+    /**
+     * Reads the pages from a memory-mapped file. Files larger than 2 GB
+     * cannot be mapped and are rejected.
+     *
+     * @param file file
+     * @return pages
+     * @throws TransformationException TransformationException
+     */
+    public List<BxPage> read(File file) throws TransformationException {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new TransformationException("File " + file + " is too large to be mapped: " + size + " bytes");
+                }
+                return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            } finally {
+                raf.close();
+            }
+        } catch (IOException ex) {
+            throw new TransformationException("Cannot read file " + file, ex);
+        }
+    }
+
+    /**
+     * Reads the pages from a stream. The stream is read until its end, but
+     * not closed.
+     *
+     * @param stream input stream
+     * @return pages
+     * @throws TransformationException TransformationException
+     */
+    public List<BxPage> read(InputStream stream) throws TransformationException {
+        try {
+            return read(ByteBuffer.wrap(IOUtils.toByteArray(stream)));
+        } catch (IOException ex) {
+            throw new TransformationException("Cannot read document", ex);
+        }
+    }
+
+    /**
+     * Reads the pages from the buffer, starting at its current position.
+     *
+     * @param buffer buffer
+     * @return pages
+     * @throws TransformationException TransformationException
+     */
+    public List<BxPage> read(ByteBuffer buffer) throws TransformationException {
+        try {
+            if (buffer.getInt() != BxDocumentBinaryFormat.MAGIC) {
+                throw new TransformationException("Not a binary BxDocument");
+            }
+            int version = buffer.getInt();
+            if (version != BxDocumentBinaryFormat.VERSION) {
+                throw new TransformationException("Unsupported binary BxDocument version: " + version);
+            }
+            String[] strings = readStrings(buffer);
+            boolean idsSet = true;
+
+            int pageCount = readCount(buffer, 1);
+            List<BxPage> pages = new ArrayList<BxPage>(pageCount);
+            for (int p = 0; p < pageCount; p++) {
+                BxPage page = new BxPage();
+                idsSet &= readIds(buffer, strings, page);
+                page.setBounds(readBounds(buffer));
+                int zoneCount = buffer.getInt();
+                for (int z = 0; z < zoneCount; z++) {
+                    BxZone zone = new BxZone();
+                    idsSet &= readIds(buffer, strings, zone);
+                    String label = string(strings, buffer.getInt());
+                    zone.setLabel(label == null ? null : BxZoneLabel.valueOf(label));
+                    zone.setBounds(readBounds(buffer));
+                    int lineCount = buffer.getInt();
+                    for (int l = 0; l < lineCount; l++) {
+                        BxLine line = new BxLine();
+                        idsSet &= readIds(buffer, strings, line);
+                        line.setBounds(readBounds(buffer));
+                        int wordCount = buffer.getInt();
+                        for (int w = 0; w < wordCount; w++) {
+                            BxWord word = new BxWord();
+                            idsSet &= readIds(buffer, strings, word);
+                            word.setBounds(readBounds(buffer));
+                            int chunkCount = buffer.getInt();
+                            for (int c = 0; c < chunkCount; c++) {
+                                String id = string(strings, buffer.getInt());
+                                String nextId = string(strings, buffer.getInt());
+                                BxBounds bounds = readBounds(buffer);
+                                BxChunk chunk = new BxChunk(bounds, string(strings, buffer.getInt()));
+                                chunk.setId(id);
+                                chunk.setNextId(nextId);
+                                chunk.setFontName(string(strings, buffer.getInt()));
+                                idsSet &= id != null && nextId != null;
+                                word.addChunk(chunk);
+                            }
+                            line.addWord(word);
+                        }
+                        zone.addLine(line);
+                    }
+                    page.addZone(zone);
+                }
+                pages.add(page);
+            }
+            return linker.linkPages(pages, idsSet);
+        } catch (BufferUnderflowException ex) {
+            throw new TransformationException("Truncated binary BxDocument", ex);
+        } catch (IllegalArgumentException ex) {
+            throw new TransformationException("Corrupted binary BxDocument", ex);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new TransformationException("Corrupted binary BxDocument", ex);
+        } catch (NegativeArraySizeException ex) {
+            throw new TransformationException("Corrupted binary BxDocument", ex);
+        }
+    }
+
+    private String[] readStrings(ByteBuffer buffer) throws TransformationException {
+        // every string is preceded by its length
+        String[] strings = new String[readCount(buffer, 4)];
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readCount(buffer, 1);
+            if (buffer.hasArray()) {
+                int start = buffer.arrayOffset() + buffer.position();
+                strings[i] = new String(buffer.array(), start, length, UTF8);
+                buffer.position(buffer.position() + length);
+            } else {
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, UTF8);
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Reads the number of items, which have to fit in the rest of the buffer,
+     * so that a corrupted count does not make the reader allocate huge arrays.
+     *
+     * @param itemSize the minimum size of an item in bytes
+     * @return the number of items
+     */
+    private int readCount(ByteBuffer buffer, int itemSize) throws TransformationException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / itemSize) {
+            throw new TransformationException("Corrupted binary BxDocument: invalid count " + count
+                    + " with " + buffer.remaining() + " bytes left");
+        }
+        return count;
+    }
+
+    /**
+     * Reads the id and the next id of the element.
+     *
+     * @return whether both ids are set
+     */
+    private boolean readIds(ByteBuffer buffer, String[] strings, Indexable<?> elem) {
+        elem.setId(string(strings, buffer.getInt()));
+        elem.setNextId(string(strings, buffer.getInt()));
+        return elem.getId() != null && elem.getNextId() != null;
+    }
+
+    private BxBounds readBounds(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        return new BxBounds(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    private String string(String[] strings, int index) {
+        return index == BxDocumentBinaryFormat.NULL_INDEX ? null : strings[index];
+    }
+
+}
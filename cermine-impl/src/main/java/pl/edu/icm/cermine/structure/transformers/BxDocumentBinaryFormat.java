@@ -0,0 +1,108 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.transformers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Binary format of BxDocument model pages, a compact alternative to TrueViz
+ * for the documents read many times, such as training and evaluation corpora.
+ * <p>
+ * The format stores the same information as TrueViz: the pages, zones, lines,
+ * words and chunks with their ids, next ids, bounds, zone labels, chunk texts
+ * and fonts. All the values are big-endian:
+ * <pre>
+ * file:    int MAGIC, int VERSION, strings, int page count, pages
+ * strings: int count, (int UTF-8 length, UTF-8 bytes) for every string
+ * page:    id, next id, bounds, int zone count, zones
+ * zone:    id, next id, label, bounds, int line count, lines
+ * line:    id, next id, bounds, int word count, words
+ * word:    id, next id, bounds, int chunk count, chunks
+ * chunk:   id, next id, bounds, text, font name
+ * bounds:  byte 0 if null, or byte 1 and double x, y, width, height
+ * </pre>
+ * Ids, texts, font names and zone label names are indices into the string
+ * table, which contains every distinct string once, or -1 for null.
+ */
+public final class BxDocumentBinaryFormat {
+
+    /** "BXDF" */
+    public static final int MAGIC = 0x42584446;
+
+    public static final int VERSION = 1;
+
+    /** the extension of the files in the binary format */
+    public static final String EXTENSION = "bxd";
+
+    static final int NULL_INDEX = -1;
+
+    /**
+     * Checks whether the file starts with the binary format's magic number.
+     *
+     * @param file file
+     * @return true if the file is in the binary format, false otherwise
+     * @throws IOException IOException
+     */
+    public static boolean isBinary(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            return readMagic(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Checks whether the stream starts with the binary format's magic number.
+     * The stream must support marking, it is reset to the current position.
+     *
+     * @param stream input stream
+     * @return true if the stream is in the binary format, false otherwise
+     * @throws IOException IOException
+     */
+    public static boolean isBinary(InputStream stream) throws IOException {
+        if (!stream.markSupported()) {
+            throw new IllegalArgumentException("The stream does not support marking");
+        }
+        stream.mark(4);
+        try {
+            return readMagic(stream);
+        } finally {
+            stream.reset();
+        }
+    }
+
+    private static boolean readMagic(InputStream stream) throws IOException {
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = stream.read();
+            if (b < 0) {
+                return false;
+            }
+            magic = (magic << 8) | b;
+        }
+        return magic == MAGIC;
+    }
+
+    private BxDocumentBinaryFormat() {}
+
+}
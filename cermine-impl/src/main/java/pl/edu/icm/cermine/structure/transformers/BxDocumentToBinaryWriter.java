@@ -0,0 +1,179 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.transformers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.*;
+
+/**
+ * Writes BxDocument model pages in the {@link BxDocumentBinaryFormat binary format}.
+ */
+public class BxDocumentToBinaryWriter {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Writes the pages to the file.
+     *
+     * @param file file
+     * @param pages pages
+     * @throws TransformationException TransformationException
+     */
+    public void write(File file, List<BxPage> pages) throws TransformationException {
+        try {
+            OutputStream os = new FileOutputStream(file);
+            try {
+                write(os, pages);
+            } finally {
+                os.close();
+            }
+        } catch (IOException ex) {
+            throw new TransformationException("Cannot write file " + file, ex);
+        }
+    }
+
+    /**
+     * Writes the pages to the stream. The stream is not closed.
+     *
+     * @param stream output stream
+     * @param pages pages
+     * @throws TransformationException TransformationException
+     */
+    public void write(OutputStream stream, List<BxPage> pages) throws TransformationException {
+        StringTable strings = new StringTable();
+        for (BxPage page : pages) {
+            strings.addAll(page);
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(BxDocumentBinaryFormat.MAGIC);
+            out.writeInt(BxDocumentBinaryFormat.VERSION);
+            out.writeInt(strings.strings.size());
+            for (String string : strings.strings) {
+                byte[] bytes = string.getBytes(UTF8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(pages.size());
+            for (BxPage page : pages) {
+                writeIds(out, strings, page);
+                writeBounds(out, page.getBounds());
+                out.writeInt(page.childrenCount());
+                for (BxZone zone : page) {
+                    writeIds(out, strings, zone);
+                    out.writeInt(strings.indexOf(zone.getLabel() == null ? null : zone.getLabel().name()));
+                    writeBounds(out, zone.getBounds());
+                    out.writeInt(zone.childrenCount());
+                    for (BxLine line : zone) {
+                        writeIds(out, strings, line);
+                        writeBounds(out, line.getBounds());
+                        out.writeInt(line.childrenCount());
+                        for (BxWord word : line) {
+                            writeIds(out, strings, word);
+                            writeBounds(out, word.getBounds());
+                            out.writeInt(word.childrenCount());
+                            for (BxChunk chunk : word) {
+                                writeIds(out, strings, chunk);
+                                writeBounds(out, chunk.getBounds());
+                                out.writeInt(strings.indexOf(chunk.toText()));
+                                out.writeInt(strings.indexOf(chunk.getFontName()));
+                            }
+                        }
+                    }
+                }
+            }
+            out.flush();
+        } catch (IOException ex) {
+            throw new TransformationException("Cannot write document", ex);
+        }
+    }
+
+    private void writeIds(DataOutputStream out, StringTable strings, Indexable<?> elem) throws IOException {
+        out.writeInt(strings.indexOf(elem.getId()));
+        out.writeInt(strings.indexOf(elem.getNextId()));
+    }
+
+    private void writeBounds(DataOutputStream out, BxBounds bounds) throws IOException {
+        if (bounds == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        out.writeDouble(bounds.getX());
+        out.writeDouble(bounds.getY());
+        out.writeDouble(bounds.getWidth());
+        out.writeDouble(bounds.getHeight());
+    }
+
+    /**
+     * Distinct strings of the document, in the order of the first occurrence.
+     */
+    private static class StringTable {
+
+        private final List<String> strings = new ArrayList<String>();
+        private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+        void addAll(BxPage page) {
+            addIds(page);
+            for (BxZone zone : page) {
+                addIds(zone);
+                add(zone.getLabel() == null ? null : zone.getLabel().name());
+                for (BxLine line : zone) {
+                    addIds(line);
+                    for (BxWord word : line) {
+                        addIds(word);
+                        for (BxChunk chunk : word) {
+                            addIds(chunk);
+                            add(chunk.toText());
+                            add(chunk.getFontName());
+                        }
+                    }
+                }
+            }
+        }
+
+        void addIds(Indexable<?> elem) {
+            add(elem.getId());
+            add(elem.getNextId());
+        }
+
+        void add(String string) {
+            if (string != null && !indices.containsKey(string)) {
+                indices.put(string, strings.size());
+                strings.add(string);
+            }
+        }
+
+        int indexOf(String string) {
+            return string == null ? BxDocumentBinaryFormat.NULL_INDEX : indices.get(string);
+        }
+    }
+
+}
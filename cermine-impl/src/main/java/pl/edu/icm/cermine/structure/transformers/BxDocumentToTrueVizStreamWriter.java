@@ -0,0 +1,348 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.transformers;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.*;
+
+/**
+ * Writes BxDocument model pages to TrueViz format using a StAX writer.
+ * <p>
+ * Contrary to {@link BxDocumentToTrueVizWriter}, no DOM tree is built:
+ * the elements are written as the model is traversed. The pages can also
+ * be written one at a time with a {@link PageWriter}, so that a document
+ * does not have to be kept in memory as a whole.
+ */
+public class BxDocumentToTrueVizStreamWriter extends BxDocumentToTrueVizWriter {
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final String INDENT = "  ";
+
+    private final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+
+    @Override
+    public void write(Writer writer, List<BxPage> objects, Object... hints) throws TransformationException {
+        try {
+            write(new PageWriter(factory.createXMLStreamWriter(writer), hints), objects);
+        } catch (XMLStreamException ex) {
+            throw new TransformationException(ex);
+        }
+    }
+
+    /**
+     * Writes the pages to the stream in UTF-8 encoding. The stream is not
+     * closed.
+     *
+     * @param stream output stream
+     * @param objects pages
+     * @param hints hints
+     * @throws TransformationException TransformationException
+     */
+    public void write(OutputStream stream, List<BxPage> objects, Object... hints) throws TransformationException {
+        write(open(stream, hints), objects);
+    }
+
+    /**
+     * Starts writing a document to the stream in UTF-8 encoding.
+     *
+     * @param stream output stream
+     * @param hints hints
+     * @return the writer of the document's pages
+     * @throws TransformationException TransformationException
+     */
+    public PageWriter open(OutputStream stream, Object... hints) throws TransformationException {
+        try {
+            return new PageWriter(factory.createXMLStreamWriter(stream, ENCODING), hints);
+        } catch (XMLStreamException ex) {
+            throw new TransformationException(ex);
+        }
+    }
+
+    /**
+     * Starts writing a document.
+     *
+     * @param writer writer
+     * @param hints hints
+     * @return the writer of the document's pages
+     * @throws TransformationException TransformationException
+     */
+    public PageWriter open(Writer writer, Object... hints) throws TransformationException {
+        try {
+            return new PageWriter(factory.createXMLStreamWriter(writer), hints);
+        } catch (XMLStreamException ex) {
+            throw new TransformationException(ex);
+        }
+    }
+
+    private void write(PageWriter pageWriter, List<BxPage> pages) throws TransformationException {
+        for (BxPage page : pages) {
+            pageWriter.write(page);
+        }
+        pageWriter.finish();
+    }
+
+    /**
+     * Writes the pages of a single document, one at a time. The document is
+     * complete after {@link #finish()} is called.
+     */
+    public final class PageWriter {
+
+        private final XMLStreamWriter xml;
+        private final boolean minimal;
+        private final DecimalFormat format;
+        private int depth;
+        /** whether the current element has child elements */
+        private boolean hasChildren;
+
+        private PageWriter(XMLStreamWriter xml, Object... hints) throws TransformationException {
+            this.xml = xml;
+            this.minimal = Arrays.asList(hints).contains(MINIMAL_OUTPUT_SIZE);
+            this.format = new DecimalFormat(minimal ? "0.0" : "0.000", new DecimalFormatSymbols(Locale.US));
+            try {
+                xml.writeStartDocument(ENCODING, "1.0");
+                xml.writeCharacters("\n");
+                xml.writeDTD("<!DOCTYPE Document SYSTEM \"Trueviz.dtd\">");
+                xml.writeCharacters("\n");
+                xml.writeStartElement("Document");
+                hasChildren = false;
+                depth = 1;
+                writeProperty("DocID", "");
+                writeProperty("DocTitle", "");
+                writeProperty("DocPubName", "");
+                writeProperty("DocVolNum", "");
+                writeProperty("DocIssueNum", "");
+                writeProperty("DocMargins", "");
+                writeProperty("DocDate", "");
+                writeProperty("DocPages", "");
+                startElement("DocImage");
+                writeProperty("Name", "");
+                writeProperty("Format", "");
+                writeProperty("Depth", "");
+                writeProperty("Compression", "");
+                writeProperty("Capture", "");
+                writeProperty("Quality", "");
+                endElement();
+                emptyElement("Language");
+                xml.writeAttribute("Codeset", "");
+                xml.writeAttribute("Script", "");
+                xml.writeAttribute("Type", "");
+                writeFont("");
+                writeProperty("ReadingDir", "");
+                writeProperty("CharOrient", "");
+                writeClassification("", "");
+                writeProperty("GT_Text", "");
+            } catch (XMLStreamException ex) {
+                throw new TransformationException(ex);
+            }
+        }
+
+        /**
+         * Writes the page.
+         *
+         * @param page page
+         * @throws TransformationException TransformationException
+         */
+        public void write(BxPage page) throws TransformationException {
+            try {
+                writePage(page);
+                xml.flush();
+            } catch (XMLStreamException ex) {
+                throw new TransformationException(ex);
+            }
+        }
+
+        /**
+         * Ends the document and flushes the output. The underlying stream or
+         * writer is not closed.
+         *
+         * @throws TransformationException TransformationException
+         */
+        public void finish() throws TransformationException {
+            try {
+                endElement();
+                xml.writeCharacters("\n");
+                xml.writeEndDocument();
+                xml.flush();
+                xml.close();
+            } catch (XMLStreamException ex) {
+                throw new TransformationException(ex);
+            }
+        }
+
+        private void writePage(BxPage page) throws XMLStreamException, TransformationException {
+            startElement("Page");
+            writePropertyIfNotNull("PageID", page.getId());
+            writeProperty("PageType", "");
+            writeProperty("PageNumber", "");
+            writeProperty("PageColumns", "");
+            writePropertyIfNotNull("PageNext", page.getNextId());
+            writeProperty("PageZones", "");
+            for (BxZone zone : page) {
+                writeZone(zone);
+            }
+            endElement();
+        }
+
+        private void writeZone(BxZone zone) throws XMLStreamException, TransformationException {
+            startElement("Zone");
+            writePropertyIfNotNull("ZoneID", zone.getId());
+            writeBounds("ZoneCorners", zone.getBounds());
+            writePropertyIfNotNull("ZoneNext", zone.getNextId());
+            emptyElement("ZoneInsets");
+            xml.writeAttribute("Bottom", "");
+            xml.writeAttribute("Left", "");
+            xml.writeAttribute("Right", "");
+            xml.writeAttribute("Top", "");
+            writeProperty("ZoneLines", "");
+            if (zone.getLabel() != null) {
+                String label = ZONE_LABEL_MAP.get(zone.getLabel());
+                if (label != null && !label.isEmpty()) {
+                    writeClassification(label.toUpperCase(Locale.ENGLISH), "");
+                } else {
+                    throw new TransformationException("Writing down an unknown zone label: " + zone.getLabel());
+                }
+            }
+            for (BxLine line : zone) {
+                writeLine(line);
+            }
+            endElement();
+        }
+
+        private void writeLine(BxLine line) throws XMLStreamException {
+            startElement("Line");
+            writePropertyIfNotNull("LineID", line.getId());
+            writeBounds("LineCorners", line.getBounds());
+            writePropertyIfNotNull("LineNext", line.getNextId());
+            writeProperty("LineNumChars", "");
+            for (BxWord word : line) {
+                writeWord(word);
+            }
+            endElement();
+        }
+
+        private void writeWord(BxWord word) throws XMLStreamException {
+            startElement("Word");
+            writePropertyIfNotNull("WordID", word.getId());
+            writeBounds("WordCorners", word.getBounds());
+            writePropertyIfNotNull("WordNext", word.getNextId());
+            writeProperty("WordNumChars", "");
+            for (BxChunk chunk : word) {
+                writeCharacter(chunk);
+            }
+            endElement();
+        }
+
+        private void writeCharacter(BxChunk chunk) throws XMLStreamException {
+            startElement("Character");
+            writePropertyIfNotNull("CharacterID", chunk.getId());
+            writeBounds("CharacterCorners", chunk.getBounds());
+            writePropertyIfNotNull("CharacterNext", chunk.getNextId());
+            writeFont(chunk.getFontName());
+            writePropertyIfNotNull("GT_Text", chunk.toText());
+            endElement();
+        }
+
+        private void writeBounds(String name, BxBounds bounds) throws XMLStreamException {
+            if (bounds == null) {
+                bounds = new BxBounds();
+            }
+            startElement(name);
+            writeVertex(bounds.getX(), bounds.getY());
+            if (!minimal) {
+                writeVertex(bounds.getX() + bounds.getWidth(), bounds.getY());
+            }
+            writeVertex(bounds.getX() + bounds.getWidth(), bounds.getY() + bounds.getHeight());
+            if (!minimal) {
+                writeVertex(bounds.getX(), bounds.getY() + bounds.getHeight());
+            }
+            endElement();
+        }
+
+        private void writeVertex(double x, double y) throws XMLStreamException {
+            emptyElement("Vertex");
+            xml.writeAttribute("x", format.format(x));
+            xml.writeAttribute("y", format.format(y));
+        }
+
+        private void writeFont(String type) throws XMLStreamException {
+            emptyElement("Font");
+            xml.writeAttribute("Size", "");
+            xml.writeAttribute("Spacing", "");
+            xml.writeAttribute("Style", "");
+            xml.writeAttribute("Type", type == null ? "" : type);
+        }
+
+        private void writeClassification(String category, String type) throws XMLStreamException {
+            startElement("Classification");
+            writeProperty("Category", category);
+            writeProperty("Type", type);
+            endElement();
+        }
+
+        private void writeProperty(String name, String value) throws XMLStreamException {
+            emptyElement(name);
+            xml.writeAttribute("Value", value);
+        }
+
+        private void writePropertyIfNotNull(String name, String value) throws XMLStreamException {
+            writeProperty(name, value == null ? "" : value);
+        }
+
+        private void startElement(String name) throws XMLStreamException {
+            indent();
+            xml.writeStartElement(name);
+            depth++;
+            hasChildren = false;
+        }
+
+        private void emptyElement(String name) throws XMLStreamException {
+            indent();
+            xml.writeEmptyElement(name);
+            hasChildren = true;
+        }
+
+        private void endElement() throws XMLStreamException {
+            depth--;
+            if (hasChildren) {
+                indent();
+            }
+            xml.writeEndElement();
+            hasChildren = true;
+        }
+
+        private void indent() throws XMLStreamException {
+            xml.writeCharacters("\n");
+            for (int i = 0; i < depth; i++) {
+                xml.writeCharacters(INDENT);
+            }
+        }
+    }
+
+}
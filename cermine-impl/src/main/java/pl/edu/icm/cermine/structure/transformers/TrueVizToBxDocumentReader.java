@@ -107,14 +107,7 @@ public class TrueVizToBxDocumentReader {
                     pages.add(page);
                 }
             }
-            setIdsAndLinkPages(pages);
-            if (areIdsSet) {
-                linkAndReorderOtherElements(pages);
-            }
-            for (BxPage page : pages) {
-                BxModelUtils.setParents(page);
-            }
-            return pages;
+            return linkPages(pages, areIdsSet);
         } catch (IOException ex) {
         	System.err.println(ex.getMessage());
             throw new TransformationException(ex);
@@ -127,6 +120,25 @@ public class TrueVizToBxDocumentReader {
         }
     }
 
+    /**
+     * Sets the ids of the pages, if they are not set, links the pages and, if the ids of all the elements were read,
+     * links the elements and orders them according to the links.
+     *
+     * @param pages pages read from the input
+     * @param idsSet whether the ids of all the elements were read
+     * @return the pages
+     */
+    protected List<BxPage> linkPages(List<BxPage> pages, boolean idsSet) {
+        setIdsAndLinkPages(pages);
+        if (idsSet) {
+            linkAndReorderOtherElements(pages);
+        }
+        for (BxPage page : pages) {
+            BxModelUtils.setParents(page);
+        }
+        return pages;
+    }
+
     protected <A extends Indexable<A>> List<A> reorderList(List<A> list) {
     	if (list.isEmpty()) {
             return list;
@@ -185,9 +197,10 @@ public class TrueVizToBxDocumentReader {
         for (A elem : list) {
             indicesMap.put(elem.getId(), elem);
         }
-        for (A elem : list) {
+        for (int i = 0; i < list.size(); i++) {
+            A elem = list.get(i);
             String nextId = elem.getNextId();
-            if (nextId.equals("-1") || list.indexOf(elem) == list.size()-1) { /*
+            if (nextId.equals("-1") || i == list.size()-1) { /*
                  * there is no next element
                  */
                 elem.setNext(null);
@@ -393,14 +406,19 @@ public class TrueVizToBxDocumentReader {
         if (catEl == null) {
             return null;
         }
-        String val = catEl.getAttribute("Value");
+        return parseLabel(catEl.getAttribute("Value"));
+    }
+
+    /**
+     * Parses the value of a zone classification element.
+     *
+     * @param val the value
+     * @return the zone label, or null if the value is empty
+     */
+    protected BxZoneLabel parseLabel(String val) {
         if (val.isEmpty()) {
             return null;
         }
-        if (val.isEmpty()) {
-        	return BxZoneLabel.OTH_UNKNOWN;
-        }
-
         if (ZONE_LABEL_MAP.containsKey(val.toLowerCase(Locale.ENGLISH))) {
             return ZONE_LABEL_MAP.get(val.toLowerCase(Locale.ENGLISH));
         } else {
@@ -0,0 +1,489 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.transformers;
+
+import com.google.common.collect.Lists;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.structure.tools.BxBoundsBuilder;
+import pl.edu.icm.cermine.structure.tools.BxModelUtils;
+
+/**
+ * Reads BxDocument model pages from TrueViz format using a StAX parser.
+ * <p>
+ * Contrary to {@link TrueVizToBxDocumentReader}, the input is not parsed
+ * into a DOM tree first: the model objects are created directly while
+ * the input is read, so the memory used is that of the resulting pages only.
+ * The resulting model is the same. In the streaming mode
+ * ({@link #read(Reader, PageListener)}) the pages are passed to a listener
+ * one at a time, as soon as they are read.
+ * <p>
+ * The DTD declared in the input is not loaded.
+ */
+public class TrueVizToBxDocumentStreamReader extends TrueVizToBxDocumentReader {
+
+    private final XMLInputFactory factory;
+
+    /**
+     * Receives the pages read in the streaming mode, one at a time.
+     */
+    public interface PageListener {
+
+        /**
+         * Called when the page has been read. The elements of the page are
+         * linked and ordered, but the page is not linked with other pages and
+         * does not belong to any document.
+         *
+         * @param page page
+         * @throws TransformationException TransformationException
+         */
+        void pageRead(BxPage page) throws TransformationException;
+    }
+
+    public TrueVizToBxDocumentStreamReader() {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @Override
+    public List<BxPage> read(Reader reader, Object... hints) throws TransformationException {
+        try {
+            return readAll(factory.createXMLStreamReader(reader));
+        } catch (XMLStreamException ex) {
+            throw new TransformationException(ex);
+        }
+    }
+
+    /**
+     * Reads the pages from an UTF-8 encoded input stream, or from a stream
+     * in the encoding declared in the XML.
+     *
+     * @param stream input stream
+     * @param hints hints
+     * @return pages
+     * @throws TransformationException TransformationException
+     */
+    public List<BxPage> read(InputStream stream, Object... hints) throws TransformationException {
+        try {
+            return readAll(factory.createXMLStreamReader(stream));
+        } catch (XMLStreamException ex) {
+            throw new TransformationException(ex);
+        }
+    }
+
+    /**
+     * Reads the pages in the streaming mode. Every page is passed to the
+     * listener as soon as it is read and is not referenced by the reader
+     * afterwards.
+     * <p>
+     * The elements are linked within their pages only, ordered as by
+     * {@link #read(Reader, Object...)} if the ids of all the elements
+     * of the page are set.
+     *
+     * @param reader reader
+     * @param listener page listener
+     * @throws TransformationException TransformationException
+     */
+    public void read(Reader reader, final PageListener listener) throws TransformationException {
+        final ReadState state = new ReadState();
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(reader);
+            try {
+                readPages(xml, state, new PageListener() {
+                    @Override
+                    public void pageRead(BxPage page) throws TransformationException {
+                        if (state.idsSet) {
+                            linkAndReorderPageElements(page);
+                        }
+                        BxModelUtils.setParents(page);
+                        state.idsSet = true;
+                        listener.pageRead(page);
+                    }
+                });
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new TransformationException(ex);
+        }
+    }
+
+    private List<BxPage> readAll(XMLStreamReader xml) throws XMLStreamException, TransformationException {
+        final List<BxPage> pages = new ArrayList<BxPage>();
+        ReadState state = new ReadState();
+        try {
+            readPages(xml, state, new PageListener() {
+                @Override
+                public void pageRead(BxPage page) {
+                    pages.add(page);
+                }
+            });
+        } finally {
+            xml.close();
+        }
+        return linkPages(pages, state.idsSet);
+    }
+
+    private void readPages(XMLStreamReader xml, ReadState state, PageListener listener)
+            throws XMLStreamException, TransformationException {
+        while (xml.hasNext() && xml.next() != XMLStreamConstants.START_ELEMENT) {
+            // skip the prolog
+        }
+        if (!xml.isStartElement()) {
+            return;
+        }
+        if (isElement(xml, "Page")) {
+            listener.pageRead(readPage(xml, state));
+        } else if (isElement(xml, "Document")) {
+            while (nextChild(xml)) {
+                if (isElement(xml, "Page")) {
+                    listener.pageRead(readPage(xml, state));
+                } else {
+                    skipElement(xml);
+                }
+            }
+        }
+    }
+
+    private BxPage readPage(XMLStreamReader xml, ReadState state) throws XMLStreamException, TransformationException {
+        BxPage page = new BxPage();
+        ElementIds ids = new ElementIds("PageId", "PageNext");
+        while (nextChild(xml)) {
+            if (isElement(xml, "Zone")) {
+                BxZone zone = readZone(xml, state);
+                zone.setParent(page);
+                page.addZone(zone);
+            } else if (!ids.read(xml)) {
+                skipElement(xml);
+            }
+        }
+        page.setId(ids.id);
+        page.setNextId(ids.nextId);
+        state.checkIds(page);
+        BxBoundsBuilder.setBounds(page);
+        return page;
+    }
+
+    private BxZone readZone(XMLStreamReader xml, ReadState state) throws XMLStreamException, TransformationException {
+        BxZone zone = new BxZone();
+        zone.setLabel(BxZoneLabel.OTH_UNKNOWN);
+        ElementIds ids = new ElementIds("ZoneId", "ZoneNext");
+        boolean labelRead = false;
+        boolean boundsRead = false;
+        while (nextChild(xml)) {
+            if (isElement(xml, "Line")) {
+                BxLine line = readLine(xml, state);
+                line.setParent(zone);
+                zone.addLine(line);
+            } else if (!labelRead && isElement(xml, "Classification")) {
+                zone.setLabel(readClassification(xml));
+                labelRead = true;
+            } else if (!boundsRead && isElement(xml, "ZoneCorners")) {
+                zone.setBounds(readBounds(xml));
+                boundsRead = true;
+            } else if (!ids.read(xml)) {
+                skipElement(xml);
+            }
+        }
+        zone.setId(ids.id);
+        zone.setNextId(ids.nextId);
+        state.checkIds(zone);
+        return zone;
+    }
+
+    private BxLine readLine(XMLStreamReader xml, ReadState state) throws XMLStreamException {
+        BxLine line = new BxLine();
+        ElementIds ids = new ElementIds("LineId", "LineNext");
+        boolean boundsRead = false;
+        while (nextChild(xml)) {
+            if (isElement(xml, "Word")) {
+                BxWord word = readWord(xml, state);
+                word.setParent(line);
+                line.addWord(word);
+            } else if (!boundsRead && isElement(xml, "LineCorners")) {
+                line.setBounds(readBounds(xml));
+                boundsRead = true;
+            } else if (!ids.read(xml)) {
+                skipElement(xml);
+            }
+        }
+        line.setId(ids.id);
+        line.setNextId(ids.nextId);
+        state.checkIds(line);
+        return line;
+    }
+
+    private BxWord readWord(XMLStreamReader xml, ReadState state) throws XMLStreamException {
+        BxWord word = new BxWord();
+        ElementIds ids = new ElementIds("WordId", "WordNext");
+        boolean boundsRead = false;
+        while (nextChild(xml)) {
+            if (isElement(xml, "Character")) {
+                BxChunk chunk = readCharacter(xml, state);
+                chunk.setParent(word);
+                word.addChunk(chunk);
+            } else if (!boundsRead && isElement(xml, "WordCorners")) {
+                word.setBounds(readBounds(xml));
+                boundsRead = true;
+            } else if (!ids.read(xml)) {
+                skipElement(xml);
+            }
+        }
+        word.setId(ids.id);
+        word.setNextId(ids.nextId);
+        state.checkIds(word);
+        return word;
+    }
+
+    private BxChunk readCharacter(XMLStreamReader xml, ReadState state) throws XMLStreamException {
+        ElementIds ids = new ElementIds("CharacterId", "CharacterNext");
+        BxBounds bounds = null;
+        boolean boundsRead = false;
+        String text = null;
+        boolean textRead = false;
+        String fontName = null;
+        boolean fontRead = false;
+        while (nextChild(xml)) {
+            if (!boundsRead && isElement(xml, "CharacterCorners")) {
+                bounds = readBounds(xml);
+                boundsRead = true;
+            } else if (!textRead && isElement(xml, "GT_Text")) {
+                text = attribute(xml, "Value");
+                textRead = true;
+                skipElement(xml);
+            } else if (!fontRead && isElement(xml, "Font")) {
+                fontName = state.intern(attribute(xml, "Type"));
+                fontRead = true;
+                skipElement(xml);
+            } else if (!ids.read(xml)) {
+                skipElement(xml);
+            }
+        }
+        BxChunk chunk = new BxChunk(bounds, text);
+        chunk.setId(ids.id);
+        chunk.setNextId(ids.nextId);
+        if (fontRead) {
+            chunk.setFontName(fontName);
+        }
+        state.checkIds(chunk);
+        return chunk;
+    }
+
+    private BxZoneLabel readClassification(XMLStreamReader xml) throws XMLStreamException {
+        String category = null;
+        String type = null;
+        while (nextChild(xml)) {
+            if (category == null && isElement(xml, "Category")) {
+                category = attribute(xml, "Value");
+            } else if (type == null && isElement(xml, "Type")) {
+                type = attribute(xml, "Value");
+            }
+            skipElement(xml);
+        }
+        if (category != null) {
+            return parseLabel(category);
+        }
+        if (type != null) {
+            return parseLabel(type);
+        }
+        return null;
+    }
+
+    private BxBounds readBounds(XMLStreamReader xml) throws XMLStreamException {
+        BxBoundsBuilder builder = new BxBoundsBuilder();
+        while (nextChild(xml)) {
+            if (isElement(xml, "Vertex")) {
+                double x = Double.parseDouble(attribute(xml, "x"));
+                double y = Double.parseDouble(attribute(xml, "y"));
+                builder.expand(x, y);
+            }
+            skipElement(xml);
+        }
+        return builder.getBounds();
+    }
+
+    /**
+     * Links the elements of a single page and orders them according to the links. The links to the elements of other
+     * pages are ignored.
+     */
+    private void linkAndReorderPageElements(BxPage page) {
+        List<BxZone> zones = new ArrayList<BxZone>();
+        List<BxLine> lines = new ArrayList<BxLine>();
+        List<BxWord> words = new ArrayList<BxWord>();
+        List<BxChunk> chunks = new ArrayList<BxChunk>();
+        for (BxZone zone : page) {
+            zones.add(zone);
+            for (BxLine line : zone) {
+                lines.add(line);
+                for (BxWord word : line) {
+                    words.add(word);
+                    chunks.addAll(Lists.newArrayList(word));
+                }
+            }
+        }
+        linkWithinPage(zones);
+        linkWithinPage(lines);
+        linkWithinPage(words);
+        linkWithinPage(chunks);
+        for (BxZone zone : page) {
+            for (BxLine line : zone) {
+                for (BxWord word : line) {
+                    word.setChunks(reorderList(Lists.newArrayList(word)));
+                }
+                line.setWords(reorderList(Lists.newArrayList(line)));
+            }
+            zone.setLines(reorderList(Lists.newArrayList(zone)));
+        }
+        page.setZones(reorderList(Lists.newArrayList(page)));
+    }
+
+    private <A extends Indexable<A>> void linkWithinPage(List<A> list) {
+        Map<String, A> indicesMap = new HashMap<String, A>();
+        for (A elem : list) {
+            indicesMap.put(elem.getId(), elem);
+        }
+        for (A elem : list) {
+            A next = "-1".equals(elem.getNextId()) ? null : indicesMap.get(elem.getNextId());
+            elem.setNext(next);
+            if (next != null) {
+                next.setPrev(elem);
+            }
+        }
+    }
+
+    private static boolean isElement(XMLStreamReader xml, String name) {
+        return xml.getLocalName().equalsIgnoreCase(name);
+    }
+
+    /**
+     * Moves to the next child element of the current element.
+     *
+     * @return true if the reader is at the start of the child, false if it is at the end of the current element
+     */
+    private static boolean nextChild(XMLStreamReader xml) throws XMLStreamException {
+        while (true) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Moves to the end of the current element.
+     */
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the attribute of the current element, or an empty string if the attribute is missing.
+     */
+    private static String attribute(XMLStreamReader xml, String name) {
+        String value = xml.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Id and next id of an element, read from the first child elements with the given names.
+     */
+    private static class ElementIds {
+
+        private final String idName;
+        private final String nextIdName;
+        private String id;
+        private String nextId;
+        private boolean idRead;
+        private boolean nextIdRead;
+
+        ElementIds(String idName, String nextIdName) {
+            this.idName = idName;
+            this.nextIdName = nextIdName;
+        }
+
+        /**
+         * Reads the current element, if it is the id or the next id.
+         *
+         * @return true if the element was read, false otherwise
+         */
+        boolean read(XMLStreamReader xml) throws XMLStreamException {
+            if (!idRead && isElement(xml, idName)) {
+                id = optionalValue(xml);
+                idRead = true;
+            } else if (!nextIdRead && isElement(xml, nextIdName)) {
+                nextId = optionalValue(xml);
+                nextIdRead = true;
+            } else {
+                return false;
+            }
+            skipElement(xml);
+            return true;
+        }
+
+        private static String optionalValue(XMLStreamReader xml) {
+            String value = attribute(xml, "Value");
+            return value.isEmpty() ? null : value;
+        }
+    }
+
+    private static class ReadState {
+
+        /** whether the ids of all the elements read so far are set */
+        private boolean idsSet = true;
+        private final Map<String, String> fontNames = new HashMap<String, String>();
+
+        void checkIds(Indexable<?> elem) {
+            if (idsSet && (elem.getId() == null || elem.getNextId() == null)) {
+                idsSet = false;
+            }
+        }
+
+        String intern(String fontName) {
+            String interned = fontNames.get(fontName);
+            if (interned == null) {
+                fontNames.put(fontName, fontName);
+                interned = fontName;
+            }
+            return interned;
+        }
+    }
+
+}
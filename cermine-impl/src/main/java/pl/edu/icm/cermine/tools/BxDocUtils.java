@@ -26,7 +26,10 @@ import org.apache.commons.io.FileUtils;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.transformers.BinaryToBxDocumentReader;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentBinaryFormat;
 import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentStreamReader;
 
 /**
  * @author Pawel Szostek
@@ -49,20 +52,65 @@ public class BxDocUtils {
     }
 
     public static BxDocument getDocument(File file) throws IOException, TransformationException {
-        TrueVizToBxDocumentReader tvReader = new TrueVizToBxDocumentReader();
-        BxDocument newDoc = new BxDocument();
-        InputStream is = new FileInputStream(file);
-        try {
-            List<BxPage> pages = tvReader.read(new InputStreamReader(is, "UTF-8"));
-            for (BxPage page : pages) {
-                page.setParent(newDoc);
+        return getDocument(file, new TrueVizToBxDocumentStreamReader());
+    }
+
+    /**
+     * Reads the document from the file, either in TrueViz or in the binary
+     * format, detected by the file's content.
+     *
+     * @param file file
+     * @param tvReader TrueViz reader
+     * @return document
+     * @throws IOException IOException
+     * @throws TransformationException TransformationException
+     */
+    public static BxDocument getDocument(File file, TrueVizToBxDocumentReader tvReader) throws IOException, TransformationException {
+        List<BxPage> pages;
+        if (BxDocumentBinaryFormat.isBinary(file)) {
+            pages = new BinaryToBxDocumentReader().read(file);
+        } else {
+            InputStream is = new FileInputStream(file);
+            try {
+                pages = tvReader.read(new InputStreamReader(is, "UTF-8"));
+            } finally {
+                is.close();
             }
-            newDoc.setFilename(file.getName());
-            newDoc.setPages(pages);
-            return newDoc;
-        } finally {
-            is.close();
         }
+        return newDocument(pages, file.getName());
+    }
+
+    /**
+     * Reads the document from the stream, either in TrueViz or in the binary
+     * format, detected by the stream's content. The stream is not closed.
+     *
+     * @param stream input stream
+     * @param filename the name of the document's file
+     * @param tvReader TrueViz reader
+     * @return document
+     * @throws IOException IOException
+     * @throws TransformationException TransformationException
+     */
+    public static BxDocument getDocument(InputStream stream, String filename, TrueVizToBxDocumentReader tvReader)
+            throws IOException, TransformationException {
+        InputStream is = new BufferedInputStream(stream);
+        List<BxPage> pages;
+        if (BxDocumentBinaryFormat.isBinary(is)) {
+            pages = new BinaryToBxDocumentReader().read(is);
+        } else {
+            pages = tvReader.read(new InputStreamReader(is, "UTF-8"));
+        }
+        return newDocument(pages, filename);
+    }
+
+    private static BxDocument newDocument(List<BxPage> pages, String filename) {
+        BxDocument newDoc = new BxDocument();
+        for (BxPage page : pages) {
+            page.setParent(newDoc);
+        }
+        newDoc.setFilename(filename);
+        newDoc.setPages(pages);
+        return newDoc;
     }
 
     public static class DocumentsIterator implements Iterable<BxDocument> {
@@ -22,8 +22,9 @@ import java.util.ArrayList;
 import java.util.List;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
-import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentBinaryFormat;
 import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentStreamReader;
 
 /**
  * @author Pawel Szostek
@@ -32,6 +33,8 @@ public class DirExtractor implements DocumentsExtractor {
 
     protected File directory;
 
+    protected TrueVizToBxDocumentReader tvReader = new TrueVizToBxDocumentStreamReader();
+
     public DirExtractor(String path) {
         directory = new File(path);
         if (!directory.exists() || !directory.isDirectory()) {
@@ -43,10 +46,14 @@ public class DirExtractor implements DocumentsExtractor {
         this.directory = directory;
     }
 
+    public DirExtractor(File directory, TrueVizToBxDocumentReader tvReader) {
+        this.directory = directory;
+        this.tvReader = tvReader;
+    }
+
     @Override
     public List<BxDocument> getDocuments() throws TransformationException {
         String dirPath = directory.getPath();
-        TrueVizToBxDocumentReader tvReader = new TrueVizToBxDocumentReader();
         List<BxDocument> documents = new ArrayList<BxDocument>();
 
         if (!dirPath.endsWith(File.separator)) {
@@ -56,18 +63,9 @@ public class DirExtractor implements DocumentsExtractor {
             if (!new File(dirPath + filename).isFile()) {
                 continue;
             }
-            if (filename.endsWith("xml")) {
-                InputStream is = null;
+            if (filename.endsWith("xml") || filename.endsWith(BxDocumentBinaryFormat.EXTENSION)) {
                 try {
-                    is = new FileInputStream(dirPath + filename);
-                    List<BxPage> pages = tvReader.read(new InputStreamReader(is, "UTF-8"));
-                    BxDocument newDoc = new BxDocument();
-                    for (BxPage page : pages) {
-                        page.setParent(newDoc);
-                    }
-                    newDoc.setFilename(filename);
-                    newDoc.setPages(pages);
-                    documents.add(newDoc);
+                    documents.add(BxDocUtils.getDocument(new File(dirPath + filename), tvReader));
                 } catch (IllegalStateException ex) {
                     System.err.println(ex.getMessage());
                     System.err.println(dirPath + filename);
@@ -76,14 +74,8 @@ public class DirExtractor implements DocumentsExtractor {
                     throw new TransformationException("File not found!", ex);
                 } catch (UnsupportedEncodingException ex) {
                     throw new TransformationException("Unsupported encoding!", ex);
-                } finally {
-                    if (is != null) {
-                        try {
-                            is.close();
-                        } catch (IOException ex) {
-                            throw new TransformationException("Cannot close stream!", ex);
-                        }
-                    }
+                } catch (IOException ex) {
+                    throw new TransformationException("Cannot read file!", ex);
                 }
             }
         }
@@ -0,0 +1,130 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Bounded pool of instances of a model that cannot be used by many threads
+ * at the same time, such as ACRF models, whose inference keeps its state
+ * in the model object.
+ * <p>
+ * Instances are created lazily, when a thread obtains one and no idle
+ * instance is available, up to the maximum size of the pool. Then the
+ * threads wait until an instance is released. Every obtained instance has to
+ * be released by the same thread, after it is no longer used.
+ *
+ * @param <T> model type
+ */
+public final class ModelPool<T> {
+
+    /**
+     * Creates a new, independent instance of the model.
+     *
+     * @param <T> model type
+     */
+    public interface ModelFactory<T> {
+
+        T create() throws IOException;
+
+    }
+
+    private final ModelFactory<T> factory;
+
+    private final int maxSize;
+
+    private final Deque<T> idle = new ArrayDeque<T>();
+
+    /** the number of instances created so far, guarded by idle */
+    private int created;
+
+    /**
+     * @param factory model factory
+     * @param maxSize maximum number of instances
+     */
+    public ModelPool(ModelFactory<T> factory, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates a pool of at most as many instances as there are available
+     * processors.
+     *
+     * @param factory model factory
+     */
+    public ModelPool(ModelFactory<T> factory) {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns an idle instance, creating a new one if the pool is not full,
+     * or waits for an instance to be released.
+     *
+     * @return model instance for the exclusive use of the calling thread
+     * @throws IOException if a new instance cannot be created
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public T obtain() throws IOException, InterruptedException {
+        synchronized (idle) {
+            while (idle.isEmpty() && created >= maxSize) {
+                idle.wait();
+            }
+            if (!idle.isEmpty()) {
+                return idle.pop();
+            }
+            created++;
+        }
+        boolean success = false;
+        try {
+            T model = factory.create();
+            success = true;
+            return model;
+        } finally {
+            if (!success) {
+                synchronized (idle) {
+                    created--;
+                    idle.notify();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the instance to the pool.
+     *
+     * @param model instance obtained with {@link #obtain()}
+     */
+    public void release(T model) {
+        synchronized (idle) {
+            idle.push(model);
+            idle.notify();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+}
@@ -0,0 +1,287 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools;
+
+import edu.umass.cs.mallet.grmm.learning.ACRF;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import libsvm.svm;
+import libsvm.svm_model;
+import org.apache.commons.io.IOUtils;
+import pl.edu.icm.cermine.tools.classification.general.FeatureVectorScalerImpl;
+
+/**
+ * Process-wide registry of models, keyed by model path. Every model is loaded
+ * only once and the same instance is handed out to all the components,
+ * which should treat it as read-only. Models that keep state while they are
+ * used are handed out as {@link ModelPool}s of independent instances.
+ * <p>
+ * Paths are resolved with {@link ResourceUtils}, so both regular files
+ * and <code>classpath:</code> resources are supported.
+ */
+public final class ModelRegistry {
+
+    private static final ConcurrentMap<String, ModelEntry<?>> MODELS = new ConcurrentHashMap<String, ModelEntry<?>>();
+
+    private ModelRegistry() {}
+
+    /**
+     * Loads a model object.
+     *
+     * @param <T> model type
+     */
+    public interface ModelLoader<T> {
+        
+        T load(InputStream stream) throws IOException;
+        
+    }
+
+    /**
+     * Returns the model stored under the given path, loading it first if needed.
+     *
+     * @param <T> model type
+     * @param type model type name, models of different types stored under
+     * the same path are kept separately
+     * @param path model path
+     * @param loader model loader, used only if the model is not loaded yet
+     * @return shared model instance
+     * @throws IOException if the model cannot be loaded
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(String type, String path, ModelLoader<T> loader) throws IOException {
+        String key = type + ":" + path;
+        ModelEntry<?> entry = MODELS.get(key);
+        if (entry == null) {
+            ModelEntry<T> newEntry = new ModelEntry<T>(type, path, loader);
+            entry = MODELS.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        return (T) entry.get();
+    }
+
+    public static svm_model getSVMModel(String path) throws IOException {
+        return get("svm", path, new ModelLoader<svm_model>() {
+            @Override
+            public svm_model load(InputStream stream) throws IOException {
+                return svm.svm_load_model(new BufferedReader(new InputStreamReader(stream, "UTF-8")));
+            }
+        });
+    }
+
+    public static FeatureVectorScalerImpl getSVMScaler(String path) throws IOException {
+        return get("range", path, new ModelLoader<FeatureVectorScalerImpl>() {
+            @Override
+            public FeatureVectorScalerImpl load(InputStream stream) throws IOException {
+                return FeatureVectorScalerImpl.fromRangeReader(new BufferedReader(new InputStreamReader(stream, "UTF-8")));
+            }
+        });
+    }
+
+    /**
+     * Returns a shared pool of instances of an ACRF model. ACRF inference
+     * is not thread-safe, so every thread decodes with its own instance,
+     * obtained from the pool. The instances are deserialized from a copy
+     * of the model kept in memory, the model file is read only once.
+     *
+     * @param path gzipped serialized model path
+     * @return shared model pool
+     * @throws IOException if the model cannot be loaded
+     */
+    public static ModelPool<ACRF> getACRFPool(String path) throws IOException {
+        return get("acrf", path, new ModelLoader<ModelPool<ACRF>>() {
+            @Override
+            public ModelPool<ACRF> load(InputStream stream) throws IOException {
+                return createACRFPool(stream);
+            }
+        });
+    }
+
+    /**
+     * Creates a new pool of instances of an ACRF model, not shared through
+     * the registry.
+     *
+     * @param stream gzipped serialized model stream, read fully but not closed
+     * @return model pool
+     * @throws IOException if the model cannot be loaded
+     */
+    public static ModelPool<ACRF> createACRFPool(InputStream stream) throws IOException {
+        // prevents MALLET from printing info messages
+        System.setProperty("java.util.logging.config.file",
+            "edu/umass/cs/mallet/base/util/resources/logging.properties");
+        final byte[] serialized = IOUtils.toByteArray(new GZIPInputStream(stream));
+        ModelPool<ACRF> pool = new ModelPool<ACRF>(new ModelPool.ModelFactory<ACRF>() {
+            @Override
+            public ACRF create() throws IOException {
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+                try {
+                    return (ACRF) ois.readObject();
+                } catch (ClassNotFoundException ex) {
+                    throw new IOException("Cannot load ACRF model!", ex);
+                } finally {
+                    ois.close();
+                }
+            }
+        });
+        // fails early if the model is broken
+        try {
+            pool.release(pool.obtain());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading ACRF model!", ex);
+        }
+        return pool;
+    }
+
+    /**
+     * @return load statistics of all the models loaded so far
+     */
+    public static List<ModelStatistics> getStatistics() {
+        List<ModelStatistics> statistics = new ArrayList<ModelStatistics>();
+        for (ModelEntry<?> entry : MODELS.values()) {
+            if (entry.statistics != null) {
+                statistics.add(entry.statistics);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Removes all the models from the registry. Components created earlier
+     * keep their references.
+     */
+    public static void clear() {
+        MODELS.clear();
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static final class ModelEntry<T> {
+
+        private final String type;
+        private final String path;
+        private final ModelLoader<T> loader;
+        private volatile T model;
+        private volatile ModelStatistics statistics;
+
+        private ModelEntry(String type, String path, ModelLoader<T> loader) {
+            this.type = type;
+            this.path = path;
+            this.loader = loader;
+        }
+
+        private T get() throws IOException {
+            T result = model;
+            if (result == null) {
+                synchronized (this) {
+                    result = model;
+                    if (result == null) {
+                        result = load();
+                        model = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private T load() throws IOException {
+            long start = System.nanoTime();
+            long allocatedBefore = allocatedBytes();
+            InputStream stream = ResourceUtils.openResourceStream(path);
+            if (stream == null) {
+                throw new IOException("Resource not found: " + path);
+            }
+            T result;
+            try {
+                result = loader.load(stream);
+            } finally {
+                stream.close();
+            }
+            long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+            statistics = new ModelStatistics(type, path, (System.nanoTime() - start) / 1000000, allocated);
+            Logger.getLogger(ModelRegistry.class.getName()).log(Level.FINE, "Loaded model {0}", statistics);
+            return result;
+        }
+    }
+
+    /**
+     * Load statistics of a single model.
+     */
+    public static final class ModelStatistics {
+
+        private final String type;
+        private final String path;
+        private final long loadTimeMillis;
+        private final long allocatedBytes;
+
+        private ModelStatistics(String type, String path, long loadTimeMillis, long allocatedBytes) {
+            this.type = type;
+            this.path = path;
+            this.loadTimeMillis = loadTimeMillis;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getLoadTimeMillis() {
+            return loadTimeMillis;
+        }
+
+        /**
+         * @return the number of bytes allocated while loading the model,
+         * an upper bound of its heap footprint, or -1 if not available
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + path + ": loaded in " + loadTimeMillis + " ms, "
+                    + (allocatedBytes < 0 ? "unknown" : allocatedBytes / 1024 + " KiB") + " allocated";
+        }
+    }
+
+}
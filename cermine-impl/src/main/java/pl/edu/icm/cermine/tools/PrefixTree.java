@@ -18,13 +18,16 @@
 
 package pl.edu.icm.cermine.tools;
 
-import com.google.common.collect.Lists;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
+ * Trie of space-separated multi-word terms (e.g. journal names).
+ * Child nodes are kept in a hash map, so that matching a token list is
+ * linear in the length of the match. Once built, the tree is not modified
+ * by matching, so a single instance can be shared between threads.
  *
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
  */
@@ -33,85 +36,89 @@ public class PrefixTree {
     public static final String START_TERM = "<START>";
     
     private final String term;
-    List<PrefixTree> subTrees = new ArrayList<PrefixTree>();
+    private final Map<String, PrefixTree> subTrees = new HashMap<String, PrefixTree>();
+    private boolean terminal;
     
     public PrefixTree(String term) {
         this.term = term;
     }
     
+    public static PrefixTree buildTree(Set<String> sentences) {
+        PrefixTree tree = new PrefixTree(START_TERM);
+        tree.build(sentences);
+        return tree;
+    }
+    
     public void build(Set<String> sentences) {
         for (String sentence : sentences) {
             String[] terms = sentence.split(" ");
-            String first = terms[0];
-            PrefixTree subTree = null;
-            for (PrefixTree pt : subTrees) {
-                if (pt.term.equals(first)) {
-                    subTree = pt;
-                }
+            PrefixTree node = this;
+            for (String t : terms) {
+                node = node.getOrAddSubTree(t);
             }
-            if (subTree == null) {
-                subTree = new PrefixTree(first);
-                subTrees.add(subTree);
-            }
-            List<String> addTerms = new ArrayList<String>(Arrays.asList(terms));
-            addTerms.remove(0);
-            subTree.add(addTerms);
+            node.terminal = true;
         }
     }
     
     public void add(List<String> terms) {
-        if (terms.isEmpty()) {
-            for (PrefixTree pt : subTrees) {
-                if (pt.term == null) {
-                    return;
-                }
-            }
-            subTrees.add(new PrefixTree(null));
-            return;
-        }
-        String first = terms.get(0);
-        PrefixTree subTree = null;
-        for (PrefixTree pt : subTrees) {
-            if (first.equals(pt.term)) {
-                subTree = pt;
-            }
+        PrefixTree node = this;
+        for (String t : terms) {
+            node = node.getOrAddSubTree(t);
         }
+        node.terminal = true;
+    }
+    
+    private PrefixTree getOrAddSubTree(String t) {
+        PrefixTree subTree = subTrees.get(t);
         if (subTree == null) {
-            subTree = new PrefixTree(first);
-            subTrees.add(subTree);
+            subTree = new PrefixTree(t);
+            subTrees.put(t, subTree);
         }
-        terms.remove(0);
-        subTree.add(terms);
+        return subTree;
     }
     
     public int match(List<String> terms) {
-        if (terms.isEmpty()) {
-            return term == null ? 0 : -1;
-        }
+        return match(terms, 0);
+    }
+
+    /**
+     * Finds the longest term stored in the tree, which is a prefix
+     * of the given token list starting at the given index.
+     * 
+     * @param terms token list
+     * @param from index of the first token to match
+     * @return the number of matched tokens, or -1 if nothing matches
+     */
+    public int match(List<String> terms, int from) {
         if (term == null) {
             return 0;
         }
-        if (term.equals(START_TERM)) {
-            int best = -1;
-            for (PrefixTree t : subTrees) {
-                int m = t.match(terms);
-                if (m > best) {
-                    best = m;
-                }
+        if (from >= terms.size()) {
+            return -1;
+        }
+        PrefixTree node = this;
+        int pos = from;
+        if (!term.equals(START_TERM)) {
+            if (!term.equals(terms.get(pos))) {
+                return -1;
             }
-            return best;
+            pos++;
         }
-        if (term.equals(terms.get(0))) {
-            int best = -1;
-            for (PrefixTree t : subTrees) {
-                int m = t.match(Lists.newArrayList(terms.subList(1, terms.size())));
-                if (m > -1 && m+1 > best) {
-                    best = m+1;
-                }
+        int best = -1;
+        while (true) {
+            if (node.terminal) {
+                best = pos - from;
+            }
+            if (pos >= terms.size()) {
+                break;
+            }
+            node = node.subTrees.get(terms.get(pos));
+            if (node == null) {
+                break;
             }
-            return best;
+            pos++;
         }
-        return -1;
+        return best;
     }
     
     public void print() {
@@ -119,8 +126,8 @@ public class PrefixTree {
     }
     
     private void print(String pref) {
-        System.out.println(pref + "term: " + term);
-        for (PrefixTree t : subTrees) {
+        System.out.println(pref + "term: " + term + (terminal ? " (end)" : ""));
+        for (PrefixTree t : subTrees.values()) {
             t.print(pref + "  ");
         }
     }
@@ -18,14 +18,16 @@
 
 package pl.edu.icm.cermine.tools;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.commons.io.FileUtils;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
-import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentBinaryFormat;
 import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentStreamReader;
 
 /**
  * @author Pawel Szostek
@@ -34,6 +36,8 @@ public class RecursiveDirExtractor implements DocumentsExtractor {
 
     protected File directory;
 
+    protected TrueVizToBxDocumentReader tvReader = new TrueVizToBxDocumentStreamReader();
+
     public RecursiveDirExtractor(String path) {
         directory = new File(path);
         if (!directory.exists() || !directory.isDirectory()) {
@@ -45,32 +49,20 @@ public class RecursiveDirExtractor implements DocumentsExtractor {
         this.directory = directory;
     }
 
+    public RecursiveDirExtractor(File directory, TrueVizToBxDocumentReader tvReader) {
+        this.directory = directory;
+        this.tvReader = tvReader;
+    }
+
     @Override
     public List<BxDocument> getDocuments() throws TransformationException {
-        TrueVizToBxDocumentReader tvReader = new TrueVizToBxDocumentReader();
         List<BxDocument> documents = new ArrayList<BxDocument>();
 
-        for (File file : FileUtils.listFiles(directory, new String[]{"xml"}, true)) {
-            InputStream is = null;
+        for (File file : FileUtils.listFiles(directory, new String[]{"xml", BxDocumentBinaryFormat.EXTENSION}, true)) {
             try {
-                is = new FileInputStream(file);
-                List<BxPage> pages = tvReader.read(new InputStreamReader(is, "UTF-8"));
-                BxDocument doc = new BxDocument();
-                doc.setFilename(file.getName());
-                doc.setPages(pages);
-                documents.add(doc);
-            } catch (FileNotFoundException ex) {
-                throw new TransformationException(ex);
-            } catch (UnsupportedEncodingException ex) {
+                documents.add(BxDocUtils.getDocument(file, tvReader));
+            } catch (IOException ex) {
                 throw new TransformationException(ex);
-            } finally {
-                if (is != null) {
-                    try {
-                        is.close();
-                    } catch (IOException ex) {
-                        throw new TransformationException("Cannot close stream!", ex);
-                    }
-                }
             }
         }
 
@@ -19,7 +19,7 @@ package pl.edu.icm.cermine.tools;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -30,8 +30,9 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
-import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentBinaryFormat;
 import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentStreamReader;
 
 /**
  * @author Pawel Szostek
@@ -40,6 +41,8 @@ public class ZipExtractor implements DocumentsExtractor {
 
     protected ZipFile zipFile;
 
+    protected TrueVizToBxDocumentReader tvReader = new TrueVizToBxDocumentStreamReader();
+
     public ZipExtractor(String path) throws IOException, URISyntaxException {
         URL url = path.getClass().getResource(path);
         URI uri = url.toURI();
@@ -55,24 +58,26 @@ public class ZipExtractor implements DocumentsExtractor {
         this.zipFile = zipFile;
     }
 
+    public ZipExtractor(ZipFile zipFile, TrueVizToBxDocumentReader tvReader) {
+        this.zipFile = zipFile;
+        this.tvReader = tvReader;
+    }
+
     @Override
     public List<BxDocument> getDocuments() throws TransformationException {
         List<BxDocument> documents = new ArrayList<BxDocument>();
 
-        TrueVizToBxDocumentReader tvReader = new TrueVizToBxDocumentReader();
         Enumeration<? extends ZipEntry> entries = zipFile.entries();
         while (entries.hasMoreElements()) {
             ZipEntry zipEntry = (ZipEntry) entries.nextElement();
-            if (zipEntry.getName().endsWith("xml")) {
+            if (zipEntry.getName().endsWith("xml") || zipEntry.getName().endsWith(BxDocumentBinaryFormat.EXTENSION)) {
                 try {
-                    List<BxPage> pages = tvReader.read(new InputStreamReader(zipFile.getInputStream(zipEntry), "UTF-8"));
-                    BxDocument newDoc = new BxDocument();
-                    for (BxPage page : pages) {
-                        page.setParent(newDoc);
+                    InputStream is = zipFile.getInputStream(zipEntry);
+                    try {
+                        documents.add(BxDocUtils.getDocument(is, zipEntry.getName(), tvReader));
+                    } finally {
+                        is.close();
                     }
-                    newDoc.setFilename(zipEntry.getName());
-                    newDoc.setPages(pages);
-                    documents.add(newDoc);
                 } catch (IOException ex) {
                     throw new TransformationException("Cannot read file!", ex);
                 }
@@ -26,6 +26,24 @@ package pl.edu.icm.cermine.tools.classification.clustering;
 public interface Clusterizer {
     
     int[] clusterize(double distanceMatrix[][], double maxDistance);
+    
+    /**
+     * Clusters the elements with the distances calculated on demand.
+     * By default the whole distance matrix is calculated first.
+     * 
+     * @param distances the distances between the elements
+     * @param maxDistance the maximum distance
+     * @return the elements' clusters
+     */
+    default int[] clusterize(PairwiseDistances distances, double maxDistance) {
+        double[][] distanceMatrix = new double[distances.size()][distances.size()];
+        for (int i = 0; i < distanceMatrix.length; i++) {
+            for (int j = 0; j < distanceMatrix.length; j++) {
+                distanceMatrix[i][j] = distances.getDistance(i, j);
+            }
+        }
+        return clusterize(distanceMatrix, maxDistance);
+    }
    
 }
 
@@ -15,20 +15,27 @@
  * You should have received a copy of the GNU Affero General Public License
  * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
  */
-
 package pl.edu.icm.cermine.tools.classification.clustering;
 
-import com.google.common.collect.Sets;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  * Complete linkage clusterizer.
- * 
+ * <p>
+ * The dendrogram is built with the nearest-neighbor chain algorithm in
+ * O(n<sup>2</sup>) time. The distances between the clusters are kept in
+ * a condensed (lower triangular) matrix, updated after every merge, instead of
+ * being recalculated from the elements' distances.
+ * <p>
+ * The merges are applied in the order of increasing distance, while
+ * the distance is smaller than the maximum distance, or the evaluator,
+ * if present, does not accept the current clustering.
+ *
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
  */
 public class CompleteLinkageClusterizer implements Clusterizer {
-    
+
     private ClusteringEvaluator evaluator;
 
     public CompleteLinkageClusterizer() {
@@ -39,65 +46,129 @@ public class CompleteLinkageClusterizer implements Clusterizer {
     }
     
     @Override
-    public int[] clusterize(double distanceMatrix[][], double maxDistance) {
-        Set<Set<Integer>> clusters = new HashSet<Set<Integer>>();
-        for (int i = 0; i < distanceMatrix.length; i++) {
-            clusters.add(Sets.newHashSet(i));
+    public int[] clusterize(double[][] distanceMatrix, double maxDistance) {
+        return clusterize(PairwiseDistances.of(distanceMatrix), maxDistance);
+    }
+
+    @Override
+    public int[] clusterize(PairwiseDistances distances, double maxDistance) {
+        final int size = distances.size();
+        TriangularMatrix clusterDistances = new TriangularMatrix(size);
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                clusterDistances.set(i, j, distances.getDistance(i, j));
+            }
         }
+
+        // a merged cluster takes the index of its second part
+        boolean[] active = new boolean[size];
+        Arrays.fill(active, true);
+        int activeCount = size;
+        final int[] mergedFirst = new int[Math.max(size - 1, 0)];
+        final int[] mergedSecond = new int[mergedFirst.length];
+        final double[] mergeDistances = new double[mergedFirst.length];
+        int mergeCount = 0;
         
-        while (true) {
-            double mind = Double.POSITIVE_INFINITY;
-            Set<Integer> minClust1 = null;
-            Set<Integer> minClust2 = null;
-            for (Set<Integer> clust1 : clusters) {
-                for (Set<Integer> clust2 : clusters) {
-                    if (clust1.equals(clust2)) {
-                        continue;
-                    }
-                    double maxd = Double.NEGATIVE_INFINITY;
-                    for (int i : clust1) {
-                        for (int j : clust2) {
-                            if (distanceMatrix[i][j] > maxd) {
-                                maxd = distanceMatrix[i][j];
-                            }
-                        }
-                    }
-                    if (maxd < mind) {
-                        mind = maxd;
-                        minClust1 = clust1;
-                        minClust2 = clust2;
-                    }
+        int[] chain = new int[size];
+        int chainSize = 0;
+        int firstActive = 0;
+        while (activeCount > 1) {
+            if (chainSize == 0) {
+                while (!active[firstActive]) {
+                    firstActive++;
                 }
+                chain[chainSize++] = firstActive;
             }
+            int current = chain[chainSize - 1];
+            int previous = chainSize > 1 ? chain[chainSize - 2] : -1;
             
-            int[] clusterArray = createClusterArray(distanceMatrix.length, clusters);
+            // the previous element of the chain wins the ties
+            int nearest = previous;
+            double minDistance = previous >= 0 ? clusterDistances.get(current, previous) : Double.POSITIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                if (!active[i] || i == current) {
+                    continue;
+                }
+                double distance = clusterDistances.get(current, i);
+                if (nearest < 0 || distance < minDistance) {
+                    nearest = i;
+                    minDistance = distance;
+                }
+            }
             
-            if (mind < maxDistance || (evaluator != null && !evaluator.isAcceptable(clusterArray))) {
-                clusters.remove(minClust1);
-                clusters.remove(minClust2);
-                if (minClust1 == null) {
-                    minClust1 = new HashSet<Integer>();
+            if (nearest != previous) {
+                chain[chainSize++] = nearest;
+                continue;
+            }
+            chainSize -= 2;
+            for (int i = 0; i < size; i++) {
+                if (active[i] && i != current && i != previous) {
+                    clusterDistances.set(previous, i,
+                            Math.max(clusterDistances.get(current, i), clusterDistances.get(previous, i)));
                 }
-                minClust1.addAll(minClust2);
-                clusters.add(minClust1);
+            }
+            active[current] = false;
+            activeCount--;
+            mergedFirst[mergeCount] = current;
+            mergedSecond[mergeCount] = previous;
+            mergeDistances[mergeCount] = minDistance;
+            mergeCount++;
+        }
+
+        Integer[] order = new Integer[mergeCount];
+        for (int i = 0; i < mergeCount; i++) {
+            order[i] = i;
+        }
+        // stable, so merges of equal distances stay after the merges they depend on
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(mergeDistances[o1], mergeDistances[o2]);
+            }
+        });
+        
+        int[] parents = new int[size];
+        for (int i = 0; i < size; i++) {
+            parents[i] = i;
+        }
+        for (int merge : order) {
+            if (mergeDistances[merge] < maxDistance
+                    || (evaluator != null && !evaluator.isAcceptable(createClusterArray(parents)))) {
+                parents[find(parents, mergedFirst[merge])] = find(parents, mergedSecond[merge]);
             } else {
                 break;
             }
         }
         
-        return createClusterArray(distanceMatrix.length, clusters);
+        return createClusterArray(parents);
+    }
+    
+    private int find(int[] parents, int element) {
+        int root = element;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (parents[element] != root) {
+            int next = parents[element];
+            parents[element] = root;
+            element = next;
+        }
+        return root;
     }
     
-    private int[] createClusterArray(int length, Set<Set<Integer>> clusters) {
-        int[] clusterArray = new int[length];
+    private int[] createClusterArray(int[] parents) {
+        int[] clusterArray = new int[parents.length];
+        int[] rootClusters = new int[parents.length];
+        Arrays.fill(rootClusters, -1);
         int clusterIndex = 0;
-        for (Set<Integer> cluster : clusters) {
-            for (int element : cluster) {
-                clusterArray[element] = clusterIndex;
+        for (int i = 0; i < parents.length; i++) {
+            int root = find(parents, i);
+            if (rootClusters[root] < 0) {
+                rootClusters[root] = clusterIndex++;
             }
-            clusterIndex++;
+            clusterArray[i] = rootClusters[root];
         }
-        
         return clusterArray;
     }
 
@@ -109,5 +180,30 @@ public class CompleteLinkageClusterizer implements Clusterizer {
         this.evaluator = evaluator;
     }
     
+    /**
+     * Symmetric matrix stored without the diagonal and the upper triangle.
+     */
+    private static class TriangularMatrix {
+        
+        private final double[] values;
+        
+        public TriangularMatrix(int size) {
+            values = new double[(int) ((long) size * (size - 1) / 2)];
+        }
+        
+        private int index(int i, int j) {
+            long row = Math.max(i, j);
+            return (int) (row * (row - 1) / 2) + Math.min(i, j);
+        }
+        
+        public double get(int i, int j) {
+            return values[index(i, j)];
+        }
+        
+        public void set(int i, int j, double value) {
+            values[index(i, j)] = value;
+        }
+        
+    }
+    
 }
-
@@ -34,15 +34,7 @@ public class FeatureVectorClusterizer {
         if (normalize){
             FeatureVectorsNormalizer.normalize(vectors, builder);
         }
-        double distanceMatrix[][] = new double[vectors.length][vectors.length];
-        for (int i = 0; i < vectors.length; i++) {
-            for (int j = 0; j < vectors.length; j++) {
-                distanceMatrix[i][j] = metric.getDistance(vectors[i], vectors[j]);
-                distanceMatrix[j][i] = metric.getDistance(vectors[i], vectors[j]);
-            }
-        }
-        
-        return clusterizer.clusterize(distanceMatrix, maxDistance);
+        return clusterizer.clusterize(new FeatureVectorDistances(vectors, metric), maxDistance);
     }
 
     public void setClusterizer(Clusterizer clusterizer) {
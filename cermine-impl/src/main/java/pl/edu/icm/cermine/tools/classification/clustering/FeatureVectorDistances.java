@@ -0,0 +1,49 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools.classification.clustering;
+
+import pl.edu.icm.cermine.tools.classification.general.FeatureVector;
+import pl.edu.icm.cermine.tools.distance.FeatureVectorDistanceMetric;
+
+/**
+ * Distances between feature vectors, calculated with the metric on demand.
+ */
+public class FeatureVectorDistances implements PairwiseDistances {
+    
+    private final FeatureVector[] vectors;
+    
+    private final FeatureVectorDistanceMetric metric;
+
+    public FeatureVectorDistances(FeatureVector[] vectors, FeatureVectorDistanceMetric metric) {
+        this.vectors = vectors;
+        this.metric = metric;
+    }
+    
+    @Override
+    public int size() {
+        return vectors.length;
+    }
+
+    @Override
+    public double getDistance(int i, int j) {
+        // the metric is always given the vectors in the same order,
+        // so that the distances are symmetric
+        return i < j ? metric.getDistance(vectors[j], vectors[i]) : metric.getDistance(vectors[i], vectors[j]);
+    }
+    
+}
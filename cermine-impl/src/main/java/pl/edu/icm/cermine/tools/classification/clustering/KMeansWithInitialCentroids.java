@@ -24,6 +24,7 @@
 package pl.edu.icm.cermine.tools.classification.clustering;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import pl.edu.icm.cermine.tools.classification.general.FeatureVector;
@@ -58,7 +59,18 @@ public class KMeansWithInitialCentroids {
     /**
      * The centroids of the different clusters.
      */
-    private FeatureVector[] centroids;
+    private double[][] centroids;
+    
+    /**
+     * The names of the features of the clustered instances.
+     */
+    private List<String> featureNames;
+    
+    /**
+     * The distance measure if it is Euclidean distance calculated directly
+     * on feature values, null otherwise.
+     */
+    private FeatureVectorEuclideanMetric euclideanDistance;
 
     /**
      * Constuct a default K-means clusterer with 100 iterations, 4 clusters, a
@@ -115,72 +127,108 @@ public class KMeansWithInitialCentroids {
     }
 
     public void setCentroids(FeatureVector[] centroids) {
-        this.centroids = new FeatureVector[centroids.length];
-        System.arraycopy(centroids, 0, this.centroids, 0, centroids.length);
+        this.centroids = new double[centroids.length][];
+        for (int i = 0; i < centroids.length; i++) {
+            this.centroids[i] = centroids[i].getValues();
+        }
+    }
+    
+    public void setCentroids(double[][] centroids) {
+        this.centroids = new double[centroids.length][];
+        for (int i = 0; i < centroids.length; i++) {
+            this.centroids[i] = centroids[i].clone();
+        }
     }
     
     public List<FeatureVector>[] cluster(List<FeatureVector> data) {
         if (data.isEmpty()) {
             throw new RuntimeException("The dataset should not be empty");
         }
+        double[][] values = new double[data.size()][];
+        for (int i = 0; i < data.size(); i++) {
+            values[i] = data.get(i).getValues();
+        }
+        int[] assignment = cluster(values, data.get(0).getFeatureNames());
+        
+        List<FeatureVector>[] output = new List[centroids.length];
+        for (int i = 0; i < centroids.length; i++) {
+            output[i] = new ArrayList<FeatureVector>();
+        }
+        for (int i = 0; i < data.size(); i++) {
+            output[assignment[i]].add(data.get(i));
+        }
+        return output;
+    }
+    
+    /**
+     * Clusters the instances given as rows of feature values.
+     * 
+     * @param data the instances
+     * @return the numbers of the instances' clusters
+     */
+    public int[] cluster(double[][] data) {
+        List<String> featureNames = new ArrayList<String>();
+        if (data.length > 0) {
+            for (int i = 0; i < data[0].length; i++) {
+                featureNames.add(String.valueOf(i));
+            }
+        }
+        return cluster(data, featureNames);
+    }
+    
+    private int[] cluster(double[][] data, List<String> featureNames) {
+        if (data.length == 0) {
+            throw new RuntimeException("The dataset should not be empty");
+        }
         if (numberOfClusters == 0) {
             throw new RuntimeException("There should be at least one cluster");
         }
+        
+        euclideanDistance = null;
+        if (dm instanceof FeatureVectorEuclideanMetric
+                && new HashSet<String>(featureNames).size() == featureNames.size()) {
+            euclideanDistance = (FeatureVectorEuclideanMetric) dm;
+        }
+        this.featureNames = featureNames;
+        
         // Place K points into the space represented by the objects that are
         // being clustered. These points represent the initial group of
         // centroids.
         // DatasetTools.
-        int instanceLength = data.get(0).size();
+        int instanceLength = data[0].length;
         double[] min = new double[instanceLength];
         double[] max = new double[instanceLength];
         for (int i = 0; i < instanceLength; i++) {
-            min[i] = data.get(0).getValue(i);
-            max[i] = data.get(0).getValue(i);
+            min[i] = data[0][i];
+            max[i] = data[0][i];
         }
-        for (FeatureVector fv : data) {
+        for (double[] instance : data) {
             for (int i = 0; i < instanceLength; i++) {
-                if (fv.getValue(i) < min[i]) {
-                    min[i] = fv.getValue(i);
+                if (instance[i] < min[i]) {
+                    min[i] = instance[i];
                 }
-                if (fv.getValue(i) > max[i]) {
-                    max[i] = fv.getValue(i);
+                if (instance[i] > max[i]) {
+                    max[i] = instance[i];
                 }
             }
         }
         
         if (this.centroids == null) {
-            this.centroids = new FeatureVector[numberOfClusters];
+            this.centroids = new double[numberOfClusters][];
             for (int j = 0; j < numberOfClusters; j++) {
-                double[] randomInstance = new double[instanceLength];
-                for (int i = 0; i < instanceLength; i++) {
-                    double dist = Math.abs(max[i] - min[i]);
-                    randomInstance[i] = (float) (min[i] + rg.nextDouble() * dist);
-
-                }
-                this.centroids[j] = data.get(0).copy();
-                this.centroids[j].setValues(randomInstance);
+                this.centroids[j] = randomInstance(min, max);
             }
         }
 
+        int[] assignment = new int[data.length];
         int iterationCount = 0;
         boolean centroidsChanged = true;
         boolean randomCentroids = true;
         while (randomCentroids || (iterationCount < this.numberOfIterations && centroidsChanged)) {
             iterationCount++;
             // Assign each object to the group that has the closest centroid.
-            int[] assignment = new int[data.size()];
-            for (int i = 0; i < data.size(); i++) {
-                int tmpCluster = 0;
-                double minDistance = dm.getDistance(centroids[0], data.get(i));
-                for (int j = 1; j < centroids.length; j++) {
-                    double dist = dm.getDistance(centroids[j], data.get(i));
-                    if (dist < minDistance) {
-                        minDistance = dist;
-                        tmpCluster = j;
-                    }
-                }
-                assignment[i] = tmpCluster;
-
+            for (int i = 0; i < data.length; i++) {
+                assignment[i] = closestCentroid(data[i]);
             }
 
             // When all objects have been assigned, recalculate the positions of
@@ -189,12 +237,9 @@ public class KMeansWithInitialCentroids {
             // current cluster.
             double[][] sumPosition = new double[this.numberOfClusters][instanceLength];
             int[] countPosition = new int[this.numberOfClusters];
-            for (int i = 0; i < data.size(); i++) {
-                FeatureVector in = data.get(i);
+            for (int i = 0; i < data.length; i++) {
                 for (int j = 0; j < instanceLength; j++) {
-
-                    sumPosition[assignment[i]][j] += in.getValue(j);
-
+                    sumPosition[assignment[i]][j] += data[i][j];
                 }
                 countPosition[assignment[i]]++;
             }
@@ -203,47 +248,61 @@ public class KMeansWithInitialCentroids {
             randomCentroids = false;
             for (int i = 0; i < this.numberOfClusters; i++) {
                 if (countPosition[i] > 0) {
-                    double[] tmp = new double[instanceLength];
+                    double[] newCentroid = new double[instanceLength];
                     for (int j = 0; j < instanceLength; j++) {
-                        tmp[j] = (float) sumPosition[i][j] / countPosition[i];
+                        newCentroid[j] = (float) sumPosition[i][j] / countPosition[i];
                     }
-                    FeatureVector newCentroid = data.get(0).copy();
-                    newCentroid.setValues(tmp);
-                    if (dm.getDistance(newCentroid, centroids[i]) > 0.0001) {
+                    if (getDistance(newCentroid, centroids[i]) > 0.0001) {
                         centroidsChanged = true;
                         centroids[i] = newCentroid;
                     }
                 } else {
-                    double[] randomInstance = new double[instanceLength];
-                    for (int j = 0; j < instanceLength; j++) {
-                        double dist = Math.abs(max[j] - min[j]);
-                        randomInstance[j] = (float) (min[j] + rg.nextDouble() * dist);
-
-                    }
                     randomCentroids = true;
-                    this.centroids[i] = data.get(0).copy();
-                    this.centroids[i].setValues(randomInstance);
+                    this.centroids[i] = randomInstance(min, max);
                 }
 
             }
         }
-        List<FeatureVector>[] output = new List[centroids.length];
-        for (int i = 0; i < centroids.length; i++) {
-            output[i] = new ArrayList<FeatureVector>();
+        for (int i = 0; i < data.length; i++) {
+            assignment[i] = closestCentroid(data[i]);
         }
-        for (int i = 0; i < data.size(); i++) {
-            int tmpCluster = 0;
-            double minDistance = dm.getDistance(centroids[0], data.get(i));
-            for (int j = 0; j < centroids.length; j++) {
-                double dist = dm.getDistance(centroids[j], data.get(i));
-                if (dist < minDistance) {
-                    minDistance = dist;
-                    tmpCluster = j;
-                }
+        return assignment;
+    }
+    
+    private double[] randomInstance(double[] min, double[] max) {
+        double[] randomInstance = new double[min.length];
+        for (int i = 0; i < min.length; i++) {
+            double dist = Math.abs(max[i] - min[i]);
+            randomInstance[i] = (float) (min[i] + rg.nextDouble() * dist);
+        }
+        return randomInstance;
+    }
+    
+    private int closestCentroid(double[] instance) {
+        int cluster = 0;
+        double minDistance = getDistance(centroids[0], instance);
+        for (int j = 1; j < centroids.length; j++) {
+            double dist = getDistance(centroids[j], instance);
+            if (dist < minDistance) {
+                minDistance = dist;
+                cluster = j;
             }
-            output[tmpCluster].add(data.get(i));
-
         }
-        return output;
+        return cluster;
+    }
+    
+    private double getDistance(double[] values1, double[] values2) {
+        if (euclideanDistance != null) {
+            return euclideanDistance.getDistance(values1, values2);
+        }
+        return dm.getDistance(toFeatureVector(values1), toFeatureVector(values2));
+    }
+    
+    private FeatureVector toFeatureVector(double[] values) {
+        FeatureVector vector = new FeatureVector();
+        for (int i = 0; i < values.length; i++) {
+            vector.addFeature(featureNames.get(i), values[i]);
+        }
+        return vector;
     }
 }
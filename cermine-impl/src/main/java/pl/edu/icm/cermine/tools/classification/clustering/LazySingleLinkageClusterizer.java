@@ -0,0 +1,90 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools.classification.clustering;
+
+/**
+ * Single linkage clusterizer for large sets of elements. It gives the same
+ * clusters as {@link SingleLinkageClusterizer}: the connected components of
+ * the graph joining the elements closer than the maximum distance (which is
+ * the minimum spanning tree cut at the maximum distance). The components are
+ * found with a breadth-first search over the unassigned elements, which takes
+ * O(n<sup>2</sup>) distance calculations and O(n) memory, and the distances
+ * are calculated only when needed.
+ * <p>
+ * The elements of a cluster are labelled with the cluster's smallest element
+ * index.
+ */
+public class LazySingleLinkageClusterizer implements Clusterizer {
+
+    @Override
+    public int[] clusterize(double[][] distanceMatrix, double maxDistance) {
+        return clusterize(PairwiseDistances.of(distanceMatrix), maxDistance);
+    }
+
+    @Override
+    public int[] clusterize(PairwiseDistances distances, double maxDistance) {
+        int size = distances.size();
+        int[] clusters = new int[size];
+        
+        // the elements not assigned to any cluster yet, in the first
+        // unassignedCount positions
+        int[] unassigned = new int[size];
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            unassigned[i] = i;
+            positions[i] = i;
+        }
+        int unassignedCount = size;
+        int[] queue = new int[size];
+        
+        for (int seed = 0; seed < size; seed++) {
+            if (positions[seed] >= unassignedCount) {
+                continue;
+            }
+            unassignedCount = remove(unassigned, positions, unassignedCount, seed);
+            clusters[seed] = seed;
+            int queueStart = 0;
+            int queueEnd = 0;
+            queue[queueEnd++] = seed;
+            while (queueStart < queueEnd) {
+                int element = queue[queueStart++];
+                for (int i = 0; i < unassignedCount; i++) {
+                    int other = unassigned[i];
+                    if (distances.getDistance(element, other) < maxDistance) {
+                        unassignedCount = remove(unassigned, positions, unassignedCount, other);
+                        clusters[other] = seed;
+                        queue[queueEnd++] = other;
+                        i--;
+                    }
+                }
+            }
+        }
+        return clusters;
+    }
+    
+    private int remove(int[] unassigned, int[] positions, int unassignedCount, int element) {
+        int position = positions[element];
+        int last = unassigned[unassignedCount - 1];
+        unassigned[position] = last;
+        positions[last] = position;
+        unassigned[unassignedCount - 1] = element;
+        positions[element] = unassignedCount - 1;
+        return unassignedCount - 1;
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools.classification.clustering;
+
+/**
+ * Distances between the elements of a clustered set. The distances are
+ * expected to be symmetric; they may be calculated on demand, so that
+ * the whole distance matrix does not have to be kept in memory.
+ */
+public interface PairwiseDistances {
+    
+    /**
+     * Returns the number of the elements.
+     * 
+     * @return the number of the elements
+     */
+    int size();
+    
+    /**
+     * Returns the distance between two elements.
+     * 
+     * @param i the index of the first element
+     * @param j the index of the second element
+     * @return the distance
+     */
+    double getDistance(int i, int j);
+    
+    /**
+     * Returns the distances stored in a matrix.
+     * 
+     * @param distanceMatrix distance matrix
+     * @return the distances
+     */
+    static PairwiseDistances of(final double[][] distanceMatrix) {
+        return new PairwiseDistances() {
+            
+            @Override
+            public int size() {
+                return distanceMatrix.length;
+            }
+
+            @Override
+            public double getDistance(int i, int j) {
+                return distanceMatrix[i][j];
+            }
+        };
+    }
+    
+}
@@ -62,4 +62,16 @@ public abstract class FeatureCalculator<S, T> {
      */
     public abstract double calculateFeatureValue(S object, T context);
 
+    /**
+     * Tells whether the feature value depends on the labels assigned to
+     * other objects, e.g. to the previous zone. Such features can be
+     * calculated only after the other objects are classified, while all the
+     * remaining ones can be calculated in any order.
+     *
+     * @return true if the value depends on the labels of other objects
+     */
+    public boolean isLabelDependent() {
+        return false;
+    }
+
 }
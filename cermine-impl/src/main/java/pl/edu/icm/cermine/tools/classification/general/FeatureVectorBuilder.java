@@ -43,6 +43,62 @@ public class FeatureVectorBuilder<S, T> {
         return featureVector;
     }
 
+    /**
+     * Calculates the feature values into the given array, in the order
+     * of the feature calculators, without creating a feature vector.
+     *
+     * @param object object
+     * @param context context
+     * @param values array of at least {@link #size()} elements
+     */
+    public void getFeatureValues(S object, T context, double[] values) {
+        for (int i = 0; i < featureCalculators.size(); i++) {
+            values[i] = featureCalculators.get(i).calculateFeatureValue(object, context);
+        }
+    }
+
+    /**
+     * Calculates the feature values skipping the features that depend on the
+     * labels of other objects. Their values are set to 0 and have to be
+     * calculated later with {@link #updateLabelDependentFeatures}.
+     *
+     * @param object object
+     * @param context context
+     * @param values array of at least {@link #size()} elements
+     */
+    public void getLabelIndependentFeatureValues(S object, T context, double[] values) {
+        for (int i = 0; i < featureCalculators.size(); i++) {
+            FeatureCalculator<S, T> fc = featureCalculators.get(i);
+            values[i] = fc.isLabelDependent() ? 0 : fc.calculateFeatureValue(object, context);
+        }
+    }
+
+    /**
+     * Calculates the values of the features that depend on the labels of
+     * other objects. The remaining values are left unchanged.
+     *
+     * @param values feature values calculated for the object
+     * @param object object
+     * @param context context
+     */
+    public void updateLabelDependentFeatures(double[] values, S object, T context) {
+        for (int i = 0; i < featureCalculators.size(); i++) {
+            FeatureCalculator<S, T> fc = featureCalculators.get(i);
+            if (fc.isLabelDependent()) {
+                values[i] = fc.calculateFeatureValue(object, context);
+            }
+        }
+    }
+
+    public boolean hasLabelDependentFeatures() {
+        for (FeatureCalculator<S, T> fc : featureCalculators) {
+            if (fc.isLabelDependent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public List<String> getFeatureNames() {
         List<String> ret = new ArrayList<String>();
         for (FeatureCalculator<S, T> fc : featureCalculators) {
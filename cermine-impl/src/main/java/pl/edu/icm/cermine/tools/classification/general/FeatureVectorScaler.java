@@ -28,6 +28,23 @@ public interface FeatureVectorScaler {
     
     FeatureVector scaleFeatureVector(FeatureVector fv);
     
+    /**
+     * Scales dense feature values in place. The result is the same as
+     * the result of {@link #scaleFeatureVector(FeatureVector)} for the vector
+     * of the given names and values.
+     * 
+     * @param values feature values, in the order of the names
+     * @param names feature names
+     */
+    default void scaleFeatureValues(double[] values, String[] names) {
+        FeatureVector fv = new FeatureVector();
+        for (int i = 0; i < values.length; i++) {
+            fv.addFeature(names[i], values[i]);
+        }
+        double[] scaled = scaleFeatureVector(fv).getValues();
+        System.arraycopy(scaled, 0, values, 0, values.length);
+    }
+    
     <A extends Enum<A>> void calculateFeatureLimits(List<TrainingSample<A>> trainingElements);
     
     void saveRangeFile(String path) throws IOException;
@@ -61,6 +61,15 @@ public class FeatureVectorScalerImpl implements FeatureVectorScaler {
         return strategy.scaleFeatureVector(scaledLowerBound, scaledUpperBound, limits, fv);
     }
 
+    @Override
+    public void scaleFeatureValues(double[] values, String[] names) {
+        if (strategy instanceof LinearScaling) {
+            ((LinearScaling) strategy).scaleFeatureValues(scaledLowerBound, scaledUpperBound, limits, values, names);
+        } else {
+            FeatureVectorScaler.super.scaleFeatureValues(values, names);
+        }
+    }
+
     public void setFeatureLimits(List<FeatureLimits> featureLimits) {
         this.limits = featureLimits.toArray(new FeatureLimits[featureLimits.size()]);
     }
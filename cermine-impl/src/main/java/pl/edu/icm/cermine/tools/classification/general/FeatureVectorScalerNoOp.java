@@ -31,6 +31,11 @@ public class FeatureVectorScalerNoOp implements FeatureVectorScaler {
         return fv;
     }
     
+    @Override
+    public void scaleFeatureValues(double[] values, String[] names) {
+        // intentionally left blank
+    }
+    
     @Override
     public <A extends Enum<A>> void calculateFeatureLimits(List<TrainingSample<A>> trainingElements) {
         // intentionally left blank
@@ -54,4 +54,34 @@ public class LinearScaling implements ScalingStrategy {
 		}
 		return newVector;
 	}
+
+    /**
+     * Scales dense feature values in place, with the same arithmetic as
+     * {@link #scaleFeatureVector}. The feature names must be distinct.
+     *
+     * @param scaledLowerBound scaled lower bound
+     * @param scaledUpperBound scaled upper bound
+     * @param limits feature limits
+     * @param values feature values
+     * @param names feature names
+     */
+    public void scaleFeatureValues(double scaledLowerBound, double scaledUpperBound,
+            FeatureLimits[] limits, double[] values, String[] names) {
+        final double EPS = 0.00001;
+        for (int featureIdx = 0; featureIdx < values.length; featureIdx++) {
+            if (Math.abs(limits[featureIdx].getMax() - limits[featureIdx].getMin()) < EPS) {
+                values[featureIdx] = 1.0;
+            } else {
+                double a = (scaledUpperBound - scaledLowerBound) / (limits[featureIdx].getMax() - limits[featureIdx].getMin());
+                double b = scaledLowerBound - a * limits[featureIdx].getMin();
+
+                values[featureIdx] = a * values[featureIdx] + b;
+
+                if (Double.isNaN(values[featureIdx])) {
+                    throw new RuntimeException("Feature value is set to NaN: " + names[featureIdx]);
+                }
+            }
+        }
+        TimeoutRegister.get().check();
+    }
 }
@@ -0,0 +1,289 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.lang.ref.WeakReference;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
+
+/**
+ * The support vectors of a libsvm classification model stored in a single
+ * row-major matrix, so that the kernel values of many instances can be
+ * calculated in cache-sized blocks.
+ * <p>
+ * The kernels and the voting follow <code>svm.svm_predict</code> operation
+ * by operation, hence the predicted labels are the same as libsvm's.
+ * Only C-SVC and nu-SVC models with linear, polynomial, RBF or sigmoid
+ * kernels are supported, see {@link #isSupported(svm_model, int)}.
+ */
+final class DenseSVMModel {
+
+    /** The number of instances evaluated together. */
+    private static final int INSTANCE_BLOCK_SIZE = 16;
+
+    /** The number of support vectors evaluated together. */
+    private static final int VECTOR_BLOCK_SIZE = 64;
+
+    private final WeakReference<svm_model> source;
+
+    private final boolean supported;
+
+    private final int dimensions;
+
+    private final int vectorCount;
+
+    private final double[] vectors;
+
+    private final int kernelType;
+
+    private final int degree;
+
+    private final double gamma;
+
+    private final double coef0;
+
+    private final int classCount;
+
+    private final int[] start;
+
+    private final int[] nSV;
+
+    private final double[][] coef;
+
+    private final double[] rho;
+
+    private final int[] labels;
+
+    private final ThreadLocal<double[]> kernelBuffer = new ThreadLocal<double[]>();
+
+    private DenseSVMModel(svm_model model, int dimensions) {
+        this.source = new WeakReference<svm_model>(model);
+        this.supported = isSupported(model, dimensions);
+        this.dimensions = dimensions;
+        this.vectorCount = model.l;
+        if (supported) {
+            this.vectors = new double[vectorCount * dimensions];
+            for (int i = 0; i < vectorCount; i++) {
+                for (svm_node node : model.SV[i]) {
+                    vectors[i * dimensions + node.index] = node.value;
+                }
+            }
+        } else {
+            this.vectors = null;
+        }
+        this.kernelType = model.param.kernel_type;
+        this.degree = model.param.degree;
+        this.gamma = model.param.gamma;
+        this.coef0 = model.param.coef0;
+        this.classCount = model.nr_class;
+        this.start = new int[classCount];
+        for (int i = 1; i < classCount; i++) {
+            start[i] = start[i - 1] + model.nSV[i - 1];
+        }
+        this.nSV = model.nSV;
+        this.coef = model.sv_coef;
+        this.rho = model.rho;
+        this.labels = model.label;
+    }
+
+    /**
+     * Creates the dense form of the model. If the model is not supported,
+     * the returned object only remembers that, so that the check is not
+     * repeated.
+     *
+     * @param model libsvm model
+     * @param dimensions the number of features
+     * @return the dense model
+     */
+    static DenseSVMModel create(svm_model model, int dimensions) {
+        return new DenseSVMModel(model, dimensions);
+    }
+
+    /**
+     * Checks whether the model can be evaluated in the dense form. Apart from
+     * the model and kernel types, all the support vector indices have to
+     * be valid feature indices.
+     *
+     * @param model libsvm model
+     * @param dimensions the number of features
+     * @return true if the model is supported
+     */
+    static boolean isSupported(svm_model model, int dimensions) {
+        int svmType = model.param.svm_type;
+        if (svmType != svm_parameter.C_SVC && svmType != svm_parameter.NU_SVC) {
+            return false;
+        }
+        int kernel = model.param.kernel_type;
+        if (kernel != svm_parameter.LINEAR && kernel != svm_parameter.POLY
+                && kernel != svm_parameter.RBF && kernel != svm_parameter.SIGMOID) {
+            return false;
+        }
+        for (int i = 0; i < model.l; i++) {
+            int last = -1;
+            for (svm_node node : model.SV[i]) {
+                if (node.index <= last || node.index >= dimensions) {
+                    return false;
+                }
+                last = node.index;
+            }
+        }
+        return true;
+    }
+
+    boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Checks whether this is the dense form of the given model.
+     *
+     * @param model libsvm model
+     * @param dimensions the number of features
+     * @return true if the model matches
+     */
+    boolean isFor(svm_model model, int dimensions) {
+        return source.get() == model && this.dimensions == dimensions;
+    }
+
+    /**
+     * Predicts the label of a single instance.
+     *
+     * @param instance scaled feature values
+     * @return predicted label, as in the libsvm model
+     */
+    int predict(double[] instance) {
+        double[] kvalues = kernelBuffer.get();
+        if (kvalues == null) {
+            kvalues = new double[vectorCount];
+            kernelBuffer.set(kvalues);
+        }
+        for (int j = 0; j < vectorCount; j++) {
+            kvalues[j] = kernel(instance, j * dimensions);
+        }
+        return vote(kvalues, 0, new int[classCount]);
+    }
+
+    /**
+     * Predicts the labels of the instances.
+     *
+     * @param instances scaled feature values
+     * @param from index of the first instance
+     * @param to index after the last instance
+     * @param results array for the predicted labels, as in the libsvm model
+     */
+    void predict(double[][] instances, int from, int to, int[] results) {
+        double[] kvalues = new double[INSTANCE_BLOCK_SIZE * vectorCount];
+        int[] votes = new int[classCount];
+        for (int blockStart = from; blockStart < to; blockStart += INSTANCE_BLOCK_SIZE) {
+            int blockEnd = Math.min(to, blockStart + INSTANCE_BLOCK_SIZE);
+            for (int vectorStart = 0; vectorStart < vectorCount; vectorStart += VECTOR_BLOCK_SIZE) {
+                int vectorEnd = Math.min(vectorCount, vectorStart + VECTOR_BLOCK_SIZE);
+                for (int i = blockStart; i < blockEnd; i++) {
+                    int row = (i - blockStart) * vectorCount;
+                    for (int j = vectorStart; j < vectorEnd; j++) {
+                        kvalues[row + j] = kernel(instances[i], j * dimensions);
+                    }
+                }
+            }
+            for (int i = blockStart; i < blockEnd; i++) {
+                results[i] = vote(kvalues, (i - blockStart) * vectorCount, votes);
+            }
+            TimeoutRegister.get().check();
+        }
+    }
+
+    private int vote(double[] kvalues, int offset, int[] votes) {
+        for (int i = 0; i < classCount; i++) {
+            votes[i] = 0;
+        }
+        int p = 0;
+        for (int i = 0; i < classCount; i++) {
+            for (int j = i + 1; j < classCount; j++) {
+                double sum = 0;
+                int si = start[i];
+                int sj = start[j];
+                double[] coef1 = coef[j - 1];
+                double[] coef2 = coef[i];
+                for (int k = 0; k < nSV[i]; k++) {
+                    sum += coef1[si + k] * kvalues[offset + si + k];
+                }
+                for (int k = 0; k < nSV[j]; k++) {
+                    sum += coef2[sj + k] * kvalues[offset + sj + k];
+                }
+                sum -= rho[p];
+                if (sum > 0) {
+                    ++votes[i];
+                } else {
+                    ++votes[j];
+                }
+                p++;
+            }
+        }
+        int maxIdx = 0;
+        for (int i = 1; i < classCount; i++) {
+            if (votes[i] > votes[maxIdx]) {
+                maxIdx = i;
+            }
+        }
+        return labels[maxIdx];
+    }
+
+    private double kernel(double[] x, int offset) {
+        switch (kernelType) {
+            case svm_parameter.LINEAR:
+                return dot(x, offset);
+            case svm_parameter.POLY:
+                return powi(gamma * dot(x, offset) + coef0, degree);
+            case svm_parameter.RBF:
+                double sum = 0;
+                for (int i = 0; i < dimensions; i++) {
+                    double d = x[i] - vectors[offset + i];
+                    sum += d * d;
+                }
+                return Math.exp(-gamma * sum);
+            case svm_parameter.SIGMOID:
+                return Math.tanh(gamma * dot(x, offset) + coef0);
+            default:
+                throw new IllegalStateException("Unsupported kernel type: " + kernelType);
+        }
+    }
+
+    private double dot(double[] x, int offset) {
+        double sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += x[i] * vectors[offset + i];
+        }
+        return sum;
+    }
+
+    private static double powi(double base, int times) {
+        double tmp = base;
+        double ret = 1.0;
+        for (int t = times; t > 0; t /= 2) {
+            if (t % 2 == 1) {
+                ret *= tmp;
+            }
+            tmp = tmp * tmp;
+        }
+        return ret;
+    }
+
+}
@@ -21,12 +21,18 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import libsvm.*;
 import org.apache.commons.collections.iterators.ArrayIterator;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.tools.PageParallelExecutor;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 import pl.edu.icm.cermine.tools.classification.general.*;
 import pl.edu.icm.cermine.tools.timeout.TimeoutRegister;
 
@@ -70,9 +76,28 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 
     protected Class<E> enumClassObj;
 
+    private final E[] labels;
+
+    /**
+     * Whether the dense values can be scaled in place. The feature vector
+     * scaling looks the values up by name, so duplicated names have to go
+     * through {@link FeatureVector}.
+     */
+    private final boolean distinctFeatureNames;
+
+    private final ThreadLocal<double[]> valuesBuffer = new ThreadLocal<double[]>();
+
+    private final ThreadLocal<svm_node[]> nodesBuffer = new ThreadLocal<svm_node[]>();
+
+    private volatile DenseSVMModel denseModel;
+
+    /** The minimum number of objects classified by a single task in {@link #predictLabels}. */
+    private static final int MIN_BATCH_SIZE = 64;
+
     public SVMClassifier(FeatureVectorBuilder<S, T> featureVectorBuilder, Class<E> enumClassObj) {
         this.featureVectorBuilder = featureVectorBuilder;
         this.enumClassObj = enumClassObj;
+        this.labels = enumClassObj.getEnumConstants();
         int dimensions = featureVectorBuilder.size();
 
         double scaledLowerBound = 0.0;
@@ -82,6 +107,7 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 	this.scaler = lScaler;
 		
         featuresNames = featureVectorBuilder.getFeatureNames().toArray(new String[featureVectorBuilder.getFeatureNames().size()]);
+        distinctFeatureNames = new HashSet<String>(Arrays.asList(featuresNames)).size() == featuresNames.length;
 		
 	param = getDefaultParam();
 	}
@@ -119,29 +145,159 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 	}
 	
 	public E predictLabel(S object, T context) {
-		svm_node[] instance = buildDatasetForClassification(object, context);
-		TimeoutRegister.get().check(); //12s-70s
-		int predictedVal = (int)svm.svm_predict(model, instance);
-		TimeoutRegister.get().check();
-		return enumClassObj.getEnumConstants()[predictedVal];
+		double[] values = getValuesBuffer();
+		featureVectorBuilder.getFeatureValues(object, context, values);
+		return predictLabelFromValues(values);
 	}
+
+    /**
+     * Predicts the label from the feature values calculated by the feature
+     * vector builder. The values are scaled in place.
+     *
+     * @param values feature values, in the order of the builder's features
+     * @return predicted label
+     */
+    public E predictLabelFromValues(double[] values) {
+        DenseSVMModel dense = getDenseModel();
+        if (dense != null) {
+            scaleFeatureValues(values);
+            TimeoutRegister.get().check();
+            return labels[dense.predict(values)];
+        }
+        svm_node[] instance = buildDatasetForClassification(values);
+        TimeoutRegister.get().check(); //12s-70s
+        int predictedVal = (int)svm.svm_predict(model, instance);
+        TimeoutRegister.get().check();
+        return labels[predictedVal];
+    }
+
+    /**
+     * Predicts the labels of many objects sharing the same context. The labels
+     * are the same as the ones returned by {@link #predictLabel(Object, Object)},
+     * but the kernel values are calculated in blocks against a dense copy
+     * of the support vectors, and large batches are split between the threads
+     * of {@link PageParallelExecutor}.
+     * <p>
+     * The labels are not set on the objects between the predictions, so
+     * the method should not be used if the feature values of an object depend
+     * on the labels of other objects (see {@link FeatureCalculator#isLabelDependent()}).
+     *
+     * @param objects classified objects
+     * @param context context
+     * @return predicted labels, in the order of the objects
+     * @throws AnalysisException AnalysisException
+     */
+    public List<E> predictLabels(List<S> objects, final T context) throws AnalysisException {
+        List<List<E>> results = PageParallelExecutor.map(splitIntoBatches(objects),
+                new PageParallelExecutor.PageTask<List<S>, List<E>>() {
+                    @Override
+                    public List<E> process(List<S> batch) {
+                        double[][] values = new double[batch.size()][featureVectorBuilder.size()];
+                        for (int i = 0; i < batch.size(); i++) {
+                            TimeoutRegister.get().check();
+                            featureVectorBuilder.getFeatureValues(batch.get(i), context, values[i]);
+                        }
+                        return predictBatch(values);
+                    }
+                });
+        return flatten(results, objects.size());
+    }
+
+    /**
+     * Predicts the labels from the feature values calculated by the feature
+     * vector builder, in the same way as {@link #predictLabels(List, Object)}.
+     * The values are scaled in place.
+     *
+     * @param values feature values of the objects
+     * @return predicted labels, in the order of the values
+     * @throws AnalysisException AnalysisException
+     */
+    public List<E> predictLabelsFromValues(List<double[]> values) throws AnalysisException {
+        List<List<E>> results = PageParallelExecutor.map(splitIntoBatches(values),
+                new PageParallelExecutor.PageTask<List<double[]>, List<E>>() {
+                    @Override
+                    public List<E> process(List<double[]> batch) {
+                        return predictBatch(batch.toArray(new double[batch.size()][]));
+                    }
+                });
+        return flatten(results, values.size());
+    }
+
+    private List<E> predictBatch(double[][] values) {
+        List<E> predicted = new ArrayList<E>(values.length);
+        DenseSVMModel dense = getDenseModel();
+        if (dense == null) {
+            for (double[] instance : values) {
+                predicted.add(predictLabelFromValues(instance));
+            }
+            return predicted;
+        }
+        for (double[] instance : values) {
+            scaleFeatureValues(instance);
+        }
+        int[] predictedVals = new int[values.length];
+        dense.predict(values, 0, values.length, predictedVals);
+        for (int predictedVal : predictedVals) {
+            predicted.add(labels[predictedVal]);
+        }
+        return predicted;
+    }
+
+    private <X> List<List<X>> splitIntoBatches(List<X> objects) {
+        int parallelism = Math.max(1, PageParallelExecutor.getParallelism());
+        int batchSize = Math.max(MIN_BATCH_SIZE, (objects.size() + parallelism - 1) / parallelism);
+        List<List<X>> batches = new ArrayList<List<X>>();
+        for (int i = 0; i < objects.size(); i += batchSize) {
+            batches.add(objects.subList(i, Math.min(objects.size(), i + batchSize)));
+        }
+        return batches;
+    }
+
+    private List<E> flatten(List<List<E>> results, int size) {
+        List<E> predicted = new ArrayList<E>(size);
+        for (List<E> batch : results) {
+            predicted.addAll(batch);
+        }
+        return predicted;
+    }
+
+    /**
+     * Returns the dense form of the current model, or null if the model
+     * cannot be evaluated that way and libsvm has to be used.
+     */
+    private DenseSVMModel getDenseModel() {
+        svm_model current = model;
+        if (current == null) {
+            return null;
+        }
+        DenseSVMModel dense = denseModel;
+        if (dense == null || !dense.isFor(current, featureVectorBuilder.size())) {
+            dense = DenseSVMModel.create(current, featureVectorBuilder.size());
+            denseModel = dense;
+        }
+        return dense.isSupported() ? dense : null;
+    }
 	
 	public E predictLabel(TrainingSample<E> sample) {
-		svm_node[] instance = buildDatasetForClassification(sample.getFeatureVector());
+		return predictLabel(sample.getFeatureVector());
+	}
+
+	public E predictLabel(FeatureVector featureVector) {
+		svm_node[] instance = buildDatasetForClassification(featureVector);
         TimeoutRegister.get().check();
 		int predictedVal = (int)svm.svm_predict(model, instance);
 		TimeoutRegister.get().check();
-		return enumClassObj.getEnumConstants()[predictedVal];
+		return labels[predictedVal];
 	}
 
     public Map<E, Double> predictProbabilities(S object, T context) {
         svm_node[] instance = buildDatasetForClassification(object, context);
-        double[] probEstimates = new double[enumClassObj.getEnumConstants().length];
+        double[] probEstimates = new double[labels.length];
         svm.svm_predict_probability(model, instance, probEstimates);
 
         Map<E, Double> result = new HashMap<E, Double>();
         for (int i = 0; i < probEstimates.length; ++i) {
-            result.put(enumClassObj.getEnumConstants()[model.label[i]], probEstimates[i]);
+            result.put(labels[model.label[i]], probEstimates[i]);
         }
         return result;
     }
@@ -184,7 +340,56 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
     }
 
     protected svm_node[] buildDatasetForClassification(S object, T context) {
-        return buildDatasetForClassification(featureVectorBuilder.getFeatureVector(object, context));
+        double[] values = getValuesBuffer();
+        featureVectorBuilder.getFeatureValues(object, context, values);
+        return buildDatasetForClassification(values);
+    }
+
+    /**
+     * Scales the values in place and copies them to the current thread's
+     * node buffer. The returned nodes are valid until the next call
+     * in the same thread.
+     *
+     * @param values feature values
+     * @return svm nodes
+     */
+    protected svm_node[] buildDatasetForClassification(double[] values) {
+        scaleFeatureValues(values);
+        svm_node[] nodes = nodesBuffer.get();
+        if (nodes == null || nodes.length != values.length) {
+            nodes = new svm_node[values.length];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = new svm_node();
+                nodes[i].index = i;
+            }
+            nodesBuffer.set(nodes);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i].value = values[i];
+        }
+        return nodes;
+    }
+
+    private void scaleFeatureValues(double[] values) {
+        if (distinctFeatureNames) {
+            scaler.scaleFeatureValues(values, featuresNames);
+        } else {
+            FeatureVector fv = new FeatureVector();
+            for (int i = 0; i < featuresNames.length; i++) {
+                fv.addFeature(featuresNames[i], values[i]);
+            }
+            double[] scaled = scaler.scaleFeatureVector(fv).getValues();
+            System.arraycopy(scaled, 0, values, 0, scaled.length);
+        }
+    }
+
+    private double[] getValuesBuffer() {
+        double[] values = valuesBuffer.get();
+        if (values == null || values.length != featureVectorBuilder.size()) {
+            values = new double[featureVectorBuilder.size()];
+            valuesBuffer.set(values);
+        }
+        return values;
     }
 
     public double[] getWeights() {
@@ -249,19 +454,39 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
         if (rangeFile == null) {
             this.scaler = new FeatureVectorScalerNoOp();
         } else {
-            FeatureVectorScalerImpl lScaler
-                    = FeatureVectorScalerImpl.fromRangeReader(rangeFile);
+            setRangeScaler(FeatureVectorScalerImpl.fromRangeReader(rangeFile));
+        }
 
-            if (lScaler.getLimits().length != featureVectorBuilder.size()) {
-                throw new IllegalArgumentException("Supplied .range file has "
-                        + "wrong number of features (got " + lScaler.getLimits().length
-                        + ", expected " + featureVectorBuilder.size() + " )");
-            }
+        this.model = svm.svm_load_model(modelFile);
+    }
 
-            this.scaler = lScaler;
+    /**
+     * Sets the model and the scaler shared through {@link ModelRegistry},
+     * so that they are loaded only once per JVM.
+     * 
+     * @param modelPath model path (regular file or <code>classpath:</code> resource)
+     * @param rangePath range file path (regular file or <code>classpath:</code> resource),
+     * or null if the features are not scaled
+     * @throws IOException IOException
+     */
+    public void loadModelFromRegistry(String modelPath, String rangePath) throws IOException {
+        if (rangePath == null) {
+            this.scaler = new FeatureVectorScalerNoOp();
+        } else {
+            setRangeScaler(ModelRegistry.getSVMScaler(rangePath));
         }
 
-        this.model = svm.svm_load_model(modelFile);
+        this.model = ModelRegistry.getSVMModel(modelPath);
+    }
+
+    private void setRangeScaler(FeatureVectorScalerImpl lScaler) {
+        if (lScaler.getLimits().length != featureVectorBuilder.size()) {
+            throw new IllegalArgumentException("Supplied .range file has "
+                    + "wrong number of features (got " + lScaler.getLimits().length
+                    + ", expected " + featureVectorBuilder.size() + " )");
+        }
+
+        this.scaler = lScaler;
     }
 
     public void saveModel(String modelPath) throws IOException {
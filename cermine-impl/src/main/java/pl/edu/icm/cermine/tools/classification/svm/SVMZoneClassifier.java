@@ -17,16 +17,18 @@
  */
 package pl.edu.icm.cermine.tools.classification.svm;
 
+import com.google.common.collect.Lists;
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.regex.Pattern;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.metadata.zoneclassification.tools.DocumentFeatureContext;
 import pl.edu.icm.cermine.structure.ZoneClassifier;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.structure.tools.PageParallelExecutor;
 import pl.edu.icm.cermine.tools.classification.general.FeatureVector;
 import pl.edu.icm.cermine.tools.classification.general.FeatureVectorBuilder;
 import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
@@ -42,13 +44,110 @@ public class SVMZoneClassifier extends SVMClassifier<BxZone, BxPage, BxZoneLabel
 
     @Override
     public BxDocument classifyZones(BxDocument document) throws AnalysisException {
-        for (BxZone zone : document.asZones()) {
-            BxZoneLabel predicted = predictLabel(zone, zone.getParent());
-            zone.setLabel(predicted);
-        }
+        labelZones(Lists.newArrayList(document.asZones()));
         return document;
     }
 
+    /**
+     * Predicts and sets the labels of the given zones.
+     * <p>
+     * The features are calculated page by page with {@link PageParallelExecutor}.
+     * If none of the features depend on the labels of other zones, all the
+     * labels are predicted in a single batch. Otherwise those features are
+     * calculated afterwards, sequentially in the order of the zones, just
+     * before the zone's label is predicted.
+     * <p>
+     * The zones' documents get a {@link DocumentFeatureContext} for the time
+     * of the classification.
+     *
+     * @param zones zones in the document order
+     * @throws AnalysisException AnalysisException
+     */
+    protected void labelZones(List<BxZone> zones) throws AnalysisException {
+        labelZones(this, zones);
+    }
+
+    /**
+     * Predicts and sets the labels of the given zones with the classifier,
+     * in the same way as {@link #labelZones(List)}.
+     *
+     * @param classifier zone classifier
+     * @param zones zones in the document order
+     * @throws AnalysisException AnalysisException
+     */
+    public static void labelZones(SVMClassifier<BxZone, BxPage, BxZoneLabel> classifier, List<BxZone> zones)
+            throws AnalysisException {
+        Map<BxPage, List<BxZone>> pageZones = new LinkedHashMap<BxPage, List<BxZone>>();
+        for (BxZone zone : zones) {
+            List<BxZone> list = pageZones.get(zone.getParent());
+            if (list == null) {
+                list = new ArrayList<BxZone>();
+                pageZones.put(zone.getParent(), list);
+            }
+            list.add(zone);
+        }
+        Set<BxDocument> documents = Collections.newSetFromMap(new IdentityHashMap<BxDocument, Boolean>());
+        for (BxPage page : pageZones.keySet()) {
+            if (page != null && page.getParent() != null) {
+                documents.add(page.getParent());
+            }
+        }
+        for (BxDocument document : documents) {
+            DocumentFeatureContext.register(document);
+        }
+        try {
+            labelPageZones(classifier, pageZones);
+        } finally {
+            for (BxDocument document : documents) {
+                DocumentFeatureContext.unregister(document);
+            }
+        }
+    }
+
+    private static void labelPageZones(SVMClassifier<BxZone, BxPage, BxZoneLabel> classifier,
+            Map<BxPage, List<BxZone>> pageZones) throws AnalysisException {
+        final FeatureVectorBuilder<BxZone, BxPage> featureVectorBuilder = classifier.featureVectorBuilder;
+        List<List<double[]>> vectors = PageParallelExecutor.map(new ArrayList<List<BxZone>>(pageZones.values()),
+                new PageParallelExecutor.PageTask<List<BxZone>, List<double[]>>() {
+                    @Override
+                    public List<double[]> process(List<BxZone> zones) {
+                        List<double[]> pageVectors = new ArrayList<double[]>(zones.size());
+                        for (BxZone zone : zones) {
+                            double[] values = new double[featureVectorBuilder.size()];
+                            featureVectorBuilder.getLabelIndependentFeatureValues(zone, zone.getParent(), values);
+                            pageVectors.add(values);
+                        }
+                        return pageVectors;
+                    }
+                });
+
+        if (!featureVectorBuilder.hasLabelDependentFeatures()) {
+            List<BxZone> orderedZones = new ArrayList<BxZone>();
+            List<double[]> orderedVectors = new ArrayList<double[]>();
+            int pageIdx = 0;
+            for (List<BxZone> list : pageZones.values()) {
+                orderedZones.addAll(list);
+                orderedVectors.addAll(vectors.get(pageIdx++));
+            }
+            List<BxZoneLabel> labels = classifier.predictLabelsFromValues(orderedVectors);
+            for (int i = 0; i < orderedZones.size(); i++) {
+                orderedZones.get(i).setLabel(labels.get(i));
+            }
+            return;
+        }
+
+        int pageIdx = 0;
+        for (List<BxZone> list : pageZones.values()) {
+            List<double[]> pageVectors = vectors.get(pageIdx++);
+            for (int i = 0; i < list.size(); i++) {
+                BxZone zone = list.get(i);
+                double[] values = pageVectors.get(i);
+                featureVectorBuilder.updateLabelDependentFeatures(values, zone, zone.getParent());
+                zone.setLabel(classifier.predictLabelFromValues(values));
+            }
+        }
+    }
+
     public static List<TrainingSample<BxZoneLabel>> loadProblem(String path, FeatureVectorBuilder<BxZone, BxPage> fvb) throws IOException {
         File file = new File(path);
         return loadProblem(file, fvb);
@@ -45,4 +45,19 @@ public class FeatureVectorEuclideanMetric implements FeatureVectorDistanceMetric
 
         return Math.sqrt(sum);
     }
+    
+    /**
+     * Calculates the Euclidean distance between two vectors of feature values.
+     * 
+     * @param values1 feature values
+     * @param values2 feature values
+     * @return the distance
+     */
+    public double getDistance(double[] values1, double[] values2) {
+        double sum = 0;
+        for (int i = 0; i < values1.length; i++) {
+            sum += Math.pow(values1[i] - values2[i], 2);
+        }
+        return Math.sqrt(sum);
+    }
 }
@@ -0,0 +1,79 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Trace of the extraction of a single document: the measurements of all the
+ * steps performed so far, in the order of completion.
+ */
+public class DocumentTrace {
+
+    private final List<StepMetrics> steps = new ArrayList<StepMetrics>();
+
+    public synchronized void add(StepMetrics step) {
+        steps.add(step);
+    }
+
+    /**
+     * @return the measurements of the steps
+     */
+    public synchronized List<StepMetrics> getSteps() {
+        return new ArrayList<StepMetrics>(steps);
+    }
+
+    /**
+     * Returns the measurements of the given step.
+     *
+     * @param step step name
+     * @return step measurements, or null if the step was not performed
+     */
+    public synchronized StepMetrics getStep(String step) {
+        for (StepMetrics metrics : steps) {
+            if (metrics.getStep().equals(step)) {
+                return metrics;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return total wall time of all the steps in nanoseconds
+     */
+    public synchronized long getWallNanos() {
+        long wall = 0;
+        for (StepMetrics metrics : steps) {
+            wall += metrics.getWallNanos();
+        }
+        return wall;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (StepMetrics metrics : steps) {
+            sb.append(metrics).append('\n');
+        }
+        sb.append(String.format(Locale.ENGLISH, "Total wall time: %.1fms", getWallNanos() / 1e6));
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools.metrics;
+
+/**
+ * A sink of the measurements taken during the extraction.
+ * <p>
+ * The interface is meant to be implemented as an adapter to a metrics registry
+ * (JMX, Micrometer and alike). By default the measurements of every extraction
+ * step are passed to {@link #record(String, long)} under the names
+ * <code>&lt;step&gt;.&lt;measurement&gt;</code>, e.g.
+ * <code>PAGE_SEGMENTATION.wallNanos</code>.
+ * <p>
+ * Implementations are shared by the threads processing the documents and have
+ * to be thread-safe.
+ */
+public interface ExtractionMetrics {
+
+    /** metrics ignoring all the measurements */
+    ExtractionMetrics NOOP = new ExtractionMetrics() {
+        @Override
+        public void record(String name, long value) {
+        }
+    };
+
+    /**
+     * Records a single measurement.
+     *
+     * @param name measurement name
+     * @param value measured value
+     */
+    void record(String name, long value);
+
+    /**
+     * Records the measurements of an extraction step.
+     *
+     * @param step step measurements
+     */
+    default void stepFinished(StepMetrics step) {
+        String prefix = step.getStep() + ".";
+        record(prefix + "wallNanos", step.getWallNanos());
+        if (step.getCpuNanos() >= 0) {
+            record(prefix + "cpuNanos", step.getCpuNanos());
+        }
+        if (step.getAllocatedBytes() >= 0) {
+            record(prefix + "allocatedBytes", step.getAllocatedBytes());
+        }
+        if (step.getPages() >= 0) {
+            record(prefix + "pages", step.getPages());
+        }
+        if (step.getZones() >= 0) {
+            record(prefix + "zones", step.getZones());
+        }
+        if (step.getLines() >= 0) {
+            record(prefix + "lines", step.getLines());
+        }
+        if (step.getReferences() >= 0) {
+            record(prefix + "references", step.getReferences());
+        }
+        if (!step.isCompleted()) {
+            record(prefix + "failures", 1);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures a single extraction step.
+ * <p>
+ * The meter is created when the step starts, in the thread executing it,
+ * and it is meant to be the metrics of the extraction context attached for
+ * the time of the step. The threads doing the work on behalf of the step
+ * report their CPU time and allocations as {@link #WORKER_CPU_NANOS} and
+ * {@link #WORKER_ALLOCATED_BYTES}, which are added to the measurements of
+ * the step. All the other measurements are passed to the parent metrics.
+ */
+public class StepMeter implements ExtractionMetrics {
+
+    /** CPU time used by a worker thread on behalf of the step */
+    public static final String WORKER_CPU_NANOS = "worker.cpuNanos";
+
+    /** bytes allocated by a worker thread on behalf of the step */
+    public static final String WORKER_ALLOCATED_BYTES = "worker.allocatedBytes";
+
+    private final String step;
+
+    private final ExtractionMetrics parent;
+
+    private final long startNanos;
+
+    private final long startCpu;
+
+    private final long startAllocated;
+
+    private final AtomicLong workerCpu = new AtomicLong();
+
+    private final AtomicLong workerAllocated = new AtomicLong();
+
+    /**
+     * Starts measuring the step.
+     *
+     * @param step step name
+     * @param parent metrics receiving all the other measurements
+     */
+    public StepMeter(String step, ExtractionMetrics parent) {
+        this.step = step;
+        this.parent = parent;
+        this.startCpu = ThreadUsage.getCpuTime();
+        this.startAllocated = ThreadUsage.getAllocatedBytes();
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void record(String name, long value) {
+        if (WORKER_CPU_NANOS.equals(name)) {
+            workerCpu.addAndGet(value);
+        } else if (WORKER_ALLOCATED_BYTES.equals(name)) {
+            workerAllocated.addAndGet(value);
+        } else {
+            parent.record(name, value);
+        }
+    }
+
+    @Override
+    public void stepFinished(StepMetrics metrics) {
+        parent.stepFinished(metrics);
+    }
+
+    /**
+     * Finishes measuring the step. Has to be called in the thread that created
+     * the meter.
+     *
+     * @param completed whether the step completed successfully
+     * @param pages number of pages, or -1
+     * @param zones number of zones, or -1
+     * @param lines number of lines, or -1
+     * @param references number of references, or -1
+     * @return step measurements
+     */
+    public StepMetrics stop(boolean completed, int pages, int zones, int lines, int references) {
+        long wall = System.nanoTime() - startNanos;
+        long cpu = ThreadUsage.getCpuTime();
+        cpu = cpu < 0 || startCpu < 0 ? -1 : cpu - startCpu + workerCpu.get();
+        long allocated = ThreadUsage.getAllocatedBytes();
+        allocated = allocated < 0 || startAllocated < 0 ? -1 : allocated - startAllocated + workerAllocated.get();
+        return new StepMetrics(step, completed, wall, cpu, allocated, pages, zones, lines, references);
+    }
+
+}
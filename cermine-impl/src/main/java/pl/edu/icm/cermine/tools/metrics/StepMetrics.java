@@ -0,0 +1,102 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools.metrics;
+
+import java.util.Locale;
+
+/**
+ * Measurements of a single extraction step performed on a document.
+ * <p>
+ * The CPU time and the allocated bytes include the work done by the page
+ * processing threads on behalf of the step. They are -1 if the JVM does not
+ * support the measurement. The sizes describe the document after the step,
+ * they are -1 if the corresponding structure was not available.
+ */
+public class StepMetrics {
+
+    private final String step;
+    private final boolean completed;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+    private final int pages;
+    private final int zones;
+    private final int lines;
+    private final int references;
+
+    public StepMetrics(String step, boolean completed, long wallNanos, long cpuNanos, long allocatedBytes,
+            int pages, int zones, int lines, int references) {
+        this.step = step;
+        this.completed = completed;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.pages = pages;
+        this.zones = zones;
+        this.lines = lines;
+        this.references = references;
+    }
+
+    public String getStep() {
+        return step;
+    }
+
+    /**
+     * @return false if the step was interrupted by an exception
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    public int getZones() {
+        return zones;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getReferences() {
+        return references;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH,
+                "%-24s %s wall %9.1fms, cpu %9.1fms, alloc %8.1fMB, pages %d, zones %d, lines %d, refs %d",
+                step, completed ? "  " : "! ", wallNanos / 1e6, cpuNanos / 1e6, allocatedBytes / 1048576.,
+                pages, zones, lines, references);
+    }
+
+}
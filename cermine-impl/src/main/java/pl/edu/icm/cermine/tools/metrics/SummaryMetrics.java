@@ -0,0 +1,103 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics aggregating the measurements by name: the number of measurements,
+ * their sum and the maximum value. Useful for summarizing a batch of documents.
+ */
+public class SummaryMetrics implements ExtractionMetrics {
+
+    private final ConcurrentMap<String, Summary> summaries = new ConcurrentHashMap<String, Summary>();
+
+    @Override
+    public void record(String name, long value) {
+        Summary summary = summaries.get(name);
+        if (summary == null) {
+            Summary created = new Summary();
+            summary = summaries.putIfAbsent(name, created);
+            if (summary == null) {
+                summary = created;
+            }
+        }
+        summary.add(value);
+    }
+
+    /**
+     * @return the summaries of the measurements, sorted by name
+     */
+    public SortedMap<String, Summary> getSummaries() {
+        return new TreeMap<String, Summary>(summaries);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Summary> entry : getSummaries().entrySet()) {
+            Summary summary = entry.getValue();
+            sb.append(String.format(Locale.ENGLISH, "%-40s count %6d, total %15d, mean %13.1f, max %13d%n",
+                    entry.getKey(), summary.getCount(), summary.getTotal(), summary.getMean(), summary.getMax()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Aggregated measurements of a single name.
+     */
+    public static class Summary {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        private void add(long value) {
+            count.incrementAndGet();
+            total.addAndGet(value);
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getTotal() {
+            return total.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) total.get() / n;
+        }
+    }
+
+}
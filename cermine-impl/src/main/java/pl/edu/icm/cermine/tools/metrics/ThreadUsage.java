@@ -0,0 +1,86 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Resource usage of the current thread.
+ * <p>
+ * The values are available only if the JVM supports the measurement,
+ * otherwise the methods return -1.
+ */
+public final class ThreadUsage {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final boolean CPU_TIME_SUPPORTED = isCpuTimeSupported();
+
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = getAllocationBean();
+
+    private ThreadUsage() {
+    }
+
+    /**
+     * @return CPU time of the current thread in nanoseconds, or -1
+     */
+    public static long getCpuTime() {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * @param threadId thread identifier
+     * @return CPU time of the given thread in nanoseconds, or -1
+     */
+    public static long getCpuTime(long threadId) {
+        return CPU_TIME_SUPPORTED ? THREADS.getThreadCpuTime(threadId) : -1;
+    }
+
+    /**
+     * @return the number of bytes allocated by the current thread so far, or -1
+     */
+    public static long getAllocatedBytes() {
+        return ALLOCATIONS == null ? -1 : ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static boolean isCpuTimeSupported() {
+        try {
+            return THREADS.isThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+        } catch (UnsupportedOperationException ex) {
+            return false;
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean getAllocationBean() {
+        try {
+            if (THREADS instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREADS;
+                if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                    return bean;
+                }
+            }
+        } catch (LinkageError ex) {
+            // not a HotSpot-based JVM
+        } catch (UnsupportedOperationException ex) {
+            // measurement not supported
+        }
+        return null;
+    }
+
+}
@@ -18,17 +18,36 @@
 package pl.edu.icm.cermine.tools.timeout;
 
 import com.google.common.base.Preconditions;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class that throws an exception when given amount of time has already passed
  * when its {@link #check()} method is called.
+ * <p>
+ * The timeout can also be cancelled, after which every call of
+ * {@link #check()} throws an exception as well. Optionally, the timeout
+ * defines a budget of CPU time, which is enforced by {@link TimeoutWatchdog}
+ * by cancelling the timeout. The CPU time consumed so far is accumulated
+ * in the object, so a timeout can be used for several calls processing
+ * the same document.
  *
  * @author Mateusz Kobos
  */
 public class Timeout {
 
+    private static final long NANOS_PER_MILLI = 1000000;
+
     private final long deadlineMillis;
 
+    private final long cpuBudgetNanos;
+
+    private final AtomicLong cpuTimeNanos = new AtomicLong();
+
+    private volatile String cancelReason;
+
+    /** the timeouts this one was combined from, they are cancelled together */
+    private final Timeout[] sources;
+
     /**
      * Create a new instance with the deadline set corresponding to given
      * timeout value. If the timeout is set to 0, the first call of
@@ -41,6 +60,33 @@ public class Timeout {
         Preconditions.checkArgument(timeoutMillis >= 0);
         long startTime = getCurrentTime();
         this.deadlineMillis = startTime + timeoutMillis;
+        this.cpuBudgetNanos = Long.MAX_VALUE;
+        this.sources = new Timeout[0];
+    }
+
+    /**
+     * Create a new instance with the deadline set corresponding to given
+     * timeout value and the given budget of CPU time. {@link Long#MAX_VALUE}
+     * means no limit.
+     *
+     * @param timeoutMillis timeout in milliseconds
+     * @param cpuTimeoutMillis CPU time budget in milliseconds
+     */
+    public Timeout(long timeoutMillis, long cpuTimeoutMillis) {
+        Preconditions.checkArgument(timeoutMillis >= 0);
+        Preconditions.checkArgument(cpuTimeoutMillis >= 0);
+        long startTime = getCurrentTime();
+        if (timeoutMillis >= Long.MAX_VALUE - startTime) {
+            this.deadlineMillis = Long.MAX_VALUE;
+        } else {
+            this.deadlineMillis = startTime + timeoutMillis;
+        }
+        if (cpuTimeoutMillis >= Long.MAX_VALUE / NANOS_PER_MILLI) {
+            this.cpuBudgetNanos = Long.MAX_VALUE;
+        } else {
+            this.cpuBudgetNanos = cpuTimeoutMillis * NANOS_PER_MILLI;
+        }
+        this.sources = new Timeout[0];
     }
 
     /**
@@ -49,10 +95,19 @@ public class Timeout {
      */
     public Timeout() {
         this.deadlineMillis = Long.MAX_VALUE;
+        this.cpuBudgetNanos = Long.MAX_VALUE;
+        this.sources = new Timeout[0];
+    }
+
+    private Timeout(Timeout t0, Timeout t1) {
+        this.deadlineMillis = Math.min(t0.deadlineMillis, t1.deadlineMillis);
+        this.cpuBudgetNanos = Math.min(t0.getRemainingCpuNanos(), t1.getRemainingCpuNanos());
+        this.sources = new Timeout[]{t0, t1};
     }
 
     /**
-     * Throw exception if it already is the deadline time or past it.
+     * Throw exception if it already is the deadline time or past it, or if
+     * the timeout was cancelled.
      *
      * @throws TimeoutException TimeoutException
      */
@@ -61,6 +116,69 @@ public class Timeout {
         if (currTimeMillis >= deadlineMillis) {
             throw new TimeoutException(currTimeMillis, deadlineMillis);
         }
+        String reason = getCancelReason();
+        if (reason != null) {
+            throw new TimeoutException(reason);
+        }
+    }
+
+    /**
+     * Cancels the timeout, all the subsequent checks will fail.
+     */
+    public void cancel() {
+        cancel("Timeout occured: the processing was cancelled");
+    }
+
+    void cancel(String reason) {
+        if (cancelReason == null) {
+            cancelReason = reason;
+        }
+    }
+
+    public boolean isCancelled() {
+        return getCancelReason() != null;
+    }
+
+    private String getCancelReason() {
+        String reason = cancelReason;
+        for (int i = 0; reason == null && i < sources.length; i++) {
+            reason = sources[i].getCancelReason();
+        }
+        return reason;
+    }
+
+    /**
+     * @return true if the timeout has neither a deadline nor a CPU budget
+     */
+    public boolean isUnlimited() {
+        return deadlineMillis == Long.MAX_VALUE && cpuBudgetNanos == Long.MAX_VALUE;
+    }
+
+    long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * @return CPU time left in nanoseconds, {@link Long#MAX_VALUE} if there is
+     * no CPU budget
+     */
+    long getRemainingCpuNanos() {
+        if (cpuBudgetNanos == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return cpuBudgetNanos - cpuTimeNanos.get();
+    }
+
+    /**
+     * Adds the CPU time consumed on behalf of the timeout.
+     *
+     * @param nanos CPU time in nanoseconds
+     */
+    void addCpuTime(long nanos) {
+        cpuTimeNanos.addAndGet(nanos);
+        for (Timeout source : sources) {
+            source.addCpuTime(nanos);
+        }
     }
 
     private static long getCurrentTime() {
@@ -68,16 +186,16 @@ public class Timeout {
     }
 
     /**
-     * Return the timeout corresponding to the more immediate deadline.
+     * Return the timeout corresponding to the more immediate deadline and
+     * the smaller CPU budget left. The returned timeout is cancelled whenever
+     * one of the given timeouts is cancelled, and the CPU time consumed on its
+     * behalf is added to both of them.
+     * 
      * @param t0 timeout
      * @param t1 timeout
      * @return earlier timeout
      */
     public static Timeout min(Timeout t0, Timeout t1) {
-        if (t0.deadlineMillis < t1.deadlineMillis) {
-            return t0;
-        } else {
-            return t1;
-        }
+        return new Timeout(t0, t1);
     }
 }
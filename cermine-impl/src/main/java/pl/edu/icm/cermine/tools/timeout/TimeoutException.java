@@ -30,6 +30,10 @@ public class TimeoutException extends RuntimeException {
                 currentTimeMillis - deadlineMillis));
     }
 
+    public TimeoutException(String message) {
+        super(message);
+    }
+
     /**
      * Constructor to be used when you want to re-throw a timeout-related
      * exception.
@@ -51,15 +51,18 @@ public class TimeoutRegister {
 
     private static final Timeout NO_TIMEOUT = new Timeout();
 
-    private static final ThreadLocal<Timeout> INSTANCE = new ThreadLocal<Timeout>() {
-        @Override
-        protected Timeout initialValue() {
-            return NO_TIMEOUT;
-        }
-    };
+    private static final ThreadLocal<Timeout> INSTANCE = new ThreadLocal<Timeout>();
 
     public static Timeout get() {
-        return INSTANCE.get();
+        Timeout timeout = INSTANCE.get();
+        return timeout == null ? NO_TIMEOUT : timeout;
+    }
+
+    /**
+     * @return whether a timeout was registered for the current thread
+     */
+    public static boolean isSet() {
+        return INSTANCE.get() != null;
     }
 
     public static void set(Timeout timeout) {
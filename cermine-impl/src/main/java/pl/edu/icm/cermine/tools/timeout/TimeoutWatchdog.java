@@ -0,0 +1,268 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools.timeout;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import pl.edu.icm.cermine.tools.metrics.ThreadUsage;
+
+/**
+ * Watchdog enforcing the timeouts of the threads processing the documents.
+ * <p>
+ * The checks of {@link Timeout#check()} are cooperative, they are done between
+ * the units of work. The watchdog monitors the registered threads in the
+ * background and, as soon as the deadline passes or the CPU budget is used up,
+ * cancels the timeout, so that the next check fails wherever it is done
+ * (including the threads processing the pages in parallel), and interrupts
+ * the thread, so that it stops waiting on I/O or for the page tasks.
+ * If the thread still has not finished after the grace period, the document
+ * is considered abandoned and the listeners are notified, so that the caller
+ * can stop waiting for it.
+ * <p>
+ * The CPU budget is compared with the CPU time of all the registered threads
+ * working with the same timeout, such as the threads processing the pages
+ * of a document in parallel.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * <code>
+ * TimeoutWatchdog.Watch watch = TimeoutWatchdog.getInstance().watch(timeout);
+ * try {
+ *   doStuff();
+ * } finally {
+ *   watch.close();
+ * }
+ * </code>
+ * </pre>
+ */
+public final class TimeoutWatchdog {
+
+    private static final Logger LOGGER = Logger.getLogger(TimeoutWatchdog.class.getName());
+
+    /** how often the registered threads are checked */
+    public static final long DEFAULT_PERIOD_MILLIS = 100;
+
+    /** how long a cancelled thread is given to finish before it is abandoned */
+    public static final long DEFAULT_GRACE_MILLIS = 10000;
+
+    private final long periodMillis;
+
+    private final long graceMillis;
+
+    private final Set<Watch> watches = Collections.newSetFromMap(new ConcurrentHashMap<Watch, Boolean>());
+
+    private final List<AbandonListener> listeners = new CopyOnWriteArrayList<AbandonListener>();
+
+    private Thread monitor;
+
+    /**
+     * Listener notified about the threads that did not finish in the grace
+     * period after their timeout was cancelled.
+     */
+    public interface AbandonListener {
+
+        void abandoned(Thread thread, Timeout timeout);
+    }
+
+    private static class InstanceHolder {
+
+        private static final TimeoutWatchdog INSTANCE
+                = new TimeoutWatchdog(DEFAULT_PERIOD_MILLIS, DEFAULT_GRACE_MILLIS);
+    }
+
+    /**
+     * @return the watchdog shared by all the extractors
+     */
+    public static TimeoutWatchdog getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * @param periodMillis how often the registered threads are checked
+     * @param graceMillis how long a cancelled thread is given to finish
+     * before it is abandoned
+     */
+    public TimeoutWatchdog(long periodMillis, long graceMillis) {
+        this.periodMillis = periodMillis;
+        this.graceMillis = graceMillis;
+    }
+
+    public void addListener(AbandonListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(AbandonListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching the current thread. The returned watch has to be closed
+     * by the same thread when the work is done.
+     *
+     * @param timeout timeout of the work done by the thread
+     * @return watch
+     */
+    public Watch watch(Timeout timeout) {
+        Watch watch = new Watch(Thread.currentThread(), timeout);
+        watches.add(watch);
+        ensureMonitor();
+        return watch;
+    }
+
+    private synchronized void ensureMonitor() {
+        if (monitor != null && monitor.isAlive()) {
+            return;
+        }
+        monitor = new Thread("cermine-timeout-watchdog") {
+            @Override
+            public void run() {
+                while (!isInterrupted()) {
+                    try {
+                        Thread.sleep(periodMillis);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    scan();
+                }
+            }
+        };
+        monitor.setDaemon(true);
+        monitor.start();
+    }
+
+    private void scan() {
+        long now = System.currentTimeMillis();
+        // the CPU time used so far by all the threads working on the same timeout
+        Map<Timeout, Long> usedCpu = new IdentityHashMap<Timeout, Long>();
+        for (Watch watch : watches) {
+            long used = watch.getUsedCpu();
+            Long total = usedCpu.get(watch.timeout);
+            usedCpu.put(watch.timeout, total == null ? used : total + used);
+        }
+        for (Watch watch : watches) {
+            Long used = usedCpu.get(watch.timeout);
+            if (watch.inspect(now, used == null ? 0 : used)) {
+                watches.remove(watch);
+            }
+        }
+    }
+
+    /**
+     * Registration of a thread in the watchdog.
+     */
+    public final class Watch {
+
+        private final Thread thread;
+
+        private final Timeout timeout;
+
+        private final long startCpu;
+
+        private long cancelledAt = -1;
+
+        private boolean interrupted = false;
+
+        private boolean closed = false;
+
+        private Watch(Thread thread, Timeout timeout) {
+            this.thread = thread;
+            this.timeout = timeout;
+            this.startCpu = ThreadUsage.getCpuTime();
+        }
+
+        /**
+         * Cancels the timeout if needed, or abandons the thread if it was
+         * cancelled earlier than the grace period ago. The listeners are
+         * notified while the watch cannot be closed, so the thread is still
+         * working on the same document.
+         *
+         * @param now current time in milliseconds
+         * @param usedCpu CPU time in nanoseconds used by the open watches
+         * of the timeout
+         * @return true if the thread was abandoned
+         */
+        private synchronized boolean inspect(long now, long usedCpu) {
+            if (closed) {
+                return false;
+            }
+            if (cancelledAt >= 0) {
+                if (now - cancelledAt < graceMillis) {
+                    return false;
+                }
+                LOGGER.log(Level.WARNING, "Thread {0} abandoned after timeout", thread.getName());
+                for (AbandonListener listener : listeners) {
+                    listener.abandoned(thread, timeout);
+                }
+                return true;
+            }
+            if (now >= timeout.getDeadlineMillis()) {
+                timeout.cancel("Timeout occured: the deadline has passed");
+            } else if (startCpu >= 0 && usedCpu >= timeout.getRemainingCpuNanos()) {
+                timeout.cancel("Timeout occured: the CPU time budget has been used up");
+            }
+            if (timeout.isCancelled()) {
+                cancelledAt = now;
+                interrupted = true;
+                thread.interrupt();
+            }
+            return false;
+        }
+
+        /**
+         * @return CPU time in nanoseconds used by the thread since the watch
+         * was opened, or 0 if the watch is closed or the time is not available
+         */
+        private synchronized long getUsedCpu() {
+            if (closed || startCpu < 0) {
+                return 0;
+            }
+            long cpu = ThreadUsage.getCpuTime(thread.getId());
+            return cpu < 0 ? 0 : Math.max(0, cpu - startCpu);
+        }
+
+        /**
+         * Stops watching the thread and adds the CPU time it consumed
+         * to the timeout. Clears the interrupted status of the thread,
+         * if it was interrupted by the watchdog.
+         */
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                long cpu = ThreadUsage.getCpuTime();
+                if (startCpu >= 0 && cpu >= 0) {
+                    timeout.addCpuTime(cpu - startCpu);
+                }
+                if (interrupted && thread == Thread.currentThread()) {
+                    Thread.interrupted();
+                }
+            }
+            watches.remove(this);
+        }
+    }
+
+}
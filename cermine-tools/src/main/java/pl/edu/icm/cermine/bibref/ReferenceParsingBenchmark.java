@@ -0,0 +1,101 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.bibref;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import pl.edu.icm.cermine.configuration.ExtractionConfigBuilder;
+import pl.edu.icm.cermine.configuration.ExtractionConfigProperty;
+import pl.edu.icm.cermine.configuration.ExtractionConfigRegister;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.tools.PrefixTree;
+import pl.edu.icm.cermine.tools.ResourceUtils;
+
+/**
+ * Measures per-reference parsing latency of the CRF reference parser.
+ * For comparison, it also reports the cost of building the gazetteer tries,
+ * which used to be paid for every parsed reference.
+ */
+public class ReferenceParsingBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2;
+    
+    public static void main(String[] args) throws IOException, AnalysisException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("USAGE: ReferenceParsingBenchmark <references_file> [<rounds>]");
+            System.exit(1);
+        }
+        List<String> references = new ArrayList<String>();
+        for (String line : FileUtils.readLines(new File(args[0]), "UTF-8")) {
+            if (!line.trim().isEmpty()) {
+                references.add(line.trim());
+            }
+        }
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        
+        ExtractionConfigRegister.set(new ExtractionConfigBuilder().buildConfiguration());
+        CRFBibReferenceParser parser = CRFBibReferenceParser.getInstance();
+        
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (String reference : references) {
+                parser.parseBibReference(reference);
+            }
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (String reference : references) {
+                parser.parseBibReference(reference);
+            }
+        }
+        double parseTime = (System.nanoTime() - start) / 1e6 / (rounds * references.size());
+        
+        Set<String> journals = readLines(ExtractionConfigProperty.BIBREF_JOURNALS_PATH);
+        Set<String> surnames = readLines(ExtractionConfigProperty.BIBREF_SURNAMES_PATH);
+        Set<String> insts = readLines(ExtractionConfigProperty.BIBREF_INSTITUTIONS_PATH);
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            PrefixTree.buildTree(journals);
+            PrefixTree.buildTree(surnames);
+            PrefixTree.buildTree(insts);
+        }
+        double buildTime = (System.nanoTime() - start) / 1e6 / rounds;
+        
+        System.out.println("References: " + references.size());
+        System.out.printf("Mean parsing time per reference: %.3f ms%n", parseTime);
+        System.out.printf("Gazetteer build time (previously paid per reference): %.3f ms%n", buildTime);
+        System.out.printf("Estimated previous time per reference: %.3f ms%n", parseTime + buildTime);
+    }
+    
+    private static Set<String> readLines(ExtractionConfigProperty property) throws IOException {
+        InputStream is = ResourceUtils.openResourceStream(ExtractionConfigRegister.get().getStringProperty(property));
+        try {
+            return new HashSet<String>(IOUtils.readLines(is, "UTF-8"));
+        } finally {
+            is.close();
+        }
+    }
+    
+}
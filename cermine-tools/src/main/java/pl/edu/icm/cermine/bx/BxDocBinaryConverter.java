@@ -0,0 +1,90 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.bx;
+
+import com.google.common.collect.Lists;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentBinaryFormat;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToBinaryWriter;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizStreamWriter;
+import pl.edu.icm.cermine.tools.BxDocUtils;
+
+/**
+ * Converts documents between TrueViz and the binary format. The input format
+ * is detected by the file's content, the output is binary unless "-truevizOut"
+ * option is given.
+ */
+public class BxDocBinaryConverter {
+
+    public static void main(String[] args) throws ParseException, TransformationException, IOException {
+        Options options = new Options();
+        options.addOption("input", true, "input path");
+        options.addOption("output", true, "output path");
+        options.addOption("ext", true, "extension");
+        options.addOption("truevizOut", false, "write TrueViz instead of the binary format");
+        CommandLineParser parser = new DefaultParser();
+        CommandLine line = parser.parse(options, args);
+        String inDir = line.getOptionValue("input");
+        String outDir = line.getOptionValue("output");
+        String extension = line.getOptionValue("ext");
+        boolean truevizOut = line.hasOption("truevizOut");
+
+        Collection<File> files = FileUtils.listFiles(new File(inDir), new String[]{extension}, true);
+
+        BxDocumentToBinaryWriter binaryWriter = new BxDocumentToBinaryWriter();
+        BxDocumentToTrueVizStreamWriter tvWriter = new BxDocumentToTrueVizStreamWriter();
+        int i = 0;
+        for (File f : files) {
+            System.out.println(f.getPath());
+            List<BxPage> pages = Lists.newArrayList(BxDocUtils.getDocument(f));
+
+            String outExtension = truevizOut ? "xml" : BxDocumentBinaryFormat.EXTENSION;
+            File f2 = new File(outDir, FilenameUtils.getBaseName(f.getName()) + "." + outExtension);
+            OutputStream os = new BufferedOutputStream(new FileOutputStream(f2));
+            try {
+                if (truevizOut) {
+                    tvWriter.write(os, pages);
+                } else {
+                    binaryWriter.write(os, pages);
+                }
+            } finally {
+                os.close();
+            }
+
+            i++;
+            System.out.println("Progress: "+((double)i*100./(double)files.size()));
+        }
+    }
+
+}
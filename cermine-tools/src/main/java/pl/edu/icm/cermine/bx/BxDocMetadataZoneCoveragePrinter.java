@@ -18,8 +18,7 @@
 
 package pl.edu.icm.cermine.bx;
 
-import java.io.FileNotFoundException;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,7 +32,7 @@ import pl.edu.icm.cermine.structure.model.*;
  */
 public class BxDocMetadataZoneCoveragePrinter extends BxDocStatisticsPrinter {
 
-    public static void main(String[] args) throws ParseException, TransformationException, FileNotFoundException, UnsupportedEncodingException {
+    public static void main(String[] args) throws ParseException, TransformationException, IOException {
         BxDocMetadataZoneCoveragePrinter printer = new BxDocMetadataZoneCoveragePrinter();
         printer.run(args);
     }
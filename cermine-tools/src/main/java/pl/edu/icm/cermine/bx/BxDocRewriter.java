@@ -19,21 +19,21 @@
 package pl.edu.icm.cermine.bx;
 
 import com.google.common.collect.Lists;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import org.apache.commons.cli.*;
 import org.apache.commons.io.FileUtils;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.*;
-import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
-import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizStreamWriter;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentStreamReader;
 
 /**
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
@@ -56,24 +56,31 @@ public abstract class BxDocRewriter {
         File dir = new File(inDir);
         
         for (File f : FileUtils.listFiles(dir, new String[]{extension}, true)) {
-            TrueVizToBxDocumentReader tvReader = new TrueVizToBxDocumentReader();
-            List<BxPage> pages = tvReader.read(new InputStreamReader(
-                                        new FileInputStream(f), "UTF-8"));
+            TrueVizToBxDocumentStreamReader tvReader = new TrueVizToBxDocumentStreamReader();
+            InputStream is = new FileInputStream(f);
+            List<BxPage> pages;
+            try {
+                pages = tvReader.read(is);
+            } finally {
+                is.close();
+            }
             BxDocument doc = new BxDocument().setPages(pages);
             doc.setFilename(f.getName());
            
             BxDocument rewritten = transform(doc);
 
             File f2 = new File(outDir+doc.getFilename());
-            BxDocumentToTrueVizWriter wrt = new BxDocumentToTrueVizWriter();
+            BxDocumentToTrueVizStreamWriter wrt = new BxDocumentToTrueVizStreamWriter();
             boolean created = f2.createNewFile();
             if (!created) {
                 throw new IOException("Cannot create file: ");
             }
-            Writer fw = new OutputStreamWriter(new FileOutputStream(f2), "UTF8");
-            wrt.write(fw, Lists.newArrayList(rewritten));
-            fw.flush();
-            fw.close();
+            OutputStream os = new BufferedOutputStream(new FileOutputStream(f2));
+            try {
+                wrt.write(os, Lists.newArrayList(rewritten));
+            } finally {
+                os.close();
+            }
         }
     }
     
@@ -18,13 +18,13 @@
 
 package pl.edu.icm.cermine.bx;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.List;
 import org.apache.commons.cli.CommandLine;
@@ -36,7 +36,8 @@ import org.apache.commons.io.FileUtils;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
-import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizStreamWriter;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentStreamReader;
 
 /**
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
@@ -61,20 +62,27 @@ public class BxDocShrinker {
         int i = 0;
         for (File f : files) {
             System.out.println(f.getPath());
-            TrueVizToBxDocumentReader tvReader = new TrueVizToBxDocumentReader();
-            List<BxPage> pages = tvReader.read(new InputStreamReader(
-                                        new FileInputStream(f), "UTF-8"));
+            TrueVizToBxDocumentStreamReader tvReader = new TrueVizToBxDocumentStreamReader();
+            InputStream is = new FileInputStream(f);
+            List<BxPage> pages;
+            try {
+                pages = tvReader.read(is);
+            } finally {
+                is.close();
+            }
             
             File f2 = new File(outDir + f.getName());
-            BxDocumentToTrueVizWriter wrt = new BxDocumentToTrueVizWriter();
+            BxDocumentToTrueVizStreamWriter wrt = new BxDocumentToTrueVizStreamWriter();
             boolean created = f2.createNewFile();
             if (!created) {
                 throw new IOException("Cannot create file: ");
             }
-            Writer fw = new OutputStreamWriter(new FileOutputStream(f2), "UTF-8");
-            wrt.write(fw, pages, BxDocumentToTrueVizWriter.MINIMAL_OUTPUT_SIZE);
-            fw.flush();
-            fw.close();
+            OutputStream os = new BufferedOutputStream(new FileOutputStream(f2));
+            try {
+                wrt.write(os, pages, BxDocumentToTrueVizWriter.MINIMAL_OUTPUT_SIZE);
+            } finally {
+                os.close();
+            }
             
             i++;
             
@@ -19,17 +19,13 @@
 package pl.edu.icm.cermine.bx;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
-import java.util.List;
+import java.io.IOException;
 import java.util.Map;
 import org.apache.commons.cli.*;
 import org.apache.commons.io.FileUtils;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.*;
-import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.tools.BxDocUtils;
 
 /**
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
@@ -38,7 +34,7 @@ public abstract class BxDocStatisticsPrinter {
 
     protected abstract Map<String, String> getStatistics(BxDocument document);
     
-    public void run(String[] args) throws ParseException, TransformationException, FileNotFoundException, UnsupportedEncodingException {
+    public void run(String[] args) throws ParseException, TransformationException, IOException {
         Options options = new Options();
         options.addOption("input", true, "input path");
         options.addOption("ext", true, "extension");
@@ -49,11 +45,7 @@ public abstract class BxDocStatisticsPrinter {
         
         File dir = new File(inDir);
         for (File f : FileUtils.listFiles(dir, new String[]{extension}, true)) {
-            TrueVizToBxDocumentReader tvReader = new TrueVizToBxDocumentReader();
-            List<BxPage> pages = tvReader.read(new InputStreamReader(
-                                        new FileInputStream(f), "UTF8"));
-            BxDocument doc = new BxDocument().setPages(pages);
-            doc.setFilename(f.getName());
+            BxDocument doc = BxDocUtils.getDocument(f);
             System.out.println("Document: " + f.getPath());
 
             Map<String, String> statistics = getStatistics(doc);
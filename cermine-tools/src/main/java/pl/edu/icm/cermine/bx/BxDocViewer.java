@@ -18,8 +18,7 @@
 
 package pl.edu.icm.cermine.bx;
 
-import java.io.FileNotFoundException;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.commons.cli.*;
@@ -32,7 +31,7 @@ import pl.edu.icm.cermine.structure.model.BxZone;
  */
 public class BxDocViewer extends BxDocStatisticsPrinter {
 
-    public static void main(String[] args) throws ParseException, TransformationException, FileNotFoundException, UnsupportedEncodingException  {
+    public static void main(String[] args) throws ParseException, TransformationException, IOException  {
         BxDocViewer viewer = new BxDocViewer();
         viewer.run(args);
     }
@@ -0,0 +1,153 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.bx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.HierarchicalReadingOrderResolver;
+import pl.edu.icm.cermine.structure.model.*;
+
+/**
+ * Compares the reading order resolution time with the distance tuples kept
+ * in a list sorted after every join and in a priority queue. It also verifies
+ * that both methods give identical zone order.
+ * <p>
+ * The pages are generated: multi-column pages with a number of paragraph
+ * zones in every column, and poster-style pages with a grid of blocks of
+ * small, irregularly placed zones.
+ */
+public class ReadingOrderBenchmark {
+
+    private static final int WARMUP_ROUNDS = 1;
+
+    private static final long SEED = 3021L;
+
+    public static void main(String[] args) throws AnalysisException {
+        if (args.length > 1) {
+            System.err.println("USAGE: ReadingOrderBenchmark [<rounds>]");
+            System.exit(1);
+        }
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        int[][] columnLayouts = {{2, 10}, {3, 20}, {4, 40}};
+        for (int[] layout : columnLayouts) {
+            benchmark(String.format("%d columns x %d zones", layout[0], layout[1]),
+                    false, layout[0], layout[1], rounds);
+        }
+        int[][] posterLayouts = {{3, 20}, {4, 30}, {5, 40}};
+        for (int[] layout : posterLayouts) {
+            benchmark(String.format("poster %d x %d blocks x %d zones", layout[0], layout[0], layout[1]),
+                    true, layout[0], layout[1], rounds);
+        }
+    }
+
+    private static void benchmark(String name, boolean poster, int size, int zonesPerBlock, int rounds)
+            throws AnalysisException {
+        List<String> listResult = null;
+        List<String> queueResult = null;
+        long listTime = 0;
+        long queueTime = 0;
+        int zones = 0;
+        for (int i = 0; i < WARMUP_ROUNDS + rounds; i++) {
+            HierarchicalReadingOrderResolver list = new HierarchicalReadingOrderResolver();
+            list.setQueueGroupingThreshold(Integer.MAX_VALUE);
+            BxDocument document = generate(poster, size, zonesPerBlock);
+            zones = document.getFirstChild().childrenCount();
+            long start = System.nanoTime();
+            BxDocument ordered = list.resolve(document);
+            if (i >= WARMUP_ROUNDS) {
+                listTime += System.nanoTime() - start;
+            }
+            listResult = zoneOrder(ordered);
+
+            HierarchicalReadingOrderResolver queue = new HierarchicalReadingOrderResolver();
+            queue.setQueueGroupingThreshold(0);
+            document = generate(poster, size, zonesPerBlock);
+            start = System.nanoTime();
+            ordered = queue.resolve(document);
+            if (i >= WARMUP_ROUNDS) {
+                queueTime += System.nanoTime() - start;
+            }
+            queueResult = zoneOrder(ordered);
+        }
+        System.out.printf("%s (%d zones): sorted list %.1f ms, queue %.1f ms, %s%n",
+                name, zones, listTime / 1e6 / rounds, queueTime / 1e6 / rounds,
+                listResult.equals(queueResult) ? "identical" : "DIFFERENT");
+    }
+
+    private static List<String> zoneOrder(BxDocument document) {
+        List<String> order = new ArrayList<String>();
+        for (BxZone zone : document.asZones()) {
+            order.add(zone.toText());
+        }
+        return order;
+    }
+
+    /**
+     * Generates a single-page document. The same arguments always give the same page.
+     */
+    private static BxDocument generate(boolean poster, int size, int zonesPerBlock) {
+        Random random = new Random(SEED);
+        BxPage page = new BxPage();
+        double pageWidth = 600;
+        double pageHeight = poster ? 1200 : 800;
+        if (poster) {
+            double blockWidth = pageWidth / size;
+            double blockHeight = pageHeight / size;
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    for (int i = 0; i < zonesPerBlock; i++) {
+                        double width = blockWidth * (0.2 + 0.3 * random.nextDouble());
+                        double height = blockHeight / zonesPerBlock * (0.5 + random.nextDouble());
+                        double x = col * blockWidth + (blockWidth - width) * random.nextDouble();
+                        double y = row * blockHeight + (blockHeight - height) * random.nextDouble();
+                        page.addZone(zone(page.childrenCount(), new BxBounds(x, y, width, height)));
+                    }
+                }
+            }
+        } else {
+            double columnWidth = pageWidth / size;
+            double zoneHeight = pageHeight / zonesPerBlock;
+            for (int col = 0; col < size; col++) {
+                for (int i = 0; i < zonesPerBlock; i++) {
+                    double height = zoneHeight * (0.6 + 0.3 * random.nextDouble());
+                    page.addZone(zone(page.childrenCount(),
+                            new BxBounds(col * columnWidth + 10, i * zoneHeight, columnWidth - 20, height)));
+                }
+            }
+        }
+        BxDocument document = new BxDocument();
+        document.addPage(page);
+        return document;
+    }
+
+    private static BxZone zone(int index, BxBounds bounds) {
+        String text = Integer.toString(index);
+        BxWord word = new BxWord().setBounds(bounds);
+        word.addChunk(new BxChunk(bounds, text));
+        BxLine line = new BxLine().setBounds(bounds);
+        line.addWord(word);
+        BxZone zone = new BxZone().setBounds(bounds);
+        zone.addLine(line);
+        return zone;
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.bx;
+
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import org.apache.commons.io.FileUtils;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.DocstrumSegmenter;
+import pl.edu.icm.cermine.structure.ITextCharacterExtractor;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
+
+/**
+ * Compares the page segmentation time with the nearest-neighbor search
+ * sweeping the components sorted by x coordinate and with the grid index.
+ * It also verifies that both methods give identical segmentation.
+ * <p>
+ * Dense pages, such as tables and formulas, benefit the most from
+ * the grid index; the example PDFs of cermine-web can be used as input.
+ */
+public class SegmentationBenchmark {
+
+    private static final int WARMUP_ROUNDS = 1;
+    
+    public static void main(String[] args) throws IOException, AnalysisException, TransformationException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("USAGE: SegmentationBenchmark <pdf_file_or_directory> [<rounds>]");
+            System.exit(1);
+        }
+        File input = new File(args[0]);
+        Collection<File> files = input.isDirectory()
+                ? FileUtils.listFiles(input, new String[]{"pdf"}, true) : Lists.newArrayList(input);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        ITextCharacterExtractor extractor = new ITextCharacterExtractor();
+        BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
+        long sweepTotal = 0;
+        long gridTotal = 0;
+        for (File file : files) {
+            int components = 0;
+            for (BxPage page : extract(extractor, file)) {
+                components = Math.max(components, Lists.newArrayList(page.getChunks()).size());
+            }
+            
+            String sweepResult = null;
+            String gridResult = null;
+            long sweepTime = 0;
+            long gridTime = 0;
+            for (int i = 0; i < WARMUP_ROUNDS + rounds; i++) {
+                DocstrumSegmenter sweep = new DocstrumSegmenter();
+                sweep.setGridSearchThreshold(Integer.MAX_VALUE);
+                BxDocument document = extract(extractor, file);
+                long start = System.nanoTime();
+                BxDocument segmented = sweep.segmentDocument(document);
+                if (i >= WARMUP_ROUNDS) {
+                    sweepTime += System.nanoTime() - start;
+                }
+                sweepResult = writer.write(Lists.newArrayList(segmented));
+
+                DocstrumSegmenter grid = new DocstrumSegmenter();
+                grid.setGridSearchThreshold(0);
+                document = extract(extractor, file);
+                start = System.nanoTime();
+                segmented = grid.segmentDocument(document);
+                if (i >= WARMUP_ROUNDS) {
+                    gridTime += System.nanoTime() - start;
+                }
+                gridResult = writer.write(Lists.newArrayList(segmented));
+            }
+            sweepTotal += sweepTime;
+            gridTotal += gridTime;
+            System.out.printf("%s: max components per page %d, sweep %.1f ms, grid %.1f ms, %s%n",
+                    file.getPath(), components, sweepTime / 1e6 / rounds, gridTime / 1e6 / rounds,
+                    sweepResult.equals(gridResult) ? "identical" : "DIFFERENT");
+        }
+        System.out.printf("Total: sweep %.1f ms, grid %.1f ms%n", sweepTotal / 1e6 / rounds, gridTotal / 1e6 / rounds);
+    }
+
+    private static BxDocument extract(ITextCharacterExtractor extractor, File file) throws IOException, AnalysisException {
+        InputStream is = new FileInputStream(file);
+        try {
+            return extractor.extractCharacters(is);
+        } finally {
+            is.close();
+        }
+    }
+    
+}
@@ -0,0 +1,160 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.content;
+
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import pl.edu.icm.cermine.content.cleaning.ContentCleaner;
+
+/**
+ * Compares the throughput of the text cleaning methods of {@link ContentCleaner}
+ * with the previous implementation chaining regular expression replacements.
+ * It also verifies that both give identical results.
+ * <p>
+ * The input are plain text files, for example the text extracted by CERMINE
+ * ("-outputs text"). Each block of lines separated by an empty line is
+ * cleaned as a single text.
+ */
+public class ContentCleaningBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    
+    private static final String HYPHEN_LIST = "-\u00AD\u2010\u2011\u2012\u2013\u2014\u2015\u207B\u208B\u2212-";
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("USAGE: ContentCleaningBenchmark <text_file_or_directory> [<rounds>]");
+            System.exit(1);
+        }
+        File input = new File(args[0]);
+        Collection<File> files = input.isDirectory()
+                ? FileUtils.listFiles(input, new String[]{"txt"}, true) : Lists.newArrayList(input);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        
+        List<String> texts = new ArrayList<String>();
+        long chars = 0;
+        for (File file : files) {
+            for (String text : FileUtils.readFileToString(file, "UTF-8").split("\n\\s*\n")) {
+                texts.add(text);
+                chars += text.length();
+            }
+        }
+        
+        int different = 0;
+        for (String text : texts) {
+            if (!ContentCleaner.cleanAllAndBreaks(text).equals(regexCleanAllAndBreaks(text))
+                    || !ContentCleaner.cleanAll(text).equals(regexCleanAll(text))) {
+                different++;
+            }
+        }
+        
+        long regexTime = 0;
+        long cleanerTime = 0;
+        for (int i = 0; i < WARMUP_ROUNDS + rounds; i++) {
+            long start = System.nanoTime();
+            for (String text : texts) {
+                regexCleanAll(text);
+            }
+            if (i >= WARMUP_ROUNDS) {
+                regexTime += System.nanoTime() - start;
+            }
+            start = System.nanoTime();
+            for (String text : texts) {
+                ContentCleaner.cleanAll(text);
+            }
+            if (i >= WARMUP_ROUNDS) {
+                cleanerTime += System.nanoTime() - start;
+            }
+        }
+        
+        System.out.println("Texts: " + texts.size() + ", characters: " + chars);
+        System.out.printf("Regular expressions: %.1f ms per round, %.2f MB/s%n",
+                regexTime / 1e6 / rounds, throughput(chars, regexTime, rounds));
+        System.out.printf("ContentCleaner: %.1f ms per round, %.2f MB/s%n",
+                cleanerTime / 1e6 / rounds, throughput(chars, cleanerTime, rounds));
+        System.out.println(different == 0 ? "Results identical" : "Results DIFFERENT for " + different + " texts");
+    }
+    
+    private static double throughput(long chars, long time, int rounds) {
+        return chars * 2.0 * rounds / (time / 1e9) / (1 << 20);
+    }
+    
+    private static String regexCleanAll(String str) {
+        return regexClean(regexCleanHyphenation(str));
+    }
+    
+    private static String regexCleanAllAndBreaks(String str) {
+        return regexClean(regexCleanHyphenation(str).replaceAll("\n", " "));
+    }
+    
+    private static String regexClean(String str) {
+        return str.replaceAll("\uFB00", "ff")
+                  .replaceAll("\uFB01", "fi")
+                  .replaceAll("\uFB02", "fl")
+                  .replaceAll("\uFB03", "ffi")
+                  .replaceAll("\uFB04", "ffl")
+                  .replaceAll("\uFB05", "ft")
+                  .replaceAll("\uFB06", "st")
+                  .replaceAll("\u00E6", "ae")
+                  .replaceAll("\u0153", "oe")
+                  .replaceAll("[\u2019\u2018]", "'")
+                  .replaceAll("[\u2013]", "-")
+                  .replaceAll("[\u2014]", "-");
+    }
+    
+    private static String regexCleanHyphenation(String str) {
+        str = str.replaceAll(" +", " ").replaceAll("^ +", "").replaceAll(" +$", "");
+        String[] lines = str.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = lines[i].replaceAll("^ +", "").replaceAll(" +$", "");
+        }
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < lines.length) {
+            String line = lines[i];
+            if (i + 1 == lines.length) {
+                sb.append(line);
+                break;
+            }
+            String next = lines[i+1];
+            if (line.matches("^.*["+HYPHEN_LIST+"]$")) {
+                line = line.substring(0, line.length()-1);
+                sb.append(line);
+                int idx = next.indexOf(' ');
+                if (idx < 0) {
+                    sb.append(next);
+                    i++;
+                } else {
+                    sb.append(next.substring(0, idx));
+                    lines[i+1] = next.substring(idx+1);                   
+                }
+            } else {
+                sb.append(line);
+            }
+            sb.append("\n");
+            i++;
+        }
+        return sb.toString().trim();
+    }
+    
+}
@@ -19,8 +19,8 @@
 package pl.edu.icm.cermine.evaluation;
 
 import com.google.common.collect.Lists;
+import java.io.File;
 import java.io.IOException;
-import java.io.Reader;
 import java.io.Writer;
 import java.util.EnumMap;
 import java.util.List;
@@ -36,7 +36,7 @@ import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
 import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
-import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.tools.BxDocUtils;
 import pl.edu.icm.cermine.tools.classification.general.FeatureVectorBuilder;
 import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
 import pl.edu.icm.cermine.tools.classification.svm.SVMZoneClassifier;
@@ -59,7 +59,6 @@ public abstract class CrossvalidatingZoneClassificationEvaluator {
 
     protected int foldness;
     private final Map<BxZoneLabel, BxZoneLabel> labelMap = DEFAULT_LABEL_MAP.clone();
-    private final TrueVizToBxDocumentReader reader = new TrueVizToBxDocumentReader();
     private final BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
 
     public static void main(String[] args, CrossvalidatingZoneClassificationEvaluator evaluator)
@@ -171,13 +170,8 @@ public abstract class CrossvalidatingZoneClassificationEvaluator {
         return pageResults;
     }
 
-    protected BxDocument readDocument(Reader input) throws TransformationException {
-        List<BxPage> pages = reader.read(input);
-        BxDocument ret = new BxDocument();
-        for (BxPage page : pages) {
-            page.setParent(ret);
-        }
-        return ret.setPages(pages);
+    protected BxDocument readDocument(File file) throws IOException, TransformationException {
+        return BxDocUtils.getDocument(file);
     }
 
     public void setLabelMap(Map<BxZoneLabel, BxZoneLabel> value) {
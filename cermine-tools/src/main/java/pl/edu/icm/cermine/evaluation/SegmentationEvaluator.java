@@ -31,8 +31,9 @@ import pl.edu.icm.cermine.structure.ReadingOrderResolver;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.structure.tools.BxModelUtils;
 import pl.edu.icm.cermine.structure.tools.UnsegmentedPagesFlattener;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentBinaryFormat;
 import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
-import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.tools.BxDocUtils;
 
 /**
  * @author Krzysztof Rusek
@@ -48,7 +49,6 @@ public class SegmentationEvaluator {
 
     private final ReadingOrderResolver resolver = new HierarchicalReadingOrderResolver();
 
-    private final TrueVizToBxDocumentReader reader = new TrueVizToBxDocumentReader();
 
     private final BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
 
@@ -219,8 +219,8 @@ public class SegmentationEvaluator {
         return document;
     }
 
-    protected BxDocument readDocument(Reader input) throws TransformationException {
-        return new BxDocument().setPages(reader.read(input));
+    protected BxDocument readDocument(File file) throws IOException, TransformationException {
+        return BxDocUtils.getDocument(file);
     }
 
     protected void writeDocument(BxDocument document, Writer output) throws TransformationException {
@@ -324,7 +324,7 @@ public class SegmentationEvaluator {
         evaluator.ignoredLabels.add(BxZoneLabel.BODY_EQUATION);
 
         File file = new File(args[0]);
-        Collection<File> files = FileUtils.listFiles(file, new String[]{"xml"}, true);
+        Collection<File> files = FileUtils.listFiles(file, new String[]{"xml", BxDocumentBinaryFormat.EXTENSION}, true);
         Results results = new Results();
         int i = 0;
 
@@ -333,13 +333,11 @@ public class SegmentationEvaluator {
         double wordScores = 0;
         BxDocument origDoc;
         BxDocument testDoc;
-        Reader reader;
         for (File filee : files) {
             System.out.println(new Date(System.currentTimeMillis()));
             System.out.println(filee.getName());
 
-            reader = new BufferedReader(new InputStreamReader(new FileInputStream(filee), "UTF-8"));
-            origDoc = evaluator.prepareExpectedDocument(evaluator.readDocument(reader));
+            origDoc = evaluator.prepareExpectedDocument(evaluator.readDocument(filee));
             testDoc = evaluator.prepareActualDocument(origDoc);
             Results docRes = evaluator.compareItems(origDoc, testDoc);
             results.add(docRes);
@@ -19,6 +19,7 @@
 package pl.edu.icm.cermine.service;
 
 import java.io.InputStream;
+import java.util.Map;
 import pl.edu.icm.cermine.exception.AnalysisException;
 
 /**
@@ -42,4 +43,12 @@ public interface CermineExtractorService {
     ExtractionResult extractNLM(InputStream ii) throws AnalysisException, ServiceException;
 
     long initExtractionTask(byte[] pdf, String fileName);
+
+    /**
+     * Returns the current statistics of the extractor pool: its size,
+     * extractors in use, checkout wait times and utilization.
+     *
+     * @return statistics, keyed by name
+     */
+    Map<String, Object> getPoolStatistics();
 }
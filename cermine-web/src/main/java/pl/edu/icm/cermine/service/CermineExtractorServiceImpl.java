@@ -20,9 +20,8 @@ package pl.edu.icm.cermine.service;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import javax.annotation.PostConstruct;
 import org.jdom.Document;
@@ -46,7 +45,7 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
     int threadPoolSize = 4;
     int maxQueueForBatch = 0;
     Logger log = LoggerFactory.getLogger(CermineExtractorServiceImpl.class);
-    List<ContentExtractor> extractors;
+    ExtractorPool extractors;
     ExecutorService processingExecutor;
     ExecutorService batchProcessingExecutor;
     @Autowired
@@ -66,10 +65,7 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
                 q = new ArrayBlockingQueue<Runnable>(100000);
             }
             batchProcessingExecutor = new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 1, TimeUnit.DAYS, q);
-            extractors = new ArrayList<ContentExtractor>();
-            for (int i = 0; i < threadPoolSize; i++) {
-                extractors.add(new ContentExtractor());
-            }
+            extractors = new ExtractorPool(threadPoolSize);
         } catch (Exception ex) {
             log.error("Failed to init content extractor", ex);
             throw new RuntimeException(ex);
@@ -129,35 +125,25 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
         return id;
     }
 
-    protected ContentExtractor obtainExtractor() {
+    protected ExtractorPool.Lease obtainExtractor() throws AnalysisException {
         log.debug("Obtaining extractor from the pool");
-        ContentExtractor res = null;
         try {
-            synchronized (extractors) {
-                while (extractors.isEmpty()) {
-                    log.debug("Extractor pool is empty, going to sleep...");
-                    extractors.wait();
-                }
-                res = extractors.remove(0);
-            }
-            return res;
+            return extractors.obtain();
         } catch (InterruptedException ire) {
             log.error("Unexpected exception while waiting for extractor...", ire);
+            Thread.currentThread().interrupt();
             throw new RuntimeException(ire);
         }
     }
 
-    protected void returnExtractor(ContentExtractor e) {
+    protected void returnExtractor(ExtractorPool.Lease lease) {
         log.debug("Returning extractor to the pool...");
-        synchronized (extractors) {
-            try {
-                e = new ContentExtractor();
-                extractors.add(e);
-            } catch (AnalysisException ex) {
-                throw new RuntimeException("Cannot create extractor!", ex);
-            }
-            extractors.notify();
-        }
+        extractors.release(lease);
+    }
+
+    @Override
+    public Map<String, Object> getPoolStatistics() {
+        return extractors.getStatistics();
     }
 
     /**
@@ -168,9 +154,10 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
      * @return extraction results
      */
     private ExtractionResult performExtraction(ExtractionResult result, InputStream input) {
-        ContentExtractor e = null;
+        ExtractorPool.Lease lease = null;
         try {
-            e = obtainExtractor();
+            lease = obtainExtractor();
+            ContentExtractor e = lease.getExtractor();
             result.processingStart = new Date();
             log.debug("Starting extraction on the input stream...");
             e.setPDF(input);
@@ -191,8 +178,8 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
             result.setError(anal);
             result.setSucceeded(false);
         } finally {
-            if (e != null) {
-                returnExtractor(e);
+            if (lease != null) {
+                returnExtractor(lease);
             }
             result.setProcessingEnd(new Date());
         }
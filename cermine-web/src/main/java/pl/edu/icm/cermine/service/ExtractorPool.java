@@ -0,0 +1,205 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2018 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.icm.cermine.ContentExtractor;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Fixed-size pool of reusable content extractors.
+ * <p>
+ * Checkout is guarded by a semaphore, idle extractors are kept in a
+ * lock-free queue. Returned extractors are reset and reused. An extractor
+ * that cannot be reset is dropped, and a new one is created when
+ * the next extractor is obtained, so the pool keeps its size.
+ */
+public class ExtractorPool {
+
+    private static final Logger log = LoggerFactory.getLogger(ExtractorPool.class);
+
+    private final int size;
+    private final Queue<ContentExtractor> idle = new ConcurrentLinkedQueue<ContentExtractor>();
+    private final Semaphore permits;
+
+    private final long createdAt = System.nanoTime();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalBusyNanos = new AtomicLong();
+    private final AtomicLong recreated = new AtomicLong();
+
+    public ExtractorPool(int size) throws AnalysisException {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + size);
+        }
+        this.size = size;
+        for (int i = 0; i < size; i++) {
+            idle.add(new ContentExtractor());
+        }
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Takes an extractor from the pool, waiting until one is available.
+     *
+     * @return pooled extractor, which has to be given back with
+     * {@link #release(Lease)}
+     * @throws InterruptedException if the thread was interrupted while waiting
+     * @throws AnalysisException if a new extractor in place of a dropped one
+     * cannot be created
+     */
+    public Lease obtain() throws InterruptedException, AnalysisException {
+        long start = System.nanoTime();
+        if (!permits.tryAcquire()) {
+            log.debug("Extractor pool is empty, waiting...");
+            permits.acquire();
+        }
+        long waited = System.nanoTime() - start;
+        ContentExtractor extractor = idle.poll();
+        if (extractor == null) {
+            // an extractor was dropped on release
+            try {
+                extractor = new ContentExtractor();
+            } catch (AnalysisException ex) {
+                permits.release();
+                throw ex;
+            } catch (RuntimeException ex) {
+                permits.release();
+                throw ex;
+            }
+            recreated.incrementAndGet();
+        }
+        inUse.incrementAndGet();
+        checkouts.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        long max = maxWaitNanos.get();
+        while (waited > max && !maxWaitNanos.compareAndSet(max, waited)) {
+            max = maxWaitNanos.get();
+        }
+        return new Lease(extractor);
+    }
+
+    /**
+     * Gives an extractor back to the pool.
+     *
+     * @param lease the lease obtained from {@link #obtain()}
+     */
+    public void release(Lease lease) {
+        if (lease.released) {
+            return;
+        }
+        lease.released = true;
+        totalBusyNanos.addAndGet(System.nanoTime() - lease.start);
+        try {
+            lease.extractor.reset();
+            idle.add(lease.extractor);
+        } catch (IOException ex) {
+            log.warn("Cannot reset extractor, a new one will be created", ex);
+        } finally {
+            inUse.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    public int getAvailable() {
+        return permits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    public long getCheckouts() {
+        return checkouts.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = checkouts.get();
+        return count == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get()) / count / 1000;
+    }
+
+    public double getMaxWaitMillis() {
+        return (double) TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()) / 1000;
+    }
+
+    /**
+     * @return the fraction of extractor time spent on processing since
+     * the pool was created (extractors still in use are not counted)
+     */
+    public double getUtilization() {
+        long elapsed = System.nanoTime() - createdAt;
+        return elapsed <= 0 ? 0 : (double) totalBusyNanos.get() / ((double) elapsed * size);
+    }
+
+    public long getRecreated() {
+        return recreated.get();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<String, Object>();
+        stats.put("size", getSize());
+        stats.put("inUse", getInUse());
+        stats.put("available", getAvailable());
+        stats.put("waiting", getWaiting());
+        stats.put("checkouts", getCheckouts());
+        stats.put("averageWaitMillis", getAverageWaitMillis());
+        stats.put("maxWaitMillis", getMaxWaitMillis());
+        stats.put("utilization", getUtilization());
+        stats.put("recreated", getRecreated());
+        return stats;
+    }
+
+    /**
+     * Extractor checked out of the pool.
+     */
+    public static final class Lease {
+
+        private final ContentExtractor extractor;
+        private final long start = System.nanoTime();
+        private boolean released;
+
+        private Lease(ContentExtractor extractor) {
+            this.extractor = extractor;
+        }
+
+        public ContentExtractor getExtractor() {
+            return extractor;
+        }
+    }
+}
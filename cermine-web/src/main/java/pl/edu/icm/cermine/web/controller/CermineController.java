@@ -275,6 +275,17 @@ public class CermineController {
         return new ModelAndView("task", model);
     }
 
+    @RequestMapping(value = "/pool.do", method = RequestMethod.GET)
+    public ResponseEntity<String> showPoolStatistics() {
+        StringBuilder response = new StringBuilder();
+        for (Map.Entry<String, Object> entry : extractorService.getPoolStatistics().entrySet()) {
+            response.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.setContentType(MediaType.TEXT_PLAIN);
+        return new ResponseEntity<String>(response.toString(), responseHeaders, HttpStatus.OK);
+    }
+
     @RequestMapping(value = "/tasks.html")
     public ModelAndView showTasks() {
         return new ModelAndView("tasks", "tasks", taskManager.taskList());